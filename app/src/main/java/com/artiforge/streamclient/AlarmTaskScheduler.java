@@ -0,0 +1,110 @@
+package com.artiforge.streamclient;
+
+import android.app.AlarmManager;
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.SystemClock;
+
+/**
+ * 以 AlarmManager（ELAPSED_REALTIME_WAKEUP）實作的排程器：裝置深度睡眠時也會準時喚醒
+ *
+ * DeviceScheduler 的執行緒在 CPU 睡眠時不會前進，只適合裝置醒著時的任務；
+ * 定時擷取等需要在睡眠中準時觸發的少數任務改用本類別。時間基準為 SystemClock.elapsedRealtime()
+ * （含睡眠時間），搭配的 TimeSource 需一致。容許延後 0 的任務使用精確鬧鐘；
+ * Android 12+ 未取得精確鬧鐘權限時退回時間窗鬧鐘（可能延後數分鐘）。任務在 handler 的執行緒上執行。
+ */
+public class AlarmTaskScheduler implements TaskScheduler {
+
+    /** 與本排程器一致的時間來源 */
+    public static final TimeSource CLOCK = SystemClock::elapsedRealtime;
+
+    private static final String ALARM_TAG = "StreamClient:alarm";
+    private static final long MIN_WINDOW_MS = 1_000;
+
+    private final AlarmManager alarmManager;
+    private final Handler handler;
+    private final StreamLogger logger;
+    private boolean warnedInexact = false;
+
+    public AlarmTaskScheduler(Context context, Handler handler, StreamLogger logger) {
+        this.alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        this.handler = handler;
+        this.logger = logger;
+    }
+
+    @Override
+    public ScheduledTask schedule(Runnable task, long delayMs, long toleranceMs) {
+        Alarm alarm = new Alarm(task, 0, toleranceMs);
+        alarm.arm(CLOCK.nowMs() + Math.max(0, delayMs));
+        return alarm;
+    }
+
+    @Override
+    public ScheduledTask scheduleAtFixedRate(Runnable task, long periodMs, long toleranceMs) {
+        if (periodMs <= 0) {
+            throw new IllegalArgumentException("periodMs 必須大於 0: " + periodMs);
+        }
+        Alarm alarm = new Alarm(task, periodMs, toleranceMs);
+        alarm.arm(CLOCK.nowMs() + periodMs);
+        return alarm;
+    }
+
+    private boolean canScheduleExact() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.S || alarmManager.canScheduleExactAlarms()) {
+            return true;
+        }
+        if (!warnedInexact) {
+            warnedInexact = true;
+            logger.log(LogLevel.WARN, "⚠️ 未允許精確鬧鐘，定時擷取可能延後");
+        }
+        return false;
+    }
+
+    private final class Alarm implements AlarmManager.OnAlarmListener, ScheduledTask {
+        private final Runnable task;
+        private final long periodMs;
+        private final long toleranceMs;
+        private volatile boolean cancelled = false;
+        private long nominalMs;
+
+        Alarm(Runnable task, long periodMs, long toleranceMs) {
+            this.task = task;
+            this.periodMs = periodMs;
+            this.toleranceMs = Math.max(0, toleranceMs);
+        }
+
+        void arm(long triggerAtMs) {
+            nominalMs = triggerAtMs;
+            if (toleranceMs == 0 && canScheduleExact()) {
+                alarmManager.setExact(AlarmManager.ELAPSED_REALTIME_WAKEUP, triggerAtMs, ALARM_TAG, this, handler);
+            } else {
+                alarmManager.setWindow(AlarmManager.ELAPSED_REALTIME_WAKEUP, triggerAtMs,
+                        Math.max(MIN_WINDOW_MS, toleranceMs), ALARM_TAG, this, handler);
+            }
+        }
+
+        @Override
+        public void onAlarm() {
+            if (cancelled) {
+                return;
+            }
+            if (periodMs > 0) {
+                // 以原定時間為基準重排，睡過頭錯過的週期直接略過
+                long next = nominalMs + periodMs;
+                long now = CLOCK.nowMs();
+                while (next <= now) {
+                    next += periodMs;
+                }
+                arm(next);
+            }
+            task.run();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            alarmManager.cancel(this);
+        }
+    }
+}
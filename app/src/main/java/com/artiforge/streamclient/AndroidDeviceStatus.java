@@ -0,0 +1,43 @@
+package com.artiforge.streamclient;
+
+import android.content.Context;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.PowerManager;
+
+/**
+ * 由 PowerManager（溫度，Android 10+）與 BatteryManager（電量、充電）提供裝置狀態
+ */
+public class AndroidDeviceStatus implements DeviceStatusProvider {
+
+    private final PowerManager powerManager;
+    private final BatteryManager batteryManager;
+
+    public AndroidDeviceStatus(Context context) {
+        this.powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        this.batteryManager = (BatteryManager) context.getSystemService(Context.BATTERY_SERVICE);
+    }
+
+    @Override
+    public int thermalStatus() {
+        if (powerManager == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+            return THERMAL_NONE;
+        }
+        return powerManager.getCurrentThermalStatus();
+    }
+
+    @Override
+    public int batteryPercent() {
+        if (batteryManager == null) {
+            return -1;
+        }
+        int percent = batteryManager.getIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY);
+        // 不支援時回傳 Integer.MIN_VALUE 或 0
+        return percent > 0 && percent <= 100 ? percent : -1;
+    }
+
+    @Override
+    public boolean isCharging() {
+        return batteryManager != null && batteryManager.isCharging();
+    }
+}
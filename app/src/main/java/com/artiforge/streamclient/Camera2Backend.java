@@ -0,0 +1,373 @@
+package com.artiforge.streamclient;
+
+import android.content.Context;
+import android.graphics.ImageFormat;
+import android.graphics.Rect;
+import android.graphics.YuvImage;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCaptureSession;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraDevice;
+import android.hardware.camera2.CameraManager;
+import android.hardware.camera2.CaptureRequest;
+import android.media.Image;
+import android.media.ImageReader;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Size;
+
+import androidx.annotation.NonNull;
+
+import java.io.OutputStream;
+
+/**
+ * Camera2 後端：前鏡頭 YUV_420_888 預覽，影格交給 CameraController 的 FrameSink
+ *
+ * 生命週期由 CameraController 決定（只在控制執行緒上呼叫 open / close）；
+ * 裝置、工作階段與 ImageReader 只在相機背景執行緒上操作。
+ */
+public class Camera2Backend implements CameraBackend {
+
+    private final Context context;
+    private final StreamLogger logger;
+
+    // 只在相機背景執行緒上存取
+    private CameraDevice cameraDevice;
+    private CameraCaptureSession captureSession;
+    private ImageReader imageReader;
+
+    // 由控制執行緒建立與結束（LooperWatchdog 從排程執行緒讀取）
+    private volatile HandlerThread backgroundThread;
+    private volatile Handler backgroundHandler;
+
+    public Camera2Backend(Context context, StreamLogger logger) {
+        this.context = context;
+        this.logger = logger;
+    }
+
+    @Override
+    public void open(int session, ResolutionTier tier, Listener listener, FrameSink sink) {
+        startBackgroundThread();
+        backgroundHandler.post(() -> openOnCameraThread(session, tier, listener, sink));
+    }
+
+    private void openOnCameraThread(int session, ResolutionTier tier, Listener listener, FrameSink sink) {
+        CameraManager manager = (CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
+        try {
+            // 列出所有相機
+            String[] cameraIds = manager.getCameraIdList();
+            logger.log(LogLevel.DEBUG, () -> "📷 找到 " + cameraIds.length + " 個相機");
+
+            // v1.2.6: 改用前鏡頭（LENS_FACING_FRONT）
+            String cameraId = null;
+            for (String id : cameraIds) {
+                CameraCharacteristics chars = manager.getCameraCharacteristics(id);
+                Integer facing = chars.get(CameraCharacteristics.LENS_FACING);
+                if (facing != null && facing == CameraCharacteristics.LENS_FACING_FRONT) {
+                    cameraId = id;
+                    break;
+                }
+            }
+
+            // 如果沒有前鏡頭，使用第一個相機
+            if (cameraId == null) {
+                cameraId = cameraIds[0];
+            }
+
+            final String selectedId = cameraId;
+            logger.log(LogLevel.DEBUG, () -> "🎯 使用相機 ID: " + selectedId + " (前鏡頭)");
+
+            CameraCharacteristics characteristics = manager.getCameraCharacteristics(cameraId);
+
+            // 檢查相機支援的格式
+            int[] formats = characteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP)
+                    .getOutputFormats();
+            logger.log(LogLevel.DEBUG, () -> "📋 支援格式數: " + formats.length);
+
+            // 使用 YUV_420_888（PREVIEW 模板的正確格式）
+            Size[] sizes = characteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP)
+                    .getOutputSizes(ImageFormat.YUV_420_888);
+
+            if (logger.isLoggable(LogLevel.DEBUG)) {
+                logger.log(LogLevel.DEBUG, "📐 可用解析度數: " + sizes.length);
+
+                // 列出前 5 個常用解析度
+                StringBuilder resolutions = new StringBuilder("   常用解析度: ");
+                int count = 0;
+                for (Size size : sizes) {
+                    if (count >= 5) break;
+                    if (size.getWidth() <= 1920 && size.getHeight() <= 1920) {
+                        if (count > 0) resolutions.append(", ");
+                        resolutions.append(size.getWidth()).append("x").append(size.getHeight());
+                        count++;
+                    }
+                }
+                logger.log(LogLevel.DEBUG, resolutions.toString());
+            }
+
+            // 選擇接近目前解析度等級（預設 480x640）的解析度
+            Size selectedSize = sizes[0]; // 預設第一個
+            int targetWidth = tier.width;
+            int targetHeight = tier.height;
+            int minDiff = Integer.MAX_VALUE;
+
+            for (Size size : sizes) {
+                int diff = Math.abs(size.getWidth() - targetWidth) + Math.abs(size.getHeight() - targetHeight);
+                if (diff < minDiff && size.getWidth() <= 1280 && size.getHeight() <= 960) {
+                    minDiff = diff;
+                    selectedSize = size;
+                }
+            }
+
+            final Size chosenSize = selectedSize;
+            logger.log(LogLevel.INFO, () -> "✅ 選擇解析度: " + chosenSize.getWidth() + "x" + chosenSize.getHeight()
+                    + " (最接近 " + targetWidth + "x" + targetHeight + ")");
+
+            logger.log(LogLevel.DEBUG, "🔧 建立 ImageReader...");
+
+            imageReader = ImageReader.newInstance(
+                selectedSize.getWidth(),
+                selectedSize.getHeight(),
+                ImageFormat.YUV_420_888,
+                2
+            );
+
+            logger.log(LogLevel.INFO, "✅ ImageReader 建立成功");
+
+            imageReader.setOnImageAvailableListener(reader -> {
+                // 預覽模式或節流：靜默丟棄，不讀取影像平面
+                if (!sink.wantsFrame(System.currentTimeMillis())) {
+                    Image img = reader.acquireLatestImage();
+                    if (img != null) img.close();
+                    return;
+                }
+
+                Image image = reader.acquireLatestImage();
+                if (image != null) {
+                    // YUV 格式：旋轉 / 縮小後依需要編碼各層 JPEG（靜默模式，過期影格不編碼）
+                    Image.Plane[] planes = image.getPlanes();
+                    sink.onFrame(planes[0].getBuffer(), planes[0].getRowStride(),
+                            planes[1].getBuffer(), planes[2].getBuffer(),
+                            planes[1].getRowStride(), planes[1].getPixelStride(),
+                            image.getWidth(), image.getHeight(),
+                            EncodedFrame.captureTimeMs(image.getTimestamp()));
+                    image.close();
+                }
+            }, backgroundHandler);
+
+            logger.log(LogLevel.INFO, "🔓 請求開啟相機...");
+
+            manager.openCamera(cameraId, new CameraDevice.StateCallback() {
+                @Override
+                public void onOpened(@NonNull CameraDevice camera) {
+                    cameraDevice = camera;
+                    logger.log(LogLevel.INFO, () -> "✅ 相機已開啟（ID: " + camera.getId() + "）");
+                    createCaptureSession(session, listener);
+                }
+
+                @Override
+                public void onDisconnected(@NonNull CameraDevice camera) {
+                    camera.close();
+                    cameraDevice = null;
+                    listener.onDisconnected(session);
+                }
+
+                @Override
+                public void onError(@NonNull CameraDevice camera, int error) {
+                    logger.log(LogLevel.ERROR, "❌ 相機回調錯誤（onError 觸發）");
+                    logger.log(LogLevel.DEBUG, () -> "   錯誤碼: " + error);
+                    logger.log(LogLevel.DEBUG, () -> "   相機 ID: " + camera.getId());
+
+                    camera.close();
+                    cameraDevice = null;
+                    captureSession = null;
+
+                    String errorMsg = "相機錯誤 " + error + ": ";
+                    boolean canRetry = false;
+
+                    switch (error) {
+                        case CameraDevice.StateCallback.ERROR_CAMERA_IN_USE:
+                            errorMsg += "相機正被其他應用使用\n解決: 關閉其他相機 App";
+                            break;
+                        case CameraDevice.StateCallback.ERROR_MAX_CAMERAS_IN_USE:
+                            errorMsg += "已達相機使用上限\n解決: 關閉其他使用相機的 App";
+                            break;
+                        case CameraDevice.StateCallback.ERROR_CAMERA_DISABLED:
+                            // v1.3.2.1: 不自動重試（通常是手機鎖定）
+                            errorMsg += "相機被系統停用（手機可能鎖定）\n解決: 解鎖手機";
+                            canRetry = false;  // 不自動重試，避免閃爍
+                            break;
+                        case CameraDevice.StateCallback.ERROR_CAMERA_DEVICE:
+                            errorMsg += "相機硬體錯誤\n⚠️ 嘗試自動恢復...";
+                            canRetry = true;  // 硬體錯誤可以重試
+                            break;
+                        case CameraDevice.StateCallback.ERROR_CAMERA_SERVICE:
+                            errorMsg += "相機服務錯誤\n解決: 重啟手機";
+                            break;
+                        default:
+                            errorMsg += "未知錯誤";
+                    }
+
+                    listener.onError(session, errorMsg, "locked", canRetry);
+                }
+            }, backgroundHandler);
+
+        } catch (CameraAccessException e) {
+            listener.onError(session, "相機存取失敗: " + e.getMessage(), "access_error", false);
+        } catch (SecurityException e) {
+            listener.onError(session, "缺少相機權限", "permission_denied", false);
+        }
+    }
+
+    private void createCaptureSession(int session, Listener listener) {
+        logger.log(LogLevel.DEBUG, "🔧 建立 CaptureSession...");
+
+        try {
+            if (cameraDevice == null || imageReader == null) {
+                listener.onError(session, "❌ cameraDevice 或 imageReader 為 null", "access_error", false);
+                return;
+            }
+
+            cameraDevice.createCaptureSession(
+                java.util.Arrays.asList(imageReader.getSurface()),
+                new CameraCaptureSession.StateCallback() {
+                    @Override
+                    public void onConfigured(@NonNull CameraCaptureSession configured) {
+                        captureSession = configured;
+                        logger.log(LogLevel.INFO, "✅ CaptureSession 建立成功");
+                        startPreview(session, listener);  // 改為啟動預覽（不上傳）
+                    }
+
+                    @Override
+                    public void onConfigureFailed(@NonNull CameraCaptureSession failed) {
+                        listener.onError(session, "❌ CaptureSession 配置失敗", "access_error", false);
+                    }
+
+                    @Override
+                    public void onClosed(@NonNull CameraCaptureSession closed) {
+                        logger.log(LogLevel.DEBUG, "⚠️ CaptureSession 已關閉");
+                    }
+                },
+                backgroundHandler
+            );
+        } catch (CameraAccessException e) {
+            listener.onError(session, "❌ 建立 CaptureSession 失敗: " + e.getMessage(), "access_error", false);
+        } catch (IllegalStateException e) {
+            listener.onError(session, "❌ 相機狀態錯誤: " + e.getMessage(), "access_error", false);
+        }
+    }
+
+    private void startPreview(int session, Listener listener) {
+        logger.log(LogLevel.INFO, "🎥 啟動相機預覽...");
+
+        try {
+            // 改用 PREVIEW 模板（適合長時間預覽，不會被系統停用）
+            CaptureRequest.Builder builder = cameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
+            builder.addTarget(imageReader.getSurface());
+
+            // 自動對焦（連續視訊對焦）
+            builder.set(CaptureRequest.CONTROL_AF_MODE, CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_VIDEO);
+
+            // 自動曝光
+            builder.set(CaptureRequest.CONTROL_AE_MODE, CaptureRequest.CONTROL_AE_MODE_ON);
+
+            // 自動白平衡
+            builder.set(CaptureRequest.CONTROL_AWB_MODE, CaptureRequest.CONTROL_AWB_MODE_AUTO);
+
+            // 影像穩定（如果支援）
+            builder.set(CaptureRequest.CONTROL_VIDEO_STABILIZATION_MODE,
+                       CaptureRequest.CONTROL_VIDEO_STABILIZATION_MODE_ON);
+
+            logger.log(LogLevel.INFO, "📤 發送預覽請求（PREVIEW 模板 + YUV 格式）...");
+
+            captureSession.setRepeatingRequest(builder.build(), null, backgroundHandler);
+
+            logger.log(LogLevel.INFO, "✅ 相機預覽已啟動（PREVIEW + YUV，系統相容）");
+            listener.onOpened(session);
+
+        } catch (CameraAccessException e) {
+            listener.onError(session, "❌ 啟動預覽失敗: " + e.getMessage(), "access_error", false);
+        } catch (IllegalStateException e) {
+            listener.onError(session, "❌ 相機狀態錯誤: " + e.getMessage(), "access_error", false);
+        }
+    }
+
+    /**
+     * 在相機執行緒上釋放裝置後結束該執行緒（quitSafely 會先執行已排入的釋放工作）
+     */
+    @Override
+    public void close() {
+        if (backgroundThread == null) {
+            return;
+        }
+        backgroundHandler.post(this::releaseOnCameraThread);
+        stopBackgroundThread();
+    }
+
+    private void releaseOnCameraThread() {
+        if (captureSession != null) {
+            captureSession.close();
+            captureSession = null;
+        }
+
+        if (cameraDevice != null) {
+            cameraDevice.close();
+            cameraDevice = null;
+        }
+
+        if (imageReader != null) {
+            imageReader.close();
+            imageReader = null;
+        }
+    }
+
+    /**
+     * v1.2.7: NV21 → JPEG（旋轉與縮小已在 FrameEncoder 完成）
+     */
+    static boolean compressNv21(byte[] nv21, int width, int height, int quality, OutputStream out) {
+        YuvImage yuvImage = new YuvImage(nv21, ImageFormat.NV21, width, height, null);
+        return yuvImage.compressToJpeg(new Rect(0, 0, width, height), quality, out);
+    }
+
+    /**
+     * 相機背景執行緒的卡住偵測（相機關閉時沒有執行緒，視為閒置）
+     */
+    LooperWatchdog.Lane watchdogLane() {
+        return new LooperWatchdog.Lane() {
+            @Override
+            public String name() {
+                return "camera";
+            }
+
+            @Override
+            public Thread thread() {
+                return backgroundThread;
+            }
+
+            @Override
+            public boolean post(Runnable task) {
+                Handler handler = backgroundHandler;
+                return handler != null && handler.post(task);
+            }
+        };
+    }
+
+    private void startBackgroundThread() {
+        backgroundThread = new HandlerThread("CameraBackground");
+        backgroundThread.start();
+        backgroundHandler = new Handler(backgroundThread.getLooper());
+    }
+
+    private void stopBackgroundThread() {
+        if (backgroundThread != null) {
+            backgroundThread.quitSafely();
+            try {
+                backgroundThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            backgroundThread = null;
+            backgroundHandler = null;
+        }
+    }
+}
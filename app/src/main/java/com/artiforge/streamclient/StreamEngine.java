@@ -0,0 +1,1523 @@
+package com.artiforge.streamclient;
+
+import android.Manifest;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+
+import androidx.core.content.ContextCompat;
+
+import org.json.JSONObject;
+
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.socket.client.IO;
+import io.socket.client.Socket;
+
+/**
+ * 串流引擎：socket、相機、編碼、上傳與控制指令的唯一擁有者
+ *
+ * 由 StreamService（前景服務）建立與釋放，整個行程只有一份：
+ * 一條相機執行緒、一個影格池、一個 HTTP 用戶端、一個 socket。
+ * Activity 只綁定服務顯示狀態與日誌，不再影響相機或連線。
+ */
+public class StreamEngine {
+
+    // v1.2.8: 固定伺服器位址
+    public static final String SERVER_URL = "https://artiforge.studio";
+    private static final long HEARTBEAT_INTERVAL = 3 * 60 * 1000; // 3 分鐘
+    private static final long HEARTBEAT_TOLERANCE_MS = 30_000;
+
+    /**
+     * 顯示端監聽器（服務通知、綁定中的 Activity）
+     */
+    public interface Listener {
+        /** 連線狀態改變（主執行緒） */
+        void onConnectionChanged(boolean connected);
+
+        /** 新增一筆日誌（任何執行緒；顯示端自行節流重繪） */
+        void onLogAppended(LogLevel level);
+    }
+
+    private final Context context;
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // 日誌：環形緩衝區，顯示端以 snapshotLog 讀取
+    private static final int LOG_BUFFER_CAPACITY = 256;
+    private final LogRingBuffer logBuffer = new LogRingBuffer(LOG_BUFFER_CAPACITY);
+    private final StreamLogger logger = new StreamLogger(LogLevel.INFO, this::writeLog);
+
+    private volatile Socket socket;
+    private volatile boolean isConnected = false;
+    private final ReconnectManager reconnectManager;
+
+    // 共用排程器：心跳、租約到期、錯誤回報、重連都在排程執行緒上觸發（不喚醒主執行緒）
+    private final DeviceScheduler scheduler = DeviceScheduler.shared();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final StreamMetrics metrics = new StreamMetrics();
+    // 影格分送：編碼一次，上傳、區網觀看等訂閱者共用池中緩衝區
+    private final FramePool framePool = new FramePool();
+    private final FrameBus frameBus = new FrameBus(metrics, logger);
+    private final FrameBus.Subscription uploadSubscription;
+    // 未連線時丟棄的影格：只記錄每次斷線的第一張，恢復連線時回報本次總數（不逐張 WARN）
+    private final AtomicLong framesDroppedDisconnected = metrics.counter(StreamMetrics.FRAMES_DROPPED_DISCONNECTED);
+    private final AtomicLong disconnectedDropsSinceConnected = new AtomicLong();
+    private static final int UPLOAD_QUEUE_FRAMES = 2;
+    // 相機狀態機：開啟、串流、錯誤恢復都在 CameraControl 執行緒上依序轉換
+    private final CameraController camera;
+    // 預錄（cmd_preroll）：閒置時保留最近幾秒的低幀率影格，開始串流時先送出
+    private PreRollBuffer preRoll; // 只在 controlLane 上存取
+    // 首張影格時間量測：開始串流的時間，量到後設為 -1（結果記在 StreamMetrics.STREAM_TTFF_MS_*）
+    private final AtomicLong firstFramePendingSinceMs = new AtomicLong(-1);
+    private final AtomicLong liveFramePendingSinceMs = new AtomicLong(-1);
+    // 效能檔位：依溫度與電量限制串流參數（只夾住伺服器要求的值，不改動租約本身）
+    private final PerformanceGovernor governor;
+    private volatile PerformanceGovernor.Decision performanceDecision;
+    // 主執行緒與相機背景執行緒的卡住偵測：只在串流租約或定時擷取持有喚醒鎖期間探測，
+    // looper_* 計數隨心跳的 metrics_report 送出，卡住堆疊另以 stall_report 送出
+    private final LooperWatchdog looperWatchdog;
+    // 記憶體調節：onTrimMemory 與堆積預算（cmd_memory_budget）決定影格池、預錄與日誌緩衝區保留多少
+    private final MemoryGovernor memoryGovernor;
+    // 定時擷取排程（cmd_capture_schedule）：排程期間相機平時關閉，只在每次擷取前預熱開啟
+    private final CaptureScheduleExecutor captureSchedule;
+    private CaptureSchedule activeSchedule;  // 只在 controlLane 上存取
+    private WakeLockManager.Hold captureWake; // 只在 controlLane 上存取
+    private FrameUploader frameUploader = null;
+    // 實驗性 UDP 影格傳輸（cmd_udp_transport 開啟時取代 HTTP 上傳；控制仍走 Socket.IO）
+    private volatile DatagramFrameSender udpSender;
+    private static final int UDP_MAX_CONSECUTIVE_ERRORS = 10;
+    // 區網 MJPEG 觀看（預設關閉，由 cmd_lan_viewer 開啟）
+    private MjpegServer lanServer;
+
+    // 控制指令專用執行緒（不排在 UI / 影格工作後面）
+    private final ControlLane controlLane = new ControlLane(metrics, logger);
+
+    // 觀看租約：伺服器需在到期前續約，否則立即停止串流（只在 controlLane 上存取）
+    private final StreamLease streamLease = new StreamLease(TimeSource.MONOTONIC);
+    private final Runnable leaseExpiryRunnable = this::checkLeaseExpiry;
+    private TaskScheduler.ScheduledTask leaseExpiryTask;
+
+    // v1.2.5: 錯誤追蹤（自動回報到 Web 端）
+    private volatile String lastLogLine = "";
+    private String appVersion = "1.3.5";
+    private static final long ERROR_REPORT_INTERVAL_MS = 10_000; // 每 10 秒最多一份報告
+    private final ErrorAggregator errorAggregator = new ErrorAggregator(TimeSource.MONOTONIC, TimeSource.WALL);
+    private TaskScheduler.ScheduledTask errorFlushTask; // 以 errorAggregator 為鎖
+    private static final long ERROR_REPORT_TOLERANCE_MS = 2_000;
+
+    // v1.2.8: 心跳檢查（3 分鐘自動重連）
+    private TaskScheduler.ScheduledTask heartbeatTask;
+
+    // 喚醒鎖：只在串流租約、重連嘗試、錯誤回報送出期間持有，閒置等待指令時讓 CPU 休眠
+    private static final long STREAM_WAKE_GRACE_MS = 5_000;
+    private static final long RECONNECT_WAKE_TIMEOUT_MS = 25_000; // 連線逾時 20 秒 + 註冊
+    private static final long ERROR_FLUSH_WAKE_TIMEOUT_MS = 5_000;
+    private static final long CAPTURE_WAKE_GRACE_MS = 5_000;
+    private final WakeLockManager wakeLocks;
+    private WakeLockManager.Hold streamWake; // 只在 controlLane 上存取
+    private final AtomicReference<WakeLockManager.Hold> reconnectWake = new AtomicReference<>();
+    // 隨心跳回報的各原因持有時間（上次回報時的累計值，只在排程執行緒上存取）
+    private static final String[] WAKE_REASONS = {
+            WakeLockManager.REASON_STREAM, WakeLockManager.REASON_RECONNECT,
+            WakeLockManager.REASON_ERROR_FLUSH, WakeLockManager.REASON_CAPTURE
+    };
+    private final long[] wakeHeldReportedMs = new long[WAKE_REASONS.length];
+
+    // 解鎖後補開相機（取代 Activity onResume 重新啟動相機）
+    private final BroadcastReceiver userPresentReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (isConnected && hasCameraPermission() && !captureSchedule.isActive()) {
+                camera.startCamera();
+            }
+        }
+    };
+    private boolean started = false;
+
+    public StreamEngine(Context context) {
+        this.context = context;
+        scheduler.setLogger(logger);
+        scheduler.registerGauges(metrics);
+        framePool.registerGauges(metrics);
+        // 上傳訂閱者：只保留最新的影格（舊影格對即時觀看沒有價值）
+        uploadSubscription = frameBus.subscribe("upload", UPLOAD_QUEUE_FRAMES, FrameBus.DropPolicy.DROP_OLDEST,
+                this::uploadFrame);
+        reconnectManager = new ReconnectManager(scheduler, TimeSource.MONOTONIC, this::reconnect, metrics);
+        wakeLocks = new WakeLockManager(createWakeLock(context), scheduler, TimeSource.MONOTONIC, metrics, logger);
+
+        FrameEncoder frameEncoder = new FrameEncoder(framePool, Camera2Backend::compressNv21, metrics,
+                TimeSource.MONOTONIC, Debug::threadCpuTimeNanos);
+        Camera2Backend cameraBackend = new Camera2Backend(context, logger);
+        camera = new CameraController(cameraBackend, frameEncoder, scheduler,
+                TimeSource.MONOTONIC, metrics, logger);
+        looperWatchdog = new LooperWatchdog(scheduler, TimeSource.MONOTONIC, TimeSource.WALL, metrics, logger);
+        looperWatchdog.watch(new LooperWatchdog.Lane() {
+            @Override
+            public String name() {
+                return "main";
+            }
+
+            @Override
+            public Thread thread() {
+                return Looper.getMainLooper().getThread();
+            }
+
+            @Override
+            public boolean post(Runnable task) {
+                return mainHandler.post(task);
+            }
+        });
+        looperWatchdog.watch(cameraBackend.watchdogLane());
+        captureSchedule = new CaptureScheduleExecutor(new AlarmTaskScheduler(context, mainHandler, logger),
+                AlarmTaskScheduler.CLOCK, new CaptureTarget(), metrics, logger);
+        governor = new PerformanceGovernor(new AndroidDeviceStatus(context), scheduler, TimeSource.MONOTONIC,
+                this::onPerformanceProfileChanged, metrics, logger);
+        memoryGovernor = new MemoryGovernor(MemoryGovernor.HeapProbe.RUNTIME, scheduler, TimeSource.MONOTONIC,
+                metrics, logger);
+        memoryGovernor.register(framePool);
+        memoryGovernor.register(logBuffer);
+        memoryGovernor.setListener(this::onMemoryPressureChanged);
+        camera.setFrameCallback(new FrameSource.FrameCallback() {
+            @Override
+            public void onFrameAvailable(EncodedFrame frame) {
+                frameBus.publish(frame);
+            }
+
+            @Override
+            public void onError(String error) {
+                logger.log(LogLevel.ERROR, "❌ 相機錯誤: " + error);
+            }
+
+            @Override
+            public void onCameraStatusChanged(boolean available, String reason) {
+                if (available) {
+                    captureSchedule.onCameraReady();
+                } else {
+                    captureSchedule.onCameraLost();
+                }
+                // v1.3.1: 相機狀態變化時，發送到 Web 端
+                mainHandler.post(() -> sendCameraStatus(available, reason));
+            }
+        });
+
+        try {
+            appVersion = context.getPackageManager().getPackageInfo(context.getPackageName(), 0).versionName;
+        } catch (Exception e) {
+            // 沿用預設版本字串
+        }
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public StreamLogger logger() {
+        return logger;
+    }
+
+    public boolean isConnected() {
+        return isConnected;
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * 取出最近且等級不低於 minLevel 的日誌，依時間順序放入 out（任何執行緒皆可呼叫）
+     */
+    public int snapshotLog(LogRecord[] out, LogLevel minLevel) {
+        return logBuffer.snapshot(out, minLevel);
+    }
+
+    /**
+     * 服務的 onTrimMemory（主執行緒）：縮小緩衝池，串流本身不中斷
+     */
+    public void onTrimMemory(int level) {
+        MemoryPressure pressure = memoryGovernor.onTrimMemory(level);
+        logger.log(LogLevel.DEBUG, () -> "🧠 onTrimMemory(" + level + ")，記憶體壓力 " + pressure.wireName());
+    }
+
+    /**
+     * 記憶體壓力改變（評估所在的執行緒）：立即送出指標快照，緩衝池佔用量不必等到下次心跳
+     */
+    private void onMemoryPressureChanged(MemoryPressure previous, MemoryPressure next) {
+        Socket current = socket;
+        if (current != null && current.connected()) {
+            sendMetricsReport(current);
+        }
+    }
+
+    /**
+     * 啟動連線與心跳（主執行緒；重複呼叫無作用）
+     */
+    public void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        context.registerReceiver(userPresentReceiver, new IntentFilter(Intent.ACTION_USER_PRESENT));
+        startHeartbeat();
+        governor.start();
+        memoryGovernor.start();
+        logger.log(LogLevel.DEBUG, () -> "📱 版本: " + appVersion);
+        logger.log(LogLevel.DEBUG, "🌐 伺服器: " + SERVER_URL);
+        connect();
+    }
+
+    /**
+     * 權限在服務啟動後才授予：已註冊時立即初始化相機
+     */
+    public void onPermissionsGranted() {
+        if (isConnected && hasCameraPermission()) {
+            if (!captureSchedule.isActive()) {
+                initializeCamera();
+            }
+            resumeStreamIfLeased();
+        }
+    }
+
+    private boolean hasCameraPermission() {
+        return ContextCompat.checkSelfPermission(context, Manifest.permission.CAMERA) == PackageManager.PERMISSION_GRANTED;
+    }
+
+    /**
+     * 不計數的 PARTIAL_WAKE_LOCK（計數與逾時由 WakeLockManager 負責）
+     */
+    private static WakeLockManager.Platform createWakeLock(Context context) {
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        PowerManager.WakeLock wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "StreamClient::Engine");
+        wakeLock.setReferenceCounted(false);
+        return new WakeLockManager.Platform() {
+            @Override
+            public void acquire(long timeoutMs) {
+                wakeLock.acquire(timeoutMs);
+            }
+
+            @Override
+            public void release() {
+                if (wakeLock.isHeld()) {
+                    wakeLock.release();
+                }
+            }
+        };
+    }
+
+    private void connect() {
+        reconnectManager.start();
+
+        // 已有 socket：直接重新連線（監聽器只註冊一次，不再建立新 socket）
+        if (socket != null) {
+            reconnectManager.reconnectNow();
+            return;
+        }
+
+        // v1.2.8: 使用固定伺服器位址
+        logger.log(LogLevel.DEBUG, "🔄 正在連接: " + SERVER_URL);
+
+        try {
+            // Socket.IO 配置（HTTPS 固定）
+            // 關閉內建重連，改由 ReconnectManager 以指數退避重連同一個 socket
+            IO.Options options = new IO.Options();
+            options.transports = new String[] {"websocket", "polling"};
+            options.reconnection = false;
+            options.timeout = 20000;
+            options.forceNew = true;
+            options.secure = true; // v1.2.8: HTTPS 固定
+
+            socket = IO.socket(SERVER_URL, options);
+
+            socket.on(Socket.EVENT_CONNECT, args -> {
+                mainHandler.post(() -> {
+                    setConnected(true);
+                    long recoveryMs = reconnectManager.onConnected();
+                    if (recoveryMs >= 0) {
+                        logger.log(LogLevel.INFO, "✅ WebSocket 重新連接成功（斷線 " + recoveryMs + " ms）");
+                    } else {
+                        logger.log(LogLevel.INFO, "✅ WebSocket 連接成功！");
+                    }
+
+                    // 註冊裝置
+                    try {
+                        JSONObject deviceInfo = new JSONObject();
+                        deviceInfo.put("device_id", android.os.Build.MANUFACTURER + "_" + android.os.Build.MODEL);
+                        socket.emit("android_register", deviceInfo);
+                        logger.log(LogLevel.DEBUG, () -> "📱 發送註冊請求: " + android.os.Build.MANUFACTURER + "_" + android.os.Build.MODEL);
+                    } catch (Exception e) {
+                        logger.log(LogLevel.ERROR, "❌ 註冊失敗: " + e.getMessage());
+                    }
+                });
+            });
+
+            socket.on("registered", args -> {
+                mainHandler.post(() -> {
+                    logger.log(LogLevel.INFO, "✅ 裝置註冊成功！");
+                    releaseReconnectWake();
+                    PerformanceGovernor.Decision decision = performanceDecision;
+                    if (decision != null && decision.profile != PerformanceProfile.NORMAL) {
+                        sendPerformanceProfile(PerformanceProfile.NORMAL, decision);
+                    }
+
+                    // v1.3.1: 初始化相機（會自動發送狀態；擷取排程期間由排程開啟）
+                    if (hasCameraPermission()) {
+                        if (!captureSchedule.isActive()) {
+                            logger.log(LogLevel.INFO, "📸 開始初始化相機系統...");
+                            initializeCamera();
+                        }
+                        resumeStreamIfLeased();
+                    } else {
+                        logger.log(LogLevel.WARN, "⚠️ 缺少相機權限，請授予權限後重新連接");
+                    }
+                });
+            });
+
+            socket.on(Socket.EVENT_DISCONNECT, args -> {
+                mainHandler.post(() -> {
+                    setConnected(false);
+                    logger.log(LogLevel.WARN, "❌ 連接已斷開");
+                    releaseReconnectWake();
+                    reconnectManager.onConnectionLost();
+                });
+            });
+
+            socket.on(Socket.EVENT_CONNECT_ERROR, args -> {
+                mainHandler.post(() -> {
+                    if (args.length > 0) {
+                        Object errorObj = args[0];
+                        String errorDetail = "";
+
+                        // 詳細錯誤訊息
+                        if (errorObj instanceof Exception) {
+                            Exception e = (Exception) errorObj;
+                            errorDetail = e.getClass().getSimpleName() + ": " + e.getMessage();
+
+                            // 更詳細的堆疊追蹤
+                            if (e.getCause() != null) {
+                                errorDetail += "\n原因: " + e.getCause().getMessage();
+                            }
+                        } else {
+                            errorDetail = errorObj.toString();
+                        }
+
+                        logger.log(LogLevel.ERROR, "❌ 連接錯誤: " + errorDetail);
+                    } else {
+                        logger.log(LogLevel.ERROR, "❌ 連接錯誤: 未知錯誤");
+                    }
+
+                    // 停止相機串流（如果正在運行；租約仍有效時重連後自動恢復）
+                    camera.stopStreaming();
+
+                    releaseReconnectWake();
+                    reconnectManager.onConnectionLost();
+                });
+            });
+
+            socket.on("cmd_start_stream", args -> {
+                // 可選 payload：fps、quality、resolution、lease_ms、max_age_ms、simulcast（見 StreamParams）
+                StreamParams params = StreamParams.fromEventArgs(args);
+                controlLane.submit("start_stream", () -> {
+                    logger.log(LogLevel.INFO, "📹 收到開始串流指令");
+                    startCameraStream(params);
+                });
+            });
+
+            socket.on("cmd_renew_lease", args -> {
+                // 可選 payload：lease_ms（省略時沿用目前租約長度）
+                long leaseMs = args.length > 0 && args[0] instanceof JSONObject
+                        ? ((JSONObject) args[0]).optLong("lease_ms", 0)
+                        : 0;
+                controlLane.submit("renew_lease", () -> {
+                    StreamLease.Transition transition = streamLease.renew(leaseMs);
+                    if (transition == StreamLease.Transition.RENEWED) {
+                        logger.log(LogLevel.DEBUG, "🔁 租約已續約");
+                        scheduleLeaseExpiry();
+                    } else if (transition == StreamLease.Transition.EXPIRED) {
+                        // 續約太晚：到期計時器尚未執行，由這裡停止
+                        logger.log(LogLevel.INFO, "⏰ 租約到期後才收到續約，自動停止串流");
+                        cancelLeaseExpiry();
+                        haltCameraStream();
+                    }
+                });
+            });
+
+            socket.on("cmd_stop_stream", args -> {
+                controlLane.submit("stop_stream", () -> {
+                    stopCameraStream();
+                    logger.log(LogLevel.INFO, "🛑 收到停止串流指令");
+                });
+            });
+
+            socket.on("cmd_capture_schedule", args -> {
+                // payload：interval_ms、burst_ms、warmup_ms、count、start_delay_ms 與串流參數（見 CaptureSchedule）；
+                // enabled 為 false 時取消
+                CaptureSchedule schedule = CaptureSchedule.fromEventArgs(args);
+                controlLane.submit("capture_schedule", () -> applyCaptureSchedule(schedule));
+            });
+
+            socket.on("cmd_preroll", args -> {
+                // payload：enabled（預設 true）、window_ms（預設 5000）、fps（預設 2）、max_kb（預設 512）
+                JSONObject data = args.length > 0 && args[0] instanceof JSONObject ? (JSONObject) args[0] : new JSONObject();
+                boolean enabled = data.optBoolean("enabled", true);
+                long windowMs = data.optLong("window_ms", PreRollBuffer.DEFAULT_WINDOW_MS);
+                int fps = data.optInt("fps", PreRollBuffer.DEFAULT_FPS);
+                long maxBytes = data.optLong("max_kb", PreRollBuffer.DEFAULT_MAX_BYTES / 1024) * 1024;
+                controlLane.submit("preroll", () -> {
+                    if (enabled) {
+                        startPreRoll(windowMs, fps, maxBytes);
+                    } else {
+                        stopPreRoll();
+                    }
+                });
+            });
+
+            socket.on("cmd_detail_viewer", args -> {
+                // payload：active（simulcast 時是否送出完整畫質層）
+                boolean active = args.length > 0 && args[0] instanceof JSONObject
+                        && ((JSONObject) args[0]).optBoolean("active", false);
+                controlLane.submit("detail_viewer", () -> {
+                    camera.setDetailViewerActive(active);
+                    logger.log(LogLevel.DEBUG, active ? "🔍 詳細檢視者加入，送出完整畫質層" : "🔍 詳細檢視者離開，只送縮圖層");
+                });
+            });
+
+            socket.on("cmd_roi", args -> {
+                // payload：x、y、w、h（直立畫面的比例 0–1，見 RegionOfInterest）；enabled 為 false 時回到全畫面
+                RegionOfInterest region = RegionOfInterest.fromEventArgs(args);
+                controlLane.submit("roi", () -> {
+                    camera.setRegionOfInterest(region);
+                    logger.log(LogLevel.INFO, "🔎 感興趣區域: " + region);
+                });
+            });
+
+            socket.on("cmd_memory_budget", args -> {
+                // payload：budget_mb（堆積預算，0 = 使用預設的堆積上限一半）
+                long budgetMb = args.length > 0 && args[0] instanceof JSONObject
+                        ? ((JSONObject) args[0]).optLong("budget_mb", 0) : 0;
+                controlLane.submit("memory_budget", () -> {
+                    memoryGovernor.setBudgetBytes(budgetMb * 1024 * 1024);
+                    logger.log(LogLevel.INFO, "🧠 記憶體預算 " + (budgetMb > 0 ? budgetMb + " MB" : "預設")
+                            + "，目前壓力 " + memoryGovernor.current().wireName());
+                });
+            });
+
+            socket.on("cmd_udp_transport", args -> {
+                // payload：enabled（預設 true）、port、token、key（AES 金鑰 hex，必填）、fec_group（預設 4，0 = 不送同位封包）
+                JSONObject data = args.length > 0 && args[0] instanceof JSONObject ? (JSONObject) args[0] : new JSONObject();
+                boolean enabled = data.optBoolean("enabled", true);
+                int port = data.optInt("port", 0);
+                int token = data.optInt("token", 0);
+                byte[] key = DatagramFrameSender.parseKey(data.optString("key", null));
+                int fecGroup = data.optInt("fec_group", DatagramFrameSender.DEFAULT_FEC_GROUP);
+                controlLane.submit("udp_transport", () -> {
+                    if (enabled && port > 0) {
+                        startUdpTransport(port, token, key, fecGroup);
+                    } else {
+                        stopUdpTransport();
+                    }
+                });
+            });
+
+            socket.on("cmd_lan_viewer", args -> {
+                // payload：enabled（預設 true）、port（預設 8080）
+                JSONObject data = args.length > 0 && args[0] instanceof JSONObject ? (JSONObject) args[0] : new JSONObject();
+                boolean enabled = data.optBoolean("enabled", true);
+                int port = data.optInt("port", MjpegServer.DEFAULT_PORT);
+                controlLane.submit("lan_viewer", () -> {
+                    if (enabled) {
+                        startLanServer(port);
+                    } else {
+                        stopLanServer();
+                    }
+                });
+            });
+
+            socket.on("cmd_vibrate", args -> {
+                controlLane.submit("vibrate", () -> {
+                    logger.log(LogLevel.DEBUG, "📳 收到震動指令");
+                    doVibrate();
+                });
+            });
+
+            holdReconnectWake();
+            socket.connect();
+            logger.log(LogLevel.DEBUG, "🔄 正在建立連接...");
+
+        } catch (URISyntaxException e) {
+            logger.log(LogLevel.ERROR, "❌ 網址格式錯誤: " + e.getMessage());
+        }
+    }
+
+    private void setConnected(boolean connected) {
+        isConnected = connected;
+        if (connected) {
+            long dropped = disconnectedDropsSinceConnected.getAndSet(0);
+            if (dropped > 0) {
+                logger.log(LogLevel.INFO, () -> "📊 未連接期間丟棄 " + dropped + " 張影格");
+            }
+        }
+        for (Listener listener : listeners) {
+            listener.onConnectionChanged(connected);
+        }
+    }
+
+    /**
+     * 對既有 socket 重新連線（由 ReconnectManager 在排程執行緒上呼叫）
+     */
+    private void reconnect() {
+        Socket current = socket;
+        if (current == null || current.connected()) {
+            return;
+        }
+        logger.log(LogLevel.DEBUG, () -> "🔄 重新連線（第 " + reconnectManager.currentAttempt() + " 次）");
+        holdReconnectWake();
+        current.connect();
+    }
+
+    /**
+     * 一次連線嘗試期間保持喚醒（註冊完成、連線錯誤或逾時釋放）
+     */
+    private void holdReconnectWake() {
+        WakeLockManager.Hold previous = reconnectWake.getAndSet(
+                wakeLocks.acquire(WakeLockManager.REASON_RECONNECT, RECONNECT_WAKE_TIMEOUT_MS));
+        if (previous != null) {
+            previous.release();
+        }
+    }
+
+    private void releaseReconnectWake() {
+        WakeLockManager.Hold hold = reconnectWake.getAndSet(null);
+        if (hold != null) {
+            hold.release();
+        }
+    }
+
+    /**
+     * 重新註冊後，若租約仍有效則恢復斷線前的串流
+     */
+    private void resumeStreamIfLeased() {
+        controlLane.execute(() -> {
+            if (!streamLease.isActive()) {
+                return;
+            }
+            logger.log(LogLevel.INFO, () -> "▶️ 租約仍有效（剩餘 " + streamLease.remainingMs() + " ms），恢復串流");
+            applyLeaseParams(streamLease.getParams());
+            startStreamingWithinProfile();
+        });
+    }
+
+    /**
+     * 停止連線、相機與所有訂閱者（服務 onDestroy 時呼叫；之後不可再啟動）
+     */
+    public void shutdown() {
+        if (heartbeatTask != null) {
+            heartbeatTask.cancel();
+        }
+        governor.stop();
+        memoryGovernor.stop();
+        looperWatchdog.stop();
+        synchronized (errorAggregator) {
+            if (errorFlushTask != null) {
+                errorFlushTask.cancel();
+            }
+        }
+        if (started) {
+            context.unregisterReceiver(userPresentReceiver);
+        }
+        releaseReconnectWake();
+
+        reconnectManager.stop();
+        controlLane.execute(() -> {
+            streamLease.revoke();
+            cancelLeaseExpiry();
+            releaseStreamWake();
+            captureSchedule.apply(null);
+            releaseCaptureWake();
+            stopUdpTransport();
+            stopLanServer();
+            stopPreRoll();
+        });
+
+        if (socket != null) {
+            socket.off();
+            socket.disconnect();
+            socket.close();
+            socket = null;
+        }
+
+        logger.log(LogLevel.INFO, "📸 關閉相機...");
+        camera.shutdown();
+
+        setConnected(false);
+        logger.log(LogLevel.DEBUG, "🔌 已斷線");
+        controlLane.shutdown();
+        frameBus.close();
+    }
+
+    /**
+     * StreamLogger 的輸出端：寫入環形緩衝區（任何執行緒皆可呼叫），再通知顯示端
+     */
+    private void writeLog(LogLevel level, String message) {
+        // v1.2.5: 錯誤等級自動回報到 Web 端
+        if (level == LogLevel.ERROR) {
+            reportErrorToWeb(message);
+        }
+
+        logBuffer.append(level, message);
+
+        if (level.isAtLeast(LogLevel.INFO)) {
+            // 儲存最後一行（用於錯誤上下文）
+            lastLogLine = message;
+        }
+
+        for (Listener listener : listeners) {
+            listener.onLogAppended(level);
+        }
+    }
+
+    private void doVibrate() {
+        try {
+            logger.log(LogLevel.DEBUG, "📳 發送呼叫通知...");
+
+            // 使用通知聲音（手機震動模式下會自動震動）
+            android.app.NotificationManager notificationManager =
+                (android.app.NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+
+            if (notificationManager == null) {
+                logger.log(LogLevel.ERROR, "❌ 無法取得 NotificationManager");
+                return;
+            }
+
+            String channelId = "call_notification";
+
+            // Android 8.0+ 需要建立通知頻道
+            if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.O) {
+                android.app.NotificationChannel channel = new android.app.NotificationChannel(
+                    channelId,
+                    "呼叫通知",
+                    android.app.NotificationManager.IMPORTANCE_HIGH
+                );
+
+                // 設定通知聲音（使用系統預設）
+                channel.setSound(
+                    android.provider.Settings.System.DEFAULT_NOTIFICATION_URI,
+                    null
+                );
+
+                // 啟用震動（手機震動模式下會震動）
+                channel.enableVibration(true);
+                channel.setVibrationPattern(new long[]{0, 500, 200, 500});
+
+                notificationManager.createNotificationChannel(channel);
+            }
+
+            // 建立通知
+            androidx.core.app.NotificationCompat.Builder builder =
+                new androidx.core.app.NotificationCompat.Builder(context, channelId)
+                    .setSmallIcon(android.R.drawable.ic_dialog_info)
+                    .setContentTitle("📞 遠端呼叫")
+                    .setContentText("控制台正在呼叫您")
+                    .setPriority(androidx.core.app.NotificationCompat.PRIORITY_HIGH)
+                    .setAutoCancel(true)
+                    .setDefaults(androidx.core.app.NotificationCompat.DEFAULT_ALL);
+
+            // 發送通知
+            notificationManager.notify(999, builder.build());
+            logger.log(LogLevel.INFO, "✅ 通知已發送（手機震動模式下會震動）");
+
+        } catch (Exception e) {
+            logger.log(LogLevel.ERROR, "❌ 通知失敗: " + e.getMessage());
+        }
+    }
+
+    private void initializeCamera() {
+        try {
+            logger.log(LogLevel.INFO, "📸 正在初始化相機...");
+            camera.startCamera();
+        } catch (Exception e) {
+            logger.log(LogLevel.ERROR, "❌ 相機初始化失敗: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 開始串流或續約（串流中再次收到 cmd_start_stream 視為續約，可同時更新參數；在 controlLane 上執行）
+     */
+    private void startCameraStream(StreamParams params) {
+        try {
+            StreamLease.Transition transition = streamLease.grant(params);
+            scheduleLeaseExpiry();
+
+            if (transition == StreamLease.Transition.RENEWED) {
+                logger.log(LogLevel.DEBUG, "🔁 租約已續約");
+                return;
+            }
+
+            if (transition == StreamLease.Transition.STARTED) {
+                // 重置計數器
+                getFrameUploader().resetCounters();
+                long now = TimeSource.MONOTONIC.nowMs();
+                firstFramePendingSinceMs.set(now);
+                liveFramePendingSinceMs.set(now);
+            }
+
+            if (transition == StreamLease.Transition.UPDATED) {
+                logger.log(LogLevel.INFO, "🔧 更新串流參數: " + params);
+                applyLeaseParams(params);
+                return;
+            }
+
+            logger.log(LogLevel.INFO, "📹 啟動串流上傳（" + params + "）...");
+            applyLeaseParams(params);
+            startStreamingWithinProfile();
+            flushPreRoll();
+
+        } catch (Exception e) {
+            logger.log(LogLevel.ERROR, "❌ 啟動串流失敗: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 依目前效能檔位夾住參數後交給相機（在 controlLane 上執行）
+     */
+    private void applyLeaseParams(StreamParams params) {
+        StreamParams capped = governor.cap(params);
+        if (capped != params) {
+            logger.log(LogLevel.DEBUG, () -> "🌡️ 效能檔位 " + governor.current().wireName() + " 限制為 " + capped);
+        }
+        camera.applyStreamParams(capped);
+    }
+
+    /**
+     * IDLE 檔位只保留租約，不開始串流；檔位回升時由 onPerformanceProfileChanged 恢復
+     */
+    private void startStreamingWithinProfile() {
+        if (governor.current().idle) {
+            logger.log(LogLevel.WARN, "🌡️ 效能檔位為 idle，暫緩串流");
+            return;
+        }
+        if (captureSchedule.isActive()) {
+            // 擷取排程期間相機平時關閉；已開啟時此呼叫無作用
+            camera.startCamera();
+        }
+        camera.startStreaming();
+    }
+
+    /**
+     * 套用或取消擷取排程（在 controlLane 上執行）
+     */
+    private void applyCaptureSchedule(CaptureSchedule schedule) {
+        activeSchedule = schedule;
+        captureSchedule.apply(schedule);
+        if (schedule == null) {
+            logger.log(LogLevel.INFO, "🗓️ 擷取排程已取消");
+        } else if (!streamLease.isActive()) {
+            // 等到第一次預熱才開啟相機
+            camera.stopCamera();
+        }
+        sendCaptureScheduleStatus(schedule);
+    }
+
+    private void sendCaptureScheduleStatus(CaptureSchedule schedule) {
+        Socket current = socket;
+        if (current == null || !current.connected()) {
+            return;
+        }
+        try {
+            JSONObject status = new JSONObject();
+            status.put("active", schedule != null);
+            if (schedule != null) {
+                status.put("interval_ms", schedule.intervalMs);
+                status.put("burst_ms", schedule.burstMs);
+                status.put("warmup_ms", schedule.warmupMs);
+                status.put("count", schedule.count);
+            }
+            current.emit("capture_schedule_status", status);
+        } catch (Exception e) {
+            logger.log(LogLevel.ERROR, "❌ 發送擷取排程狀態失敗: " + e.getMessage());
+        }
+    }
+
+    private void holdCaptureWake(long timeoutMs) {
+        WakeLockManager.Hold previous = captureWake;
+        captureWake = wakeLocks.acquire(WakeLockManager.REASON_CAPTURE, timeoutMs + CAPTURE_WAKE_GRACE_MS);
+        if (previous != null) {
+            previous.release();
+        }
+        updateLooperWatchdog();
+    }
+
+    private void releaseCaptureWake() {
+        if (captureWake != null) {
+            captureWake.release();
+            captureWake = null;
+        }
+        updateLooperWatchdog();
+    }
+
+    /**
+     * 擷取排程的執行端：鬧鐘在主執行緒觸發，動作轉到 controlLane，與租約串流依序處理；
+     * 租約串流進行中時不干預相機（租約優先）
+     */
+    private final class CaptureTarget implements CaptureScheduleExecutor.Target {
+        @Override
+        public void warmUp(StreamParams params) {
+            controlLane.submit("capture_warmup", () -> {
+                CaptureSchedule schedule = activeSchedule;
+                holdCaptureWake(schedule != null ? CaptureSchedule.MAX_WARMUP_MS + schedule.burstMs : CaptureSchedule.MAX_WARMUP_MS);
+                if (streamLease.isActive()) {
+                    return;
+                }
+                logger.log(LogLevel.DEBUG, "🗓️ 擷取前預熱相機");
+                applyLeaseParams(params);
+                camera.startCamera();
+            });
+        }
+
+        @Override
+        public void startBurst(int index, StreamParams params) {
+            controlLane.submit("capture_start", () -> {
+                CaptureSchedule schedule = activeSchedule;
+                if (schedule != null) {
+                    holdCaptureWake(schedule.burstMs);
+                }
+                if (streamLease.isActive()) {
+                    return;
+                }
+                logger.log(LogLevel.INFO, "🗓️ 定時擷取第 " + (index + 1) + " 次");
+                applyLeaseParams(params);
+                startStreamingWithinProfile();
+            });
+        }
+
+        @Override
+        public void endBurst(int index) {
+            controlLane.submit("capture_end", () -> {
+                CaptureSchedule schedule = activeSchedule;
+                if (schedule != null) {
+                    // 間隔太短時相機不關閉：保持喚醒到下一次擷取（powerDown 時釋放）
+                    holdCaptureWake(schedule.intervalMs - schedule.burstMs);
+                }
+                if (!streamLease.isActive()) {
+                    camera.stopStreaming();
+                }
+            });
+        }
+
+        @Override
+        public void powerDown() {
+            controlLane.submit("capture_power_down", () -> {
+                releaseCaptureWake();
+                if (!streamLease.isActive()) {
+                    camera.stopCamera();
+                }
+            });
+        }
+
+        @Override
+        public void onScheduleFinished() {
+            controlLane.submit("capture_finished", () -> {
+                activeSchedule = null;
+                releaseCaptureWake();
+                // 回到平時保持相機開啟的行為
+                if (isConnected && hasCameraPermission() && !streamLease.isActive()) {
+                    initializeCamera();
+                }
+            });
+        }
+    }
+
+    /**
+     * 效能檔位改變（排程執行緒）：通知伺服器，並對進行中的串流重新套用上限
+     */
+    private void onPerformanceProfileChanged(PerformanceProfile previous, PerformanceGovernor.Decision decision) {
+        performanceDecision = decision;
+        sendPerformanceProfile(previous, decision);
+        controlLane.submit("performance_profile", () -> {
+            if (!streamLease.isActive()) {
+                return;
+            }
+            if (decision.profile.idle) {
+                camera.stopStreaming();
+                logger.log(LogLevel.WARN, "🌡️ 效能檔位為 idle，暫停串流（租約保留）");
+                return;
+            }
+            applyLeaseParams(streamLease.getParams());
+            if (previous.idle) {
+                logger.log(LogLevel.INFO, "▶️ 效能檔位回升，恢復串流");
+                startStreamingWithinProfile();
+            }
+        });
+    }
+
+    /**
+     * 回報效能檔位給伺服器（降檔時 downgrade 為 true，伺服器可據此調整觀看端提示）
+     */
+    private void sendPerformanceProfile(PerformanceProfile previous, PerformanceGovernor.Decision decision) {
+        Socket current = socket;
+        if (current == null || !current.connected()) {
+            return;
+        }
+        try {
+            PerformanceProfile profile = decision.profile;
+            JSONObject status = new JSONObject();
+            status.put("profile", profile.wireName());
+            status.put("previous", previous.wireName());
+            status.put("downgrade", profile.isBelow(previous));
+            status.put("reason", decision.reason);
+            status.put("thermal_status", decision.thermalStatus);
+            status.put("battery", decision.batteryPercent);
+            status.put("charging", decision.charging);
+            status.put("max_fps", profile.maxFps);
+            status.put("max_quality", profile.maxQuality);
+            status.put("max_resolution", profile.maxTier.name().toLowerCase());
+            status.put("idle", profile.idle);
+            current.emit("performance_profile", status);
+        } catch (Exception e) {
+            logger.log(LogLevel.ERROR, "❌ 發送效能檔位失敗: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 依租約剩餘時間重新排程到期檢查
+     */
+    private void scheduleLeaseExpiry() {
+        cancelLeaseExpiry();
+        if (streamLease.isActive()) {
+            // 到期必須準時停止：不允許延後
+            leaseExpiryTask = scheduler.schedule(() -> controlLane.execute(leaseExpiryRunnable), streamLease.remainingMs(), 0);
+            holdStreamWake(streamLease.remainingMs());
+        }
+    }
+
+    /**
+     * 串流期間保持喚醒，期限跟著租約走（續約時換成新的期限，先取得再釋放舊的以免中斷）
+     */
+    private void holdStreamWake(long leaseRemainingMs) {
+        WakeLockManager.Hold previous = streamWake;
+        streamWake = wakeLocks.acquire(WakeLockManager.REASON_STREAM, leaseRemainingMs + STREAM_WAKE_GRACE_MS);
+        if (previous != null) {
+            previous.release();
+        }
+        updateLooperWatchdog();
+    }
+
+    private void releaseStreamWake() {
+        if (streamWake != null) {
+            streamWake.release();
+            streamWake = null;
+        }
+        updateLooperWatchdog();
+    }
+
+    /**
+     * 卡住偵測只在有工作時執行（只在 controlLane 上呼叫）：閒置時每 2 秒的探測會喚醒排程執行緒、
+     * 主執行緒與相機執行緒，一小時約 1800 次，抵銷閒置時的省電
+     */
+    private void updateLooperWatchdog() {
+        if (streamWake != null || captureWake != null) {
+            looperWatchdog.start();
+        } else {
+            looperWatchdog.stop();
+        }
+    }
+
+    private void cancelLeaseExpiry() {
+        if (leaseExpiryTask != null) {
+            leaseExpiryTask.cancel();
+            leaseExpiryTask = null;
+        }
+    }
+
+    private void checkLeaseExpiry() {
+        if (streamLease.checkExpiry() == StreamLease.Transition.EXPIRED) {
+            logger.log(LogLevel.INFO, "⏰ 租約到期未續約，自動停止串流");
+            haltCameraStream();
+        } else {
+            // 計時器提早觸發：依剩餘時間重新排程
+            scheduleLeaseExpiry();
+        }
+    }
+
+    /**
+     * cmd_stop_stream：撤銷租約並停止串流（在 controlLane 上執行）
+     */
+    private void stopCameraStream() {
+        streamLease.revoke();
+        cancelLeaseExpiry();
+        haltCameraStream();
+    }
+
+    private void haltCameraStream() {
+        releaseStreamWake();
+        uploadSubscription.dropBacklog();
+        firstFramePendingSinceMs.set(-1);
+        liveFramePendingSinceMs.set(-1);
+        try {
+            camera.stopStreaming();
+            if (captureSchedule.isActive() && !captureSchedule.wantsCamera()) {
+                camera.stopCamera();
+            }
+            logger.log(LogLevel.INFO, "⏹️ 相機串流已停止");
+            FrameUploader uploader = getFrameUploader();
+            BandwidthEstimator estimator = uploader.getEstimator();
+            logger.log(LogLevel.INFO, "📊 統計: 總計 " + uploader.submittedCount() + " 影格，成功 " + uploader.succeededCount()
+                    + "，失敗 " + uploader.failedCount() + "，壅塞丟棄 " + uploader.droppedByWindowCount());
+            logger.log(LogLevel.INFO, "📊 過期丟棄: 編碼前 " + metrics.get(StreamMetrics.FRAMES_STALE_BEFORE_ENCODE)
+                    + "，排隊前 " + metrics.get(StreamMetrics.FRAMES_STALE_BEFORE_QUEUE)
+                    + "，送出前 " + metrics.get(StreamMetrics.FRAMES_STALE_BEFORE_SEND));
+            logger.log(LogLevel.INFO, "📊 首張影格: " + metrics.get(StreamMetrics.STREAM_TTFF_MS_FIRST)
+                    + " ms，首張即時影格 " + metrics.get(StreamMetrics.STREAM_TTFF_MS_LIVE) + " ms，預錄送出 "
+                    + metrics.get(PreRollBuffer.PREROLL_FLUSHED) + " 張");
+            logger.log(LogLevel.INFO, "📊 排程喚醒: " + metrics.get(DeviceScheduler.WAKEUPS_PER_HOUR)
+                    + " 次/小時，待執行 " + metrics.get(DeviceScheduler.PENDING_TASKS) + " 個");
+            logger.log(LogLevel.INFO, "📊 記憶體: 壓力 " + memoryGovernor.current().wireName() + "，緩衝池 "
+                    + (metrics.get(MemoryGovernor.MEMORY_POOL_BYTES_TOTAL) / 1024) + " KB");
+            logger.log(LogLevel.INFO, "📊 頻寬估計: " + (estimator.bandwidthBps() / 1000) + " kbps，RTT " + estimator.minRttMs() + " ms");
+            logger.log(LogLevel.INFO, "📊 喚醒鎖累計: 串流 " + (wakeLocks.heldMs(WakeLockManager.REASON_STREAM) / 1000)
+                    + " 秒，重連 " + (wakeLocks.heldMs(WakeLockManager.REASON_RECONNECT) / 1000)
+                    + " 秒，錯誤回報 " + wakeLocks.heldMs(WakeLockManager.REASON_ERROR_FLUSH) + " ms，逾時 "
+                    + metrics.get(WakeLockManager.WAKELOCK_TIMEOUTS) + " 次");
+        } catch (Exception e) {
+            logger.log(LogLevel.ERROR, "❌ 停止失敗: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 開啟預錄（在 controlLane 上呼叫；已開啟時以新設定取代）
+     */
+    private void startPreRoll(long windowMs, int fps, long maxBytes) {
+        stopPreRoll();
+        preRoll = new PreRollBuffer(windowMs, fps, maxBytes, TimeSource.MONOTONIC, metrics);
+        memoryGovernor.register(preRoll);
+        camera.setPreRoll(preRoll);
+        logger.log(LogLevel.INFO, "⏪ 預錄已開啟（" + (preRoll.windowMs() / 1000) + " 秒，最多 "
+                + preRoll.capacity() + " 張 / " + (preRoll.maxBytes() / 1024) + " KB）");
+    }
+
+    private void stopPreRoll() {
+        if (preRoll != null) {
+            camera.setPreRoll(null);
+            memoryGovernor.unregister(preRoll);
+            preRoll.clear();
+            preRoll = null;
+            logger.log(LogLevel.INFO, "⏪ 預錄已關閉");
+        }
+    }
+
+    /**
+     * 開始串流時先送出預錄影格（舊到新）：交給上傳訂閱者補送，全部處理完才輪到即時影格，
+     * 兩者不會交錯；補送期間即時影格照常只保留最新的幾張
+     */
+    private void flushPreRoll() {
+        if (preRoll == null) {
+            return;
+        }
+        List<EncodedFrame> frames = new ArrayList<>();
+        if (preRoll.drainTo(frames) == 0) {
+            return;
+        }
+        logger.log(LogLevel.DEBUG, () -> "⏪ 送出預錄 " + frames.size() + " 張");
+        uploadSubscription.offerBacklog(frames, this::uploadPreRollFrame);
+    }
+
+    /**
+     * 上傳訂閱者補送的預錄影格：不因壅塞視窗已滿而丟棄，等視窗空出（最多到影格期限）再依序送出
+     */
+    private void uploadPreRollFrame(EncodedFrame frame) {
+        if (!isConnected || socket == null) {
+            return;
+        }
+        try {
+            DatagramFrameSender udp = udpSender;
+            if (udp != null) {
+                if (sendDatagrams(udp, frame)) {
+                    onFrameSent(false);
+                }
+                return;
+            }
+            if (getFrameUploader().uploadInOrder(frame)) {
+                onFrameSent(false);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.log(LogLevel.ERROR, "❌ 預錄上傳異常: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 記錄開始串流後第一張影格 / 第一張即時影格的時間
+     */
+    private void onFrameSent(boolean live) {
+        long now = TimeSource.MONOTONIC.nowMs();
+        long since = firstFramePendingSinceMs.getAndSet(-1);
+        if (since >= 0) {
+            long ttff = now - since;
+            metrics.counter(StreamMetrics.STREAM_TTFF_MS_FIRST).set(ttff);
+            logger.log(LogLevel.DEBUG, () -> "⏱️ 首張影格 " + ttff + " ms（" + (live ? "即時" : "預錄") + "）");
+        }
+        if (live) {
+            since = liveFramePendingSinceMs.getAndSet(-1);
+            if (since >= 0) {
+                metrics.counter(StreamMetrics.STREAM_TTFF_MS_LIVE).set(now - since);
+            }
+        }
+    }
+
+    /**
+     * FrameBus 上傳訂閱者（在訂閱者執行緒上呼叫；上傳器自行 retain 在途影格）
+     */
+    private void uploadFrame(EncodedFrame frame) {
+        if (!isConnected || socket == null) {
+            framesDroppedDisconnected.incrementAndGet();
+            if (disconnectedDropsSinceConnected.getAndIncrement() == 0) {
+                logger.log(LogLevel.WARN, "⚠️ 未連接，無法上傳（恢復連線前不再逐張記錄）");
+            }
+            return;
+        }
+
+        try {
+            DatagramFrameSender udp = udpSender;
+            if (udp != null) {
+                // UDP：無法重組的影格由接收端丟棄，不重送
+                if (sendDatagrams(udp, frame)) {
+                    onFrameSent(true);
+                }
+                return;
+            }
+            // 過期或壅塞視窗已滿時直接丟棄（計入統計，不逐張記錄）
+            if (getFrameUploader().upload(frame)) {
+                onFrameSent(true);
+            }
+        } catch (Exception e) {
+            logger.log(LogLevel.ERROR, "❌ 上傳異常: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 以 UDP 送出影格；過期或 socket 錯誤時回傳 false。連續失敗太多次（例如網路不可達）時改回 HTTP
+     */
+    private boolean sendDatagrams(DatagramFrameSender udp, EncodedFrame frame) {
+        if (udp.send(frame)) {
+            return true;
+        }
+        if (udp.consecutiveErrors() == UDP_MAX_CONSECUTIVE_ERRORS) {
+            java.io.IOException error = udp.lastError();
+            logger.log(LogLevel.WARN, "⚠️ UDP 連續 " + UDP_MAX_CONSECUTIVE_ERRORS + " 張影格送出失敗，改用 HTTP: "
+                    + (error != null ? error.getMessage() : ""));
+            controlLane.submit("udp_fallback", () -> {
+                if (udpSender == udp) {
+                    stopUdpTransport();
+                }
+            });
+        }
+        return false;
+    }
+
+    /**
+     * 開啟 UDP 影格傳輸（送往伺服器主機的指定埠；在 controlLane 上呼叫）
+     */
+    private void startUdpTransport(int port, int token, byte[] key, int fecGroup) {
+        stopUdpTransport();
+        if (key == null) {
+            // 不送未加密的影格：沒有金鑰就留在 HTTP（TLS）
+            logger.log(LogLevel.ERROR, "❌ UDP 傳輸缺少有效金鑰（16 或 32 位元組 hex），改用 HTTP");
+            return;
+        }
+        try {
+            String host = java.net.URI.create(SERVER_URL).getHost();
+            int group = Math.max(0, Math.min(255, fecGroup));
+            // 與 HTTP 上傳共用頻寬估計：UDP 依同一個壅塞視窗分散送出
+            udpSender = new DatagramFrameSender(new java.net.InetSocketAddress(host, port), token,
+                    key, group, getFrameUploader().getEstimator(), TimeSource.MONOTONIC, metrics);
+            logger.log(LogLevel.INFO, () -> "📡 UDP 影格傳輸已開啟（" + host + ":" + port + "，FEC 每 " + group + " 片）");
+        } catch (java.net.SocketException | IllegalArgumentException e) {
+            logger.log(LogLevel.ERROR, "❌ UDP 傳輸開啟失敗，改用 HTTP: " + e.getMessage());
+        }
+    }
+
+    private void stopUdpTransport() {
+        DatagramFrameSender udp = udpSender;
+        if (udp != null) {
+            udpSender = null;
+            udp.close();
+            logger.log(LogLevel.INFO, "📡 UDP 影格傳輸已關閉，改用 HTTP");
+        }
+    }
+
+    /**
+     * 啟動區網 MJPEG 伺服器（與上傳共用編碼輸出；只在串流中才有影格；在 controlLane 上呼叫）
+     */
+    private void startLanServer(int port) {
+        if (lanServer != null && lanServer.isRunning()) {
+            return;
+        }
+        // 只綁定 Wi-Fi 位址；網址含本次的 token，只經由控制連線交給伺服器
+        lanServer = new MjpegServer(frameBus, scheduler, TimeSource.MONOTONIC, metrics, logger,
+                null, port, MjpegServer.DEFAULT_MAX_CLIENTS);
+        try {
+            lanServer.start();
+            emitLanViewerStatus(true, lanServer.streamUrl());
+        } catch (java.io.IOException e) {
+            logger.log(LogLevel.ERROR, "❌ 區網伺服器啟動失敗: " + e.getMessage());
+            lanServer = null;
+            emitLanViewerStatus(false, null);
+        }
+    }
+
+    private void stopLanServer() {
+        if (lanServer != null) {
+            lanServer.stop();
+            lanServer = null;
+            emitLanViewerStatus(false, null);
+        }
+    }
+
+    private void emitLanViewerStatus(boolean enabled, String url) {
+        Socket current = socket;
+        if (current == null || !current.connected()) {
+            return;
+        }
+        try {
+            JSONObject status = new JSONObject();
+            status.put("enabled", enabled);
+            if (url != null) {
+                status.put("url", url);
+            }
+            current.emit("lan_viewer_status", status);
+        } catch (Exception e) {
+            // 靜默失敗
+        }
+    }
+
+    /**
+     * 初始化上傳器（複用 HTTP 連接；頻寬估計跨串流保留）
+     */
+    private synchronized FrameUploader getFrameUploader() {
+        if (frameUploader == null) {
+            okhttp3.OkHttpClient httpClient = new okhttp3.OkHttpClient.Builder()
+                .connectTimeout(2, java.util.concurrent.TimeUnit.SECONDS)
+                .writeTimeout(2, java.util.concurrent.TimeUnit.SECONDS)
+                .readTimeout(2, java.util.concurrent.TimeUnit.SECONDS)
+                .build();
+
+            frameUploader = new FrameUploader(
+                httpClient,
+                SERVER_URL,
+                new BandwidthEstimator(TimeSource.MONOTONIC),
+                TimeSource.MONOTONIC,
+                metrics,
+                (frameNum, httpCode, error) -> {
+                    if (httpCode > 0) {
+                        logger.log(LogLevel.ERROR, "❌ 上傳失敗 #" + frameNum + ": HTTP " + httpCode);
+                    } else if (error instanceof java.net.SocketTimeoutException) {
+                        logger.log(LogLevel.ERROR, "❌ 上傳超時 #" + frameNum);
+                    } else {
+                        logger.log(LogLevel.ERROR, "❌ 上傳錯誤 #" + frameNum + ": " + error.getMessage());
+                    }
+                }
+            );
+        }
+        return frameUploader;
+    }
+
+    /**
+     * v1.2.5: 自動回報錯誤到 Web 端（方便診斷）
+     * 先交給 ErrorAggregator 合併，每個週期最多送一份批次報告
+     */
+    private void reportErrorToWeb(String errorMessage) {
+        if (errorAggregator.record(errorMessage, lastLogLine)) {
+            scheduleErrorFlush();
+        }
+    }
+
+    private void scheduleErrorFlush() {
+        synchronized (errorAggregator) {
+            if (errorFlushTask != null) {
+                errorFlushTask.cancel();
+            }
+            errorFlushTask = scheduler.schedule(this::flushErrorReports, ERROR_REPORT_INTERVAL_MS, ERROR_REPORT_TOLERANCE_MS);
+        }
+    }
+
+    /**
+     * 送出彙整後的 error_report（斷線或達每分鐘上限時保留到下個週期；在排程執行緒上執行）
+     */
+    private void flushErrorReports() {
+        Socket current = socket;
+        if (current != null && current.connected()) {
+            ErrorAggregator.Batch batch = errorAggregator.drain();
+            if (batch != null) {
+                WakeLockManager.Hold wake = wakeLocks.acquire(WakeLockManager.REASON_ERROR_FLUSH, ERROR_FLUSH_WAKE_TIMEOUT_MS);
+                try {
+                    ErrorAggregator.Entry top = batch.top();
+                    JSONObject errorReport = new JSONObject();
+                    errorReport.put("version", appVersion);
+                    errorReport.put("context", top.context); // 錯誤的上一行
+                    errorReport.put("error", top.message);   // 次數最多的錯誤訊息
+                    errorReport.put("timestamp", batch.windowEndMs);
+                    errorReport.put("window_start", batch.windowStartMs);
+                    errorReport.put("total", batch.totalCount);
+                    errorReport.put("dropped", batch.droppedCount);
+
+                    org.json.JSONArray errors = new org.json.JSONArray();
+                    for (ErrorAggregator.Entry entry : batch.entries) {
+                        JSONObject item = new JSONObject();
+                        item.put("fingerprint", entry.fingerprint);
+                        item.put("error", entry.message);
+                        item.put("context", entry.context);
+                        item.put("count", entry.count());
+                        item.put("first_ts", entry.firstMs);
+                        item.put("last_ts", entry.lastMs());
+                        errors.put(item);
+                    }
+                    errorReport.put("errors", errors);
+
+                    current.emit("error_report", errorReport);
+                } catch (Exception e) {
+                    // 靜默失敗（避免錯誤回報本身造成錯誤）
+                } finally {
+                    wake.release();
+                }
+            }
+        }
+
+        if (errorAggregator.hasPending()) {
+            scheduleErrorFlush();
+        }
+    }
+
+    /**
+     * v1.2.8: 啟動心跳檢查（每 3 分鐘檢查連線）
+     */
+    private void startHeartbeat() {
+        // 在排程執行緒上檢查，連線正常時不喚醒主執行緒；允許延後 30 秒以併入其他喚醒
+        heartbeatTask = scheduler.scheduleAtFixedRate(() -> {
+            reportWakeLocks();
+            // 檢查連線狀態
+            // 一般斷線由 ReconnectManager 處理；此處只在沒有待執行的重連時補救
+            Socket current = socket;
+            if (!isConnected || current == null || !current.connected()) {
+                if (!reconnectManager.isPending()) {
+                    logger.log(LogLevel.DEBUG, "💔 心跳檢測：連線已斷開，嘗試重連...");
+                    mainHandler.post(this::connect);
+                }
+            } else {
+                logger.log(LogLevel.DEBUG, "💚 心跳檢測：連線正常");
+                sendMetricsReport(current);
+                sendStallReport(current);
+            }
+        }, HEARTBEAT_INTERVAL, HEARTBEAT_TOLERANCE_MS);
+
+        logger.log(LogLevel.INFO, "💗 心跳監控已啟動（每 3 分鐘檢查）");
+    }
+
+    /**
+     * 把進行中的喚醒鎖持有時間計入 wakelock_held_ms_*，並記錄上次心跳以來各原因新增的持有時間
+     * （斷線閒置時的重連與錯誤回報也會出現；連線後隨 metrics_report 送出累計值）
+     */
+    private void reportWakeLocks() {
+        wakeLocks.flushHeldTime();
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < WAKE_REASONS.length; i++) {
+            long held = metrics.get(WakeLockManager.WAKELOCK_HELD_MS_PREFIX + WAKE_REASONS[i]);
+            long delta = held - wakeHeldReportedMs[i];
+            wakeHeldReportedMs[i] = held;
+            if (delta > 0) {
+                line.append(line.length() == 0 ? "" : "，").append(WAKE_REASONS[i]).append(' ').append(delta).append(" ms");
+            }
+        }
+        if (line.length() > 0) {
+            logger.log(LogLevel.INFO, "🔋 喚醒鎖（上次心跳後）: " + line);
+        }
+    }
+
+    /**
+     * 隨心跳送出所有計數器與 gauge 的快照（排程執行緒；不另外排定喚醒，閒置時也每 3 分鐘一次）
+     */
+    private void sendMetricsReport(Socket current) {
+        try {
+            JSONObject values = new JSONObject();
+            for (Map.Entry<String, Long> entry : metrics.snapshot().entrySet()) {
+                values.put(entry.getKey(), entry.getValue().longValue());
+            }
+            JSONObject report = new JSONObject();
+            report.put("version", appVersion);
+            report.put("metrics", values);
+            current.emit("metrics_report", report);
+        } catch (Exception e) {
+            // 靜默失敗（與 error_report 相同）
+        }
+    }
+
+    /**
+     * 送出上次心跳以來新發生的執行緒卡住彙整（排程執行緒；次數與時間也在 looper_* 指標中）
+     */
+    private void sendStallReport(Socket current) {
+        if (!looperWatchdog.hasChanged()) {
+            return;
+        }
+        try {
+            org.json.JSONArray items = new org.json.JSONArray();
+            for (LooperWatchdog.Stall stall : looperWatchdog.drainChanged()) {
+                JSONObject item = new JSONObject();
+                item.put("thread", stall.lane);
+                item.put("id", stall.id);
+                item.put("signature", stall.signature);
+                item.put("stack", stall.stack);
+                item.put("count", stall.count());
+                item.put("total_ms", stall.totalMs());
+                item.put("max_ms", stall.maxMs());
+                item.put("first_ts", stall.firstMs);
+                item.put("last_ts", stall.lastMs());
+                items.put(item);
+            }
+            JSONObject report = new JSONObject();
+            report.put("version", appVersion);
+            report.put("stalls", items);
+            current.emit("stall_report", report);
+        } catch (Exception e) {
+            // 靜默失敗（與 error_report 相同）
+        }
+    }
+
+    /**
+     * v1.3.1: 發送相機狀態到 Web 端
+     */
+    private void sendCameraStatus(boolean available, String reason) {
+        Socket current = socket;
+        if (current == null || !current.connected()) {
+            return;
+        }
+
+        try {
+            JSONObject status = new JSONObject();
+            status.put("available", available);
+            status.put("reason", reason);
+            current.emit("camera_status", status);
+
+            if (available) {
+                logger.log(LogLevel.INFO, "📸 相機狀態：可用");
+            } else {
+                logger.log(LogLevel.INFO, "🔒 相機狀態：" + (reason.equals("locked") ? "手機鎖定，相機無權限" : "不可用"));
+            }
+        } catch (Exception e) {
+            logger.log(LogLevel.ERROR, "❌ 發送相機狀態失敗: " + e.getMessage());
+        }
+    }
+}
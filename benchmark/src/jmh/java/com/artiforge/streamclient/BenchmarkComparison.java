@@ -0,0 +1,91 @@
+package com.artiforge.streamclient;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 比較兩個 versionName 的 JMH JSON 結果（平均耗時，越低越好）
+ *
+ * 用法：BenchmarkComparison baseline.json current.json [門檻百分比，預設 10]
+ * 任一項目變慢超過門檻時以結束碼 1 結束，方便接在發版流程。
+ */
+public final class BenchmarkComparison {
+
+    private BenchmarkComparison() {
+    }
+
+    public static void main(String[] args) throws IOException, JSONException {
+        if (args.length < 2) {
+            System.err.println("usage: BenchmarkComparison <baseline.json> <current.json> [thresholdPercent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+        Map<String, JSONObject> baseline = load(Paths.get(args[0]));
+        Map<String, JSONObject> current = load(Paths.get(args[1]));
+
+        int regressions = 0;
+        for (Map.Entry<String, JSONObject> entry : current.entrySet()) {
+            JSONObject now = entry.getValue();
+            JSONObject before = baseline.get(entry.getKey());
+            double nowScore = now.getDouble("score");
+            String unit = now.optString("scoreUnit", "");
+            if (before == null) {
+                System.out.printf(Locale.ROOT, "🆕 %-60s %12.2f %s%n", entry.getKey(), nowScore, unit);
+                continue;
+            }
+            double beforeScore = before.getDouble("score");
+            double change = beforeScore > 0 ? (nowScore - beforeScore) / beforeScore * 100 : 0;
+            // 變化落在兩次量測的誤差範圍內時不算退步
+            double noise = now.optDouble("scoreError", 0) + before.optDouble("scoreError", 0);
+            boolean regressed = change > threshold && nowScore - beforeScore > noise;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf(Locale.ROOT, "%s %-60s %12.2f → %12.2f %s (%+.1f%%)%n",
+                    regressed ? "❌" : "✅", entry.getKey(), beforeScore, nowScore, unit, change);
+        }
+        for (String name : baseline.keySet()) {
+            if (!current.containsKey(name)) {
+                System.out.printf(Locale.ROOT, "➖ %s（本次沒有量測）%n", name);
+            }
+        }
+
+        System.out.printf(Locale.ROOT, "%d 項變慢超過 %.0f%%%n", regressions, threshold);
+        if (regressions > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * 名稱 + 參數 → primaryMetric
+     */
+    private static Map<String, JSONObject> load(Path file) throws IOException, JSONException {
+        JSONArray runs = new JSONArray(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        Map<String, JSONObject> results = new LinkedHashMap<>();
+        for (int i = 0; i < runs.length(); i++) {
+            JSONObject run = runs.getJSONObject(i);
+            StringBuilder key = new StringBuilder(run.getString("benchmark")
+                    .replace("com.artiforge.streamclient.", ""));
+            JSONObject params = run.optJSONObject("params");
+            if (params != null) {
+                for (Iterator<String> it = params.keys(); it.hasNext(); ) {
+                    String name = it.next();
+                    key.append(' ').append(name).append('=').append(params.optString(name));
+                }
+            }
+            results.put(key.toString(), run.getJSONObject("primaryMetric"));
+        }
+        return results;
+    }
+}
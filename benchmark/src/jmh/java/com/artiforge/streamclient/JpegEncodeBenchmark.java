@@ -0,0 +1,69 @@
+package com.artiforge.streamclient;
+
+import com.artiforge.streamclient.harness.ImageIoJpegEncoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JPEG 編碼路徑（encodeLayers 的後半段）：完整層 Q85、縮圖層 Q50，輸出寫入 FramePool
+ *
+ * 輸入為直立的輸出尺寸（ResolutionTier）；編碼器見 ImageIoJpegEncoder 的說明。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JpegEncodeBenchmark {
+
+    @Param({"LOW", "MEDIUM", "HIGH"})
+    public ResolutionTier tier;
+
+    private final FramePool pool = new FramePool();
+    private final ImageIoJpegEncoder encoder = new ImageIoJpegEncoder();
+    private byte[] full;
+    private byte[] thumb;
+
+    @Setup
+    public void setUp() {
+        // 橫向擷取後旋轉成直立，與裝置上的輸入相同
+        SyntheticYuvFrame capture = new SyntheticYuvFrame(tier.height, tier.width, 0, 2);
+        full = new byte[YuvOps.nv21Size(tier.width, tier.height)];
+        YuvOps.rotateCcw90(capture.toNv21(), capture.width, capture.height, full);
+        thumb = new byte[YuvOps.nv21Size(tier.width / 2, tier.height / 2)];
+        YuvOps.downscale2x(full, tier.width, tier.height, thumb);
+    }
+
+    @Benchmark
+    public int encodeHigh() throws IOException {
+        return encode(full, tier.width, tier.height, StreamParams.DEFAULT_QUALITY, FrameLayer.HIGH);
+    }
+
+    @Benchmark
+    public int encodeLow() throws IOException {
+        return encode(thumb, tier.width / 2, tier.height / 2, StreamParams.DEFAULT_THUMB_QUALITY, FrameLayer.LOW);
+    }
+
+    private int encode(byte[] nv21, int width, int height, int quality, FrameLayer layer) throws IOException {
+        FramePool.Writer out = pool.newWriter();
+        encoder.compress(nv21, width, height, quality, out);
+        EncodedFrame frame = out.toFrame(0, Long.MAX_VALUE, layer);
+        int length = frame.length();
+        frame.release();
+        return length;
+    }
+}
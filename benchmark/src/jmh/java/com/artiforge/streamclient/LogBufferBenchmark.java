@@ -0,0 +1,95 @@
+package com.artiforge.streamclient;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 日誌儲存與畫面重繪的成本：環形緩衝區寫入（單一 / 多執行緒）、單行格式化、一次重繪（30 行）
+ *
+ * formatLineSimpleDateFormat 是改用 LogFormatter 之前每行的做法（每次建立 SimpleDateFormat 與 Date），作為比較基準。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogBufferBenchmark {
+
+    /** 與 StreamEngine / SimpleMainActivity 相同 */
+    private static final int CAPACITY = 256;
+    private static final int DISPLAY_LINES = 30;
+    private static final String MESSAGE = "📤 影格 #1234 上傳完成（40960 bytes，38 ms）";
+
+    /** 多個執行緒共用的緩衝區（相機、網路、主執行緒同時寫入） */
+    @State(Scope.Benchmark)
+    public static class Shared {
+        final LogRingBuffer buffer = new LogRingBuffer(CAPACITY);
+    }
+
+    private final LogRingBuffer buffer = new LogRingBuffer(CAPACITY);
+    private final LogFormatter formatter = new LogFormatter(TimeZone.getTimeZone("Asia/Taipei"));
+    private final StringBuilder builder = new StringBuilder(4_096);
+    private final LogRecord[] records = new LogRecord[DISPLAY_LINES];
+    private LogRecord record;
+
+    @Setup
+    public void setUp() {
+        LogLevel[] levels = LogLevel.values();
+        for (int i = 0; i < CAPACITY; i++) {
+            buffer.append(levels[i % levels.length], MESSAGE);
+        }
+        record = new LogRecord(0, System.currentTimeMillis(), LogLevel.INFO, MESSAGE);
+    }
+
+    @Benchmark
+    public long append() {
+        return buffer.append(LogLevel.INFO, MESSAGE);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long appendContended(Shared shared) {
+        return shared.buffer.append(LogLevel.INFO, MESSAGE);
+    }
+
+    @Benchmark
+    public int formatLine() {
+        builder.setLength(0);
+        formatter.appendLine(builder, record);
+        return builder.length();
+    }
+
+    @Benchmark
+    public String formatLineSimpleDateFormat() {
+        String timestamp = new SimpleDateFormat("HH:mm:ss", Locale.getDefault()).format(new Date(record.timeMillis));
+        return "[" + timestamp + "] " + record.message;
+    }
+
+    /** 一次重繪：取最近 30 筆 INFO 以上的紀錄並格式化（不含 setText） */
+    @Benchmark
+    public int render() {
+        int count = buffer.snapshot(records, LogLevel.INFO);
+        builder.setLength(0);
+        for (int i = 0; i < count; i++) {
+            formatter.appendLine(builder, records[i]);
+            records[i] = null;
+        }
+        return builder.length();
+    }
+}
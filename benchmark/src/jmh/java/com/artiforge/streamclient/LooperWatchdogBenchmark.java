@@ -0,0 +1,69 @@
+package com.artiforge.streamclient;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 卡住偵測的成本：沒有卡住時的一次探測，與卡住時的簽章計算
+ *
+ * probe 的探測直接在呼叫端執行（包含排程與取消卡住檢查）；實際每 2 秒每個執行緒一次。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LooperWatchdogBenchmark {
+
+    private final TimerWheel wheel = new TimerWheel(TimeSource.MONOTONIC);
+    private LooperWatchdog watchdog;
+    private StackTraceElement[] stack;
+
+    @Setup
+    public void setUp() {
+        StreamLogger logger = new StreamLogger(LogLevel.ERROR, (level, message) -> { });
+        watchdog = new LooperWatchdog(wheel, TimeSource.MONOTONIC, TimeSource.WALL, new StreamMetrics(), logger);
+        Thread current = Thread.currentThread();
+        watchdog.watch(new LooperWatchdog.Lane() {
+            @Override
+            public String name() {
+                return "main";
+            }
+
+            @Override
+            public Thread thread() {
+                return current;
+            }
+
+            @Override
+            public boolean post(Runnable task) {
+                task.run();
+                return true;
+            }
+        });
+        stack = current.getStackTrace();
+    }
+
+    /** 沒有卡住時的一次探測 */
+    @Benchmark
+    public void probe() {
+        watchdog.check();
+    }
+
+    /** 卡住時：由堆疊計算簽章 */
+    @Benchmark
+    public String signature() {
+        return LooperWatchdog.signature(stack);
+    }
+}
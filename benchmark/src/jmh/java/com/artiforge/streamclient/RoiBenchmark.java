@@ -0,0 +1,76 @@
+package com.artiforge.streamclient;
+
+import com.artiforge.streamclient.harness.ImageIoJpegEncoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 感興趣區域：裁切 + 前處理 + JPEG 編碼，依區域大小比較
+ *
+ * roi 為置中區域的邊長比例（1.0 = 全畫面）；擷取 1280x960、MEDIUM 等級。
+ * 小區域不再縮小，輸出像素數在區域邊長降到一半以下後才開始減少。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoiBenchmark {
+
+    @Param({"1.0", "0.5", "0.25"})
+    public double roi;
+
+    private final SyntheticYuvFrame source = new SyntheticYuvFrame(1280, 960, 0, 2);
+    private final YuvFrameProcessor processor = new YuvFrameProcessor();
+    private final FramePool pool = new FramePool();
+    private final ImageIoJpegEncoder encoder = new ImageIoJpegEncoder();
+    private RegionOfInterest region;
+
+    @Setup
+    public void setUp() {
+        double offset = (1 - roi) / 2;
+        region = new RegionOfInterest(offset, offset, roi, roi);
+    }
+
+    /** 裁切 + 打包 + 旋轉 + 依等級縮小 */
+    @Benchmark
+    public void prepare(Blackhole bh) {
+        prepareFrame();
+        bh.consume(processor.full());
+    }
+
+    /** 前處理加完整層 JPEG 編碼（回傳 JPEG 位元組數） */
+    @Benchmark
+    public int prepareAndEncode() throws IOException {
+        prepareFrame();
+        FramePool.Writer out = pool.newWriter();
+        encoder.compress(processor.full(), processor.fullWidth(), processor.fullHeight(),
+                StreamParams.DEFAULT_QUALITY, out);
+        EncodedFrame frame = out.toFrame(0, Long.MAX_VALUE, FrameLayer.HIGH);
+        int length = frame.length();
+        frame.release();
+        return length;
+    }
+
+    private void prepareFrame() {
+        source.rewind();
+        processor.prepare(source.y, source.yRowStride, source.u, source.v,
+                source.uvRowStride, source.uvPixelStride, source.width, source.height,
+                ResolutionTier.MEDIUM.height, region);
+    }
+}
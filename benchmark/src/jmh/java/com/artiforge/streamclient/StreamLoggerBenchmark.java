@@ -0,0 +1,55 @@
+package com.artiforge.streamclient;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 相機熱路徑上每張影格的日誌成本：等級未開啟（常數字串 / Supplier / 先組好字串）與開啟後寫入環形緩衝區
+ *
+ * disabledEagerConcat 是改用 Supplier 之前的寫法（不論等級都先組字串），作為比較基準。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamLoggerBenchmark {
+
+    private final LogRingBuffer buffer = new LogRingBuffer(256);
+    private final StreamLogger disabled = new StreamLogger(LogLevel.INFO, buffer::append);
+    private final StreamLogger enabled = new StreamLogger(LogLevel.DEBUG, buffer::append);
+    private long frameNumber = 0;
+
+    @Benchmark
+    public void disabledConstant() {
+        disabled.log(LogLevel.DEBUG, "📸 影格已編碼");
+    }
+
+    @Benchmark
+    public void disabledSupplier() {
+        long frame = ++frameNumber;
+        disabled.log(LogLevel.DEBUG, () -> "📸 影格 #" + frame + " 已編碼（" + (frame * 31 % 50_000) + " bytes）");
+    }
+
+    @Benchmark
+    public void disabledEagerConcat() {
+        long frame = ++frameNumber;
+        disabled.log(LogLevel.DEBUG, "📸 影格 #" + frame + " 已編碼（" + (frame * 31 % 50_000) + " bytes）");
+    }
+
+    @Benchmark
+    public void enabledSupplier() {
+        long frame = ++frameNumber;
+        enabled.log(LogLevel.DEBUG, () -> "📸 影格 #" + frame + " 已編碼（" + (frame * 31 % 50_000) + " bytes）");
+    }
+}
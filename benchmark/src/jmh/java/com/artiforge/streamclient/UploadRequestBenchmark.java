@@ -0,0 +1,75 @@
+package com.artiforge.streamclient;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+
+/**
+ * uploadFrame 的 CPU 部分：影格交接（池中取出 → 請求 → 釋放）與壅塞視窗記帳，不含網路
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UploadRequestBenchmark {
+
+    /** 典型 JPEG 大小：縮圖層、480x640 Q85、720x960 Q85 */
+    @Param({"8192", "40960", "90112"})
+    public int frameBytes;
+
+    private final FramePool pool = new FramePool();
+    private final BandwidthEstimator estimator = new BandwidthEstimator(TimeSource.MONOTONIC);
+    private FrameUploader uploader;
+    private byte[] jpeg;
+
+    @Setup
+    public void setUp() {
+        uploader = new FrameUploader(new OkHttpClient(), "http://127.0.0.1:8080", estimator,
+                TimeSource.MONOTONIC, new StreamMetrics(), null);
+        jpeg = new byte[frameBytes];
+        for (int i = 0; i < jpeg.length; i++) {
+            jpeg[i] = (byte) (i * 31);
+        }
+    }
+
+    @Benchmark
+    public Request buildRequest() {
+        EncodedFrame frame = writeFrame();
+        frame.retain();
+        Request request = uploader.buildRequest(frame);
+        frame.release();
+        frame.release();
+        return request;
+    }
+
+    @Benchmark
+    public void congestionWindow(Blackhole bh) {
+        BandwidthEstimator.InFlight slot = estimator.tryBeginUpload(frameBytes);
+        if (slot != null) {
+            estimator.onUploadFinished(slot, true);
+        }
+        bh.consume(slot);
+    }
+
+    private EncodedFrame writeFrame() {
+        FramePool.Writer out = pool.newWriter();
+        out.write(jpeg, 0, jpeg.length);
+        return out.toFrame(TimeSource.MONOTONIC.nowMs(), Long.MAX_VALUE, FrameLayer.HIGH);
+    }
+}
@@ -0,0 +1,109 @@
+package com.artiforge.streamclient;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * YUV 前處理（FrameEncoder.encode 的 JPEG 編碼前半段）
+ *
+ * 擷取尺寸為相機實際會選到的橫向解析度（UV 交錯）；prepare 以預設的 MEDIUM 等級（長邊 640）縮小。
+ * rowPadding 為每列的填充位元組（多數裝置的 rowStride 大於寬度，打包時改走逐列複製）。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class YuvBenchmark {
+
+    @Param({"320x240", "640x480", "1280x960"})
+    public String captureSize;
+
+    @Param({"0", "64"})
+    public int rowPadding;
+
+    private SyntheticYuvFrame source;
+    private byte[] nv21;
+    private byte[] rotated;
+    private byte[] packed;
+    private byte[] scaled;
+    private byte[] rowBuffer;
+    private final YuvFrameProcessor processor = new YuvFrameProcessor();
+
+    @Setup
+    public void setUp() {
+        int x = captureSize.indexOf('x');
+        source = new SyntheticYuvFrame(Integer.parseInt(captureSize.substring(0, x)),
+                Integer.parseInt(captureSize.substring(x + 1)), rowPadding, 2);
+        nv21 = source.toNv21();
+        rotated = new byte[nv21.length];
+        YuvOps.rotateCcw90(nv21, source.width, source.height, rotated);
+        packed = new byte[nv21.length];
+        scaled = new byte[YuvOps.nv21Size(source.width / 2, source.height / 2)];
+        rowBuffer = new byte[Math.max(source.yRowStride, source.uvRowStride)];
+    }
+
+    @Benchmark
+    public byte[] packNv21() {
+        source.rewind();
+        YuvOps.packNv21(source.y, source.yRowStride, source.u, source.v,
+                source.uvRowStride, source.uvPixelStride, source.width, source.height, packed, rowBuffer);
+        return packed;
+    }
+
+    @Benchmark
+    public byte[] rotateCcw90() {
+        YuvOps.rotateCcw90(nv21, source.width, source.height, packed);
+        return packed;
+    }
+
+    @Benchmark
+    public byte[] downscale2x() {
+        YuvOps.downscale2x(rotated, source.height, source.width, scaled);
+        return scaled;
+    }
+
+    /** 打包 + 旋轉（640x480 時即為 MEDIUM 等級的完整層，不再縮小） */
+    @Benchmark
+    public byte[] packAndRotate() {
+        source.rewind();
+        YuvOps.packNv21(source.y, source.yRowStride, source.u, source.v,
+                source.uvRowStride, source.uvPixelStride, source.width, source.height, packed, rowBuffer);
+        YuvOps.rotateCcw90(packed, source.width, source.height, rotated);
+        return rotated;
+    }
+
+    /** 完整層前處理：打包 + 旋轉 + 依等級縮小 */
+    @Benchmark
+    public void prepare(Blackhole bh) {
+        source.rewind();
+        processor.prepare(source.y, source.yRowStride, source.u, source.v,
+                source.uvRowStride, source.uvPixelStride, source.width, source.height,
+                ResolutionTier.MEDIUM.height);
+        bh.consume(processor.full());
+    }
+
+    /** simulcast：完整層前處理再加縮圖 */
+    @Benchmark
+    public void prepareWithThumbnail(Blackhole bh) {
+        source.rewind();
+        processor.prepare(source.y, source.yRowStride, source.u, source.v,
+                source.uvRowStride, source.uvPixelStride, source.width, source.height,
+                ResolutionTier.MEDIUM.height);
+        bh.consume(processor.full());
+        bh.consume(processor.thumbnail());
+    }
+}
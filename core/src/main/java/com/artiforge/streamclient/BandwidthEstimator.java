@@ -0,0 +1,174 @@
+package com.artiforge.streamclient;
+
+/**
+ * 上行頻寬與 RTT 估計，並據此控制同時在途（in-flight）的影格位元組數
+ *
+ * - 頻寬：每次上傳完成時，以「該請求期間內總共送達的位元組 / 該請求耗時」
+ *   取樣（多筆同時在途時也能反映總吞吐），取最近 N 筆樣本的最大值
+ * - RTT：請求耗時的視窗最小值，以及平滑值（7/8 舊值 + 1/8 新值）
+ * - 壅塞視窗 = max(最小視窗, 增益 × 頻寬 × 最小 RTT)
+ * - 最小 RTT 過期時進入探測：只放行一筆上傳，讓佇列排空後重新量測，
+ *   避免自己造成的排隊把 RTT 與視窗越墊越高
+ * - 上傳失敗（逾時、HTTP 錯誤）時將頻寬樣本乘上退讓係數
+ *
+ * 執行緒安全：所有方法皆可由任意執行緒呼叫
+ */
+public final class BandwidthEstimator {
+
+    static final int RATE_SAMPLES = 10;
+    static final long RTT_WINDOW_MS = 10_000;
+    static final long INITIAL_WINDOW_BYTES = 128 * 1024;
+    static final long MIN_WINDOW_BYTES = 32 * 1024;
+    static final double WINDOW_GAIN = 2.0;
+    static final double FAILURE_BACKOFF = 0.7;
+
+    /**
+     * 一筆在途上傳（由 tryBeginUpload 取得，完成後交回 onUploadFinished）
+     */
+    public static final class InFlight {
+        final long bytes;
+        final long sentAtMs;
+        final long deliveredAtSend;
+        final boolean alone;  // 送出時沒有其他在途上傳（RTT 樣本不含排隊）
+
+        InFlight(long bytes, long sentAtMs, long deliveredAtSend, boolean alone) {
+            this.bytes = bytes;
+            this.sentAtMs = sentAtMs;
+            this.deliveredAtSend = deliveredAtSend;
+            this.alone = alone;
+        }
+    }
+
+    private final TimeSource clock;
+
+    private final double[] rateSamples = new double[RATE_SAMPLES]; // bytes/ms
+    private int rateIndex = 0;
+    private int rateCount = 0;
+
+    private long minRttMs = -1;
+    private long minRttStampMs = 0;
+    private double smoothedRttMs = -1;
+    private boolean probingRtt = false;
+
+    private long delivered = 0;     // 累計成功送達位元組
+    private long inFlightBytes = 0;
+
+    public BandwidthEstimator(TimeSource clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * 視窗允許時登記一筆上傳；在途為 0 時一定放行（確保至少有一張影格能送出）
+     *
+     * @return null 代表視窗已滿，呼叫端應丟棄此影格
+     */
+    public synchronized InFlight tryBeginUpload(long bytes) {
+        long now = clock.nowMs();
+        if (!probingRtt && minRttMs >= 0 && now - minRttStampMs > RTT_WINDOW_MS) {
+            probingRtt = true;
+        }
+        if (inFlightBytes > 0) {
+            if (probingRtt || inFlightBytes + bytes > congestionWindowBytesLocked()) {
+                return null;
+            }
+        }
+        InFlight upload = new InFlight(bytes, now, delivered, inFlightBytes == 0);
+        inFlightBytes += bytes;
+        return upload;
+    }
+
+    /**
+     * 等到視窗允許時才登記一筆上傳（在途上傳完成或取消時喚醒，不輪詢）
+     *
+     * @return null 代表等了 maxWaitMs 視窗仍未空出
+     */
+    public synchronized InFlight awaitBeginUpload(long bytes, long maxWaitMs) throws InterruptedException {
+        long deadline = clock.nowMs() + maxWaitMs;
+        while (true) {
+            InFlight upload = tryBeginUpload(bytes);
+            if (upload != null) {
+                return upload;
+            }
+            long remaining = deadline - clock.nowMs();
+            if (remaining <= 0) {
+                return null;
+            }
+            wait(remaining);
+        }
+    }
+
+    public synchronized void onUploadFinished(InFlight upload, boolean success) {
+        long now = clock.nowMs();
+        inFlightBytes = Math.max(0, inFlightBytes - upload.bytes);
+        notifyAll();
+        long elapsed = Math.max(1, now - upload.sentAtMs);
+
+        if (!success) {
+            for (int i = 0; i < rateCount; i++) {
+                rateSamples[i] *= FAILURE_BACKOFF;
+            }
+            return;
+        }
+
+        delivered += upload.bytes;
+        rateSamples[rateIndex] = (double) (delivered - upload.deliveredAtSend) / elapsed;
+        rateIndex = (rateIndex + 1) % RATE_SAMPLES;
+        if (rateCount < RATE_SAMPLES) {
+            rateCount++;
+        }
+
+        if (minRttMs < 0 || elapsed <= minRttMs || (probingRtt && upload.alone)) {
+            minRttMs = elapsed;
+            minRttStampMs = now;
+            probingRtt = false;
+        }
+        smoothedRttMs = smoothedRttMs < 0 ? elapsed : smoothedRttMs * 7 / 8 + elapsed / 8.0;
+    }
+
+    /**
+     * 上傳在送出前被取消（例如影格過期）：釋放視窗，不產生頻寬或 RTT 樣本
+     */
+    public synchronized void onUploadCancelled(InFlight upload) {
+        inFlightBytes = Math.max(0, inFlightBytes - upload.bytes);
+        notifyAll();
+    }
+
+    /** 估計上行頻寬（bits/s），尚無樣本時回傳 0 */
+    public synchronized long bandwidthBps() {
+        return (long) (maxRateLocked() * 8 * 1000);
+    }
+
+    /** 視窗內最小 RTT（ms），尚無樣本時回傳 -1 */
+    public synchronized long minRttMs() {
+        return minRttMs;
+    }
+
+    /** 平滑 RTT（ms），尚無樣本時回傳 -1 */
+    public synchronized long smoothedRttMs() {
+        return (long) smoothedRttMs;
+    }
+
+    public synchronized long congestionWindowBytes() {
+        return congestionWindowBytesLocked();
+    }
+
+    public synchronized long inFlightBytes() {
+        return inFlightBytes;
+    }
+
+    private long congestionWindowBytesLocked() {
+        if (rateCount == 0 || minRttMs < 0) {
+            return INITIAL_WINDOW_BYTES;
+        }
+        long bdp = (long) (WINDOW_GAIN * maxRateLocked() * minRttMs);
+        return Math.max(MIN_WINDOW_BYTES, bdp);
+    }
+
+    private double maxRateLocked() {
+        double max = 0;
+        for (int i = 0; i < rateCount; i++) {
+            max = Math.max(max, rateSamples[i]);
+        }
+        return max;
+    }
+}
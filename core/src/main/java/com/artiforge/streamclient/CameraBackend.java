@@ -0,0 +1,43 @@
+package com.artiforge.streamclient;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 相機硬體介面：Camera2（app）或 JVM 上的假相機，只由 CameraController 的控制執行緒呼叫
+ *
+ * open 為非同步，結果以 Listener 回報（任何執行緒）；每次 open 帶一個工作階段編號，
+ * 回報時原樣帶回，控制器據此忽略已關閉工作階段的遲到事件。
+ * close 為同步：返回後不再產生影格與事件，背景執行緒已結束；重複呼叫無作用。
+ */
+public interface CameraBackend {
+
+    interface Listener {
+        /** 裝置與擷取工作階段就緒，預覽已開始 */
+        void onOpened(int session);
+
+        /** 裝置被系統收回（其他 App 搶用、鎖定等） */
+        void onDisconnected(int session);
+
+        /**
+         * @param reason      回報給伺服器的 camera_status 原因（locked / access_error / permission_denied ...）
+         * @param recoverable 是否值得自動重試
+         */
+        void onError(int session, String message, String reason, boolean recoverable);
+    }
+
+    /**
+     * 影格出口（相機背景執行緒上呼叫）
+     */
+    interface FrameSink {
+        /** 這一幀是否需要；false 時後端直接丟棄，不讀取影像平面 */
+        boolean wantsFrame(long nowMs);
+
+        /** 橫向 YUV_420_888 平面，呼叫返回後後端即回收緩衝區 */
+        void onFrame(ByteBuffer y, int yRowStride, ByteBuffer u, ByteBuffer v,
+                     int uvRowStride, int uvPixelStride, int width, int height, long captureTimeMs);
+    }
+
+    void open(int session, ResolutionTier tier, Listener listener, FrameSink sink);
+
+    void close();
+}
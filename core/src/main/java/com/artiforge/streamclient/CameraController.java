@@ -0,0 +1,443 @@
+package com.artiforge.streamclient;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 相機生命週期狀態機（包住 CameraBackend，對外是 FrameSource）
+ *
+ *   CLOSED → OPENING → IDLE ⇄ STREAMING
+ *   OPENING / IDLE / STREAMING → RECOVERING（可重試的錯誤，延遲後回到 OPENING）
+ *   任何開啟中的狀態 → CLOSING → CLOSED
+ *
+ * 外部指令、後端事件與延遲重試都排進同一條 CameraControl 執行緒依序執行，
+ * 裝置狀態只在這條執行緒上修改。不允許的轉換只計數後丟棄（查表，不配置物件）；
+ * 每個狀態的累計停留時間記在 StreamMetrics（camera_state_ms_<狀態>）。
+ */
+public final class CameraController implements FrameSource {
+
+    public enum State { CLOSED, OPENING, IDLE, STREAMING, RECOVERING, CLOSING }
+
+    public static final String CAMERA_STATE = "camera_state";
+    public static final String CAMERA_TRANSITIONS = "camera_transitions";
+    public static final String CAMERA_TRANSITIONS_REJECTED = "camera_transitions_rejected";
+    public static final String CAMERA_STATE_MS_PREFIX = "camera_state_ms_";
+
+    public static final long DEFAULT_RECOVERY_DELAY_MS = 3000;
+    private static final long RECOVERY_TOLERANCE_MS = 500;
+
+    private static final State[] STATES = State.values();
+    private static final boolean[][] ALLOWED = new boolean[STATES.length][STATES.length];
+
+    static {
+        allow(State.CLOSED, State.OPENING);
+        allow(State.OPENING, State.IDLE, State.STREAMING, State.RECOVERING, State.CLOSING);
+        allow(State.IDLE, State.STREAMING, State.RECOVERING, State.CLOSING);
+        allow(State.STREAMING, State.IDLE, State.RECOVERING, State.CLOSING);
+        allow(State.RECOVERING, State.OPENING, State.CLOSING);
+        allow(State.CLOSING, State.CLOSED);
+    }
+
+    private static void allow(State from, State... targets) {
+        for (State to : targets) {
+            ALLOWED[from.ordinal()][to.ordinal()] = true;
+        }
+    }
+
+    private final CameraBackend backend;
+    private final FrameEncoder frameEncoder;
+    private final TaskScheduler scheduler;
+    private final TimeSource clock;
+    private final StreamLogger logger;
+    private final long recoveryDelayMs;
+    private final ExecutorService executor;
+    private final AtomicLong transitions;
+    private final AtomicLong rejected;
+    private final AtomicLong[] stateMs = new AtomicLong[STATES.length];
+
+    private volatile FrameCallback frameCallback;
+    private volatile State state = State.CLOSED;
+    private volatile long enteredAtMs;
+    // 影格閘門：相機執行緒只讀這個旗標，不碰狀態機
+    private volatile boolean streaming = false;
+    // 預錄：未串流但相機開啟時，以低幀率編碼進緩衝區（null = 關閉）
+    private volatile PreRollBuffer preRoll;
+    private boolean preRollFrame = false; // 只在相機執行緒上存取：這一幀是否為預錄
+    private final FrameCallback preRollCallback = new FrameCallback() {
+        @Override
+        public void onFrameAvailable(EncodedFrame frame) {
+            PreRollBuffer buffer = preRoll;
+            if (buffer != null) {
+                buffer.add(frame);
+            } else {
+                frame.release();
+            }
+        }
+
+        @Override
+        public void onError(String error) {
+            FrameCallback callback = frameCallback;
+            if (callback != null) {
+                callback.onError(error);
+            }
+        }
+
+        @Override
+        public void onCameraStatusChanged(boolean available, String reason) {
+        }
+    };
+
+    // 以下只在控制執行緒上存取
+    private int session = 0;
+    private boolean wantStreaming = false;
+    private ResolutionTier tier = StreamParams.DEFAULT.tier;
+    private TaskScheduler.ScheduledTask recoveryTask;
+
+    private final CameraBackend.Listener backendListener = new CameraBackend.Listener() {
+        @Override
+        public void onOpened(int session) {
+            submit(() -> handleOpened(session));
+        }
+
+        @Override
+        public void onDisconnected(int session) {
+            submit(() -> handleDisconnected(session));
+        }
+
+        @Override
+        public void onError(int session, String message, String reason, boolean recoverable) {
+            submit(() -> handleError(session, message, reason, recoverable));
+        }
+    };
+
+    private final CameraBackend.FrameSink frameSink = new CameraBackend.FrameSink() {
+        @Override
+        public boolean wantsFrame(long nowMs) {
+            // 節流：各層依自己的幀率決定這一幀是否需要
+            if (streaming) {
+                preRollFrame = false;
+                return frameEncoder.selectLayers(nowMs);
+            }
+            PreRollBuffer buffer = preRoll;
+            preRollFrame = buffer != null && buffer.accepting()
+                    && frameEncoder.selectPreRoll(nowMs, buffer.intervalMs());
+            return preRollFrame;
+        }
+
+        @Override
+        public void onFrame(ByteBuffer y, int yRowStride, ByteBuffer u, ByteBuffer v,
+                            int uvRowStride, int uvPixelStride, int width, int height, long captureTimeMs) {
+            PreRollBuffer buffer = preRoll;
+            if (preRollFrame && buffer != null) {
+                frameEncoder.encode(y, yRowStride, u, v, uvRowStride, uvPixelStride, width, height,
+                        captureTimeMs, buffer.frameMaxAgeMs(frameEncoder.frameMaxAgeMs()), preRollCallback);
+                return;
+            }
+            frameEncoder.encode(y, yRowStride, u, v, uvRowStride, uvPixelStride,
+                    width, height, captureTimeMs, frameCallback);
+        }
+    };
+
+    public CameraController(CameraBackend backend, FrameEncoder frameEncoder, TaskScheduler scheduler,
+                            TimeSource clock, StreamMetrics metrics, StreamLogger logger) {
+        this(backend, frameEncoder, scheduler, clock, metrics, logger, DEFAULT_RECOVERY_DELAY_MS);
+    }
+
+    /**
+     * @param recoveryDelayMs 可重試錯誤後到重新開啟的延遲
+     */
+    public CameraController(CameraBackend backend, FrameEncoder frameEncoder, TaskScheduler scheduler,
+                            TimeSource clock, StreamMetrics metrics, StreamLogger logger, long recoveryDelayMs) {
+        this.backend = backend;
+        this.frameEncoder = frameEncoder;
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.logger = logger;
+        this.recoveryDelayMs = recoveryDelayMs;
+        this.transitions = metrics.counter(CAMERA_TRANSITIONS);
+        this.rejected = metrics.counter(CAMERA_TRANSITIONS_REJECTED);
+        for (State s : STATES) {
+            stateMs[s.ordinal()] = metrics.counter(CAMERA_STATE_MS_PREFIX + s.name().toLowerCase());
+        }
+        metrics.registerGauge(CAMERA_STATE, () -> state.ordinal());
+        this.enteredAtMs = clock.nowMs();
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "CameraControl");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public State state() {
+        return state;
+    }
+
+    /**
+     * 開啟或關閉預錄（null 關閉）；相機開啟但未串流時，依緩衝區的間隔編碼影格放入緩衝區。
+     * 換掉的舊緩衝區由呼叫者清除。
+     */
+    public void setPreRoll(PreRollBuffer buffer) {
+        this.preRoll = buffer;
+    }
+
+    /**
+     * 某狀態的累計停留時間（含目前狀態已停留的時間）
+     */
+    public long timeInStateMs(State s) {
+        long total = stateMs[s.ordinal()].get();
+        return state == s ? total + clock.nowMs() - enteredAtMs : total;
+    }
+
+    @Override
+    public void setFrameCallback(FrameCallback callback) {
+        this.frameCallback = callback;
+    }
+
+    /**
+     * 設定影格最大允許延遲（由 cmd_start_stream 的 max_age_ms 指定）
+     */
+    public void setFrameMaxAgeMs(long maxAgeMs) {
+        frameEncoder.setFrameMaxAgeMs(maxAgeMs);
+    }
+
+    @Override
+    public void setDetailViewerActive(boolean active) {
+        frameEncoder.setDetailViewerActive(active);
+    }
+
+    /**
+     * 下一張影格起生效（裁切在相機執行緒上處理，不需重新開啟相機）
+     */
+    @Override
+    public void setRegionOfInterest(RegionOfInterest region) {
+        frameEncoder.setRegionOfInterest(region);
+    }
+
+    /**
+     * 套用串流參數：幀率與畫質立即生效；解析度等級改變時重新開啟相機（串流中則開啟後自動恢復）
+     */
+    @Override
+    public void applyStreamParams(StreamParams params) {
+        submit(() -> {
+            frameEncoder.applyStreamParams(params);
+            if (params.tier == tier) {
+                return;
+            }
+            tier = params.tier;
+            State current = state;
+            if (current == State.OPENING || current == State.IDLE || current == State.STREAMING) {
+                logger.log(LogLevel.INFO, () -> "🔁 切換解析度為 " + params.tier.width + "x" + params.tier.height + "，重新開啟相機");
+                wantStreaming = wantStreaming || current == State.STREAMING;
+                closeBackend();
+                if (transition(State.OPENING)) {
+                    openBackend();
+                }
+            }
+            // RECOVERING：重試時自然使用新的解析度
+        });
+    }
+
+    @Override
+    public void startCamera() {
+        submit(() -> {
+            if (!transition(State.OPENING)) {
+                logger.log(LogLevel.DEBUG, () -> "📷 相機狀態 " + state + "，跳過重新啟動");
+                return;
+            }
+            openBackend();
+        });
+    }
+
+    @Override
+    public void startStreaming() {
+        submit(() -> {
+            State current = state;
+            if (current == State.OPENING || current == State.RECOVERING) {
+                // 相機開啟中或等待重試，就緒後自動開始
+                wantStreaming = true;
+                logger.log(LogLevel.INFO, "⏳ 相機尚未就緒，就緒後自動開始串流");
+                return;
+            }
+            if (!transition(State.STREAMING)) {
+                if (current != State.STREAMING) {
+                    FrameCallback callback = frameCallback;
+                    if (callback != null) {
+                        callback.onError("❌ 相機未就緒");
+                    }
+                }
+                return;
+            }
+            wantStreaming = true;
+            logger.log(LogLevel.INFO, () -> "✅ 串流已啟動 (" + frameEncoder.describe() + ")");
+        });
+    }
+
+    @Override
+    public void stopStreaming() {
+        submit(() -> {
+            wantStreaming = false;
+            if (state == State.STREAMING) {
+                transition(State.IDLE);
+            }
+            logger.log(LogLevel.INFO, "⏹️ 停止串流上傳（保持預覽）");
+        });
+    }
+
+    @Override
+    public void stopCamera() {
+        submit(() -> {
+            wantStreaming = false;
+            cancelRecovery();
+            closeBackend();
+        });
+    }
+
+    /**
+     * 關閉相機並結束控制執行緒（擁有者釋放時呼叫；之後的指令一律忽略）
+     */
+    public void shutdown() {
+        stopCamera();
+        executor.shutdown();
+    }
+
+    /**
+     * 等待目前已排入的轉換執行完畢（壓力測試與關閉流程用）
+     *
+     * @return false 代表逾時
+     */
+    public boolean awaitPending(long timeoutMs) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            executor.execute(latch::countDown);
+        } catch (RejectedExecutionException e) {
+            return executor.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+        return latch.await(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    // ========================================================================
+    // 後端事件（控制執行緒）
+    // ========================================================================
+
+    private void handleOpened(int opened) {
+        if (opened != session || state != State.OPENING) {
+            return; // 已關閉或已重新開啟的工作階段
+        }
+        boolean resume = wantStreaming;
+        transition(resume ? State.STREAMING : State.IDLE);
+        if (resume) {
+            logger.log(LogLevel.INFO, () -> "✅ 相機開啟完成，恢復串流 (" + frameEncoder.describe() + ")");
+        }
+        FrameCallback callback = frameCallback;
+        if (callback != null) {
+            // v1.3.1: 通知相機可用
+            callback.onCameraStatusChanged(true, "ready");
+        }
+    }
+
+    private void handleDisconnected(int disconnected) {
+        if (disconnected != session) {
+            return;
+        }
+        // 保留 wantStreaming：下次 startCamera（例如解鎖後）開啟完成即恢復串流
+        logger.log(LogLevel.WARN, "⚠️ 相機已斷線");
+        closeBackend();
+    }
+
+    private void handleError(int failed, String message, String reason, boolean recoverable) {
+        if (failed != session) {
+            return;
+        }
+        backend.close();
+        FrameCallback callback = frameCallback;
+        if (callback != null) {
+            callback.onError(message);
+            // v1.3.1: 通知相機不可用（鎖定或錯誤）
+            callback.onCameraStatusChanged(false, reason);
+        }
+
+        if (recoverable && transition(State.RECOVERING)) {
+            logger.log(LogLevel.INFO, () -> "🔄 " + (recoveryDelayMs / 1000) + " 秒後自動重新初始化相機...");
+            int expected = session;
+            recoveryTask = scheduler.schedule(() -> submit(() -> retry(expected)), recoveryDelayMs, RECOVERY_TOLERANCE_MS);
+        } else if (transition(State.CLOSING)) {
+            transition(State.CLOSED);
+        }
+    }
+
+    private void retry(int expected) {
+        recoveryTask = null;
+        if (expected != session || !transition(State.OPENING)) {
+            return; // 等待期間已關閉或重新開啟
+        }
+        logger.log(LogLevel.DEBUG, "🔄 開始自動恢復...");
+        openBackend();
+    }
+
+    // ========================================================================
+    // 內部（控制執行緒）
+    // ========================================================================
+
+    private void openBackend() {
+        int current = ++session;
+        logger.log(LogLevel.INFO, "🎬 開始初始化相機...");
+        backend.open(current, tier, backendListener, frameSink);
+    }
+
+    /**
+     * 目前狀態可關閉時經 CLOSING 回到 CLOSED（後端同步釋放，背景執行緒一併結束）
+     */
+    private void closeBackend() {
+        if (!transition(State.CLOSING)) {
+            return;
+        }
+        session++; // 關閉後才到的事件一律視為過期
+        backend.close();
+        transition(State.CLOSED);
+    }
+
+    private void cancelRecovery() {
+        if (recoveryTask != null) {
+            recoveryTask.cancel();
+            recoveryTask = null;
+        }
+    }
+
+    /**
+     * 不允許的轉換只計數並回傳 false
+     */
+    private boolean transition(State to) {
+        State from = state;
+        if (!ALLOWED[from.ordinal()][to.ordinal()]) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        long now = clock.nowMs();
+        stateMs[from.ordinal()].addAndGet(now - enteredAtMs);
+        enteredAtMs = now;
+        state = to;
+        streaming = to == State.STREAMING;
+        transitions.incrementAndGet();
+        logger.log(LogLevel.DEBUG, () -> "📷 相機狀態 " + from + " → " + to);
+        return true;
+    }
+
+    private void submit(Runnable task) {
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    logger.log(LogLevel.ERROR, () -> "❌ 相機狀態機錯誤: " + e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 已關閉：忽略之後的指令與遲到的後端事件
+        }
+    }
+}
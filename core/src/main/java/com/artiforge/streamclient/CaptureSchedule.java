@@ -0,0 +1,70 @@
+package com.artiforge.streamclient;
+
+import org.json.JSONObject;
+
+/**
+ * 定時擷取排程（由 cmd_capture_schedule 下發一次，裝置本地執行）
+ *
+ * payload 欄位：interval_ms（兩次擷取開始的間隔）、burst_ms（每次擷取長度）、
+ * warmup_ms（相機提前開啟的最短時間）、count（次數，0 = 不限）、start_delay_ms（第一次擷取的延遲），
+ * 以及與 cmd_start_stream 相同的串流參數（fps、quality、resolution ...，見 StreamParams）。
+ * enabled 為 false 或缺少 interval_ms / burst_ms 時表示取消排程。超出範圍的值會被夾回合法範圍。
+ */
+public final class CaptureSchedule {
+
+    public static final long DEFAULT_WARMUP_MS = 1_500;
+
+    static final long MIN_INTERVAL_MS = 10_000;
+    static final long MAX_INTERVAL_MS = 24 * 60 * 60_000L;
+    static final long MIN_BURST_MS = 1_000;
+    public static final long MAX_WARMUP_MS = 30_000;
+
+    public final long intervalMs;
+    public final long burstMs;
+    public final long warmupMs;
+    public final int count;
+    public final long startDelayMs;
+    public final StreamParams params;
+
+    public CaptureSchedule(long intervalMs, long burstMs, long warmupMs, int count, long startDelayMs, StreamParams params) {
+        this.intervalMs = clamp(intervalMs, MIN_INTERVAL_MS, MAX_INTERVAL_MS);
+        // 每次擷取之間至少留 1 秒讓相機關閉
+        this.burstMs = clamp(burstMs, MIN_BURST_MS, this.intervalMs - MIN_BURST_MS);
+        this.warmupMs = clamp(warmupMs, 0, MAX_WARMUP_MS);
+        this.count = Math.max(0, count);
+        this.startDelayMs = clamp(startDelayMs, 0, MAX_INTERVAL_MS);
+        this.params = params;
+    }
+
+    /**
+     * 從 socket 事件參數解析；取消排程時回傳 null
+     */
+    public static CaptureSchedule fromEventArgs(Object[] args) {
+        if (args == null || args.length == 0 || !(args[0] instanceof JSONObject)) {
+            return null;
+        }
+        JSONObject json = (JSONObject) args[0];
+        long intervalMs = json.optLong("interval_ms", 0);
+        long burstMs = json.optLong("burst_ms", 0);
+        if (!json.optBoolean("enabled", true) || intervalMs <= 0 || burstMs <= 0) {
+            return null;
+        }
+        return new CaptureSchedule(
+                intervalMs,
+                burstMs,
+                json.optLong("warmup_ms", DEFAULT_WARMUP_MS),
+                json.optInt("count", 0),
+                json.optLong("start_delay_ms", 0),
+                StreamParams.fromEventArgs(args));
+    }
+
+    @Override
+    public String toString() {
+        return "每 " + (intervalMs / 1000) + " 秒擷取 " + (burstMs / 1000) + " 秒"
+                + (count > 0 ? "，共 " + count + " 次" : "") + "，預熱 " + warmupMs + " ms（" + params + "）";
+    }
+
+    private static long clamp(long value, long min, long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,290 @@
+package com.artiforge.streamclient;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 在裝置本地執行 CaptureSchedule：擷取前預熱相機、準時開始、結束後關閉相機直到下一次
+ *
+ *   ──關閉──▶ 預熱（開相機）──▶ 擷取 burst_ms ──▶ 關閉 ──▶ …（下一次 = 上一次原定時間 + interval_ms）
+ *
+ * - 每次擷取的時間以原定時間推算，不受計時器延遲累積漂移；裝置睡過頭、整段擷取時間已過的擷取直接略過並計數
+ *   （略過的也算入 count），不補跑
+ * - 預熱提前量 = max(warmup_ms, 實測最長預熱時間 + 餘裕)，相機實際就緒時由呼叫端回報 onCameraReady
+ * - 兩次擷取間隔不足以關閉相機時保持開啟，只停止串流
+ *
+ * 計時器需準時（排程容許延後 0）；Android 上使用可喚醒裝置的 AlarmManager，JVM 上以 TimerWheel 虛擬時鐘驗證。
+ * 狀態以 this 為鎖，Target 在鎖內呼叫：實作不可阻塞，也不可同步回呼本類別。
+ */
+public final class CaptureScheduleExecutor {
+
+    public static final String CAPTURE_BURSTS = "capture_bursts";
+    public static final String CAPTURE_BURSTS_MISSED = "capture_bursts_missed";
+    public static final String CAPTURE_COLD_STARTS = "capture_cold_starts";
+    public static final String CAPTURE_START_LATE_MS_MAX = "capture_start_late_ms_max";
+    public static final String CAPTURE_WARMUP_MS_LAST = "capture_warmup_ms_last";
+    public static final String CAPTURE_WARMUP_MS_MAX = "capture_warmup_ms_max";
+    public static final String CAPTURE_CAMERA_ON_MS = "capture_camera_on_ms";
+
+    static final long WARMUP_MARGIN_MS = 250;
+    static final long MIN_POWER_DOWN_MS = 2_000;
+
+    /**
+     * 排程動作的執行端（StreamEngine：相機、串流與喚醒鎖）
+     */
+    public interface Target {
+        /** 開啟相機準備擷取 */
+        void warmUp(StreamParams params);
+
+        /** 開始串流（相機尚未就緒時由相機狀態機延後到就緒） */
+        void startBurst(int index, StreamParams params);
+
+        /** 停止串流（相機保持開啟，直到 powerDown） */
+        void endBurst(int index);
+
+        /** 關閉相機，直到下一次預熱 */
+        void powerDown();
+
+        /** 排程結束（次數用完或被取消） */
+        void onScheduleFinished();
+    }
+
+    private final TaskScheduler scheduler;
+    private final TimeSource clock;
+    private final Target target;
+    private final StreamLogger logger;
+
+    private final AtomicLong burstCounter;
+    private final AtomicLong missedCounter;
+    private final AtomicLong coldStartCounter;
+    private final AtomicLong startLateMaxMs;
+    private final AtomicLong warmupLastMs;
+    private final AtomicLong warmupMaxMs;
+    private final AtomicLong cameraOnMs;
+
+    private CaptureSchedule schedule;
+    private int generation = 0;       // apply 時遞增，讓已排定的舊任務失效
+    private int index = 0;            // 下一次（或進行中）擷取的序號
+    private long burstAtMs;           // 下一次（或進行中）擷取的原定開始時間
+    private boolean cameraOn = false;
+    private boolean inBurst = false;
+    private boolean cameraReady = false;
+    private long cameraOnSinceMs;
+    private long warmingSinceMs = -1;
+    private long observedWarmupMs = 0; // 本排程實測最長預熱時間
+    private TaskScheduler.ScheduledTask pending;
+
+    public CaptureScheduleExecutor(TaskScheduler scheduler, TimeSource clock, Target target,
+                                   StreamMetrics metrics, StreamLogger logger) {
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.target = target;
+        this.logger = logger;
+        this.burstCounter = metrics.counter(CAPTURE_BURSTS);
+        this.missedCounter = metrics.counter(CAPTURE_BURSTS_MISSED);
+        this.coldStartCounter = metrics.counter(CAPTURE_COLD_STARTS);
+        this.startLateMaxMs = metrics.counter(CAPTURE_START_LATE_MS_MAX);
+        this.warmupLastMs = metrics.counter(CAPTURE_WARMUP_MS_LAST);
+        this.warmupMaxMs = metrics.counter(CAPTURE_WARMUP_MS_MAX);
+        this.cameraOnMs = metrics.counter(CAPTURE_CAMERA_ON_MS);
+    }
+
+    /**
+     * 套用新排程（取代進行中的排程）；null 表示取消
+     */
+    public synchronized void apply(CaptureSchedule next) {
+        boolean wasActive = schedule != null;
+        if (wasActive) {
+            stopCurrent();
+        }
+        generation++;
+        schedule = next;
+        index = 0;
+        observedWarmupMs = 0;
+        if (next == null) {
+            if (wasActive) {
+                target.onScheduleFinished();
+            }
+            return;
+        }
+        burstAtMs = clock.nowMs() + Math.max(next.startDelayMs, warmupLeadMs());
+        logger.log(LogLevel.INFO, () -> "🗓️ 擷取排程: " + next);
+        armNext();
+    }
+
+    public synchronized boolean isActive() {
+        return schedule != null;
+    }
+
+    /** 排程中相機應該開啟（預熱或擷取中） */
+    public synchronized boolean wantsCamera() {
+        return cameraOn;
+    }
+
+    /**
+     * 相機已開啟並可輸出影格（任何執行緒）；預熱中時記錄預熱耗時
+     */
+    public synchronized void onCameraReady() {
+        cameraReady = true;
+        if (warmingSinceMs < 0) {
+            return;
+        }
+        long warmupMs = clock.nowMs() - warmingSinceMs;
+        warmingSinceMs = -1;
+        warmupLastMs.set(warmupMs);
+        if (warmupMs > warmupMaxMs.get()) {
+            warmupMaxMs.set(warmupMs);
+        }
+        if (warmupMs > observedWarmupMs) {
+            observedWarmupMs = warmupMs;
+        }
+    }
+
+    /**
+     * 相機關閉或出錯（任何執行緒）：下一次擷取開始前需重新就緒
+     */
+    public synchronized void onCameraLost() {
+        cameraReady = false;
+    }
+
+    /** 目前的預熱提前量 */
+    synchronized long warmupLeadMs() {
+        if (schedule == null) {
+            return 0;
+        }
+        long lead = Math.max(schedule.warmupMs, observedWarmupMs > 0 ? observedWarmupMs + WARMUP_MARGIN_MS : 0);
+        return Math.min(lead, schedule.intervalMs - schedule.burstMs);
+    }
+
+    private void armNext() {
+        int expected = generation;
+        long now = clock.nowMs();
+        if (cameraOn) {
+            // 上一次擷取後未關閉相機：直接等開始時間
+            pending = scheduler.schedule(() -> startBurst(expected), burstAtMs - now, 0);
+            return;
+        }
+        long warmAtMs = burstAtMs - warmupLeadMs();
+        pending = scheduler.schedule(() -> warmUp(expected), warmAtMs - now, 0);
+    }
+
+    private synchronized void warmUp(int expected) {
+        if (expected != generation) {
+            return;
+        }
+        long now = clock.nowMs();
+        if (skipMissed(now)) {
+            return;
+        }
+        cameraOn = true;
+        cameraOnSinceMs = now;
+        cameraReady = false;
+        warmingSinceMs = now;
+        target.warmUp(schedule.params);
+        pending = scheduler.schedule(() -> startBurst(expected), burstAtMs - now, 0);
+    }
+
+    private synchronized void startBurst(int expected) {
+        if (expected != generation) {
+            return;
+        }
+        long now = clock.nowMs();
+        if (skipMissed(now)) {
+            return;
+        }
+        long lateMs = now - burstAtMs;
+        if (lateMs > startLateMaxMs.get()) {
+            startLateMaxMs.set(lateMs);
+        }
+        if (!cameraReady) {
+            coldStartCounter.incrementAndGet();
+        }
+        burstCounter.incrementAndGet();
+        inBurst = true;
+        int current = index;
+        logger.log(LogLevel.DEBUG, () -> "🗓️ 第 " + (current + 1) + " 次擷取開始（延遲 " + lateMs + " ms）");
+        target.startBurst(current, schedule.params);
+        pending = scheduler.schedule(() -> endBurst(expected), burstAtMs + schedule.burstMs - now, 0);
+    }
+
+    private synchronized void endBurst(int expected) {
+        if (expected != generation) {
+            return;
+        }
+        inBurst = false;
+        target.endBurst(index);
+        index++;
+        burstAtMs += schedule.intervalMs;
+        long now = clock.nowMs();
+        if (finishIfDone()) {
+            return;
+        }
+        skipMissedSlots(now);
+        if (finishIfDone()) {
+            return;
+        }
+        if (burstAtMs - warmupLeadMs() - now >= MIN_POWER_DOWN_MS) {
+            powerDown();
+        }
+        armNext();
+    }
+
+    /**
+     * 目前這一次的擷取時間已整段過去（裝置延遲喚醒）：關閉相機、略過並排下一次，回傳 true
+     */
+    private boolean skipMissed(long now) {
+        if (burstAtMs + schedule.burstMs > now) {
+            return false;
+        }
+        skipMissedSlots(now);
+        powerDown();
+        if (!finishIfDone()) {
+            armNext();
+        }
+        return true;
+    }
+
+    private void skipMissedSlots(long now) {
+        while (burstAtMs + schedule.burstMs <= now) {
+            missedCounter.incrementAndGet();
+            logger.log(LogLevel.WARN, "⚠️ 錯過第 " + (index + 1) + " 次擷取（裝置延遲喚醒）");
+            burstAtMs += schedule.intervalMs;
+            index++;
+        }
+    }
+
+    private boolean finishIfDone() {
+        if (schedule.count == 0 || index < schedule.count) {
+            return false;
+        }
+        powerDown();
+        logger.log(LogLevel.INFO, "🗓️ 擷取排程完成（" + index + " 次）");
+        schedule = null;
+        generation++;
+        pending = null;
+        target.onScheduleFinished();
+        return true;
+    }
+
+    private void stopCurrent() {
+        if (pending != null) {
+            pending.cancel();
+            pending = null;
+        }
+        if (inBurst) {
+            target.endBurst(index);
+            inBurst = false;
+        }
+        powerDown();
+    }
+
+    private void powerDown() {
+        if (!cameraOn) {
+            return;
+        }
+        cameraOnMs.addAndGet(clock.nowMs() - cameraOnSinceMs);
+        target.powerDown();
+        cameraOn = false;
+        cameraReady = false;
+        warmingSinceMs = -1;
+    }
+}
@@ -0,0 +1,111 @@
+package com.artiforge.streamclient;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 控制指令專用執行緒（cmd_start_stream / cmd_stop_stream / cmd_vibrate ...）
+ *
+ * 指令不再經由主執行緒排在 UI 重繪、日誌、影格回調後面，而是在單一高優先權執行緒上
+ * 依序執行；租約狀態也只在這條執行緒上操作。記錄「收到指令 → 生效」的延遲
+ * （最近 LATENCY_WINDOW 筆另外計算 p99）。
+ */
+public final class ControlLane {
+
+    public static final String CONTROL_COMMANDS = "control_commands";
+    public static final String CONTROL_LATENCY_LAST_US = "control_latency_last_us";
+    public static final String CONTROL_LATENCY_MAX_US = "control_latency_max_us";
+    public static final String CONTROL_LATENCY_P99_US = "control_latency_p99_us";
+
+    static final int LATENCY_WINDOW = 256;
+
+    private final ExecutorService executor;
+    private final StreamLogger logger;
+    private final AtomicLong commands;
+    private final AtomicLong lastLatencyUs;
+    private final AtomicLong maxLatencyUs;
+    private final long[] recentLatencyUs = new long[LATENCY_WINDOW];
+    private int recentNext = 0;
+    private int recentCount = 0;
+
+    public ControlLane(StreamMetrics metrics, StreamLogger logger) {
+        this.logger = logger;
+        this.commands = metrics.counter(CONTROL_COMMANDS);
+        this.lastLatencyUs = metrics.counter(CONTROL_LATENCY_LAST_US);
+        this.maxLatencyUs = metrics.counter(CONTROL_LATENCY_MAX_US);
+        metrics.registerGauge(CONTROL_LATENCY_P99_US, this::recentP99Us);
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ControlLane");
+            thread.setPriority(Thread.MAX_PRIORITY);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 提交收到的指令（在 socket 事件執行緒上呼叫，立即返回）
+     */
+    public void submit(String name, Runnable command) {
+        long receivedNs = System.nanoTime();
+        execute(() -> {
+            try {
+                command.run();
+            } finally {
+                long latencyUs = (System.nanoTime() - receivedNs) / 1000;
+                commands.incrementAndGet();
+                lastLatencyUs.set(latencyUs);
+                if (latencyUs > maxLatencyUs.get()) {
+                    maxLatencyUs.set(latencyUs);
+                }
+                synchronized (recentLatencyUs) {
+                    recentLatencyUs[recentNext] = latencyUs;
+                    recentNext = (recentNext + 1) % LATENCY_WINDOW;
+                    recentCount = Math.min(recentCount + 1, LATENCY_WINDOW);
+                }
+                logger.log(LogLevel.DEBUG, () -> "⚡ 指令 " + name + " 生效耗時 " + latencyUs + " µs");
+            }
+        });
+    }
+
+    /**
+     * 在控制執行緒上執行內部工作（例如租約到期檢查），不計入指令延遲
+     */
+    public void execute(Runnable task) {
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    logger.log(LogLevel.ERROR, () -> "❌ 控制指令錯誤: " + e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 已關閉：忽略關閉後才到的指令
+        }
+    }
+
+    /**
+     * 最近 LATENCY_WINDOW 筆指令延遲的 p99（微秒）；還沒有指令時為 0
+     */
+    long recentP99Us() {
+        long[] sorted;
+        synchronized (recentLatencyUs) {
+            sorted = Arrays.copyOf(recentLatencyUs, recentCount);
+        }
+        if (sorted.length == 0) {
+            return 0;
+        }
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * 0.99) - 1)];
+    }
+
+    /**
+     * 停止接收新指令（已排隊的指令仍會執行完）
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,84 @@
+package com.artiforge.streamclient;
+
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * UDP 影格封包的加密與驗證（AES-GCM，標頭為附加驗證資料）
+ *
+ * 金鑰由伺服器在 cmd_udp_transport 經已驗證的 Socket.IO 連線給出（每次開啟都應換新）。
+ * nonce 由標頭組成：senderId(4) frameId(4) index(2) flags(1) 0(1)；
+ * senderId 是送出端每次建立時隨機產生的，同一把金鑰重複使用時 nonce 也不會重複。
+ * 竄改或偽造的封包（包含只改標頭）在解密時即被拒絕。
+ *
+ * 不是執行緒安全的：送出端與接收端各自持有一個實例。
+ */
+final class DatagramCipher {
+
+    static final int TAG_SIZE = 16;
+    private static final int NONCE_SIZE = 12;
+
+    private final SecretKeySpec key;
+    private final Cipher cipher;
+    private final byte[] nonce = new byte[NONCE_SIZE];
+
+    DatagramCipher(byte[] key) {
+        if (key == null || (key.length != 16 && key.length != 32)) {
+            throw new IllegalArgumentException("UDP 金鑰需為 16 或 32 位元組");
+        }
+        this.key = new SecretKeySpec(key.clone(), "AES");
+        try {
+            this.cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-GCM 不可用", e);
+        }
+    }
+
+    /**
+     * 加密 src 並放在 packet 的標頭之後（標頭需已寫入 packet）
+     *
+     * @return 封包總長度（標頭 + 密文 + 驗證碼）
+     */
+    int seal(FrameDatagram header, byte[] packet, byte[] src, int srcOffset, int length) throws GeneralSecurityException {
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_SIZE * 8, nonceOf(header)));
+        cipher.updateAAD(packet, 0, FrameDatagram.HEADER_SIZE);
+        return FrameDatagram.HEADER_SIZE
+                + cipher.doFinal(src, srcOffset, length, packet, FrameDatagram.HEADER_SIZE);
+    }
+
+    /**
+     * 驗證並解密封包內容到 out[0, header.payloadLength)；header 需已由 FrameDatagram.read 解析
+     *
+     * @return false 代表封包遭竄改、偽造或金鑰不符
+     */
+    boolean open(FrameDatagram header, byte[] packet, int offset, byte[] out) {
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_SIZE * 8, nonceOf(header)));
+            cipher.updateAAD(packet, offset, FrameDatagram.HEADER_SIZE);
+            int length = cipher.doFinal(packet, offset + FrameDatagram.HEADER_SIZE, header.payloadLength + TAG_SIZE, out, 0);
+            return length == header.payloadLength;
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            return false; // 含 AEADBadTagException（驗證碼不符）
+        }
+    }
+
+    private byte[] nonceOf(FrameDatagram header) {
+        putInt(nonce, 0, header.senderId);
+        putInt(nonce, 4, header.frameId);
+        nonce[8] = (byte) (header.index >>> 8);
+        nonce[9] = (byte) header.index;
+        nonce[10] = (byte) header.flags;
+        nonce[11] = 0;
+        return nonce;
+    }
+
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,300 @@
+package com.artiforge.streamclient;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 實驗性 UDP 影格傳輸（接收端參考實作，供伺服器移植與本機模擬使用）
+ *
+ * - 依 frameId 收集片段；組內缺一個片段且同位封包已到時以 XOR 還原
+ * - 同一層級較新的影格完成後，較舊的未完成影格直接丟棄（即時觀看只要最新畫面）
+ * - 未完成影格超過 maxAssemblyMs 或待組數超過上限時丟棄；遲到 / 重複封包忽略
+ * - 每個封包先以金鑰驗證並解密，驗證失敗（偽造、竄改、金鑰不符）計入 packetsInvalid，不影響組裝狀態
+ * - 送出端重建（新的 senderId）時重設組裝狀態；舊 senderId 的封包（遲到或重放）一律忽略
+ *
+ * 每個實例對應一個 token（由呼叫者分流）；不是執行緒安全的。
+ */
+public final class DatagramFrameReassembler {
+
+    public interface Listener {
+        /** data 的有效範圍為 [0, length)；recovered 代表至少一個片段由同位封包還原 */
+        void onFrame(int frameId, FrameLayer layer, byte[] data, int length, boolean recovered);
+    }
+
+    static final int MAX_PENDING_FRAMES = 8;
+    static final int MAX_RETIRED_SENDERS = 16;
+
+    private final TimeSource clock;
+    private final long maxAssemblyMs;
+    private final Listener listener;
+    private final DatagramCipher cipher;
+    private final FrameDatagram header = new FrameDatagram();
+    private final byte[] plain = new byte[FrameDatagram.FRAGMENT_SIZE];
+    private final Map<Integer, Partial> pending = new LinkedHashMap<>();
+    private final Set<Integer> retiredSenders = new LinkedHashSet<>();
+    private int senderId;
+    private boolean hasSender = false;
+
+    // 各層級最後送出的 frameId（較舊的封包一律忽略）
+    private final int[] lastDelivered = new int[FrameLayer.values().length];
+    private final boolean[] hasDelivered = new boolean[FrameLayer.values().length];
+
+    private long framesDelivered = 0;
+    private long framesRecovered = 0;
+    private long framesDropped = 0;
+    private long packetsInvalid = 0;
+
+    /**
+     * @param key 與送出端相同的 AES 金鑰（16 或 32 位元組）
+     */
+    public DatagramFrameReassembler(byte[] key, TimeSource clock, long maxAssemblyMs, Listener listener) {
+        this.cipher = new DatagramCipher(key);
+        this.clock = clock;
+        this.maxAssemblyMs = maxAssemblyMs;
+        this.listener = listener;
+    }
+
+    public void onDatagram(byte[] packet, int offset, int length) {
+        if (!header.read(packet, offset, length) || header.payloadLength > plain.length
+                || retiredSenders.contains(header.senderId)
+                || !cipher.open(header, packet, offset, plain)) {
+            packetsInvalid++;
+            return;
+        }
+        if (!hasSender || header.senderId != senderId) {
+            switchSender(header.senderId);
+        }
+        long now = clock.nowMs();
+        expire(now);
+
+        FrameLayer layer = header.layer();
+        int layerIndex = layer.ordinal();
+        if (hasDelivered[layerIndex] && header.frameId - lastDelivered[layerIndex] <= 0) {
+            return; // 遲到或重複
+        }
+
+        Partial partial = pending.get(header.frameId);
+        if (partial == null) {
+            if (pending.size() >= MAX_PENDING_FRAMES) {
+                dropOldest();
+            }
+            partial = new Partial(header, layer, now);
+            pending.put(header.frameId, partial);
+        } else if (!partial.matches(header)) {
+            packetsInvalid++;
+            return;
+        }
+
+        if (header.isParity()) {
+            partial.addParity(header.index, plain, 0, header.payloadLength);
+        } else if (header.payloadLength == partial.fragmentLength(header.index)) {
+            partial.addData(header.index, plain, 0);
+        } else {
+            packetsInvalid++;
+            return;
+        }
+
+        if (partial.isComplete()) {
+            complete(partial);
+        }
+    }
+
+    /**
+     * 丟棄組裝超時的影格（收到封包時也會自動呼叫）
+     */
+    public void expire(long now) {
+        Iterator<Partial> it = pending.values().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().firstSeenMs > maxAssemblyMs) {
+                it.remove();
+                framesDropped++;
+            }
+        }
+    }
+
+    public long framesDelivered() {
+        return framesDelivered;
+    }
+
+    public long framesRecovered() {
+        return framesRecovered;
+    }
+
+    public long framesDropped() {
+        return framesDropped;
+    }
+
+    public long packetsInvalid() {
+        return packetsInvalid;
+    }
+
+    public int pendingFrames() {
+        return pending.size();
+    }
+
+    private void complete(Partial partial) {
+        pending.remove(partial.frameId);
+        int layerIndex = partial.layer.ordinal();
+        lastDelivered[layerIndex] = partial.frameId;
+        hasDelivered[layerIndex] = true;
+
+        // 同層級較舊的未完成影格已無價值
+        Iterator<Partial> it = pending.values().iterator();
+        while (it.hasNext()) {
+            Partial older = it.next();
+            if (older.layer == partial.layer && older.frameId - partial.frameId < 0) {
+                it.remove();
+                framesDropped++;
+            }
+        }
+
+        framesDelivered++;
+        if (partial.recovered) {
+            framesRecovered++;
+        }
+        listener.onFrame(partial.frameId, partial.layer, partial.assemble(), partial.frameLength, partial.recovered);
+    }
+
+    /**
+     * 送出端重建：未完成的影格作廢，frameId 從頭計算
+     */
+    private void switchSender(int newSenderId) {
+        if (hasSender) {
+            retiredSenders.add(senderId);
+            if (retiredSenders.size() > MAX_RETIRED_SENDERS) {
+                Iterator<Integer> it = retiredSenders.iterator();
+                it.next();
+                it.remove();
+            }
+            framesDropped += pending.size();
+            pending.clear();
+            Arrays.fill(hasDelivered, false);
+        }
+        senderId = newSenderId;
+        hasSender = true;
+    }
+
+    private void dropOldest() {
+        Iterator<Partial> it = pending.values().iterator();
+        it.next();
+        it.remove();
+        framesDropped++;
+    }
+
+    private static final class Partial {
+        final int frameId;
+        final FrameLayer layer;
+        final int dataCount;
+        final int fecGroupSize;
+        final int frameLength;
+        final int fragmentSize;
+        final long firstSeenMs;
+        final byte[][] fragments;
+        final byte[][] parities;
+        int received = 0;
+        boolean recovered = false;
+
+        Partial(FrameDatagram header, FrameLayer layer, long now) {
+            this.frameId = header.frameId;
+            this.layer = layer;
+            this.dataCount = header.dataCount;
+            this.fecGroupSize = header.fecGroupSize;
+            this.frameLength = header.frameLength;
+            this.fragmentSize = header.fragmentSize;
+            this.firstSeenMs = now;
+            this.fragments = new byte[dataCount][];
+            this.parities = fecGroupSize > 0 ? new byte[(dataCount + fecGroupSize - 1) / fecGroupSize][] : new byte[0][];
+        }
+
+        boolean matches(FrameDatagram header) {
+            return header.dataCount == dataCount && header.frameLength == frameLength
+                    && header.fragmentSize == fragmentSize && header.fecGroupSize == fecGroupSize;
+        }
+
+        int fragmentLength(int index) {
+            return FrameDatagram.fragmentLength(index, dataCount, frameLength, fragmentSize);
+        }
+
+        void addData(int index, byte[] packet, int offset) {
+            if (index >= dataCount || fragments[index] != null) {
+                return;
+            }
+            byte[] copy = new byte[fragmentLength(index)];
+            System.arraycopy(packet, offset, copy, 0, copy.length);
+            fragments[index] = copy;
+            received++;
+            if (fecGroupSize > 0) {
+                tryRecover(index / fecGroupSize);
+            }
+        }
+
+        void addParity(int group, byte[] packet, int offset, int length) {
+            if (group >= parities.length || parities[group] != null) {
+                return;
+            }
+            byte[] copy = new byte[length];
+            System.arraycopy(packet, offset, copy, 0, length);
+            parities[group] = copy;
+            tryRecover(group);
+        }
+
+        boolean isComplete() {
+            return received == dataCount;
+        }
+
+        byte[] assemble() {
+            byte[] data = new byte[frameLength];
+            for (int i = 0; i < dataCount; i++) {
+                System.arraycopy(fragments[i], 0, data, i * fragmentSize, fragments[i].length);
+            }
+            return data;
+        }
+
+        /**
+         * 組內只缺一個片段時：同位 XOR 其餘片段即為遺失的片段
+         */
+        private void tryRecover(int group) {
+            byte[] parity = parities[group];
+            if (parity == null) {
+                return;
+            }
+            int start = group * fecGroupSize;
+            int end = Math.min(start + fecGroupSize, dataCount);
+            int missing = -1;
+            for (int i = start; i < end; i++) {
+                if (fragments[i] == null) {
+                    if (missing >= 0) {
+                        return; // 缺兩個以上，無法還原
+                    }
+                    missing = i;
+                }
+            }
+            if (missing < 0) {
+                return;
+            }
+            int length = fragmentLength(missing);
+            if (length > parity.length) {
+                return;
+            }
+            byte[] restored = new byte[length];
+            System.arraycopy(parity, 0, restored, 0, length);
+            for (int i = start; i < end; i++) {
+                if (i == missing) {
+                    continue;
+                }
+                byte[] fragment = fragments[i];
+                int limit = Math.min(length, fragment.length);
+                for (int b = 0; b < limit; b++) {
+                    restored[b] ^= fragment[b];
+                }
+            }
+            fragments[missing] = restored;
+            received++;
+            recovered = true;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.artiforge.streamclient;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 實驗性 UDP 影格傳輸（送出端）
+ *
+ * 行動網路壅塞時，TCP 上傳會因隊頭阻塞讓整張影格逾時；改以 UDP 送出片段 + XOR 同位封包，
+ * 無法重組的影格直接放棄，不重送。控制與註冊仍走 Socket.IO。
+ * 格式見 FrameDatagram；送出在單一執行緒（FrameBus 訂閱者）上進行，封包緩衝區重複使用。
+ * 每個封包以伺服器給的金鑰加密並驗證（DatagramCipher），同一網路上的其他人無法偷看或偽造影格。
+ *
+ * 送出速率受 BandwidthEstimator 的壅塞視窗限制：每個最小 RTT 最多送出一個視窗的位元組，
+ * 封包依此平均分散（不一次灌出整張影格）。UDP 沒有逐張確認，視窗沿用 HTTP 上傳量到的值，
+ * 尚無量測時為初始視窗、RTT 以 DEFAULT_PACING_RTT_MS 計。排不進影格期限的影格直接丟棄。
+ */
+public final class DatagramFrameSender implements Closeable {
+
+    public static final String UDP_FRAMES_SENT = "udp_frames_sent";
+    public static final String UDP_PACKETS_SENT = "udp_packets_sent";
+    public static final String UDP_SEND_ERRORS = "udp_send_errors";
+    public static final String UDP_PACING_WAIT_MS = "udp_pacing_wait_ms";
+
+    /** 每 4 個片段一個同位封包（額外 25% 流量，每組可還原一個遺失） */
+    public static final int DEFAULT_FEC_GROUP = 4;
+
+    static final long DEFAULT_PACING_RTT_MS = 100;
+    /** 允許提早送出的時間（小於這個差距不等待，避免每個封包都睡） */
+    static final long PACING_SLACK_MS = 2;
+
+    private final DatagramSocket socket;
+    private final int token;
+    private final int senderId;
+    private final DatagramCipher cipher;
+    private final int fecGroupSize;
+    private final BandwidthEstimator estimator;
+    private final TimeSource clock;
+
+    private final AtomicLong framesSent;
+    private final AtomicLong packetsSent;
+    private final AtomicLong sendErrors;
+    private final AtomicLong staleBeforeSend;
+    private final AtomicLong pacingWaitMs;
+
+    private final byte[] packet = new byte[FrameDatagram.MAX_DATAGRAM];
+    private final byte[] parity = new byte[FrameDatagram.FRAGMENT_SIZE]; // 明文同位，組尾才加密送出
+    private final DatagramPacket datagram = new DatagramPacket(packet, packet.length);
+    private final FrameDatagram header = new FrameDatagram();
+    private int nextFrameId = 0;
+    private double nextSendMs = 0; // 下一個封包最早的送出時間
+    private double bytesPerMs;     // 本張影格的送出速率
+    private volatile int consecutiveErrors = 0;
+    private volatile IOException lastError;
+
+    /**
+     * @param key          AES 金鑰（16 或 32 位元組，cmd_udp_transport 給出）
+     * @param fecGroupSize 每組資料片段數（1–255）；0 代表不送同位封包
+     */
+    public DatagramFrameSender(InetSocketAddress target, int token, byte[] key, int fecGroupSize,
+                               BandwidthEstimator estimator, TimeSource clock, StreamMetrics metrics)
+            throws SocketException {
+        if (fecGroupSize < 0 || fecGroupSize > 255) {
+            throw new IllegalArgumentException("fecGroupSize 超出範圍: " + fecGroupSize);
+        }
+        this.cipher = new DatagramCipher(key);
+        this.socket = new DatagramSocket();
+        this.socket.connect(target);
+        this.token = token;
+        this.senderId = new SecureRandom().nextInt();
+        this.fecGroupSize = fecGroupSize;
+        this.estimator = estimator;
+        this.clock = clock;
+        this.framesSent = metrics.counter(UDP_FRAMES_SENT);
+        this.packetsSent = metrics.counter(UDP_PACKETS_SENT);
+        this.sendErrors = metrics.counter(UDP_SEND_ERRORS);
+        this.staleBeforeSend = metrics.counter(StreamMetrics.FRAMES_STALE_BEFORE_SEND);
+        this.pacingWaitMs = metrics.counter(UDP_PACING_WAIT_MS);
+    }
+
+    /**
+     * 切片並依壅塞視窗分散送出一張影格（呼叫者保有自己的參考，送出期間同步讀取；可能等待）
+     *
+     * @return false 代表影格已過期（含排不進期限）、送出失敗或等待時被中斷
+     */
+    public synchronized boolean send(EncodedFrame frame) {
+        long now = clock.nowMs();
+        // 閒置過後不累積額度
+        nextSendMs = Math.max(nextSendMs, now - PACING_SLACK_MS);
+        bytesPerMs = pacingRate();
+        if (frame.isExpired(now) || nextSendMs > frame.deadlineMs) {
+            staleBeforeSend.incrementAndGet();
+            return false;
+        }
+        byte[] data = frame.data();
+        int frameLength = frame.length();
+        int fragmentSize = FrameDatagram.FRAGMENT_SIZE;
+        int dataCount = (frameLength + fragmentSize - 1) / fragmentSize;
+
+        header.fecGroupSize = fecGroupSize;
+        header.token = token;
+        header.senderId = senderId;
+        header.frameId = nextFrameId++;
+        header.dataCount = dataCount;
+        header.frameLength = frameLength;
+        header.fragmentSize = fragmentSize;
+        int layerFlag = frame.layer == FrameLayer.LOW ? FrameDatagram.FLAG_LAYER_LOW : 0;
+
+        try {
+            int parityLength = 0;
+            for (int i = 0; i < dataCount; i++) {
+                int offset = i * fragmentSize;
+                int length = FrameDatagram.fragmentLength(i, dataCount, frameLength, fragmentSize);
+
+                header.flags = layerFlag;
+                header.index = i;
+                header.payloadLength = length;
+                header.write(packet);
+                int packetLength = cipher.seal(header, packet, data, offset, length);
+                if (!pace(frame)) {
+                    return false;
+                }
+                transmit(packetLength);
+
+                if (fecGroupSize == 0) {
+                    continue;
+                }
+                // 同位：組內片段 XOR（較短的片段視為補零）
+                int slot = i % fecGroupSize;
+                for (int b = 0; b < length; b++) {
+                    byte value = data[offset + b];
+                    parity[b] = slot == 0 || b >= parityLength ? value : (byte) (parity[b] ^ value);
+                }
+                parityLength = slot == 0 ? length : Math.max(parityLength, length);
+
+                boolean groupEnd = slot == fecGroupSize - 1 || i == dataCount - 1;
+                if (groupEnd) {
+                    header.flags = layerFlag | FrameDatagram.FLAG_PARITY;
+                    header.index = i / fecGroupSize;
+                    header.payloadLength = parityLength;
+                    header.write(packet);
+                    int parityPacketLength = cipher.seal(header, packet, parity, 0, parityLength);
+                    if (!pace(frame)) {
+                        return false;
+                    }
+                    transmit(parityPacketLength);
+                }
+            }
+            framesSent.incrementAndGet();
+            consecutiveErrors = 0;
+            return true;
+        } catch (IOException e) {
+            return failed(e);
+        } catch (GeneralSecurityException e) {
+            return failed(new IOException("UDP 封包加密失敗", e));
+        }
+    }
+
+    /**
+     * 解析十六進位金鑰（cmd_udp_transport 的 key）；格式或長度不符時回傳 null
+     */
+    public static byte[] parseKey(String hex) {
+        if (hex == null || (hex.length() != 32 && hex.length() != 64)) {
+            return null;
+        }
+        byte[] key = new byte[hex.length() / 2];
+        for (int i = 0; i < key.length; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            key[i] = (byte) (high << 4 | low);
+        }
+        return key;
+    }
+
+    /** 連續送出失敗（socket 錯誤，不含過期丟棄）的影格數；成功送出一張即歸零 */
+    public int consecutiveErrors() {
+        return consecutiveErrors;
+    }
+
+    public IOException lastError() {
+        return lastError;
+    }
+
+    @Override
+    public void close() {
+        socket.close();
+    }
+
+    /**
+     * 等到下一個封包的送出時間；影格在等待中過期或被中斷時放棄整張影格
+     */
+    private boolean pace(EncodedFrame frame) {
+        long now = clock.nowMs();
+        long waitMs = (long) Math.ceil(nextSendMs - now);
+        if (waitMs > PACING_SLACK_MS) {
+            try {
+                Thread.sleep(waitMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            pacingWaitMs.addAndGet(waitMs);
+            now = clock.nowMs();
+        }
+        // 睡過頭不累積額度，否則醒來後會一次補送
+        nextSendMs = Math.max(nextSendMs, now - PACING_SLACK_MS);
+        if (frame.isExpired(now)) {
+            staleBeforeSend.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 每毫秒可送出的位元組：一個壅塞視窗 / 最小 RTT
+     */
+    private double pacingRate() {
+        long rttMs = estimator.minRttMs();
+        if (rttMs <= 0) {
+            rttMs = DEFAULT_PACING_RTT_MS;
+        }
+        return (double) estimator.congestionWindowBytes() / rttMs;
+    }
+
+    private boolean failed(IOException e) {
+        sendErrors.incrementAndGet();
+        consecutiveErrors++;
+        lastError = e;
+        return false;
+    }
+
+    private void transmit(int length) throws IOException {
+        datagram.setData(packet, 0, length);
+        socket.send(datagram);
+        packetsSent.incrementAndGet();
+        nextSendMs += length / bytesPerMs;
+    }
+}
@@ -0,0 +1,126 @@
+package com.artiforge.streamclient;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 全 App 共用的排程執行緒（取代分散在各處的 Handler.postDelayed 鏈）
+ *
+ * 以 TimerWheel 合併相近時間的任務，只在有任務到期時喚醒；任務在排程執行緒上執行，
+ * 需要操作 UI 的任務自行 post 到主執行緒。
+ */
+public final class DeviceScheduler implements TaskScheduler {
+
+    public static final String WAKEUPS_PER_HOUR = "scheduler_wakeups_per_hour";
+    public static final String PENDING_TASKS = "scheduler_pending_tasks";
+
+    private static DeviceScheduler shared;
+
+    private final TimeSource clock;
+    private final TimerWheel wheel;
+    private final long startedAtMs;
+    private volatile StreamLogger logger;
+    private volatile boolean running = true;
+
+    /**
+     * 取得共用排程器（第一次呼叫時啟動執行緒）
+     */
+    public static synchronized DeviceScheduler shared() {
+        if (shared == null) {
+            shared = new DeviceScheduler(TimeSource.MONOTONIC);
+            shared.start();
+        }
+        return shared;
+    }
+
+    DeviceScheduler(TimeSource clock) {
+        this.clock = clock;
+        this.wheel = new TimerWheel(clock);
+        this.startedAtMs = clock.nowMs();
+    }
+
+    @Override
+    public ScheduledTask schedule(Runnable task, long delayMs, long toleranceMs) {
+        return wheel.schedule(task, delayMs, toleranceMs);
+    }
+
+    @Override
+    public ScheduledTask scheduleAtFixedRate(Runnable task, long periodMs, long toleranceMs) {
+        return wheel.scheduleAtFixedRate(task, periodMs, toleranceMs);
+    }
+
+    /**
+     * 任務拋出例外時記錄到此 logger（未設定時只略過該次執行）
+     */
+    public void setLogger(StreamLogger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * 將喚醒次數 / 待執行任務數註冊到 metrics
+     */
+    public void registerGauges(StreamMetrics metrics) {
+        metrics.registerGauge(WAKEUPS_PER_HOUR, this::wakeupsPerHour);
+        metrics.registerGauge(PENDING_TASKS, wheel::pendingCount);
+    }
+
+    public long wakeupsPerHour() {
+        long elapsed = clock.nowMs() - startedAtMs;
+        return elapsed > 0 ? wheel.wakeups() * 3_600_000L / elapsed : 0;
+    }
+
+    void start() {
+        Thread thread = new Thread(this::loop, "DeviceScheduler");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void shutdown() {
+        running = false;
+        synchronized (wheel) {
+            wheel.notifyAll();
+        }
+    }
+
+    private void loop() {
+        List<TimerWheel.Timeout> expired = new ArrayList<>();
+        while (running) {
+            try {
+                synchronized (wheel) {
+                    // 新任務插入時 TimerWheel 會 notifyAll，重新計算等待時間
+                    long next;
+                    while (running && (next = wheel.nextWakeupMs()) > clock.nowMs()) {
+                        if (next == Long.MAX_VALUE) {
+                            wheel.wait();
+                        } else {
+                            wheel.wait(Math.max(1, next - clock.nowMs()));
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (!running) {
+                return;
+            }
+
+            wheel.collectExpired(clock.nowMs(), expired);
+            for (TimerWheel.Timeout timeout : expired) {
+                // 取出後、執行前可能已被取消（例如 ReconnectManager.stop）
+                if (timeout.cancelled) {
+                    continue;
+                }
+                try {
+                    timeout.task.run();
+                } catch (RuntimeException e) {
+                    StreamLogger current = logger;
+                    if (current != null) {
+                        current.log(LogLevel.ERROR, () -> "❌ 排程任務錯誤: " + e.getMessage());
+                    }
+                }
+                wheel.rearm(timeout);
+            }
+            expired.clear();
+        }
+    }
+}
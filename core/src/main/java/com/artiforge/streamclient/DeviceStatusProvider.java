@@ -0,0 +1,27 @@
+package com.artiforge.streamclient;
+
+/**
+ * 裝置溫度與電池狀態來源（Android 由 PowerManager / BatteryManager 提供，JVM 上可用替身）
+ *
+ * 由 PerformanceGovernor 在排程執行緒上週期讀取，實作需可從任何執行緒呼叫且不阻塞。
+ */
+public interface DeviceStatusProvider {
+
+    // 與 PowerManager.THERMAL_STATUS_* 相同的數值
+    int THERMAL_NONE = 0;
+    int THERMAL_LIGHT = 1;
+    int THERMAL_MODERATE = 2;
+    int THERMAL_SEVERE = 3;
+    int THERMAL_CRITICAL = 4;
+    int THERMAL_EMERGENCY = 5;
+    int THERMAL_SHUTDOWN = 6;
+
+    /** 目前溫度狀態（THERMAL_*；不支援的系統回傳 THERMAL_NONE） */
+    int thermalStatus();
+
+    /** 電量百分比 0–100，無法取得時回傳 -1 */
+    int batteryPercent();
+
+    /** 是否正在充電 */
+    boolean isCharging();
+}
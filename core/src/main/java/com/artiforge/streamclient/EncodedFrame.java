@@ -0,0 +1,110 @@
+package com.artiforge.streamclient;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 已編碼影格（JPEG）與其新鮮度期限，以參考計數管理底層緩衝區
+ *
+ * 期限 = 擷取時間 + 最大允許延遲；超過期限的影格對即時觀看已無價值，
+ * 管線在編碼前、排隊前、送出前都會檢查並丟棄。時間皆為 TimeSource.MONOTONIC。
+ *
+ * 建立時參考計數為 1（由建立者持有）；每個需要非同步保留影格的使用者先 retain()，
+ * 用完 release()。計數歸零時緩衝區歸還 FramePool，之後不可再讀取 data()。
+ */
+public final class EncodedFrame {
+
+    /** 預設最大允許延遲（伺服器可在 cmd_start_stream 以 max_age_ms 覆寫） */
+    public static final long DEFAULT_MAX_AGE_MS = 1500;
+
+    public final long captureTimeMs;
+    public final long deadlineMs;
+    /** Simulcast 層級（單一串流時為 HIGH） */
+    public final FrameLayer layer;
+
+    private final FramePool pool; // null 代表不回收（一般 byte[]）
+    private final int length;
+    private final AtomicInteger refCount = new AtomicInteger(1);
+    private byte[] data;
+
+    public EncodedFrame(byte[] jpegData, long captureTimeMs, long deadlineMs) {
+        this(null, jpegData, jpegData.length, captureTimeMs, deadlineMs, FrameLayer.HIGH);
+    }
+
+    EncodedFrame(FramePool pool, byte[] data, int length, long captureTimeMs, long deadlineMs, FrameLayer layer) {
+        this.pool = pool;
+        this.data = data;
+        this.length = length;
+        this.captureTimeMs = captureTimeMs;
+        this.deadlineMs = deadlineMs;
+        this.layer = layer;
+    }
+
+    /**
+     * JPEG 資料，有效範圍為 [0, length())；陣列可能比影格大，不可直接使用 data().length
+     */
+    public byte[] data() {
+        byte[] current = data;
+        if (current == null || refCount.get() <= 0) {
+            throw new IllegalStateException("影格已釋放");
+        }
+        return current;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public boolean isExpired(long nowMs) {
+        return nowMs > deadlineMs;
+    }
+
+    /**
+     * 增加一個持有者（回傳自身方便串接）
+     */
+    public EncodedFrame retain() {
+        while (true) {
+            int current = refCount.get();
+            if (current <= 0) {
+                throw new IllegalStateException("影格已釋放，無法 retain");
+            }
+            if (refCount.compareAndSet(current, current + 1)) {
+                return this;
+            }
+        }
+    }
+
+    /**
+     * 釋放一個持有者；最後一個釋放時歸還緩衝區
+     */
+    public void release() {
+        int remaining = refCount.decrementAndGet();
+        if (remaining == 0) {
+            byte[] buffer = data;
+            data = null;
+            if (pool != null) {
+                pool.recycle(buffer);
+            }
+        } else if (remaining < 0) {
+            throw new IllegalStateException("影格重複釋放");
+        }
+    }
+
+    public int refCount() {
+        return refCount.get();
+    }
+
+    /**
+     * 由感測器時間戳（Image.getTimestamp，奈秒）推算擷取時間（TimeSource.MONOTONIC）
+     *
+     * 感測器時間戳在多數裝置與 System.nanoTime 同基準（CLOCK_MONOTONIC）；
+     * 若基準不同（例如 BOOTTIME）換算出的延遲不合理，改用目前時間。
+     */
+    public static long captureTimeMs(long sensorTimestampNs) {
+        long nowMs = TimeSource.MONOTONIC.nowMs();
+        long ageMs = (System.nanoTime() - sensorTimestampNs) / 1_000_000L;
+        if (ageMs < 0 || ageMs > 10_000) {
+            return nowMs;
+        }
+        return nowMs - ageMs;
+    }
+}
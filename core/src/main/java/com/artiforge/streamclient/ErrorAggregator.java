@@ -0,0 +1,212 @@
+package com.artiforge.streamclient;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 錯誤彙整與限流（取代每行錯誤各送一次 error_report）
+ *
+ * - 以指紋（數字正規化後的訊息）合併重複錯誤，記錄次數與首次/最後時間
+ * - 每個回報週期只送一份批次報告
+ * - 硬上限：同時追蹤的指紋數、單則訊息長度、每分鐘報告數
+ *
+ * 每分鐘上限以單調時間計算（系統時間調整不會讓報告被壓住或上限被重置），
+ * 牆上時間只用於回報的時間戳。
+ *
+ * 執行緒安全：record / drain 可由任意執行緒呼叫
+ */
+public final class ErrorAggregator {
+
+    public static final int DEFAULT_MAX_FINGERPRINTS = 32;
+    public static final int DEFAULT_MAX_REPORTS_PER_MINUTE = 6;
+    static final int MAX_MESSAGE_LENGTH = 300;
+    static final int MAX_FINGERPRINT_LENGTH = 120;
+    private static final long ONE_MINUTE_MS = 60_000L;
+
+    public static final class Entry {
+        public final String fingerprint;
+        public final String message;  // 第一次出現時的原始訊息
+        public final String context;  // 第一次出現時的上一行日誌
+        public final long firstMs;
+        long lastMs;
+        int count;
+
+        Entry(String fingerprint, String message, String context, long nowMs) {
+            this.fingerprint = fingerprint;
+            this.message = message;
+            this.context = context;
+            this.firstMs = nowMs;
+            this.lastMs = nowMs;
+            this.count = 1;
+        }
+
+        public long lastMs() {
+            return lastMs;
+        }
+
+        public int count() {
+            return count;
+        }
+    }
+
+    public static final class Batch {
+        public final long windowStartMs;
+        public final long windowEndMs;
+        public final List<Entry> entries;
+        public final int totalCount;
+        /** 因指紋上限而未被追蹤的錯誤次數 */
+        public final int droppedCount;
+
+        Batch(long windowStartMs, long windowEndMs, List<Entry> entries, int totalCount, int droppedCount) {
+            this.windowStartMs = windowStartMs;
+            this.windowEndMs = windowEndMs;
+            this.entries = entries;
+            this.totalCount = totalCount;
+            this.droppedCount = droppedCount;
+        }
+
+        /** 次數最多的錯誤（相容舊版 error_report 的 error 欄位） */
+        public Entry top() {
+            Entry top = entries.get(0);
+            for (Entry e : entries) {
+                if (e.count > top.count) {
+                    top = e;
+                }
+            }
+            return top;
+        }
+    }
+
+    private final TimeSource clock;
+    private final TimeSource wallClock;
+    private final int maxFingerprints;
+    private final long[] reportTimes; // 最近送出的報告時間（環形）
+    private int reportIndex = 0;
+
+    private final Map<String, Entry> pending = new LinkedHashMap<>();
+    private long windowStartMs = -1;
+    private int droppedCount = 0;
+    private int suppressedReports = 0;
+
+    public ErrorAggregator(TimeSource clock, TimeSource wallClock) {
+        this(clock, wallClock, DEFAULT_MAX_FINGERPRINTS, DEFAULT_MAX_REPORTS_PER_MINUTE);
+    }
+
+    /**
+     * @param clock     每分鐘上限用（TimeSource.MONOTONIC）
+     * @param wallClock 回報的時間戳（首次 / 最後時間、週期起訖）
+     */
+    public ErrorAggregator(TimeSource clock, TimeSource wallClock, int maxFingerprints, int maxReportsPerMinute) {
+        if (maxFingerprints <= 0 || maxReportsPerMinute <= 0) {
+            throw new IllegalArgumentException("limits must be positive");
+        }
+        this.clock = clock;
+        this.wallClock = wallClock;
+        this.maxFingerprints = maxFingerprints;
+        this.reportTimes = new long[maxReportsPerMinute];
+        Arrays.fill(reportTimes, Long.MIN_VALUE / 2);
+    }
+
+    /**
+     * 記錄一筆錯誤
+     *
+     * @return true 代表這是本週期的第一筆，呼叫端應排程一次 drain
+     */
+    public synchronized boolean record(String message, String context) {
+        long now = wallClock.nowMs();
+        boolean first = windowStartMs < 0;
+        if (first) {
+            windowStartMs = now;
+        }
+
+        String key = fingerprint(message);
+        Entry entry = pending.get(key);
+        if (entry != null) {
+            entry.count++;
+            entry.lastMs = now;
+        } else if (pending.size() < maxFingerprints) {
+            pending.put(key, new Entry(key, truncate(message), truncate(context), now));
+        } else {
+            droppedCount++;
+        }
+        return first;
+    }
+
+    /**
+     * 取出本週期的批次報告
+     *
+     * @return null 代表沒有待送錯誤，或已達每分鐘報告上限（錯誤保留到下次）
+     */
+    public synchronized Batch drain() {
+        if (windowStartMs < 0) {
+            return null;
+        }
+        long now = clock.nowMs();
+        // 環形陣列中最舊的一筆仍在一分鐘內 → 已達上限
+        if (now - reportTimes[reportIndex] < ONE_MINUTE_MS) {
+            suppressedReports++;
+            return null;
+        }
+        reportTimes[reportIndex] = now;
+        reportIndex = (reportIndex + 1) % reportTimes.length;
+        long wallNow = wallClock.nowMs();
+
+        List<Entry> entries = new ArrayList<>(pending.values());
+        int total = droppedCount;
+        for (Entry e : entries) {
+            total += e.count;
+        }
+        Batch batch = new Batch(windowStartMs, wallNow, Collections.unmodifiableList(entries), total, droppedCount);
+
+        pending.clear();
+        windowStartMs = -1;
+        droppedCount = 0;
+        return batch;
+    }
+
+    /** 是否還有未送出的錯誤 */
+    public synchronized boolean hasPending() {
+        return windowStartMs >= 0;
+    }
+
+    /** 因每分鐘上限而延後的報告次數 */
+    public synchronized int suppressedReports() {
+        return suppressedReports;
+    }
+
+    /**
+     * 指紋：數字序列換成 #（影格編號、HTTP 狀態碼、錯誤碼等不影響歸類）
+     */
+    static String fingerprint(String message) {
+        if (message == null) {
+            return "";
+        }
+        int limit = Math.min(message.length(), MAX_FINGERPRINT_LENGTH);
+        StringBuilder sb = new StringBuilder(limit);
+        boolean inDigits = false;
+        for (int i = 0; i < limit; i++) {
+            char c = message.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (!inDigits) {
+                    sb.append('#');
+                    inDigits = true;
+                }
+            } else {
+                sb.append(c);
+                inDigits = false;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String truncate(String s) {
+        if (s == null || s.length() <= MAX_MESSAGE_LENGTH) {
+            return s;
+        }
+        return s.substring(0, MAX_MESSAGE_LENGTH);
+    }
+}
@@ -0,0 +1,232 @@
+package com.artiforge.streamclient;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 影格分送匯流排（一次編碼，多個使用者：上傳、本機存檔、區網觀看…）
+ *
+ * 編碼端 publish() 一次，每個訂閱者各自有固定容量的佇列、丟棄策略與執行緒，
+ * 慢的訂閱者只會丟掉自己的影格，不會拖慢編碼端或其他訂閱者。
+ * 影格以 retain / release 共用同一個緩衝區，不複製也不重新編碼。
+ *
+ * 補送（offerBacklog，例如開始串流時的預錄）在同一個訂閱者執行緒上、比佇列中的即時影格先處理，
+ * 因此兩者不會交錯；補送期間即時影格照常依丟棄策略排隊。
+ */
+public final class FrameBus {
+
+    public enum DropPolicy {
+        /** 佇列滿時丟掉最舊的影格（即時觀看：永遠保留最新畫面） */
+        DROP_OLDEST,
+        /** 佇列滿時丟掉新進的影格（存檔：保留連續片段） */
+        DROP_NEWEST
+    }
+
+    public interface Subscriber {
+        /**
+         * 在訂閱者自己的執行緒上呼叫；返回後匯流排即 release 此影格，
+         * 需要在返回後繼續使用（例如非同步上傳）時請先 retain()。
+         */
+        void onFrame(EncodedFrame frame);
+    }
+
+    private final StreamMetrics metrics;
+    private final StreamLogger logger;
+    private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    public FrameBus(StreamMetrics metrics, StreamLogger logger) {
+        this.metrics = metrics;
+        this.logger = logger;
+    }
+
+    public Subscription subscribe(String name, int capacity, DropPolicy policy, Subscriber subscriber) {
+        Subscription subscription = new Subscription(name, capacity, policy, subscriber);
+        subscriptions.add(subscription);
+        subscription.start();
+        return subscription;
+    }
+
+    /**
+     * 發布影格並轉移呼叫者持有的參考（呼叫後不可再使用 frame）
+     */
+    public void publish(EncodedFrame frame) {
+        try {
+            for (Subscription subscription : subscriptions) {
+                subscription.offer(frame);
+            }
+        } finally {
+            frame.release();
+        }
+    }
+
+    public int subscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * 取消所有訂閱並釋放佇列中的影格
+     */
+    public void close() {
+        for (Subscription subscription : subscriptions) {
+            subscription.unsubscribe();
+        }
+    }
+
+    public final class Subscription {
+        public final String name;
+        private final int capacity;
+        private final DropPolicy policy;
+        private final Subscriber subscriber;
+        private final ArrayDeque<EncodedFrame> queue;
+        private final ArrayDeque<EncodedFrame> backlog = new ArrayDeque<>(); // 以 queue 為鎖
+        private Subscriber backlogHandler;                                    // 以 queue 為鎖
+        private final AtomicLong delivered;
+        private final AtomicLong dropped;
+        private final Thread thread;
+        private boolean active = true; // 以 queue 為鎖
+
+        Subscription(String name, int capacity, DropPolicy policy, Subscriber subscriber) {
+            this.name = name;
+            this.capacity = Math.max(1, capacity);
+            this.policy = policy;
+            this.subscriber = subscriber;
+            this.queue = new ArrayDeque<>(this.capacity);
+            this.delivered = metrics.counter("bus_" + name + "_delivered");
+            this.dropped = metrics.counter("bus_" + name + "_dropped");
+            this.thread = new Thread(this::run, "FrameBus-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        void offer(EncodedFrame frame) {
+            EncodedFrame evicted = null;
+            synchronized (queue) {
+                if (!active) {
+                    return;
+                }
+                if (queue.size() >= capacity) {
+                    dropped.incrementAndGet();
+                    if (policy == DropPolicy.DROP_NEWEST) {
+                        return;
+                    }
+                    evicted = queue.pollFirst();
+                }
+                queue.addLast(frame.retain());
+                queue.notify();
+            }
+            if (evicted != null) {
+                evicted.release();
+            }
+        }
+
+        /**
+         * 補送一批影格：依序交給 handler，全部處理完才處理即時影格；不受容量與丟棄策略限制
+         * （呼叫端自行限制數量）。轉移呼叫者持有的參考。
+         */
+        public void offerBacklog(List<EncodedFrame> frames, Subscriber handler) {
+            synchronized (queue) {
+                if (active) {
+                    backlog.addAll(frames);
+                    backlogHandler = handler;
+                    queue.notify();
+                    return;
+                }
+            }
+            for (EncodedFrame frame : frames) {
+                frame.release();
+            }
+        }
+
+        /**
+         * 丟棄尚未處理的補送影格（正在處理的那一張不受影響）
+         *
+         * @return 丟棄的張數
+         */
+        public int dropBacklog() {
+            ArrayDeque<EncodedFrame> pending;
+            synchronized (queue) {
+                pending = new ArrayDeque<>(backlog);
+                backlog.clear();
+            }
+            for (EncodedFrame frame : pending) {
+                frame.release();
+            }
+            return pending.size();
+        }
+
+        private void run() {
+            while (true) {
+                EncodedFrame frame;
+                Subscriber handler;
+                synchronized (queue) {
+                    while (active && queue.isEmpty() && backlog.isEmpty()) {
+                        try {
+                            queue.wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    if (!active) {
+                        return;
+                    }
+                    if (!backlog.isEmpty()) {
+                        frame = backlog.pollFirst();
+                        handler = backlogHandler;
+                    } else {
+                        frame = queue.pollFirst();
+                        handler = subscriber;
+                    }
+                }
+                try {
+                    handler.onFrame(frame);
+                    delivered.incrementAndGet();
+                } catch (RuntimeException e) {
+                    logger.log(LogLevel.ERROR, () -> "❌ 影格訂閱者 " + name + " 錯誤: " + e.getMessage());
+                } finally {
+                    frame.release();
+                }
+            }
+        }
+
+        /**
+         * 取消訂閱；佇列中尚未處理的影格立即釋放
+         */
+        public void unsubscribe() {
+            subscriptions.remove(this);
+            ArrayDeque<EncodedFrame> pending;
+            synchronized (queue) {
+                if (!active) {
+                    return;
+                }
+                active = false;
+                pending = new ArrayDeque<>(queue);
+                pending.addAll(backlog);
+                queue.clear();
+                backlog.clear();
+                queue.notifyAll();
+            }
+            for (EncodedFrame frame : pending) {
+                frame.release();
+            }
+        }
+
+        public int queued() {
+            synchronized (queue) {
+                return queue.size();
+            }
+        }
+
+        public long deliveredCount() {
+            return delivered.get();
+        }
+
+        public long droppedCount() {
+            return dropped.get();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.artiforge.streamclient;
+
+import java.nio.ByteBuffer;
+
+/**
+ * UDP 影格封包格式（實驗性傳輸，見 DatagramFrameSender / DatagramFrameReassembler）
+ *
+ * 每張影格切成 dataCount 個資料片段，每 fecGroupSize 個片段附一個 XOR 同位封包；
+ * 一組內遺失一個片段可由同位封包還原，遺失更多則整張丟棄（不重送）。
+ * 內容以 DatagramCipher 加密（標頭為附加驗證資料），payloadLength 為明文長度，
+ * 封包在內容之後另有 TAG_SIZE 位元組的驗證碼。
+ *
+ * 標頭 28 位元組（big-endian）：
+ *   0  magic(1) version(1) flags(1) fecGroupSize(1)
+ *   4  token(4)         伺服器在 cmd_udp_transport 指定，用來對應裝置
+ *   8  senderId(4)      送出端建立時隨機產生，組成 nonce 的一部分
+ *   12 frameId(4)
+ *   16 index(2)         資料片段序號；同位封包為組序號
+ *   18 dataCount(2)
+ *   20 frameLength(4)
+ *   24 payloadLength(2) fragmentSize(2)
+ */
+final class FrameDatagram {
+
+    static final int MAGIC = 0xAF;
+    static final int VERSION = 2;
+    static final int FLAG_PARITY = 0x01;
+    static final int FLAG_LAYER_LOW = 0x02;
+
+    static final int HEADER_SIZE = 28;
+    /** 行動網路安全的 UDP 大小（避開 IPv6 / 隧道的分段） */
+    static final int MAX_DATAGRAM = 1200;
+    static final int FRAGMENT_SIZE = MAX_DATAGRAM - HEADER_SIZE - DatagramCipher.TAG_SIZE;
+
+    int flags;
+    int fecGroupSize;
+    int token;
+    int senderId;
+    int frameId;
+    int index;
+    int dataCount;
+    int frameLength;
+    int payloadLength;
+    int fragmentSize;
+
+    boolean isParity() {
+        return (flags & FLAG_PARITY) != 0;
+    }
+
+    FrameLayer layer() {
+        return (flags & FLAG_LAYER_LOW) != 0 ? FrameLayer.LOW : FrameLayer.HIGH;
+    }
+
+    void write(byte[] packet) {
+        ByteBuffer out = ByteBuffer.wrap(packet, 0, HEADER_SIZE);
+        out.put((byte) MAGIC).put((byte) VERSION).put((byte) flags).put((byte) fecGroupSize);
+        out.putInt(token);
+        out.putInt(senderId);
+        out.putInt(frameId);
+        out.putShort((short) index).putShort((short) dataCount);
+        out.putInt(frameLength);
+        out.putShort((short) payloadLength).putShort((short) fragmentSize);
+    }
+
+    /**
+     * 解析標頭；格式不符時回傳 false（不丟例外，外部封包不可信）
+     */
+    boolean read(byte[] packet, int offset, int length) {
+        if (length < HEADER_SIZE) {
+            return false;
+        }
+        ByteBuffer in = ByteBuffer.wrap(packet, offset, HEADER_SIZE);
+        if ((in.get() & 0xFF) != MAGIC || (in.get() & 0xFF) != VERSION) {
+            return false;
+        }
+        flags = in.get() & 0xFF;
+        fecGroupSize = in.get() & 0xFF;
+        token = in.getInt();
+        senderId = in.getInt();
+        frameId = in.getInt();
+        index = in.getShort() & 0xFFFF;
+        dataCount = in.getShort() & 0xFFFF;
+        frameLength = in.getInt();
+        payloadLength = in.getShort() & 0xFFFF;
+        fragmentSize = in.getShort() & 0xFFFF;
+        return dataCount > 0 && fragmentSize > 0 && frameLength > 0
+                && payloadLength + DatagramCipher.TAG_SIZE == length - HEADER_SIZE
+                && (long) (dataCount - 1) * fragmentSize < frameLength
+                && (long) dataCount * fragmentSize >= frameLength;
+    }
+
+    static int fragmentLength(int index, int dataCount, int frameLength, int fragmentSize) {
+        return index < dataCount - 1 ? fragmentSize : frameLength - (dataCount - 1) * fragmentSize;
+    }
+}
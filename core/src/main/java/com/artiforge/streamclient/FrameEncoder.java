@@ -0,0 +1,236 @@
+package com.artiforge.streamclient;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 影格來源共用的編碼流程：節流 → 期限檢查 → YUV 前處理 → 各層 JPEG 編碼
+ *
+ * 旋轉與縮小直接在 NV21 上完成（YuvFrameProcessor），每層只編碼一次 JPEG；縮圖層由完整層的
+ * YUV 再縮小一半，共用前面的打包、旋轉與縮小結果。
+ * selectLayers / encode 只在來源的擷取執行緒呼叫；參數設定可從任何執行緒呼叫。
+ */
+public final class FrameEncoder {
+
+    // 編碼 CPU 時間（執行緒 CPU 時間，微秒累計）與各層編碼數；平均 = cpu_us / frames
+    public static final String ENCODE_CPU_US_PREPARE = "encode_cpu_us_prepare";
+    public static final String ENCODE_CPU_US_HIGH = "encode_cpu_us_high";
+    public static final String ENCODE_CPU_US_LOW = "encode_cpu_us_low";
+    public static final String FRAMES_ENCODED_HIGH = "frames_encoded_high";
+    public static final String FRAMES_ENCODED_LOW = "frames_encoded_low";
+
+    /**
+     * 目前執行緒的 CPU 時間（Android 為 Debug.threadCpuTimeNanos）
+     */
+    public interface CpuClock {
+        long threadCpuNanos();
+    }
+
+    private final FramePool framePool;
+    private final Nv21JpegEncoder jpegEncoder;
+    private final TimeSource clock;
+    private final CpuClock cpuClock;
+    private final YuvFrameProcessor yuvProcessor = new YuvFrameProcessor();
+
+    private final AtomicLong staleBeforeEncode;
+    private final AtomicLong prepareCpuUs;
+    private final AtomicLong highCpuUs;
+    private final AtomicLong lowCpuUs;
+    private final AtomicLong highEncoded;
+    private final AtomicLong lowEncoded;
+
+    // 串流參數（由 cmd_start_stream 的 payload 指定，見 StreamParams）
+    private volatile long frameIntervalMs = StreamParams.DEFAULT.frameIntervalMs();
+    private volatile int jpegQuality = StreamParams.DEFAULT_QUALITY;
+    private volatile ResolutionTier resolutionTier = StreamParams.DEFAULT.tier;
+    private volatile long frameMaxAgeMs = EncodedFrame.DEFAULT_MAX_AGE_MS;
+    // 感興趣區域（cmd_roi），與串流參數分開設定，停止串流後仍保留
+    private volatile RegionOfInterest regionOfInterest = RegionOfInterest.FULL;
+
+    // Simulcast：縮圖層持續送出；完整層只在有詳細檢視者時送出（未啟用 simulcast 時只有完整層）
+    private volatile boolean simulcast = false;
+    private volatile boolean detailViewerActive = false;
+    private volatile long thumbIntervalMs = StreamParams.DEFAULT.thumbIntervalMs();
+    private volatile int thumbQuality = StreamParams.DEFAULT_THUMB_QUALITY;
+
+    // 擷取執行緒專用
+    private long lastFrameTime = 0;
+    private long lastThumbTime = 0;
+    private long lastPreRollTime = 0;
+    private boolean wantHigh;
+    private boolean wantLow;
+
+    public FrameEncoder(FramePool framePool, Nv21JpegEncoder jpegEncoder, StreamMetrics metrics,
+                        TimeSource clock, CpuClock cpuClock) {
+        this.framePool = framePool;
+        this.jpegEncoder = jpegEncoder;
+        this.clock = clock;
+        this.cpuClock = cpuClock;
+        this.staleBeforeEncode = metrics.counter(StreamMetrics.FRAMES_STALE_BEFORE_ENCODE);
+        this.prepareCpuUs = metrics.counter(ENCODE_CPU_US_PREPARE);
+        this.highCpuUs = metrics.counter(ENCODE_CPU_US_HIGH);
+        this.lowCpuUs = metrics.counter(ENCODE_CPU_US_LOW);
+        this.highEncoded = metrics.counter(FRAMES_ENCODED_HIGH);
+        this.lowEncoded = metrics.counter(FRAMES_ENCODED_LOW);
+    }
+
+    public void applyStreamParams(StreamParams params) {
+        frameIntervalMs = params.frameIntervalMs();
+        jpegQuality = params.quality;
+        resolutionTier = params.tier;
+        frameMaxAgeMs = params.maxAgeMs;
+        simulcast = params.simulcast;
+        thumbIntervalMs = params.thumbIntervalMs();
+        thumbQuality = params.thumbQuality;
+    }
+
+    public void setFrameMaxAgeMs(long maxAgeMs) {
+        this.frameMaxAgeMs = maxAgeMs;
+    }
+
+    public long frameMaxAgeMs() {
+        return frameMaxAgeMs;
+    }
+
+    public void setDetailViewerActive(boolean active) {
+        this.detailViewerActive = active;
+    }
+
+    public void setRegionOfInterest(RegionOfInterest region) {
+        this.regionOfInterest = region;
+    }
+
+    public RegionOfInterest regionOfInterest() {
+        return regionOfInterest;
+    }
+
+    /**
+     * 節流：各層依自己的幀率決定這一幀是否需要
+     *
+     * @param nowMs 來源的時間（相機為牆上時間，合成來源為模擬的感光元件時間）
+     * @return false 代表這一幀可直接丟棄，不必取出影像
+     */
+    public boolean selectLayers(long nowMs) {
+        boolean thumbLayer = simulcast;
+        wantHigh = (!thumbLayer || detailViewerActive) && nowMs - lastFrameTime >= frameIntervalMs;
+        wantLow = thumbLayer && nowMs - lastThumbTime >= thumbIntervalMs;
+        if (wantHigh) {
+            lastFrameTime = nowMs;
+        }
+        if (wantLow) {
+            lastThumbTime = nowMs;
+        }
+        return wantHigh || wantLow;
+    }
+
+    /**
+     * 預錄節流：未串流時只要完整層，依 intervalMs 取樣（不影響串流各層的節流時間）
+     */
+    public boolean selectPreRoll(long nowMs, long intervalMs) {
+        wantHigh = nowMs - lastPreRollTime >= intervalMs;
+        wantLow = false;
+        if (wantHigh) {
+            lastPreRollTime = nowMs;
+        }
+        return wantHigh;
+    }
+
+    /**
+     * 編碼 selectLayers 選出的各層並交給 callback（橫向 YUV_420_888 平面，輸出直立 JPEG）
+     *
+     * @param captureTimeMs 擷取時間（TimeSource.MONOTONIC 基準），期限由此起算
+     */
+    public void encode(ByteBuffer y, int yRowStride,
+                       ByteBuffer u, ByteBuffer v, int uvRowStride, int uvPixelStride,
+                       int width, int height, long captureTimeMs, FrameSource.FrameCallback callback) {
+        encode(y, yRowStride, u, v, uvRowStride, uvPixelStride, width, height, captureTimeMs, frameMaxAgeMs, callback);
+    }
+
+    /**
+     * 同上，但以 maxAgeMs 計算期限（預錄影格需保留到開始串流時送出）
+     */
+    public void encode(ByteBuffer y, int yRowStride,
+                       ByteBuffer u, ByteBuffer v, int uvRowStride, int uvPixelStride,
+                       int width, int height, long captureTimeMs, long maxAgeMs, FrameSource.FrameCallback callback) {
+        long deadline = captureTimeMs + maxAgeMs;
+
+        // 編碼前檢查期限（過期影格不浪費 CPU 編碼）
+        if (clock.nowMs() > deadline) {
+            staleBeforeEncode.incrementAndGet();
+            return;
+        }
+
+        try {
+            long cpuStart = cpuClock.threadCpuNanos();
+
+            // 1. YUV_420_888 → 直立 NV21（裁切、打包、旋轉、依解析度等級縮小）
+            yuvProcessor.prepare(y, yRowStride, u, v, uvRowStride, uvPixelStride,
+                    width, height, resolutionTier.height, regionOfInterest);
+
+            long cpuPrepared = cpuClock.threadCpuNanos();
+            prepareCpuUs.addAndGet((cpuPrepared - cpuStart) / 1000);
+
+            // 2. 完整層
+            if (wantHigh) {
+                deliver(encodeJpeg(yuvProcessor.full(), yuvProcessor.fullWidth(), yuvProcessor.fullHeight(),
+                        jpegQuality, captureTimeMs, deadline, FrameLayer.HIGH), callback);
+                long cpuHigh = cpuClock.threadCpuNanos();
+                highCpuUs.addAndGet((cpuHigh - cpuPrepared) / 1000);
+                highEncoded.incrementAndGet();
+                cpuPrepared = cpuHigh;
+            }
+
+            // 3. 縮圖層（寬高各一半；尺寸無法對半時以完整尺寸低畫質送出）
+            if (wantLow) {
+                byte[] thumb = yuvProcessor.thumbnail();
+                deliver(encodeJpeg(thumb, yuvProcessor.thumbnailWidth(), yuvProcessor.thumbnailHeight(),
+                        thumbQuality, captureTimeMs, deadline, FrameLayer.LOW), callback);
+                lowCpuUs.addAndGet((cpuClock.threadCpuNanos() - cpuPrepared) / 1000);
+                lowEncoded.incrementAndGet();
+            }
+
+        } catch (Exception e) {
+            if (callback != null) {
+                callback.onError("❌ YUV→JPEG 錯誤: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 目前設定的說明（啟動串流時記錄）
+     */
+    public String describe() {
+        return "YUV→JPEG, " + (1000 / frameIntervalMs) + " FPS, Q" + jpegQuality
+                + (simulcast ? "；縮圖層 " + (1000 / thumbIntervalMs) + " FPS, Q" + thumbQuality : "")
+                + (regionOfInterest.isFull() ? "" : "；區域 " + regionOfInterest);
+    }
+
+    private EncodedFrame encodeJpeg(byte[] nv21, int width, int height, int quality,
+                                    long captureTime, long deadline, FrameLayer layer) throws IOException {
+        FramePool.Writer out = framePool.newWriter();
+        try {
+            if (!jpegEncoder.compress(nv21, width, height, quality, out)) {
+                return null;
+            }
+            EncodedFrame frame = out.toFrame(captureTime, deadline, layer);
+            out = null;
+            return frame;
+        } finally {
+            if (out != null) {
+                out.discard();
+            }
+        }
+    }
+
+    private static void deliver(EncodedFrame frame, FrameSource.FrameCallback callback) {
+        if (frame == null) {
+            return;
+        }
+        if (frame.length() > 0 && callback != null) {
+            callback.onFrameAvailable(frame);
+        } else {
+            frame.release();
+        }
+    }
+}
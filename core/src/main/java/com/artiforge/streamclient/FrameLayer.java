@@ -0,0 +1,21 @@
+package com.artiforge.streamclient;
+
+/**
+ * Simulcast 影格層級（同一次擷取編碼出的兩種畫質）
+ *
+ * - LOW：縮圖層，持續上傳（列表 / 總覽用）
+ * - HIGH：完整解析度；啟用 simulcast 時只在伺服器回報有詳細檢視者時才送出
+ *
+ * 未啟用 simulcast 時只產生 HIGH，行為與單一串流相同。
+ */
+public enum FrameLayer {
+    LOW("low"),
+    HIGH("high");
+
+    /** 上傳時的 layer 參數值 */
+    public final String wireName;
+
+    FrameLayer(String wireName) {
+        this.wireName = wireName;
+    }
+}
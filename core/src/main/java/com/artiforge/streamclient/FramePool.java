@@ -0,0 +1,206 @@
+package com.artiforge.streamclient;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 影格緩衝區池
+ *
+ * JPEG 直接編碼進池中的陣列（Writer），完成後原地交給 EncodedFrame，不再複製；
+ * 影格最後一個持有者 release() 時陣列回到池中。outstanding() 為借出未歸還的數量，
+ * 串流停止後應回到 0，否則代表有使用者忘了 release()。
+ *
+ * 閒置陣列的保留數量受 MemoryGovernor 調整：壓力升高時立即丟棄多出的閒置陣列，
+ * 壓力解除後只放寬上限，陣列在之後歸還時才回到池中。
+ */
+public final class FramePool implements MemoryGovernor.Pool {
+
+    public static final String FRAME_BUFFERS_OUTSTANDING = "frame_buffers_outstanding";
+    public static final String FRAME_POOL_ALLOCATIONS = "frame_pool_allocations";
+    public static final String FRAME_POOL_BYTES = "frame_pool_bytes";
+
+    static final int DEFAULT_INITIAL_CAPACITY = 64 * 1024; // 480x640 Q85 JPEG 約 30–60 KB
+    static final int DEFAULT_MAX_POOLED = 8;
+
+    private final int initialCapacity;
+    private final int maxPooled;
+    private final ArrayDeque<byte[]> free = new ArrayDeque<>();
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicLong allocations = new AtomicLong();
+    private final AtomicLong outstandingBytes = new AtomicLong();
+    // 以下以 this 為鎖
+    private long pooledBytes = 0;
+    private int limit;
+
+    public FramePool() {
+        this(DEFAULT_INITIAL_CAPACITY, DEFAULT_MAX_POOLED);
+    }
+
+    public FramePool(int initialCapacity, int maxPooled) {
+        this.initialCapacity = initialCapacity;
+        this.maxPooled = maxPooled;
+        this.limit = maxPooled;
+    }
+
+    public void registerGauges(StreamMetrics metrics) {
+        metrics.registerGauge(FRAME_BUFFERS_OUTSTANDING, outstanding::get);
+        metrics.registerGauge(FRAME_POOL_ALLOCATIONS, allocations::get);
+        metrics.registerGauge(FRAME_POOL_BYTES, this::footprintBytes);
+    }
+
+    /**
+     * 借出一個可寫入的輸出串流（例如給 Bitmap.compress / YuvImage.compressToJpeg）
+     */
+    public Writer newWriter() {
+        return new Writer(take(initialCapacity));
+    }
+
+    /**
+     * 從原生緩衝區（例如 ImageReader 的 JPEG plane）複製一次到池中陣列
+     */
+    public EncodedFrame copyOf(ByteBuffer source, long captureTimeMs, long deadlineMs) {
+        int length = source.remaining();
+        byte[] buffer = take(length);
+        source.get(buffer, 0, length);
+        return new EncodedFrame(this, buffer, length, captureTimeMs, deadlineMs, FrameLayer.HIGH);
+    }
+
+    public int outstanding() {
+        return outstanding.get();
+    }
+
+    public long allocations() {
+        return allocations.get();
+    }
+
+    public synchronized int pooled() {
+        return free.size();
+    }
+
+    @Override
+    public String poolName() {
+        return "frames";
+    }
+
+    /**
+     * 閒置陣列加上借出中的陣列（影格與 Writer）
+     */
+    @Override
+    public long footprintBytes() {
+        synchronized (this) {
+            return pooledBytes + outstandingBytes.get();
+        }
+    }
+
+    /**
+     * NONE 保留 maxPooled 個閒置陣列，MODERATE 一半，LOW 一個，CRITICAL 全部丟棄
+     */
+    @Override
+    public void onMemoryPressure(MemoryPressure pressure) {
+        int next;
+        switch (pressure) {
+            case CRITICAL:
+                next = 0;
+                break;
+            case LOW:
+                next = Math.min(1, maxPooled);
+                break;
+            case MODERATE:
+                next = maxPooled / 2;
+                break;
+            default:
+                next = maxPooled;
+                break;
+        }
+        synchronized (this) {
+            limit = next;
+            while (free.size() > limit) {
+                pooledBytes -= free.pollFirst().length;
+            }
+        }
+    }
+
+    private byte[] take(int minCapacity) {
+        outstanding.incrementAndGet();
+        synchronized (this) {
+            Iterator<byte[]> it = free.iterator();
+            while (it.hasNext()) {
+                byte[] candidate = it.next();
+                if (candidate.length >= minCapacity) {
+                    it.remove();
+                    pooledBytes -= candidate.length;
+                    outstandingBytes.addAndGet(candidate.length);
+                    return candidate;
+                }
+            }
+        }
+        allocations.incrementAndGet();
+        byte[] buffer = new byte[Math.max(minCapacity, initialCapacity)];
+        outstandingBytes.addAndGet(buffer.length);
+        return buffer;
+    }
+
+    void recycle(byte[] buffer) {
+        outstanding.decrementAndGet();
+        outstandingBytes.addAndGet(-buffer.length);
+        synchronized (this) {
+            if (free.size() < limit) {
+                free.addLast(buffer);
+                pooledBytes += buffer.length;
+            }
+        }
+    }
+
+    /**
+     * 寫入池中陣列的輸出串流；空間不足時 ByteArrayOutputStream 會自行擴充，
+     * 擴充後的較大陣列在影格釋放時回到池中，池會逐漸適應實際影格大小。
+     */
+    public final class Writer extends ByteArrayOutputStream {
+        private boolean finished = false;
+        private final int takenLength;
+
+        Writer(byte[] buffer) {
+            super(0);
+            this.buf = buffer;
+            this.takenLength = buffer.length;
+        }
+
+        /**
+         * 目前的底層陣列（有效範圍 [0, size())），用於暫存資料的原地讀取；discard() 後不可再使用
+         */
+        public synchronized byte[] array() {
+            return buf;
+        }
+
+        /**
+         * 把已寫入的資料原地交給影格（不複製），之後不可再使用此 Writer
+         */
+        public EncodedFrame toFrame(long captureTimeMs, long deadlineMs) {
+            return toFrame(captureTimeMs, deadlineMs, FrameLayer.HIGH);
+        }
+
+        public synchronized EncodedFrame toFrame(long captureTimeMs, long deadlineMs, FrameLayer layer) {
+            if (finished) {
+                throw new IllegalStateException("Writer 已結束");
+            }
+            finished = true;
+            outstandingBytes.addAndGet(buf.length - takenLength); // 寫入時擴充的部分
+            return new EncodedFrame(FramePool.this, buf, count, captureTimeMs, deadlineMs, layer);
+        }
+
+        /**
+         * 放棄寫入（編碼失敗時），陣列歸還池中
+         */
+        public synchronized void discard() {
+            if (!finished) {
+                finished = true;
+                outstandingBytes.addAndGet(buf.length - takenLength);
+                recycle(buf);
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.artiforge.streamclient;
+
+/**
+ * 影格來源：相機（CameraController + Camera2Backend）或測試用的合成來源（SyntheticFrameSource）
+ *
+ * 「相機」開啟後只預覽不輸出，startStreaming 之後才依串流參數產生 JPEG 影格。
+ */
+public interface FrameSource {
+
+    interface FrameCallback {
+        /** 呼叫端取得影格的參考，用完（或交給 FrameBus.publish）後需 release */
+        void onFrameAvailable(EncodedFrame frame);
+        void onError(String error);
+        // v1.3.1: 相機狀態變化回調
+        void onCameraStatusChanged(boolean available, String reason);
+    }
+
+    void setFrameCallback(FrameCallback callback);
+
+    /**
+     * 伺服器回報是否有詳細檢視者（cmd_detail_viewer），決定 simulcast 時是否送出完整層
+     */
+    void setDetailViewerActive(boolean active);
+
+    /**
+     * 伺服器指定的感興趣區域（cmd_roi），只編碼直立畫面中的這一塊；FULL 為全畫面
+     */
+    void setRegionOfInterest(RegionOfInterest region);
+
+    /**
+     * 套用串流參數（幀率、畫質、解析度、影格期限、simulcast）
+     */
+    void applyStreamParams(StreamParams params);
+
+    void startCamera();
+
+    void startStreaming();
+
+    /** 停止輸出影格（保持預覽） */
+    void stopStreaming();
+
+    void stopCamera();
+}
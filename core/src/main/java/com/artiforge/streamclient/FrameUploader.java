@@ -0,0 +1,204 @@
+package com.artiforge.streamclient;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * 影格上傳（/upload_frame?layer=low|high）
+ *
+ * 以 OkHttp 非同步送出，並由 BandwidthEstimator 的壅塞視窗限制在途位元組；
+ * 視窗已滿時直接丟棄新影格，不再無限制排隊；不可跳過的影格（預錄）改用 uploadInOrder 等待視窗。
+ * 過期影格在排隊前與真正送出前（OkHttp 攔截器）各檢查一次。
+ * 上傳期間持有影格的一個參考（直接以池中陣列作為 request body），完成或失敗時釋放。
+ */
+public final class FrameUploader {
+
+    public interface Listener {
+        /**
+         * 上傳失敗
+         *
+         * @param httpCode HTTP 狀態碼；網路錯誤時為 -1（此時 error 不為 null）
+         */
+        void onUploadFailed(long frameNumber, int httpCode, IOException error);
+    }
+
+    /**
+     * 影格在 OkHttp 佇列中等待時已過期（不算上傳失敗，也不影響頻寬估計）
+     */
+    static final class StaleFrameException extends IOException {
+        StaleFrameException() {
+            super("frame expired before send");
+        }
+    }
+
+    private static final MediaType JPEG = MediaType.parse("image/jpeg");
+
+    private final OkHttpClient httpClient;
+    private final String uploadUrl;
+    private final BandwidthEstimator estimator;
+    private final TimeSource clock;
+    private final Listener listener;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong droppedByWindow = new AtomicLong();
+    private final AtomicLong staleBeforeQueue;
+    private final AtomicLong staleBeforeSend;
+
+    public FrameUploader(OkHttpClient httpClient, String serverUrl, BandwidthEstimator estimator,
+                         TimeSource clock, StreamMetrics metrics, Listener listener) {
+        this.httpClient = httpClient.newBuilder()
+                .addInterceptor(this::dropIfExpired)
+                .build();
+        this.uploadUrl = serverUrl + "/upload_frame";
+        this.estimator = estimator;
+        this.clock = clock;
+        this.listener = listener;
+        this.staleBeforeQueue = metrics.counter(StreamMetrics.FRAMES_STALE_BEFORE_QUEUE);
+        this.staleBeforeSend = metrics.counter(StreamMetrics.FRAMES_STALE_BEFORE_SEND);
+    }
+
+    /**
+     * 非同步上傳；呼叫者仍保有自己的參考（上傳期間另外 retain）
+     *
+     * @return false 代表影格已過期或壅塞視窗已滿，影格已被丟棄
+     */
+    public boolean upload(EncodedFrame frame) {
+        if (frame.isExpired(clock.nowMs())) {
+            staleBeforeQueue.incrementAndGet();
+            return false;
+        }
+
+        BandwidthEstimator.InFlight slot = estimator.tryBeginUpload(frame.length());
+        if (slot == null) {
+            droppedByWindow.incrementAndGet();
+            return false;
+        }
+        enqueue(frame, slot);
+        return true;
+    }
+
+    /**
+     * 同步等到壅塞視窗有空間才送出（最多等到影格期限），呼叫端依序呼叫即依序送出
+     *
+     * @return false 代表影格在等待前或等待中過期，影格已被丟棄
+     */
+    public boolean uploadInOrder(EncodedFrame frame) throws InterruptedException {
+        long now = clock.nowMs();
+        if (frame.isExpired(now)) {
+            staleBeforeQueue.incrementAndGet();
+            return false;
+        }
+        BandwidthEstimator.InFlight slot = estimator.awaitBeginUpload(frame.length(), frame.deadlineMs - now);
+        if (slot == null) {
+            staleBeforeQueue.incrementAndGet();
+            return false;
+        }
+        enqueue(frame, slot);
+        return true;
+    }
+
+    private void enqueue(EncodedFrame frame, BandwidthEstimator.InFlight slot) {
+        final long frameNumber = submitted.incrementAndGet();
+        frame.retain();
+        Request request = buildRequest(frame);
+
+        httpClient.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                frame.release();
+                if (e instanceof StaleFrameException) {
+                    estimator.onUploadCancelled(slot);
+                    submitted.decrementAndGet();
+                    staleBeforeSend.incrementAndGet();
+                    return;
+                }
+                estimator.onUploadFinished(slot, false);
+                failed.incrementAndGet();
+                if (listener != null) {
+                    listener.onUploadFailed(frameNumber, -1, e);
+                }
+            }
+
+            @Override
+            public void onResponse(@NonNull Call call, @NonNull Response response) {
+                frame.release();
+                try {
+                    boolean ok = response.isSuccessful();
+                    estimator.onUploadFinished(slot, ok);
+                    if (ok) {
+                        succeeded.incrementAndGet();
+                    } else {
+                        failed.incrementAndGet();
+                        if (listener != null) {
+                            listener.onUploadFailed(frameNumber, response.code(), null);
+                        }
+                    }
+                } finally {
+                    response.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * 上傳請求（直接以影格的池中陣列作為 body，不複製；tag 供攔截器檢查期限）
+     */
+    Request buildRequest(EncodedFrame frame) {
+        return new Request.Builder()
+                .url(uploadUrl + "?layer=" + frame.layer.wireName)
+                .post(RequestBody.create(frame.data(), JPEG, 0, frame.length()))
+                .tag(frame)
+                .build();
+    }
+
+    /**
+     * OkHttp 應用攔截器：呼叫真正開始執行（離開 Dispatcher 佇列）時再檢查一次期限
+     */
+    private Response dropIfExpired(Interceptor.Chain chain) throws IOException {
+        Object tag = chain.request().tag();
+        if (tag instanceof EncodedFrame && ((EncodedFrame) tag).isExpired(clock.nowMs())) {
+            throw new StaleFrameException();
+        }
+        return chain.proceed(chain.request());
+    }
+
+    public BandwidthEstimator getEstimator() {
+        return estimator;
+    }
+
+    public void resetCounters() {
+        submitted.set(0);
+        succeeded.set(0);
+        failed.set(0);
+        droppedByWindow.set(0);
+    }
+
+    public long submittedCount() {
+        return submitted.get();
+    }
+
+    public long succeededCount() {
+        return succeeded.get();
+    }
+
+    public long failedCount() {
+        return failed.get();
+    }
+
+    public long droppedByWindowCount() {
+        return droppedByWindow.get();
+    }
+}
@@ -0,0 +1,40 @@
+package com.artiforge.streamclient;
+
+import java.util.TimeZone;
+
+/**
+ * 日誌格式化："[HH:mm:ss] 訊息"
+ *
+ * 直接寫入呼叫端重複使用的 StringBuilder，不建立 SimpleDateFormat / Date
+ */
+public final class LogFormatter {
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private final TimeZone timeZone;
+
+    public LogFormatter() {
+        this(TimeZone.getDefault());
+    }
+
+    public LogFormatter(TimeZone timeZone) {
+        this.timeZone = timeZone;
+    }
+
+    public void appendLine(StringBuilder sb, LogRecord record) {
+        long local = record.timeMillis + timeZone.getOffset(record.timeMillis);
+        int secondOfDay = (int) (Math.floorMod(local, MILLIS_PER_DAY) / 1000);
+
+        sb.append('[');
+        appendTwoDigits(sb, secondOfDay / 3600);
+        sb.append(':');
+        appendTwoDigits(sb, (secondOfDay / 60) % 60);
+        sb.append(':');
+        appendTwoDigits(sb, secondOfDay % 60);
+        sb.append("] ").append(record.message).append('\n');
+    }
+
+    private static void appendTwoDigits(StringBuilder sb, int value) {
+        sb.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+}
@@ -0,0 +1,15 @@
+package com.artiforge.streamclient;
+
+/**
+ * 日誌等級（取代 emoji 關鍵字過濾）
+ */
+public enum LogLevel {
+    DEBUG,
+    INFO,
+    WARN,
+    ERROR;
+
+    public boolean isAtLeast(LogLevel other) {
+        return compareTo(other) >= 0;
+    }
+}
@@ -0,0 +1,19 @@
+package com.artiforge.streamclient;
+
+/**
+ * 單筆結構化日誌（不可變，可跨執行緒傳遞）
+ */
+public final class LogRecord {
+
+    public final long sequence;
+    public final long timeMillis;
+    public final LogLevel level;
+    public final String message;
+
+    public LogRecord(long sequence, long timeMillis, LogLevel level, String message) {
+        this.sequence = sequence;
+        this.timeMillis = timeMillis;
+        this.level = level;
+        this.message = message;
+    }
+}
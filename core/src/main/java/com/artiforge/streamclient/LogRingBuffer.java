@@ -0,0 +1,149 @@
+package com.artiforge.streamclient;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 固定容量、無鎖的日誌環形緩衝區
+ *
+ * - 任何執行緒都可以寫入（相機、網路、主執行緒），寫入只有一次 getAndIncrement + 一次 set
+ * - 容量滿了之後直接覆寫最舊的紀錄，不會成長
+ * - 讀取端以序號判斷槽位是否仍有效，被覆寫或尚未寫完的槽位會被略過
+ * - 記憶體壓力（MemoryGovernor）為 LOW 以上時只保留最近一部分，較舊的槽位清空讓紀錄可被回收
+ */
+public final class LogRingBuffer implements MemoryGovernor.Pool {
+
+    // 單筆紀錄的估計大小（物件標頭與欄位，不含訊息字元）
+    private static final int RECORD_OVERHEAD_BYTES = 64;
+    private static final int MIN_RETAINED = 16;
+
+    private final AtomicReferenceArray<LogRecord> slots;
+    private final int mask;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private volatile int retained;
+
+    public LogRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        // 容量取 2 的次方，索引只需位元運算
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.retained = size;
+    }
+
+    public int capacity() {
+        return slots.length();
+    }
+
+    /**
+     * 寫入一筆日誌，回傳其序號
+     */
+    public long append(LogLevel level, String message) {
+        long sequence = nextSequence.getAndIncrement();
+        slots.set((int) (sequence & mask), new LogRecord(sequence, System.currentTimeMillis(), level, message));
+        int keep = retained;
+        if (keep < slots.length()) {
+            clearSlot(sequence - keep);
+        }
+        return sequence;
+    }
+
+    /**
+     * 下一筆日誌的序號（可用來判斷自上次讀取後是否有新資料）
+     */
+    public long nextSequence() {
+        return nextSequence.get();
+    }
+
+    /**
+     * 取出最近且等級不低於 minLevel 的紀錄，依時間順序放入 out
+     *
+     * @return 實際取得的筆數（最多 out.length）
+     */
+    public int snapshot(LogRecord[] out, LogLevel minLevel) {
+        long end = nextSequence.get();
+        long start = Math.max(0, end - retained);
+        int count = 0;
+
+        // 由新到舊掃描，取到足夠筆數就停止
+        for (long seq = end - 1; seq >= start && count < out.length; seq--) {
+            LogRecord record = slots.get((int) (seq & mask));
+            if (record != null && record.sequence == seq && record.level.isAtLeast(minLevel)) {
+                out[count++] = record;
+            }
+        }
+
+        // 反轉為由舊到新
+        for (int i = 0, j = count - 1; i < j; i++, j--) {
+            LogRecord tmp = out[i];
+            out[i] = out[j];
+            out[j] = tmp;
+        }
+        return count;
+    }
+
+    @Override
+    public String poolName() {
+        return "logs";
+    }
+
+    /**
+     * 估計值：每筆固定開銷加上訊息字元
+     */
+    @Override
+    public long footprintBytes() {
+        long total = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            LogRecord record = slots.get(i);
+            if (record != null) {
+                total += RECORD_OVERHEAD_BYTES + 2L * record.message.length();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * NONE / MODERATE 保留全部，LOW 四分之一，CRITICAL 十六分之一（至少 MIN_RETAINED 筆）
+     */
+    @Override
+    public void onMemoryPressure(MemoryPressure pressure) {
+        int capacity = slots.length();
+        int keep;
+        switch (pressure) {
+            case CRITICAL:
+                keep = capacity / 16;
+                break;
+            case LOW:
+                keep = capacity / 4;
+                break;
+            default:
+                keep = capacity;
+                break;
+        }
+        keep = Math.min(capacity, Math.max(MIN_RETAINED, keep));
+        retained = keep;
+        long end = nextSequence.get();
+        for (long seq = Math.max(0, end - capacity); seq < end - keep; seq++) {
+            clearSlot(seq);
+        }
+    }
+
+    /**
+     * 清空序號 sequence 的槽位（已被較新的紀錄覆寫時不動）
+     */
+    private void clearSlot(long sequence) {
+        if (sequence < 0) {
+            return;
+        }
+        int index = (int) (sequence & mask);
+        LogRecord record = slots.get(index);
+        if (record != null && record.sequence <= sequence) {
+            slots.compareAndSet(index, record, null);
+        }
+    }
+}
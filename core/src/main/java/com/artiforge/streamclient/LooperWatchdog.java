@@ -0,0 +1,386 @@
+package com.artiforge.streamclient;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 執行緒卡住偵測：量測主執行緒與相機背景執行緒（Looper）的排程延遲，卡住時擷取堆疊並依簽章彙整
+ *
+ * 每隔 probeIntervalMs 在受監看的執行緒上 post 一個空任務，任務開始執行時記錄延遲；
+ * 同時排定 thresholdMs 後的檢查，任務屆時仍未執行就擷取該執行緒的堆疊（任務準時執行時取消檢查，
+ * 排程執行緒平常每個探測週期只喚醒一次）。
+ * 簽章為堆疊最上面一個「類別.方法」加上其下的 App 方法，共 SIGNATURE_FRAMES 個（不含行號，跨版本穩定；
+ * 略過平台的 frame，否則卡在鎖或 I/O 上的簽章都只剩相同的 JDK 方法），
+ * 同一簽章只保留第一次的堆疊並累計次數與時間，最多 MAX_SIGNATURES 種。
+ *
+ * 平常的成本只有每個執行緒每個週期一次 post、一次空任務與一次排程 / 取消；堆疊只在卡住時擷取。
+ * start / stop 可重複呼叫：StreamEngine 只在串流或定時擷取期間啟動，閒置時不探測。
+ * 狀態以各執行緒的 LaneState 與彙整表為鎖。
+ */
+public final class LooperWatchdog {
+
+    public static final String LOOPER_STALLS_PREFIX = "looper_stalls_";
+    public static final String LOOPER_STALL_MS_TOTAL_PREFIX = "looper_stall_ms_total_";
+    public static final String LOOPER_DISPATCH_MS_LAST_PREFIX = "looper_dispatch_ms_last_";
+    public static final String LOOPER_DISPATCH_MS_MAX_PREFIX = "looper_dispatch_ms_max_";
+    public static final String LOOPER_STALL_SIGNATURE_PREFIX = "looper_stall_sig_";
+    public static final String LOOPER_STALL_SIGNATURES_DROPPED = "looper_stall_signatures_dropped";
+
+    public static final long DEFAULT_PROBE_INTERVAL_MS = 2_000;
+    public static final long DEFAULT_THRESHOLD_MS = 500;
+    static final int SIGNATURE_FRAMES = 5;
+    static final int STACK_FRAMES = 20;
+    static final int MAX_SIGNATURES = 16;
+    private static final String[] PLATFORM_PREFIXES = {
+            "java.", "javax.", "jdk.", "sun.", "android.", "androidx.", "dalvik.", "libcore.", "com.android.", "kotlin."
+    };
+    // 卡住的任務在擷取前已結束，沒有堆疊可用
+    public static final String UNSAMPLED = "unsampled";
+
+    /**
+     * 受監看的執行緒
+     */
+    public interface Lane {
+        /** 指標名稱的後綴（main / camera） */
+        String name();
+
+        /** 目前的執行緒；尚未建立時回傳 null */
+        Thread thread();
+
+        /** post 到執行緒的佇列；執行緒不存在時回傳 false（視為閒置） */
+        boolean post(Runnable task);
+    }
+
+    /**
+     * 一種卡住的彙整（依執行緒與簽章）
+     */
+    public static final class Stall {
+        public final String lane;
+        public final String signature;
+        /** 簽章的短雜湊，與 looper_stall_sig_<id> 指標對應 */
+        public final String id;
+        /** 第一次擷取到的堆疊（最多 STACK_FRAMES 行） */
+        public final String stack;
+        public final long firstMs;
+        long lastMs;
+        int count;
+        long totalMs;
+        long maxMs;
+        int reportedCount;
+
+        Stall(String lane, String signature, String stack, long nowMs) {
+            this.lane = lane;
+            this.signature = signature;
+            this.id = signatureId(lane, signature);
+            this.stack = stack;
+            this.firstMs = nowMs;
+            this.lastMs = nowMs;
+        }
+
+        private Stall(Stall source) {
+            this.lane = source.lane;
+            this.signature = source.signature;
+            this.id = source.id;
+            this.stack = source.stack;
+            this.firstMs = source.firstMs;
+            this.lastMs = source.lastMs;
+            this.count = source.count;
+            this.totalMs = source.totalMs;
+            this.maxMs = source.maxMs;
+        }
+
+        public long lastMs() {
+            return lastMs;
+        }
+
+        public int count() {
+            return count;
+        }
+
+        public long totalMs() {
+            return totalMs;
+        }
+
+        public long maxMs() {
+            return maxMs;
+        }
+    }
+
+    private final class LaneState {
+        final Lane lane;
+        final AtomicLong stalls;
+        final AtomicLong stallMsTotal;
+        final AtomicLong dispatchLast;
+        final AtomicLong dispatchMax;
+        final Runnable probe = () -> onProbe(this);
+        final Runnable capture = () -> captureIfPending(this);
+
+        // 以 this 為鎖
+        boolean pending = false;
+        long postedAtMs;
+        Thread postedThread;
+        String signature;
+        String stack;
+        TaskScheduler.ScheduledTask captureTask;
+
+        LaneState(Lane lane) {
+            this.lane = lane;
+            String name = lane.name();
+            this.stalls = metrics.counter(LOOPER_STALLS_PREFIX + name);
+            this.stallMsTotal = metrics.counter(LOOPER_STALL_MS_TOTAL_PREFIX + name);
+            this.dispatchLast = metrics.counter(LOOPER_DISPATCH_MS_LAST_PREFIX + name);
+            this.dispatchMax = metrics.counter(LOOPER_DISPATCH_MS_MAX_PREFIX + name);
+        }
+    }
+
+    private final TaskScheduler scheduler;
+    private final TimeSource clock;
+    private final TimeSource wallClock;
+    private final StreamMetrics metrics;
+    private final StreamLogger logger;
+    private final long probeIntervalMs;
+    private final long thresholdMs;
+    private final List<LaneState> lanes = new CopyOnWriteArrayList<>();
+    private final Map<String, Stall> stalls = new LinkedHashMap<>();
+    private final AtomicLong signaturesDropped;
+    private TaskScheduler.ScheduledTask checkTask;
+
+    public LooperWatchdog(TaskScheduler scheduler, TimeSource clock, TimeSource wallClock,
+                          StreamMetrics metrics, StreamLogger logger) {
+        this(scheduler, clock, wallClock, metrics, logger, DEFAULT_PROBE_INTERVAL_MS, DEFAULT_THRESHOLD_MS);
+    }
+
+    /**
+     * @param clock     量測延遲用（TimeSource.MONOTONIC）
+     * @param wallClock 彙整的首次 / 最後時間（回報給伺服器）
+     */
+    public LooperWatchdog(TaskScheduler scheduler, TimeSource clock, TimeSource wallClock,
+                          StreamMetrics metrics, StreamLogger logger, long probeIntervalMs, long thresholdMs) {
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.wallClock = wallClock;
+        this.metrics = metrics;
+        this.logger = logger;
+        this.probeIntervalMs = probeIntervalMs;
+        this.thresholdMs = thresholdMs;
+        this.signaturesDropped = metrics.counter(LOOPER_STALL_SIGNATURES_DROPPED);
+    }
+
+    public void watch(Lane lane) {
+        lanes.add(new LaneState(lane));
+    }
+
+    /**
+     * 開始週期檢查（重複呼叫無作用）
+     */
+    public synchronized void start() {
+        if (checkTask == null) {
+            // 探測時間不需準時：允許延後以併入其他喚醒
+            checkTask = scheduler.scheduleAtFixedRate(this::check, probeIntervalMs, probeIntervalMs / 4);
+        }
+    }
+
+    public synchronized void stop() {
+        if (checkTask != null) {
+            checkTask.cancel();
+            checkTask = null;
+        }
+    }
+
+    /**
+     * 對上一個探測已執行的執行緒送出新的探測並排定卡住檢查（排程執行緒）
+     */
+    public void check() {
+        long now = clock.nowMs();
+        for (LaneState state : lanes) {
+            Thread thread = state.lane.thread();
+            synchronized (state) {
+                if (state.pending && state.postedThread != null && state.postedThread.isAlive()) {
+                    continue; // 仍卡住：檢查已排定
+                }
+                // 執行緒已結束（相機關閉）時探測不會再執行，重新開始
+                state.pending = true;
+                state.postedAtMs = now;
+                state.postedThread = thread;
+                state.signature = null;
+                state.stack = null;
+            }
+            if (!state.lane.post(state.probe)) {
+                synchronized (state) {
+                    state.pending = false;
+                }
+                continue;
+            }
+            TaskScheduler.ScheduledTask task = scheduler.schedule(state.capture, thresholdMs, 0);
+            synchronized (state) {
+                if (state.pending) {
+                    state.captureTask = task;
+                    task = null;
+                }
+            }
+            if (task != null) {
+                task.cancel(); // 探測已執行
+            }
+        }
+    }
+
+    /**
+     * 取出上次以來有新發生的彙整（複本；依總卡住時間由多到少）
+     */
+    public List<Stall> drainChanged() {
+        List<Stall> changed = new ArrayList<>();
+        synchronized (stalls) {
+            for (Stall stall : stalls.values()) {
+                if (stall.count != stall.reportedCount) {
+                    stall.reportedCount = stall.count;
+                    changed.add(new Stall(stall));
+                }
+            }
+        }
+        changed.sort((a, b) -> Long.compare(b.totalMs, a.totalMs));
+        return changed;
+    }
+
+    public boolean hasChanged() {
+        synchronized (stalls) {
+            for (Stall stall : stalls.values()) {
+                if (stall.count != stall.reportedCount) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 堆疊簽章：最上面的「類別.方法」（卡在哪裡）加上其下的 App 方法，共 SIGNATURE_FRAMES 個，以「 < 」串接
+     */
+    public static String signature(StackTraceElement[] stack) {
+        if (stack.length == 0) {
+            return UNSAMPLED;
+        }
+        StringBuilder out = new StringBuilder();
+        appendFrame(out, stack[0]);
+        int frames = 1;
+        for (int i = 1; i < stack.length && frames < SIGNATURE_FRAMES; i++) {
+            if (isPlatform(stack[i].getClassName())) {
+                continue;
+            }
+            appendFrame(out.append(" < "), stack[i]);
+            frames++;
+        }
+        return out.toString();
+    }
+
+    private static void appendFrame(StringBuilder out, StackTraceElement frame) {
+        String className = frame.getClassName();
+        // JVM 的 lambda 類別名稱帶有每次執行都不同的位址
+        int lambda = className.indexOf("$$Lambda");
+        if (lambda >= 0) {
+            className = className.substring(0, lambda + "$$Lambda".length());
+        }
+        out.append(className).append('.').append(frame.getMethodName());
+    }
+
+    private static boolean isPlatform(String className) {
+        for (String prefix : PLATFORM_PREFIXES) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static String signatureId(String lane, String signature) {
+        return lane + "_" + Integer.toHexString((lane + '|' + signature).hashCode());
+    }
+
+    private void captureIfPending(LaneState state) {
+        synchronized (state) {
+            state.captureTask = null;
+            if (!state.pending || state.signature != null) {
+                return;
+            }
+        }
+        Thread thread = state.lane.thread();
+        if (thread != null) {
+            captureStack(state, thread);
+        }
+    }
+
+    private void captureStack(LaneState state, Thread thread) {
+        StackTraceElement[] trace = thread.getStackTrace();
+        String signature = signature(trace);
+        StringBuilder stack = new StringBuilder();
+        for (int i = 0; i < Math.min(STACK_FRAMES, trace.length); i++) {
+            stack.append(trace[i]).append('\n');
+        }
+        synchronized (state) {
+            // 擷取期間探測可能已執行：堆疊已不代表卡住的位置
+            if (!state.pending || state.signature != null) {
+                return;
+            }
+            state.signature = signature;
+            state.stack = stack.toString();
+        }
+    }
+
+    private void onProbe(LaneState state) {
+        long now = clock.nowMs();
+        long latency;
+        String signature;
+        String stack;
+        TaskScheduler.ScheduledTask task;
+        synchronized (state) {
+            latency = now - state.postedAtMs;
+            signature = state.signature;
+            stack = state.stack;
+            task = state.captureTask;
+            state.pending = false;
+            state.signature = null;
+            state.stack = null;
+            state.captureTask = null;
+        }
+        if (task != null) {
+            task.cancel();
+        }
+        state.dispatchLast.set(latency);
+        state.dispatchMax.accumulateAndGet(latency, Math::max);
+        if (latency < thresholdMs) {
+            return;
+        }
+        state.stalls.incrementAndGet();
+        state.stallMsTotal.addAndGet(latency);
+        record(state.lane.name(), signature != null ? signature : UNSAMPLED, stack != null ? stack : "", latency);
+    }
+
+    private void record(String lane, String signature, String stack, long latencyMs) {
+        String key = lane + '|' + signature;
+        boolean first = false;
+        Stall stall;
+        synchronized (stalls) {
+            stall = stalls.get(key);
+            if (stall == null) {
+                if (stalls.size() >= MAX_SIGNATURES) {
+                    signaturesDropped.incrementAndGet();
+                    return;
+                }
+                stall = new Stall(lane, signature, stack, wallClock.nowMs());
+                stalls.put(key, stall);
+                first = true;
+            }
+            stall.count++;
+            stall.totalMs += latencyMs;
+            stall.maxMs = Math.max(stall.maxMs, latencyMs);
+            stall.lastMs = wallClock.nowMs();
+        }
+        metrics.counter(LOOPER_STALL_SIGNATURE_PREFIX + stall.id).incrementAndGet();
+        if (first) {
+            logger.log(LogLevel.WARN, "🐢 " + lane + " 執行緒卡住 " + latencyMs + " ms：" + signature);
+        }
+    }
+}
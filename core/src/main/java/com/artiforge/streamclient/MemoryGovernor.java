@@ -0,0 +1,263 @@
+package com.artiforge.streamclient;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 記憶體調節：統一管理影格池、預錄與日誌緩衝區，依 onTrimMemory 與堆積預算縮小或恢復
+ *
+ * - onTrimMemory 的等級立即生效（只升不降），之後連續 relaxMs 沒有新的訊號才每次降一級
+ * - 週期檢查堆積使用量：超過預算 → MODERATE，超過預算 1.5 倍或上限 85% → LOW，超過上限 95% → CRITICAL
+ * - 取兩者中較高的等級；升級立即通知所有緩衝池釋放，降級每次只降一級，
+ *   緩衝池只放寬上限不預先配置，之後使用時才慢慢長回來
+ *
+ * 每個緩衝池的佔用量以 memory_pool_bytes_<name> 回報，壓力改變時通知 Listener。堆積來源與排程器可注入，
+ * 可在 JVM 上以替身的 trim 訊號驗證。狀態以 this 為鎖；緩衝池在狀態鎖外通知。
+ */
+public final class MemoryGovernor {
+
+    public static final String MEMORY_PRESSURE = "memory_pressure";
+    public static final String MEMORY_TRIM_SIGNALS = "memory_trim_signals";
+    public static final String MEMORY_POOL_BYTES_TOTAL = "memory_pool_bytes_total";
+    public static final String MEMORY_POOL_BYTES_PREFIX = "memory_pool_bytes_";
+
+    static final long DEFAULT_POLL_INTERVAL_MS = 15_000;
+    static final long DEFAULT_RELAX_MS = 60_000;
+    private static final long POLL_TOLERANCE_MS = 5_000;
+    // 未設定預算時取堆積上限的一半
+    static final double DEFAULT_BUDGET_FRACTION = 0.5;
+
+    public interface Listener {
+        /** 壓力改變且緩衝池已套用新等級（評估所在的執行緒，狀態鎖外） */
+        void onPressureChanged(MemoryPressure previous, MemoryPressure next);
+    }
+
+    /**
+     * 受管理的緩衝池
+     */
+    public interface Pool {
+        /** 指標名稱的後綴（memory_pool_bytes_<name>） */
+        String poolName();
+
+        /** 目前佔用的位元組數（估計值即可） */
+        long footprintBytes();
+
+        /** 依壓力立即釋放超出的部分，或放寬上限（不預先配置） */
+        void onMemoryPressure(MemoryPressure pressure);
+    }
+
+    /**
+     * 堆積使用量來源（Android 與 JVM 皆為 Runtime）
+     */
+    public interface HeapProbe {
+        HeapProbe RUNTIME = new HeapProbe() {
+            @Override
+            public long usedBytes() {
+                Runtime runtime = Runtime.getRuntime();
+                return runtime.totalMemory() - runtime.freeMemory();
+            }
+
+            @Override
+            public long maxBytes() {
+                return Runtime.getRuntime().maxMemory();
+            }
+        };
+
+        long usedBytes();
+
+        long maxBytes();
+    }
+
+    private final HeapProbe heap;
+    private final TaskScheduler scheduler;
+    private final TimeSource clock;
+    private final StreamMetrics metrics;
+    private final StreamLogger logger;
+    private final long pollIntervalMs;
+    private final long relaxMs;
+    private final List<Pool> pools = new CopyOnWriteArrayList<>();
+    private final AtomicLong trimSignals;
+
+    private volatile Listener listener;
+    private volatile MemoryPressure current = MemoryPressure.NONE;
+    private volatile long budgetBytes = 0;
+    private MemoryPressure trimPressure = MemoryPressure.NONE;
+    private long trimSinceMs = 0;
+    private TaskScheduler.ScheduledTask pollTask;
+
+    public MemoryGovernor(HeapProbe heap, TaskScheduler scheduler, TimeSource clock,
+                          StreamMetrics metrics, StreamLogger logger) {
+        this(heap, scheduler, clock, metrics, logger, DEFAULT_POLL_INTERVAL_MS, DEFAULT_RELAX_MS);
+    }
+
+    public MemoryGovernor(HeapProbe heap, TaskScheduler scheduler, TimeSource clock,
+                          StreamMetrics metrics, StreamLogger logger, long pollIntervalMs, long relaxMs) {
+        this.heap = heap;
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.metrics = metrics;
+        this.logger = logger;
+        this.pollIntervalMs = pollIntervalMs;
+        this.relaxMs = relaxMs;
+        this.trimSignals = metrics.counter(MEMORY_TRIM_SIGNALS);
+        metrics.registerGauge(MEMORY_PRESSURE, () -> current.ordinal());
+        metrics.registerGauge(MEMORY_POOL_BYTES_TOTAL, this::totalFootprintBytes);
+    }
+
+    /**
+     * 堆積使用量 → 壓力（不含 trim 訊號）
+     *
+     * @param budgetBytes 0 代表未設定，取上限的 DEFAULT_BUDGET_FRACTION
+     */
+    public static MemoryPressure heapPressure(long usedBytes, long maxBytes, long budgetBytes) {
+        long budget = budgetBytes > 0 ? budgetBytes : (long) (maxBytes * DEFAULT_BUDGET_FRACTION);
+        if (usedBytes >= maxBytes * 0.95) {
+            return MemoryPressure.CRITICAL;
+        } else if (usedBytes >= maxBytes * 0.85 || usedBytes >= budget * 1.5) {
+            return MemoryPressure.LOW;
+        } else if (usedBytes >= budget) {
+            return MemoryPressure.MODERATE;
+        }
+        return MemoryPressure.NONE;
+    }
+
+    /**
+     * 加入緩衝池並立即套用目前的壓力（同名的舊緩衝池會被取代）
+     */
+    public void register(Pool pool) {
+        String name = pool.poolName();
+        synchronized (pools) {
+            pools.removeIf(existing -> existing.poolName().equals(name));
+            pools.add(pool);
+            pool.onMemoryPressure(current);
+        }
+        metrics.registerGauge(MEMORY_POOL_BYTES_PREFIX + name, () -> footprintBytes(name));
+    }
+
+    public void unregister(Pool pool) {
+        pools.remove(pool);
+    }
+
+    /**
+     * 堆積預算（cmd_memory_budget）；0 代表使用預設值
+     */
+    public void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = Math.max(0, budgetBytes);
+        evaluate();
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public long budgetBytes() {
+        return budgetBytes;
+    }
+
+    public MemoryPressure current() {
+        return current;
+    }
+
+    /**
+     * 開始週期檢查（重複呼叫無作用）
+     */
+    public void start() {
+        synchronized (this) {
+            if (pollTask != null) {
+                return;
+            }
+            pollTask = scheduler.scheduleAtFixedRate(this::evaluate, pollIntervalMs, POLL_TOLERANCE_MS);
+        }
+        evaluate();
+    }
+
+    public void stop() {
+        synchronized (this) {
+            if (pollTask != null) {
+                pollTask.cancel();
+                pollTask = null;
+            }
+        }
+    }
+
+    /**
+     * ComponentCallbacks2.onTrimMemory 的等級（任何執行緒）
+     */
+    public MemoryPressure onTrimMemory(int level) {
+        MemoryPressure pressure = MemoryPressure.fromTrimLevel(level);
+        trimSignals.incrementAndGet();
+        if (pressure != MemoryPressure.NONE) {
+            synchronized (this) {
+                if (!trimPressure.isAbove(pressure)) {
+                    trimPressure = pressure;
+                }
+                trimSinceMs = clock.nowMs();
+            }
+        }
+        return evaluate();
+    }
+
+    /**
+     * 合併 trim 訊號與堆積使用量，壓力改變時通知緩衝池，回傳目前壓力
+     */
+    public MemoryPressure evaluate() {
+        MemoryPressure fromHeap = heapPressure(heap.usedBytes(), heap.maxBytes(), budgetBytes);
+        MemoryPressure previous;
+        MemoryPressure next;
+        synchronized (this) {
+            long now = clock.nowMs();
+            if (trimPressure != MemoryPressure.NONE && now - trimSinceMs >= relaxMs) {
+                // 一段時間沒有新的訊號：每次降一級
+                trimPressure = MemoryPressure.values()[trimPressure.ordinal() - 1];
+                trimSinceMs = now;
+            }
+            MemoryPressure target = fromHeap.isAbove(trimPressure) ? fromHeap : trimPressure;
+            previous = current;
+            if (target == previous) {
+                return previous;
+            }
+            next = target.isAbove(previous) ? target : MemoryPressure.values()[previous.ordinal() - 1];
+            current = next;
+        }
+
+        long before = totalFootprintBytes();
+        synchronized (pools) {
+            // 併發評估時以最新的等級為準
+            MemoryPressure latest = current;
+            for (Pool pool : pools) {
+                pool.onMemoryPressure(latest);
+            }
+        }
+        long after = totalFootprintBytes();
+        if (next.isAbove(previous)) {
+            logger.log(LogLevel.WARN, "🧠 記憶體壓力 " + previous.wireName() + " → " + next.wireName()
+                    + "，緩衝池 " + (before / 1024) + " KB → " + (after / 1024) + " KB");
+        } else {
+            logger.log(LogLevel.INFO, "🧠 記憶體壓力 " + previous.wireName() + " → " + next.wireName()
+                    + "，緩衝池 " + (after / 1024) + " KB");
+        }
+        Listener target = listener;
+        if (target != null) {
+            target.onPressureChanged(previous, next);
+        }
+        return next;
+    }
+
+    public long totalFootprintBytes() {
+        long total = 0;
+        for (Pool pool : pools) {
+            total += pool.footprintBytes();
+        }
+        return total;
+    }
+
+    private long footprintBytes(String name) {
+        for (Pool pool : pools) {
+            if (pool.poolName().equals(name)) {
+                return pool.footprintBytes();
+            }
+        }
+        return 0;
+    }
+}
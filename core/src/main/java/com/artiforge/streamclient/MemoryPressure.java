@@ -0,0 +1,52 @@
+package com.artiforge.streamclient;
+
+/**
+ * 記憶體壓力等級（由 onTrimMemory 與堆積使用量決定，見 MemoryGovernor）
+ *
+ * 各緩衝池依等級自行決定保留多少：NONE 恢復原本上限，CRITICAL 釋放所有可丟棄的資料。
+ */
+public enum MemoryPressure {
+    NONE,
+    MODERATE,
+    LOW,
+    CRITICAL;
+
+    // ComponentCallbacks2.TRIM_MEMORY_*（core 不依賴 Android，數值與平台相同）
+    static final int TRIM_RUNNING_MODERATE = 5;
+    static final int TRIM_RUNNING_LOW = 10;
+    static final int TRIM_RUNNING_CRITICAL = 15;
+    static final int TRIM_UI_HIDDEN = 20;
+    static final int TRIM_BACKGROUND = 40;
+    static final int TRIM_MODERATE = 60;
+    static final int TRIM_COMPLETE = 80;
+
+    /**
+     * onTrimMemory 等級 → 壓力；UI_HIDDEN 只代表介面不可見，前景服務照常串流，不視為壓力
+     */
+    public static MemoryPressure fromTrimLevel(int level) {
+        if (level >= TRIM_COMPLETE) {
+            return CRITICAL;
+        } else if (level >= TRIM_MODERATE) {
+            return LOW;
+        } else if (level >= TRIM_BACKGROUND) {
+            return MODERATE;
+        } else if (level >= TRIM_UI_HIDDEN) {
+            return NONE;
+        } else if (level >= TRIM_RUNNING_CRITICAL) {
+            return CRITICAL;
+        } else if (level >= TRIM_RUNNING_LOW) {
+            return LOW;
+        } else if (level >= TRIM_RUNNING_MODERATE) {
+            return MODERATE;
+        }
+        return NONE;
+    }
+
+    public boolean isAbove(MemoryPressure other) {
+        return ordinal() > other.ordinal();
+    }
+
+    public String wireName() {
+        return name().toLowerCase();
+    }
+}
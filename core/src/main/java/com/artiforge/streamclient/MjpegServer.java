@@ -0,0 +1,483 @@
+package com.artiforge.streamclient;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 區網 MJPEG 伺服器（同一 Wi-Fi 下直接觀看，不經雲端往返）
+ *
+ *   GET /stream?token=…    multipart/x-mixed-replace 連續影格
+ *   GET /snapshot?token=…  最新一張 JPEG
+ *
+ * 只綁定 Wi-Fi（site-local）位址，不在行動網路等其他介面上開放；沒有區網位址時只綁定 loopback。
+ * 每次啟動產生新的隨機 token，只透過已驗證的控制連線（lan_viewer_status）交給伺服器，
+ * token 錯誤或缺少時回 403。
+ *
+ * 影格來自 FrameBus（與上傳共用同一個緩衝區，不複製）。每個連線只會拿到「最新」影格：
+ * 連線較慢時中間的影格直接跳過（計入 lan_frames_skipped），不會累積延遲；
+ * 單次寫入卡住超過 WRITE_STALL_MS 的連線會被關閉。連線數超過上限時回 503。
+ */
+public final class MjpegServer {
+
+    public static final String LAN_CLIENTS = "lan_clients";
+    public static final String LAN_REJECTED = "lan_rejected";
+    public static final String LAN_FRAMES_SENT = "lan_frames_sent";
+    public static final String LAN_FRAMES_SKIPPED = "lan_frames_skipped";
+    public static final String LAN_LATENCY_LAST_MS = "lan_latency_last_ms";
+
+    public static final int DEFAULT_PORT = 8080;
+    static final int DEFAULT_MAX_CLIENTS = 4;
+    static final long WRITE_STALL_MS = 3_000;
+    static final long SNAPSHOT_WAIT_MS = 2_000;
+    static final long ACCEPT_BACKOFF_MS = 50;
+    static final long ACCEPT_BACKOFF_MAX_MS = 2_000;
+    private static final int TOKEN_BYTES = 16;
+    private static final int HEADER_LIMIT = 8 * 1024;
+    private static final int REQUEST_TIMEOUT_MS = 5_000;
+    // 限制核心送出緩衝：否則慢的觀看端會在緩衝區內堆積數秒影格，跳過策略無從生效
+    private static final int SEND_BUFFER_BYTES = 64 * 1024;
+    private static final String BOUNDARY = "frame";
+
+    private final FrameBus frameBus;
+    private final TaskScheduler scheduler;
+    private final TimeSource clock;
+    private final StreamLogger logger;
+    private final InetAddress bindAddress;
+    private final int port;
+    private final int maxClients;
+
+    private final AtomicLong rejected;
+    private final AtomicLong framesSent;
+    private final AtomicLong framesSkipped;
+    private final AtomicLong lastLatencyMs;
+    private final Set<Client> clients = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    // 最新影格（以 frameLock 為鎖）
+    private final Object frameLock = new Object();
+    private EncodedFrame latest;
+    private long latestSequence = 0;
+
+    private volatile boolean running = false;
+    private volatile String token;
+    private volatile ServerSocket serverSocket;
+    private FrameBus.Subscription subscription;
+    private TaskScheduler.ScheduledTask stallCheck;
+
+    /**
+     * @param bindAddress 監聽位址；null 代表第一個 Wi-Fi（site-local）位址，沒有時為 loopback
+     */
+    public MjpegServer(FrameBus frameBus, TaskScheduler scheduler, TimeSource clock, StreamMetrics metrics,
+                       StreamLogger logger, InetAddress bindAddress, int port, int maxClients) {
+        this.frameBus = frameBus;
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.logger = logger;
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.maxClients = maxClients;
+        this.rejected = metrics.counter(LAN_REJECTED);
+        this.framesSent = metrics.counter(LAN_FRAMES_SENT);
+        this.framesSkipped = metrics.counter(LAN_FRAMES_SKIPPED);
+        this.lastLatencyMs = new AtomicLong();
+        metrics.registerGauge(LAN_LATENCY_LAST_MS, lastLatencyMs::get);
+        metrics.registerGauge(LAN_CLIENTS, clients::size);
+    }
+
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        InetAddress address = bindAddress;
+        if (address == null) {
+            address = siteLocalAddress();
+        }
+        if (address == null) {
+            address = InetAddress.getLoopbackAddress();
+        }
+        serverSocket = new ServerSocket(port, 0, address);
+        token = newToken();
+        running = true;
+        // 容量 1 + 丟舊：伺服器只需要最新一張
+        subscription = frameBus.subscribe("lan", 1, FrameBus.DropPolicy.DROP_OLDEST, this::onFrame);
+        stallCheck = scheduler.scheduleAtFixedRate(this::closeStalledClients, 1_000, 500);
+
+        Thread acceptThread = new Thread(this::acceptLoop, "MjpegServer-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        logger.log(LogLevel.INFO, () -> "📡 區網 MJPEG 已啟動: http://" + serverSocket.getInetAddress().getHostAddress()
+                + ":" + serverSocket.getLocalPort() + "/stream");
+    }
+
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        subscription.unsubscribe();
+        stallCheck.cancel();
+        closeQuietly(serverSocket);
+        for (Client client : clients) {
+            closeQuietly(client.socket);
+        }
+        synchronized (frameLock) {
+            if (latest != null) {
+                latest.release();
+                latest = null;
+            }
+            frameLock.notifyAll();
+        }
+        logger.log(LogLevel.INFO, "📡 區網 MJPEG 已停止");
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /** 實際監聽的埠（port 傳 0 時由系統分配） */
+    public int getLocalPort() {
+        ServerSocket current = serverSocket;
+        return current != null ? current.getLocalPort() : -1;
+    }
+
+    /**
+     * 觀看網址（含本次啟動的 token）；未啟動時回傳 null
+     */
+    public String streamUrl() {
+        ServerSocket current = serverSocket;
+        if (!running || current == null) {
+            return null;
+        }
+        return "http://" + current.getInetAddress().getHostAddress() + ":" + current.getLocalPort()
+                + "/stream?token=" + token;
+    }
+
+    public int clientCount() {
+        return clients.size();
+    }
+
+    private void onFrame(EncodedFrame frame) {
+        if (frame.layer != FrameLayer.HIGH) {
+            return; // 區網檢視只看完整畫質層，縮圖層交給伺服器
+        }
+        synchronized (frameLock) {
+            if (!running) {
+                return;
+            }
+            if (latest != null) {
+                latest.release();
+            }
+            latest = frame.retain();
+            latestSequence++;
+            frameLock.notifyAll();
+        }
+    }
+
+    /**
+     * 等待比 afterSequence 新的影格；回傳已 retain 的影格（呼叫者需 release），逾時或停止時回傳 null
+     */
+    private EncodedFrame awaitFrame(Client client, long afterSequence, long timeoutMs) throws InterruptedException {
+        long deadline = clock.nowMs() + timeoutMs;
+        synchronized (frameLock) {
+            while (running && (latest == null || latestSequence <= afterSequence)) {
+                long remaining = deadline - clock.nowMs();
+                if (remaining <= 0) {
+                    return null;
+                }
+                frameLock.wait(remaining);
+            }
+            if (!running) {
+                return null;
+            }
+            if (afterSequence > 0 && latestSequence > afterSequence + 1) {
+                framesSkipped.addAndGet(latestSequence - afterSequence - 1);
+            }
+            client.sequence = latestSequence;
+            return latest.retain();
+        }
+    }
+
+    /**
+     * 接受連線；accept 失敗時以指數退讓重試（不空轉），監聽 socket 已關閉時結束
+     */
+    private void acceptLoop() {
+        ServerSocket listening = serverSocket;
+        long backoffMs = 0;
+        while (running && !listening.isClosed()) {
+            Socket socket;
+            try {
+                socket = listening.accept();
+                backoffMs = 0;
+            } catch (IOException e) {
+                if (!running || listening.isClosed()) {
+                    break;
+                }
+                backoffMs = backoffMs == 0 ? ACCEPT_BACKOFF_MS : Math.min(ACCEPT_BACKOFF_MAX_MS, backoffMs * 2);
+                long delayMs = backoffMs;
+                logger.log(LogLevel.WARN, () -> "⚠️ 區網伺服器 accept 失敗，" + delayMs + " ms 後重試: " + e.getMessage());
+                try {
+                    Thread.sleep(delayMs);
+                } catch (InterruptedException interrupted) {
+                    break;
+                }
+                continue;
+            }
+            if (clients.size() >= maxClients) {
+                rejected.incrementAndGet();
+                respondAndClose(socket, "503 Service Unavailable", "Retry-After: 5\r\n", "too many viewers");
+                continue;
+            }
+            Client client = new Client(socket);
+            clients.add(client);
+            Thread thread = new Thread(client, "MjpegServer-client");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private void closeStalledClients() {
+        long now = clock.nowMs();
+        for (Client client : clients) {
+            long started = client.writeStartedMs;
+            if (started > 0 && now - started > WRITE_STALL_MS) {
+                logger.log(LogLevel.DEBUG, "🐢 區網觀看端寫入逾時，中斷連線");
+                closeQuietly(client.socket);
+            }
+        }
+    }
+
+    private final class Client implements Runnable {
+        final Socket socket;
+        volatile long writeStartedMs = 0; // 0 代表目前沒有在寫入
+        long sequence = 0;                // 以 frameLock 為鎖
+
+        Client(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void run() {
+            try {
+                socket.setTcpNoDelay(true);
+                socket.setSendBufferSize(SEND_BUFFER_BYTES);
+                socket.setSoTimeout(REQUEST_TIMEOUT_MS);
+                String target = readRequestTarget(socket.getInputStream());
+                OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 16 * 1024);
+                String path = target == null ? null : pathOf(target);
+                if (path == null) {
+                    respond(out, "400 Bad Request", "", "bad request");
+                } else if (!tokenMatches(queryParameter(target, "token"), token)) {
+                    respond(out, "403 Forbidden", "", "forbidden");
+                } else if (path.equals("/stream") || path.equals("/")) {
+                    stream(out);
+                } else if (path.equals("/snapshot") || path.equals("/snapshot.jpg")) {
+                    snapshot(out);
+                } else {
+                    respond(out, "404 Not Found", "", "not found");
+                }
+            } catch (IOException | InterruptedException e) {
+                // 觀看端離線或被判定卡住：正常結束
+            } finally {
+                clients.remove(this);
+                closeQuietly(socket);
+            }
+        }
+
+        private void stream(OutputStream out) throws IOException, InterruptedException {
+            writeAscii(out, "HTTP/1.1 200 OK\r\n"
+                    + "Content-Type: multipart/x-mixed-replace; boundary=" + BOUNDARY + "\r\n"
+                    + "Cache-Control: no-cache, no-store\r\n"
+                    + "Pragma: no-cache\r\n"
+                    + "Connection: close\r\n\r\n");
+            out.flush();
+            long lastSequence = 0;
+            while (running) {
+                EncodedFrame frame = awaitFrame(this, lastSequence, 5_000);
+                if (frame == null) {
+                    continue; // 暫時沒有影格（未在串流）：繼續等待
+                }
+                try {
+                    lastSequence = sequence;
+                    writeStartedMs = Math.max(1, clock.nowMs());
+                    writeAscii(out, "--" + BOUNDARY + "\r\n"
+                            + "Content-Type: image/jpeg\r\n"
+                            + "Content-Length: " + frame.length() + "\r\n\r\n");
+                    out.write(frame.data(), 0, frame.length());
+                    writeAscii(out, "\r\n");
+                    out.flush();
+                    writeStartedMs = 0;
+                    framesSent.incrementAndGet();
+                    lastLatencyMs.set(clock.nowMs() - frame.captureTimeMs);
+                } finally {
+                    frame.release();
+                }
+            }
+        }
+
+        private void snapshot(OutputStream out) throws IOException, InterruptedException {
+            EncodedFrame frame = awaitFrame(this, 0, SNAPSHOT_WAIT_MS);
+            if (frame == null) {
+                respond(out, "503 Service Unavailable", "Retry-After: 1\r\n", "no frame available");
+                return;
+            }
+            try {
+                writeStartedMs = Math.max(1, clock.nowMs());
+                writeAscii(out, "HTTP/1.1 200 OK\r\n"
+                        + "Content-Type: image/jpeg\r\n"
+                        + "Content-Length: " + frame.length() + "\r\n"
+                        + "Cache-Control: no-cache, no-store\r\n"
+                        + "Connection: close\r\n\r\n");
+                out.write(frame.data(), 0, frame.length());
+                out.flush();
+                writeStartedMs = 0;
+                framesSent.incrementAndGet();
+            } finally {
+                frame.release();
+            }
+        }
+    }
+
+    /**
+     * 讀取請求列並略過標頭，回傳請求目標（路徑 + 查詢字串）；非 GET 或格式錯誤時回傳 null
+     */
+    static String readRequestTarget(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        String requestLine = null;
+        int total = 0;
+        int c;
+        while ((c = in.read()) != -1) {
+            if (++total > HEADER_LIMIT) {
+                return null;
+            }
+            if (c == '\n') {
+                String text = line.toString().trim();
+                if (requestLine == null) {
+                    requestLine = text;
+                } else if (text.isEmpty()) {
+                    break; // 標頭結束
+                }
+                line.setLength(0);
+            } else {
+                line.append((char) c);
+            }
+        }
+        if (requestLine == null) {
+            return null;
+        }
+        String[] parts = requestLine.split(" ");
+        if (parts.length < 2 || !parts[0].equals("GET")) {
+            return null;
+        }
+        return parts[1];
+    }
+
+    /** 請求目標的路徑部分（不含查詢字串） */
+    static String pathOf(String target) {
+        int query = target.indexOf('?');
+        return query >= 0 ? target.substring(0, query) : target;
+    }
+
+    /** 查詢字串中的參數值（token 只含十六進位字元，不做 URL 解碼）；沒有時回傳 null */
+    static String queryParameter(String target, String name) {
+        int query = target.indexOf('?');
+        if (query < 0) {
+            return null;
+        }
+        for (String pair : target.substring(query + 1).split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && pair.substring(0, eq).equals(name)) {
+                return pair.substring(eq + 1);
+            }
+        }
+        return null;
+    }
+
+    /** 固定時間比較，不因前綴相同而提早返回 */
+    static boolean tokenMatches(String presented, String expected) {
+        if (presented == null || expected == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(presented.getBytes(StandardCharsets.US_ASCII),
+                expected.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String newToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder hex = new StringBuilder(TOKEN_BYTES * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    private static void respond(OutputStream out, String status, String extraHeaders, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        writeAscii(out, "HTTP/1.1 " + status + "\r\n"
+                + extraHeaders
+                + "Content-Type: text/plain; charset=utf-8\r\n"
+                + "Content-Length: " + bytes.length + "\r\n"
+                + "Connection: close\r\n\r\n");
+        out.write(bytes);
+        out.flush();
+    }
+
+    private static void respondAndClose(Socket socket, String status, String extraHeaders, String body) {
+        try {
+            respond(socket.getOutputStream(), status, extraHeaders, body);
+        } catch (IOException e) {
+            // 忽略
+        } finally {
+            closeQuietly(socket);
+        }
+    }
+
+    private static void writeAscii(OutputStream out, String text) throws IOException {
+        out.write(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void closeQuietly(java.io.Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // 忽略
+        }
+    }
+
+    /**
+     * 第一個 Wi-Fi（site-local）IPv4 位址；沒有時回傳 null
+     */
+    static InetAddress siteLocalAddress() {
+        try {
+            for (NetworkInterface nif : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+                if (!nif.isUp() || nif.isLoopback()) {
+                    continue;
+                }
+                for (InetAddress address : Collections.list(nif.getInetAddresses())) {
+                    if (address.isSiteLocalAddress() && address.getAddress().length == 4) {
+                        return address;
+                    }
+                }
+            }
+        } catch (SocketException e) {
+            // 忽略，由呼叫端改用 loopback
+        }
+        return null;
+    }
+}
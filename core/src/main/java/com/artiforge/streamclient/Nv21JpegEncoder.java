@@ -0,0 +1,15 @@
+package com.artiforge.streamclient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * NV21 → JPEG 編碼（Android 為 YuvImage，桌面 JVM 為 ImageIO）
+ */
+public interface Nv21JpegEncoder {
+
+    /**
+     * @return false 代表編碼失敗（輸出內容不可用）
+     */
+    boolean compress(byte[] nv21, int width, int height, int quality, OutputStream out) throws IOException;
+}
@@ -0,0 +1,219 @@
+package com.artiforge.streamclient;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 效能調節：依溫度、電量與充電狀態選擇 PerformanceProfile，限制串流的 FPS、解析度與畫質
+ *
+ * - 溫度 LIGHT → REDUCED，MODERATE → LOW，SEVERE 以上 → IDLE（暫停串流）
+ * - 未充電時電量 ≤30% → REDUCED，≤15% → LOW，≤5% → IDLE；充電中不因電量降檔
+ * - 取兩者中較差的檔位；降檔立即生效，升檔需連續 upgradeHoldMs 都維持較好的狀態，避免在門檻附近來回切換
+ *
+ * 狀態來源與排程器可注入，select() 為純函式，可在 JVM 上以替身狀態驗證。
+ * evaluate 在排程執行緒上執行，狀態以 this 為鎖；Listener 在鎖外呼叫。
+ */
+public final class PerformanceGovernor {
+
+    public static final String PERFORMANCE_PROFILE = "performance_profile";
+    public static final String PERFORMANCE_DOWNGRADES = "performance_downgrades";
+    public static final String PERFORMANCE_UPGRADES = "performance_upgrades";
+
+    static final long DEFAULT_POLL_INTERVAL_MS = 30_000;
+    static final long DEFAULT_UPGRADE_HOLD_MS = 120_000;
+    private static final long POLL_TOLERANCE_MS = 10_000;
+
+    static final int BATTERY_REDUCED_PERCENT = 30;
+    static final int BATTERY_LOW_PERCENT = 15;
+    static final int BATTERY_IDLE_PERCENT = 5;
+
+    public static final String REASON_THERMAL = "thermal";
+    public static final String REASON_BATTERY = "battery";
+    public static final String REASON_RECOVERED = "recovered";
+
+    /**
+     * 一次選擇的結果與依據（回報給伺服器）
+     */
+    public static final class Decision {
+        public final PerformanceProfile profile;
+        /** thermal / battery（造成降檔的因素，兩者同級時取 thermal）或 recovered */
+        public final String reason;
+        public final int thermalStatus;
+        public final int batteryPercent;
+        public final boolean charging;
+
+        Decision(PerformanceProfile profile, String reason, int thermalStatus, int batteryPercent, boolean charging) {
+            this.profile = profile;
+            this.reason = reason;
+            this.thermalStatus = thermalStatus;
+            this.batteryPercent = batteryPercent;
+            this.charging = charging;
+        }
+
+        @Override
+        public String toString() {
+            return profile.wireName() + "（" + reason + "，溫度 " + thermalStatus + "，電量 "
+                    + (batteryPercent < 0 ? "?" : batteryPercent + "%") + (charging ? "，充電中" : "") + "）";
+        }
+    }
+
+    public interface Listener {
+        /** 檔位改變（排程執行緒） */
+        void onProfileChanged(PerformanceProfile previous, Decision decision);
+    }
+
+    private final DeviceStatusProvider status;
+    private final TaskScheduler scheduler;
+    private final TimeSource clock;
+    private final Listener listener;
+    private final StreamLogger logger;
+    private final long pollIntervalMs;
+    private final long upgradeHoldMs;
+
+    private final AtomicLong downgradeCounter;
+    private final AtomicLong upgradeCounter;
+
+    private volatile PerformanceProfile current = PerformanceProfile.NORMAL;
+    private long betterSinceMs = -1;
+    private TaskScheduler.ScheduledTask pollTask;
+
+    public PerformanceGovernor(DeviceStatusProvider status, TaskScheduler scheduler, TimeSource clock,
+                               Listener listener, StreamMetrics metrics, StreamLogger logger) {
+        this(status, scheduler, clock, listener, metrics, logger, DEFAULT_POLL_INTERVAL_MS, DEFAULT_UPGRADE_HOLD_MS);
+    }
+
+    public PerformanceGovernor(DeviceStatusProvider status, TaskScheduler scheduler, TimeSource clock,
+                               Listener listener, StreamMetrics metrics, StreamLogger logger,
+                               long pollIntervalMs, long upgradeHoldMs) {
+        this.status = status;
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.listener = listener;
+        this.logger = logger;
+        this.pollIntervalMs = pollIntervalMs;
+        this.upgradeHoldMs = upgradeHoldMs;
+        this.downgradeCounter = metrics.counter(PERFORMANCE_DOWNGRADES);
+        this.upgradeCounter = metrics.counter(PERFORMANCE_UPGRADES);
+        metrics.registerGauge(PERFORMANCE_PROFILE, () -> current.ordinal());
+    }
+
+    /**
+     * 依目前狀態選擇檔位（不含升檔延遲）
+     */
+    public static Decision select(int thermalStatus, int batteryPercent, boolean charging) {
+        PerformanceProfile thermal;
+        if (thermalStatus >= DeviceStatusProvider.THERMAL_SEVERE) {
+            thermal = PerformanceProfile.IDLE;
+        } else if (thermalStatus == DeviceStatusProvider.THERMAL_MODERATE) {
+            thermal = PerformanceProfile.LOW;
+        } else if (thermalStatus == DeviceStatusProvider.THERMAL_LIGHT) {
+            thermal = PerformanceProfile.REDUCED;
+        } else {
+            thermal = PerformanceProfile.NORMAL;
+        }
+
+        PerformanceProfile battery = PerformanceProfile.NORMAL;
+        if (!charging && batteryPercent >= 0) {
+            if (batteryPercent <= BATTERY_IDLE_PERCENT) {
+                battery = PerformanceProfile.IDLE;
+            } else if (batteryPercent <= BATTERY_LOW_PERCENT) {
+                battery = PerformanceProfile.LOW;
+            } else if (batteryPercent <= BATTERY_REDUCED_PERCENT) {
+                battery = PerformanceProfile.REDUCED;
+            }
+        }
+
+        PerformanceProfile profile;
+        String reason;
+        if (thermal == PerformanceProfile.NORMAL && battery == PerformanceProfile.NORMAL) {
+            profile = PerformanceProfile.NORMAL;
+            reason = REASON_RECOVERED;
+        } else if (battery.isBelow(thermal)) {
+            profile = battery;
+            reason = REASON_BATTERY;
+        } else {
+            profile = thermal;
+            reason = REASON_THERMAL;
+        }
+        return new Decision(profile, reason, thermalStatus, batteryPercent, charging);
+    }
+
+    public static Decision select(DeviceStatusProvider status) {
+        return select(status.thermalStatus(), status.batteryPercent(), status.isCharging());
+    }
+
+    /**
+     * 立即評估一次並開始週期輪詢（重複呼叫無作用）
+     */
+    public void start() {
+        synchronized (this) {
+            if (pollTask != null) {
+                return;
+            }
+            // 輪詢不需準時：允許延後以併入其他喚醒
+            pollTask = scheduler.scheduleAtFixedRate(this::evaluate, pollIntervalMs, POLL_TOLERANCE_MS);
+        }
+        evaluate();
+    }
+
+    public void stop() {
+        synchronized (this) {
+            if (pollTask != null) {
+                pollTask.cancel();
+                pollTask = null;
+            }
+        }
+    }
+
+    public PerformanceProfile current() {
+        return current;
+    }
+
+    /**
+     * 把伺服器要求的參數夾到目前檔位的上限內
+     */
+    public StreamParams cap(StreamParams params) {
+        return current.cap(params);
+    }
+
+    /**
+     * 讀取狀態並套用升降檔規則，回傳目前檔位
+     */
+    public PerformanceProfile evaluate() {
+        Decision decision;
+        try {
+            decision = select(status);
+        } catch (RuntimeException e) {
+            logger.log(LogLevel.WARN, "⚠️ 讀取裝置狀態失敗: " + e.getMessage());
+            return current;
+        }
+
+        PerformanceProfile previous;
+        synchronized (this) {
+            previous = current;
+            if (decision.profile == previous) {
+                betterSinceMs = -1;
+                return previous;
+            }
+            if (previous.isBelow(decision.profile)) {
+                // 升檔：狀態需連續維持 upgradeHoldMs
+                long now = clock.nowMs();
+                if (betterSinceMs < 0) {
+                    betterSinceMs = now;
+                }
+                if (now - betterSinceMs < upgradeHoldMs) {
+                    return previous;
+                }
+                upgradeCounter.incrementAndGet();
+            } else {
+                downgradeCounter.incrementAndGet();
+            }
+            betterSinceMs = -1;
+            current = decision.profile;
+        }
+
+        logger.log(decision.profile.isBelow(previous) ? LogLevel.WARN : LogLevel.INFO,
+                "🌡️ 效能檔位 " + previous.wireName() + " → " + decision);
+        listener.onProfileChanged(previous, decision);
+        return decision.profile;
+    }
+}
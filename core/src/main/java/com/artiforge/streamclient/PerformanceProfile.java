@@ -0,0 +1,54 @@
+package com.artiforge.streamclient;
+
+/**
+ * 效能檔位：對伺服器要求的串流參數設上限（由 PerformanceGovernor 依溫度與電量選擇）
+ *
+ * 由好到差排列；IDLE 暫停串流但保留租約，檔位回升後自動恢復。
+ */
+public enum PerformanceProfile {
+    NORMAL(StreamParams.MAX_FPS, StreamParams.MAX_QUALITY, ResolutionTier.HIGH, false),
+    REDUCED(5, 70, ResolutionTier.MEDIUM, false),
+    LOW(2, 55, ResolutionTier.LOW, false),
+    IDLE(1, StreamParams.MIN_QUALITY, ResolutionTier.LOW, true);
+
+    public final int maxFps;
+    public final int maxQuality;
+    public final ResolutionTier maxTier;
+    public final boolean idle;
+
+    PerformanceProfile(int maxFps, int maxQuality, ResolutionTier maxTier, boolean idle) {
+        this.maxFps = maxFps;
+        this.maxQuality = maxQuality;
+        this.maxTier = maxTier;
+        this.idle = idle;
+    }
+
+    /**
+     * 把參數夾到此檔位的上限內（未超過上限的欄位原樣保留）
+     */
+    public StreamParams cap(StreamParams params) {
+        if (this == NORMAL) {
+            return params;
+        }
+        ResolutionTier tier = params.tier.ordinal() > maxTier.ordinal() ? maxTier : params.tier;
+        return new StreamParams(
+                Math.min(params.fps, maxFps),
+                Math.min(params.quality, maxQuality),
+                tier,
+                params.leaseMs,
+                params.maxAgeMs,
+                params.simulcast,
+                Math.min(params.thumbFps, maxFps),
+                Math.min(params.thumbQuality, maxQuality));
+    }
+
+    /** 是否比 other 更省（較差的檔位） */
+    public boolean isBelow(PerformanceProfile other) {
+        return ordinal() > other.ordinal();
+    }
+
+    /** 伺服器事件使用的名稱（normal / reduced / low / idle） */
+    public String wireName() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,223 @@
+package com.artiforge.streamclient;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 預錄環形緩衝區：未串流時保留最近 windowMs 的低幀率已編碼影格，開始串流時先送出
+ *
+ * 影格數與位元組數都有硬上限：新影格放入前先淘汰最舊的，直到兩個上限都滿足；
+ * 單張超過位元組上限的影格直接丟棄。池中陣列至少 64 KB、通常遠大於 JPEG 本身，
+ * 因此放入時複製成剛好大小的陣列並立即把池中陣列歸還 FramePool；
+ * 位元組數計算的是實際保留的陣列大小，不會佔住池中緩衝區。
+ *
+ * 記憶體壓力（MemoryGovernor）升高時位元組上限依序降為一半、四分之一，CRITICAL 時清空並暫停預錄；
+ * 壓力解除後恢復上限，緩衝區隨新影格慢慢填回。
+ *
+ * 相機執行緒 add、控制端 drainTo / clear，狀態以 this 為鎖。
+ */
+public final class PreRollBuffer implements MemoryGovernor.Pool {
+
+    public static final String PREROLL_FRAMES = "preroll_frames";
+    public static final String PREROLL_BYTES = "preroll_bytes";
+    public static final String PREROLL_EVICTED = "preroll_evicted";
+    public static final String PREROLL_FLUSHED = "preroll_flushed";
+
+    public static final long DEFAULT_WINDOW_MS = 5_000;
+    public static final int DEFAULT_FPS = 2;
+    public static final long DEFAULT_MAX_BYTES = 512 * 1024;
+
+    static final long MAX_WINDOW_MS = 15_000;
+    static final int MAX_FPS = 5;
+    static final long MAX_BYTES = 2 * 1024 * 1024;
+
+    private final EncodedFrame[] ring;
+    private final long maxBytes;
+    private final long windowMs;
+    private final long intervalMs;
+    private final TimeSource clock;
+    private final AtomicLong evictedCounter;
+    private final AtomicLong flushedCounter;
+
+    private int head = 0; // 最舊的一張
+    private int size = 0;
+    private long bytes = 0;
+    private long limitBytes; // 目前的位元組上限（記憶體壓力下小於 maxBytes）
+
+    /**
+     * @param clock 與影格 captureTimeMs 相同的時間基準（TimeSource.MONOTONIC）
+     */
+    public PreRollBuffer(long windowMs, int fps, long maxBytes, TimeSource clock, StreamMetrics metrics) {
+        this.windowMs = Math.max(1_000, Math.min(MAX_WINDOW_MS, windowMs));
+        int rate = Math.max(1, Math.min(MAX_FPS, fps));
+        this.intervalMs = 1000L / rate;
+        this.maxBytes = Math.max(16 * 1024, Math.min(MAX_BYTES, maxBytes));
+        this.limitBytes = this.maxBytes;
+        this.ring = new EncodedFrame[(int) Math.max(1, this.windowMs / this.intervalMs)];
+        this.clock = clock;
+        this.evictedCounter = metrics.counter(PREROLL_EVICTED);
+        this.flushedCounter = metrics.counter(PREROLL_FLUSHED);
+        metrics.registerGauge(PREROLL_FRAMES, this::size);
+        metrics.registerGauge(PREROLL_BYTES, this::bytes);
+    }
+
+    /** 取樣間隔（相機端依此節流） */
+    public long intervalMs() {
+        return intervalMs;
+    }
+
+    public long windowMs() {
+        return windowMs;
+    }
+
+    public int capacity() {
+        return ring.length;
+    }
+
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * 記憶體壓力為 CRITICAL 時不收影格（相機端據此跳過預錄編碼）
+     */
+    public synchronized boolean accepting() {
+        return limitBytes > 0;
+    }
+
+    /**
+     * 影格期限需涵蓋保留時間，開始串流時才不會被當成過期丟棄
+     */
+    public long frameMaxAgeMs(long streamMaxAgeMs) {
+        return windowMs + streamMaxAgeMs;
+    }
+
+    /**
+     * 放入影格並轉移呼叫者持有的參考（池中陣列在此歸還，緩衝區保留的是複本）
+     */
+    public void add(EncodedFrame frame) {
+        if (frame.length() > maxBytes) {
+            evictedCounter.incrementAndGet();
+            frame.release();
+            return;
+        }
+        EncodedFrame retained = compact(frame);
+        EncodedFrame rejected = null;
+        synchronized (this) {
+            long frameBytes = retained.data().length;
+            if (frameBytes > limitBytes) {
+                rejected = retained;
+            } else {
+                evictOlderThan(retained.captureTimeMs - windowMs);
+                while (size == ring.length || bytes + frameBytes > limitBytes) {
+                    evictOldest();
+                }
+                ring[(head + size) % ring.length] = retained;
+                size++;
+                bytes += frameBytes;
+            }
+        }
+        if (rejected != null) {
+            evictedCounter.incrementAndGet();
+            rejected.release();
+        }
+    }
+
+    /**
+     * 依時間順序取出所有仍在保留時間內的影格（參考轉移給呼叫者），緩衝區清空
+     *
+     * @return 取出的張數
+     */
+    public synchronized int drainTo(List<EncodedFrame> out) {
+        evictOlderThan(clock.nowMs() - windowMs);
+        int drained = size;
+        while (size > 0) {
+            out.add(ring[head]);
+            ring[head] = null;
+            head = (head + 1) % ring.length;
+            size--;
+        }
+        bytes = 0;
+        flushedCounter.addAndGet(drained);
+        return drained;
+    }
+
+    /**
+     * 釋放所有影格（關閉預錄時呼叫）
+     */
+    public synchronized void clear() {
+        while (size > 0) {
+            evictOldest();
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    @Override
+    public String poolName() {
+        return "preroll";
+    }
+
+    @Override
+    public long footprintBytes() {
+        return bytes();
+    }
+
+    @Override
+    public synchronized void onMemoryPressure(MemoryPressure pressure) {
+        switch (pressure) {
+            case CRITICAL:
+                limitBytes = 0;
+                break;
+            case LOW:
+                limitBytes = maxBytes / 4;
+                break;
+            case MODERATE:
+                limitBytes = maxBytes / 2;
+                break;
+            default:
+                limitBytes = maxBytes;
+                break;
+        }
+        while (size > 0 && bytes > limitBytes) {
+            evictOldest();
+        }
+    }
+
+    /**
+     * 複製成剛好大小的不回收影格並釋放原本的參考（陣列已剛好時直接沿用）
+     */
+    private static EncodedFrame compact(EncodedFrame frame) {
+        byte[] data = frame.data();
+        if (data.length == frame.length()) {
+            return frame;
+        }
+        EncodedFrame copy = new EncodedFrame(null, Arrays.copyOf(data, frame.length()), frame.length(),
+                frame.captureTimeMs, frame.deadlineMs, frame.layer);
+        frame.release();
+        return copy;
+    }
+
+    private void evictOlderThan(long oldestAllowedMs) {
+        while (size > 0 && ring[head].captureTimeMs < oldestAllowedMs) {
+            evictOldest();
+        }
+    }
+
+    private void evictOldest() {
+        EncodedFrame oldest = ring[head];
+        ring[head] = null;
+        head = (head + 1) % ring.length;
+        size--;
+        bytes -= oldest.data().length;
+        evictedCounter.incrementAndGet();
+        oldest.release();
+    }
+}
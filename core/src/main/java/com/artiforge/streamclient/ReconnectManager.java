@@ -0,0 +1,195 @@
+package com.artiforge.streamclient;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 斷線重連管理（取代 Socket.IO 內建的 5 次重連 + 3 分鐘心跳輪詢）
+ *
+ * - 指數退避 + 抖動（equal jitter）：延遲落在 [d/2, d]，d = min(上限, 基準 × 2^n)
+ * - 每輪最多 maxAttempts 次，用盡後冷卻 cooldownMs 再開始新一輪（不會永久放棄）
+ * - 連線恢復時記錄斷線到恢復的時間（time-to-recover）
+ *
+ * 重連在排程器執行緒上觸發，其餘呼叫來自主執行緒，狀態以 this 為鎖；
+ * 排程器與時間可注入，方便在 JVM 上以虛擬時鐘（TimerWheel）驗證。
+ */
+public final class ReconnectManager {
+
+    public static final String RECONNECT_ATTEMPTS = "reconnect_attempts";
+    public static final String RECONNECT_SUCCESSES = "reconnect_successes";
+    public static final String RECONNECT_LAST_RECOVERY_MS = "reconnect_last_recovery_ms";
+    public static final String RECONNECT_MAX_RECOVERY_MS = "reconnect_max_recovery_ms";
+
+    static final long DEFAULT_BASE_DELAY_MS = 500;
+    static final long DEFAULT_MAX_DELAY_MS = 30_000;
+    static final int DEFAULT_MAX_ATTEMPTS = 12;
+    static final long DEFAULT_COOLDOWN_MS = 60_000;
+
+    /** 對既有連線物件重新連線（不建立新 socket） */
+    public interface Connector {
+        void connect();
+    }
+
+    private final TaskScheduler scheduler;
+    private final TimeSource clock;
+    private final Connector connector;
+    private final Random random;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final int maxAttempts;
+    private final long cooldownMs;
+
+    private final AtomicLong attemptsCounter;
+    private final AtomicLong successCounter;
+    private final AtomicLong lastRecoveryMs;
+    private final AtomicLong maxRecoveryMs;
+
+    private boolean enabled = false;
+    private TaskScheduler.ScheduledTask pending = null;
+    // 每次排程遞增：已取消的排程即使仍被執行也會被忽略
+    private long pendingGeneration = 0;
+    private int attempt = 0;
+    private long disconnectedAtMs = -1;
+
+    public ReconnectManager(TaskScheduler scheduler, TimeSource clock, Connector connector, StreamMetrics metrics) {
+        this(scheduler, clock, connector, metrics, new Random(),
+                DEFAULT_BASE_DELAY_MS, DEFAULT_MAX_DELAY_MS, DEFAULT_MAX_ATTEMPTS, DEFAULT_COOLDOWN_MS);
+    }
+
+    public ReconnectManager(TaskScheduler scheduler, TimeSource clock, Connector connector, StreamMetrics metrics,
+                            Random random, long baseDelayMs, long maxDelayMs, int maxAttempts, long cooldownMs) {
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.connector = connector;
+        this.random = random;
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.maxAttempts = maxAttempts;
+        this.cooldownMs = cooldownMs;
+        this.attemptsCounter = metrics.counter(RECONNECT_ATTEMPTS);
+        this.successCounter = metrics.counter(RECONNECT_SUCCESSES);
+        this.lastRecoveryMs = metrics.counter(RECONNECT_LAST_RECOVERY_MS);
+        this.maxRecoveryMs = metrics.counter(RECONNECT_MAX_RECOVERY_MS);
+    }
+
+    /**
+     * 開始管理（使用者要求連線時呼叫）
+     */
+    public synchronized void start() {
+        enabled = true;
+    }
+
+    /**
+     * 停止管理並取消待執行的重連（使用者主動斷線時呼叫）
+     */
+    public synchronized void stop() {
+        enabled = false;
+        cancelPending();
+        attempt = 0;
+        disconnectedAtMs = -1;
+    }
+
+    /**
+     * 連線成功：重置退避；若是從斷線恢復，回傳恢復耗時（毫秒），否則回傳 -1
+     */
+    public synchronized long onConnected() {
+        cancelPending();
+        attempt = 0;
+        if (disconnectedAtMs < 0) {
+            return -1;
+        }
+        long recovery = clock.nowMs() - disconnectedAtMs;
+        disconnectedAtMs = -1;
+        successCounter.incrementAndGet();
+        lastRecoveryMs.set(recovery);
+        if (recovery > maxRecoveryMs.get()) {
+            maxRecoveryMs.set(recovery);
+        }
+        return recovery;
+    }
+
+    /**
+     * 斷線或連線失敗：排程下一次重連（已有排程時不重複）
+     */
+    public synchronized void onConnectionLost() {
+        if (!enabled) {
+            return;
+        }
+        if (disconnectedAtMs < 0) {
+            disconnectedAtMs = clock.nowMs();
+        }
+        if (pending == null) {
+            // 重連時間不需精準：允許延後 1/8 以併入其他喚醒
+            long delay = nextDelayMs();
+            long generation = ++pendingGeneration;
+            pending = scheduler.schedule(() -> attemptScheduled(generation), delay, delay / 8);
+        }
+    }
+
+    /**
+     * 立即重連（例如網路恢復或 App 回到前景），不等待退避
+     */
+    public void reconnectNow() {
+        synchronized (this) {
+            if (!enabled) {
+                return;
+            }
+            if (disconnectedAtMs < 0) {
+                disconnectedAtMs = clock.nowMs();
+            }
+            cancelPending();
+        }
+        attempt();
+    }
+
+    public synchronized boolean isPending() {
+        return pending != null;
+    }
+
+    public synchronized int currentAttempt() {
+        return attempt;
+    }
+
+    /**
+     * 下一次重連的延遲；本輪次數用盡時回傳冷卻時間並開始新一輪
+     */
+    long nextDelayMs() {
+        if (attempt >= maxAttempts) {
+            attempt = 0;
+            return cooldownMs;
+        }
+        long ceiling = Math.min(maxDelayMs, baseDelayMs << Math.min(attempt, 30));
+        long half = ceiling / 2;
+        return half + (long) (random.nextDouble() * (ceiling - half));
+    }
+
+    private void attemptScheduled(long generation) {
+        synchronized (this) {
+            if (pending == null || generation != pendingGeneration) {
+                return; // 已被 stop / onConnected / reconnectNow 取消
+            }
+        }
+        attempt();
+    }
+
+    private void attempt() {
+        synchronized (this) {
+            pending = null;
+            if (!enabled) {
+                return;
+            }
+            attempt++;
+            attemptsCounter.incrementAndGet();
+        }
+        // 鎖外連線：連線結果由 onConnected / onConnectionLost 回報
+        connector.connect();
+    }
+
+    private void cancelPending() {
+        if (pending != null) {
+            pending.cancel();
+            pending = null;
+            pendingGeneration++;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.artiforge.streamclient;
+
+import org.json.JSONObject;
+
+/**
+ * 感興趣區域（由 cmd_roi 的 payload 指定）：只編碼、上傳直立畫面中的一塊
+ *
+ * 座標為直立輸出畫面的比例（0–1）：x、y 為左上角，w、h 為寬高。裁切在 YUV 打包時就完成
+ * （見 YuvFrameProcessor），之後的旋轉、縮小與 JPEG 編碼都只處理區域內的像素；區域小於
+ * 解析度等級時不再縮小，等於以感光元件的原始細節做數位變焦。
+ * 寬高不小於 MIN_SIZE，超出畫面的部分會被夾回畫面內。
+ */
+public final class RegionOfInterest {
+
+    static final double MIN_SIZE = 0.05;
+
+    public static final RegionOfInterest FULL = new RegionOfInterest(0, 0, 1, 1);
+
+    public final double x;
+    public final double y;
+    public final double width;
+    public final double height;
+
+    public RegionOfInterest(double x, double y, double width, double height) {
+        this.width = Double.isNaN(width) ? 1 : clamp(width, MIN_SIZE, 1);
+        this.height = Double.isNaN(height) ? 1 : clamp(height, MIN_SIZE, 1);
+        this.x = clamp(x, 0, 1 - this.width);
+        this.y = clamp(y, 0, 1 - this.height);
+    }
+
+    public boolean isFull() {
+        return width >= 1 && height >= 1;
+    }
+
+    /**
+     * 從 socket 事件參數解析（沒有 payload 或 enabled 為 false 時回傳 FULL）
+     */
+    public static RegionOfInterest fromEventArgs(Object[] args) {
+        if (args == null || args.length == 0 || !(args[0] instanceof JSONObject)) {
+            return FULL;
+        }
+        JSONObject json = (JSONObject) args[0];
+        if (!json.optBoolean("enabled", true)) {
+            return FULL;
+        }
+        return new RegionOfInterest(
+                json.optDouble("x", 0),
+                json.optDouble("y", 0),
+                json.optDouble("w", 1),
+                json.optDouble("h", 1));
+    }
+
+    @Override
+    public String toString() {
+        if (isFull()) {
+            return "全畫面";
+        }
+        return String.format("(%.2f, %.2f) %.0f%%x%.0f%%", x, y, width * 100, height * 100);
+    }
+
+    private static double clamp(double value, double min, double max) {
+        if (Double.isNaN(value)) {
+            return min;
+        }
+        return Math.max(min, Math.min(max, value));
+    }
+}
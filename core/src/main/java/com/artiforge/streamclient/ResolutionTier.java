@@ -0,0 +1,33 @@
+package com.artiforge.streamclient;
+
+/**
+ * 串流解析度等級（直立輸出尺寸）
+ */
+public enum ResolutionTier {
+    LOW(240, 320),
+    MEDIUM(480, 640),
+    HIGH(720, 960);
+
+    public final int width;
+    public final int height;
+
+    ResolutionTier(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * 解析伺服器傳來的名稱（low / medium / high），無法辨識時回傳 fallback
+     */
+    public static ResolutionTier fromName(String name, ResolutionTier fallback) {
+        if (name == null) {
+            return fallback;
+        }
+        for (ResolutionTier tier : values()) {
+            if (tier.name().equalsIgnoreCase(name)) {
+                return tier;
+            }
+        }
+        return fallback;
+    }
+}
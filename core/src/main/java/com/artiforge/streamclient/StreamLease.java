@@ -0,0 +1,126 @@
+package com.artiforge.streamclient;
+
+/**
+ * 觀看租約狀態機
+ *
+ * 伺服器以 cmd_start_stream 授予租約，之後需在租約到期前續約
+ * （再次 cmd_start_stream 或 cmd_renew_lease）；未續約則立即停止串流。
+ *
+ *   IDLE ──grant──▶ ACTIVE ──grant / renew──▶ ACTIVE（延長期限）
+ *                     │
+ *                     ├──expire（到期）──▶ IDLE
+ *                     └──revoke（cmd_stop_stream）──▶ IDLE
+ *
+ * 只有呼叫端傳入的時間會推進狀態（TimeSource），可用假時鐘測試（見 harness 的 StreamLeaseCheck）。
+ * 非執行緒安全：由單一執行緒（StreamEngine 的 ControlLane）操作，到期計時器也會轉到 ControlLane 執行。
+ */
+public final class StreamLease {
+
+    public enum State {
+        IDLE,
+        ACTIVE
+    }
+
+    /** 每次操作的結果，呼叫端依此啟動 / 更新 / 停止串流 */
+    public enum Transition {
+        STARTED,    // IDLE → ACTIVE：開始串流
+        RENEWED,    // ACTIVE → ACTIVE：只延長期限
+        UPDATED,    // ACTIVE → ACTIVE：延長期限且參數改變
+        EXPIRED,    // ACTIVE → IDLE：租約到期
+        REVOKED,    // ACTIVE → IDLE：伺服器要求停止
+        NONE        // 狀態未改變
+    }
+
+    private final TimeSource clock;
+    private State state = State.IDLE;
+    private StreamParams params = StreamParams.DEFAULT;
+    private long expiresAtMs = 0;
+
+    public StreamLease(TimeSource clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * cmd_start_stream：開始串流，或在串流中時續約並套用新參數
+     */
+    public Transition grant(StreamParams newParams) {
+        long now = clock.nowMs();
+        if (state == State.ACTIVE && now >= expiresAtMs) {
+            // 到期檢查尚未執行就收到新授權：視為重新開始
+            state = State.IDLE;
+        }
+        expiresAtMs = now + newParams.leaseMs;
+        if (state == State.IDLE) {
+            state = State.ACTIVE;
+            params = newParams;
+            return Transition.STARTED;
+        }
+        boolean changed = newParams.fps != params.fps
+                || newParams.quality != params.quality
+                || newParams.tier != params.tier
+                || newParams.maxAgeMs != params.maxAgeMs
+                || newParams.simulcast != params.simulcast
+                || newParams.thumbFps != params.thumbFps
+                || newParams.thumbQuality != params.thumbQuality;
+        params = newParams;
+        return changed ? Transition.UPDATED : Transition.RENEWED;
+    }
+
+    /**
+     * cmd_renew_lease：只延長期限（leaseMs <= 0 時沿用目前租約長度）
+     *
+     * 到期計時器尚未執行就收到續約時不延長，回傳 EXPIRED（呼叫端需停止串流，計時器之後不會再回報）
+     */
+    public Transition renew(long leaseMs) {
+        if (checkExpiry() == Transition.EXPIRED) {
+            return Transition.EXPIRED;
+        }
+        if (state != State.ACTIVE) {
+            return Transition.NONE;
+        }
+        long duration = leaseMs > 0
+                ? Math.max(StreamParams.MIN_LEASE_MS, Math.min(StreamParams.MAX_LEASE_MS, leaseMs))
+                : params.leaseMs;
+        expiresAtMs = clock.nowMs() + duration;
+        return Transition.RENEWED;
+    }
+
+    /**
+     * cmd_stop_stream
+     */
+    public Transition revoke() {
+        if (state != State.ACTIVE) {
+            return Transition.NONE;
+        }
+        state = State.IDLE;
+        return Transition.REVOKED;
+    }
+
+    /**
+     * 到期檢查（由計時器在 remainingMs() 後呼叫）
+     */
+    public Transition checkExpiry() {
+        if (state == State.ACTIVE && clock.nowMs() >= expiresAtMs) {
+            state = State.IDLE;
+            return Transition.EXPIRED;
+        }
+        return Transition.NONE;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isActive() {
+        return state == State.ACTIVE;
+    }
+
+    public StreamParams getParams() {
+        return params;
+    }
+
+    /** 距離到期的毫秒數（IDLE 時為 0） */
+    public long remainingMs() {
+        return state == State.ACTIVE ? Math.max(0, expiresAtMs - clock.nowMs()) : 0;
+    }
+}
@@ -0,0 +1,49 @@
+package com.artiforge.streamclient;
+
+import java.util.function.Supplier;
+
+/**
+ * 依等級過濾的日誌入口
+ *
+ * 熱路徑上的呼叫端傳入等級與延遲產生的訊息（Supplier），
+ * 等級未開啟時只做一次比較，不會組字串、也不會呼叫 Sink。
+ * 需要多行或迴圈組訊息的地方，先以 isLoggable() 包住。
+ */
+public final class StreamLogger {
+
+    public interface Sink {
+        void write(LogLevel level, String message);
+    }
+
+    private final Sink sink;
+    private volatile int minOrdinal;
+
+    public StreamLogger(LogLevel minLevel, Sink sink) {
+        this.sink = sink;
+        this.minOrdinal = minLevel.ordinal();
+    }
+
+    public void setMinLevel(LogLevel minLevel) {
+        this.minOrdinal = minLevel.ordinal();
+    }
+
+    public LogLevel getMinLevel() {
+        return LogLevel.values()[minOrdinal];
+    }
+
+    public boolean isLoggable(LogLevel level) {
+        return level.ordinal() >= minOrdinal;
+    }
+
+    public void log(LogLevel level, String message) {
+        if (level.ordinal() >= minOrdinal) {
+            sink.write(level, message);
+        }
+    }
+
+    public void log(LogLevel level, Supplier<String> message) {
+        if (level.ordinal() >= minOrdinal) {
+            sink.write(level, message.get());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.artiforge.streamclient;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 串流統計：累計計數器 + 即時數值（gauge）
+ *
+ * 熱路徑請先以 counter() 取得 AtomicLong 後保存，避免每張影格都查表
+ */
+public final class StreamMetrics {
+
+    // 過期影格（依丟棄位置分別計數）
+    public static final String FRAMES_STALE_BEFORE_ENCODE = "frames_stale_before_encode";
+    public static final String FRAMES_STALE_BEFORE_QUEUE = "frames_stale_before_queue";
+    public static final String FRAMES_STALE_BEFORE_SEND = "frames_stale_before_send";
+    // 未連線時到達上傳訂閱者的影格
+    public static final String FRAMES_DROPPED_DISCONNECTED = "frames_dropped_disconnected";
+
+    // 開始串流到第一張影格交給傳輸層（預錄或即時）/ 第一張即時影格的時間（最近一次）
+    public static final String STREAM_TTFF_MS_FIRST = "stream_ttff_ms_first";
+    public static final String STREAM_TTFF_MS_LIVE = "stream_ttff_ms_live";
+
+    public interface Gauge {
+        long value();
+    }
+
+    private final ConcurrentHashMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+
+    public AtomicLong counter(String name) {
+        return counters.computeIfAbsent(name, key -> new AtomicLong());
+    }
+
+    public void increment(String name) {
+        counter(name).incrementAndGet();
+    }
+
+    public long get(String name) {
+        AtomicLong counter = counters.get(name);
+        if (counter != null) {
+            return counter.get();
+        }
+        Gauge gauge = gauges.get(name);
+        return gauge != null ? gauge.value() : 0;
+    }
+
+    public void registerGauge(String name, Gauge gauge) {
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * 依名稱排序的快照（計數器與 gauge 合併）
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> out = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> e : counters.entrySet()) {
+            out.put(e.getKey(), e.getValue().get());
+        }
+        for (Map.Entry<String, Gauge> e : gauges.entrySet()) {
+            out.put(e.getKey(), e.getValue().value());
+        }
+        return out;
+    }
+}
@@ -0,0 +1,101 @@
+package com.artiforge.streamclient;
+
+import org.json.JSONObject;
+
+/**
+ * 單次串流的參數（由 cmd_start_stream 的可選 payload 指定）
+ *
+ * payload 欄位：fps、quality、resolution（low / medium / high）、lease_ms、max_age_ms；
+ * simulcast 為 true 時另外產生縮圖層（thumb_fps、thumb_quality），完整畫質層只在
+ * 伺服器以 cmd_detail_viewer 回報有詳細檢視者時送出。
+ * 缺少的欄位使用預設值，超出範圍的值會被夾回合法範圍。
+ */
+public final class StreamParams {
+
+    public static final int DEFAULT_FPS = 10;
+    public static final int DEFAULT_QUALITY = 85;
+    public static final long DEFAULT_LEASE_MS = 15_000; // 沿用舊版固定 15 秒
+    public static final int DEFAULT_THUMB_FPS = 2;
+    public static final int DEFAULT_THUMB_QUALITY = 50;
+
+    static final int MIN_FPS = 1;
+    static final int MAX_FPS = 30;
+    static final int MIN_QUALITY = 20;
+    static final int MAX_QUALITY = 95;
+    static final long MIN_LEASE_MS = 1_000;
+    static final long MAX_LEASE_MS = 10 * 60_000;
+    static final long MIN_MAX_AGE_MS = 100;
+    static final long MAX_MAX_AGE_MS = 10_000;
+
+    public static final StreamParams DEFAULT = new StreamParams(
+            DEFAULT_FPS, DEFAULT_QUALITY, ResolutionTier.MEDIUM, DEFAULT_LEASE_MS, EncodedFrame.DEFAULT_MAX_AGE_MS);
+
+    public final int fps;
+    public final int quality;
+    public final ResolutionTier tier;
+    public final long leaseMs;
+    public final long maxAgeMs;
+    public final boolean simulcast;
+    public final int thumbFps;
+    public final int thumbQuality;
+
+    public StreamParams(int fps, int quality, ResolutionTier tier, long leaseMs, long maxAgeMs) {
+        this(fps, quality, tier, leaseMs, maxAgeMs, false, DEFAULT_THUMB_FPS, DEFAULT_THUMB_QUALITY);
+    }
+
+    public StreamParams(int fps, int quality, ResolutionTier tier, long leaseMs, long maxAgeMs,
+                        boolean simulcast, int thumbFps, int thumbQuality) {
+        this.fps = clamp(fps, MIN_FPS, MAX_FPS);
+        this.quality = clamp(quality, MIN_QUALITY, MAX_QUALITY);
+        this.tier = tier;
+        this.leaseMs = clamp(leaseMs, MIN_LEASE_MS, MAX_LEASE_MS);
+        this.maxAgeMs = clamp(maxAgeMs, MIN_MAX_AGE_MS, MAX_MAX_AGE_MS);
+        this.simulcast = simulcast;
+        this.thumbFps = clamp(thumbFps, MIN_FPS, MAX_FPS);
+        this.thumbQuality = clamp(thumbQuality, MIN_QUALITY, MAX_QUALITY);
+    }
+
+    public long frameIntervalMs() {
+        return 1000L / fps;
+    }
+
+    public long thumbIntervalMs() {
+        return 1000L / thumbFps;
+    }
+
+    /**
+     * 從 socket 事件參數解析（沒有 payload 時回傳 DEFAULT）
+     */
+    public static StreamParams fromEventArgs(Object[] args) {
+        if (args == null || args.length == 0 || !(args[0] instanceof JSONObject)) {
+            return DEFAULT;
+        }
+        JSONObject json = (JSONObject) args[0];
+        return new StreamParams(
+                json.optInt("fps", DEFAULT.fps),
+                json.optInt("quality", DEFAULT.quality),
+                ResolutionTier.fromName(json.optString("resolution", null), DEFAULT.tier),
+                json.optLong("lease_ms", DEFAULT.leaseMs),
+                json.optLong("max_age_ms", DEFAULT.maxAgeMs),
+                json.optBoolean("simulcast", DEFAULT.simulcast),
+                json.optInt("thumb_fps", DEFAULT.thumbFps),
+                json.optInt("thumb_quality", DEFAULT.thumbQuality));
+    }
+
+    @Override
+    public String toString() {
+        String text = fps + " FPS, Q" + quality + ", " + tier.width + "x" + tier.height + ", 租約 " + (leaseMs / 1000) + " 秒";
+        if (simulcast) {
+            text += "，縮圖層 " + thumbFps + " FPS, Q" + thumbQuality;
+        }
+        return text;
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static long clamp(long value, long min, long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
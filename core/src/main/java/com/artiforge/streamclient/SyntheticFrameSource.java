@@ -0,0 +1,130 @@
+package com.artiforge.streamclient;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 合成影格來源：以固定的感光元件幀率產生 SyntheticYuvFrame，經由與相機相同的 FrameEncoder 編碼
+ *
+ * 讓轉換、排隊與上傳路徑不需要實體相機也能長時間執行（記憶體洩漏、GC 壓力、執行緒數量）。
+ * speed 大於 1 時模擬時間比真實時間快：感光元件時間（節流用）以 speed 倍前進，
+ * 擷取時間與期限仍以 clock 為準，下游的過期判斷不受影響。
+ * 開啟後有自己的擷取執行緒（對應相機的背景 HandlerThread），stopCamera 時結束。
+ */
+public final class SyntheticFrameSource implements FrameSource {
+
+    private final FrameEncoder frameEncoder;
+    private final SyntheticYuvFrame frame;
+    private final TimeSource clock;
+    private final int sensorFps;
+    private final double speed;
+
+    private volatile FrameCallback frameCallback;
+    private volatile boolean isStreaming = false;
+    private ScheduledExecutorService captureThread;
+    private long frameIndex = 0;
+
+    /**
+     * @param sensorFps 感光元件幀率（串流幀率由 FrameEncoder 依參數節流）
+     * @param speed     模擬時間相對真實時間的倍數
+     */
+    public SyntheticFrameSource(FrameEncoder frameEncoder, SyntheticYuvFrame frame, TimeSource clock,
+                                int sensorFps, double speed) {
+        if (sensorFps <= 0 || speed <= 0) {
+            throw new IllegalArgumentException("sensorFps and speed must be positive");
+        }
+        this.frameEncoder = frameEncoder;
+        this.frame = frame;
+        this.clock = clock;
+        this.sensorFps = sensorFps;
+        this.speed = speed;
+    }
+
+    @Override
+    public void setFrameCallback(FrameCallback callback) {
+        this.frameCallback = callback;
+    }
+
+    @Override
+    public void setDetailViewerActive(boolean active) {
+        frameEncoder.setDetailViewerActive(active);
+    }
+
+    @Override
+    public void setRegionOfInterest(RegionOfInterest region) {
+        frameEncoder.setRegionOfInterest(region);
+    }
+
+    /**
+     * 擷取尺寸固定（建構時指定），解析度等級只影響輸出的縮小
+     */
+    @Override
+    public void applyStreamParams(StreamParams params) {
+        frameEncoder.applyStreamParams(params);
+    }
+
+    @Override
+    public synchronized void startCamera() {
+        if (captureThread != null) {
+            return;
+        }
+        captureThread = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "SyntheticCamera");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long periodUs = Math.max(1, Math.round(1_000_000.0 / (sensorFps * speed)));
+        captureThread.scheduleAtFixedRate(this::capture, 0, periodUs, TimeUnit.MICROSECONDS);
+        FrameCallback callback = frameCallback;
+        if (callback != null) {
+            callback.onCameraStatusChanged(true, "ready");
+        }
+    }
+
+    @Override
+    public void startStreaming() {
+        isStreaming = true;
+    }
+
+    @Override
+    public void stopStreaming() {
+        isStreaming = false;
+    }
+
+    @Override
+    public synchronized void stopCamera() {
+        isStreaming = false;
+        if (captureThread != null) {
+            captureThread.shutdownNow();
+            captureThread = null;
+        }
+    }
+
+    /**
+     * 已產生的影格數（感光元件時間 = frames / sensorFps）
+     */
+    public synchronized long framesCaptured() {
+        return frameIndex;
+    }
+
+    /**
+     * 已模擬的感光元件時間
+     */
+    public long simulatedMs() {
+        return framesCaptured() * 1000L / sensorFps;
+    }
+
+    private void capture() {
+        long index;
+        synchronized (this) {
+            index = frameIndex++;
+        }
+        if (!isStreaming || !frameEncoder.selectLayers(index * 1000L / sensorFps)) {
+            return;
+        }
+        frame.render(index);
+        frameEncoder.encode(frame.y, frame.yRowStride, frame.u, frame.v, frame.uvRowStride, frame.uvPixelStride,
+                frame.width, frame.height, clock.nowMs(), frameCallback);
+    }
+}
@@ -0,0 +1,134 @@
+package com.artiforge.streamclient;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * 合成的 YUV_420_888 影格平面（橫向，與 Camera2 ImageReader 的配置相同）
+ *
+ * 列寬可加填充；uvPixelStride = 2 時 U/V 為交錯的同一塊記憶體（多數裝置），
+ * = 1 時為各自獨立的平面。內容是捲動的漸層、移動的方塊與固定的雜訊紋理，
+ * 由影格序號決定（可重現），JPEG 大小接近真實畫面。
+ */
+public final class SyntheticYuvFrame {
+
+    private static final int BLOCK_SIZE = 48;
+    private static final int NOISE_AMPLITUDE = 6;
+
+    public final int width;
+    public final int height;
+    public final int yRowStride;
+    public final int uvRowStride;
+    public final int uvPixelStride;
+    public final ByteBuffer y;
+    public final ByteBuffer u;
+    public final ByteBuffer v;
+
+    private final byte[] yPlane;
+    private final byte[] uPlane;
+    private final byte[] vPlane;
+    private final int uOffset;
+    private final byte[] noise;
+
+    /**
+     * @param rowPadding    每列額外的填充位元組
+     * @param uvPixelStride 1（平面）或 2（交錯）
+     */
+    public SyntheticYuvFrame(int width, int height, int rowPadding, int uvPixelStride) {
+        if (width <= 0 || height <= 0 || width % 2 != 0 || height % 2 != 0) {
+            throw new IllegalArgumentException("size must be positive and even: " + width + "x" + height);
+        }
+        if (uvPixelStride != 1 && uvPixelStride != 2) {
+            throw new IllegalArgumentException("uvPixelStride must be 1 or 2: " + uvPixelStride);
+        }
+        this.width = width;
+        this.height = height;
+        this.uvPixelStride = uvPixelStride;
+        this.yRowStride = width + rowPadding;
+        this.uvRowStride = uvPixelStride == 2 ? yRowStride : yRowStride / 2;
+
+        int chromaWidth = width / 2;
+        int chromaHeight = height / 2;
+        yPlane = new byte[yRowStride * (height - 1) + width];
+        int chromaLength = uvRowStride * (chromaHeight - 1) + (chromaWidth - 1) * uvPixelStride + 1;
+        if (uvPixelStride == 2) {
+            // 交錯：V 從 0 開始、U 從 1 開始，共用同一個陣列
+            vPlane = new byte[chromaLength + 1];
+            uPlane = vPlane;
+            uOffset = 1;
+        } else {
+            vPlane = new byte[chromaLength];
+            uPlane = new byte[chromaLength];
+            uOffset = 0;
+        }
+        y = ByteBuffer.wrap(yPlane);
+        v = ByteBuffer.wrap(vPlane, 0, chromaLength).slice();
+        u = ByteBuffer.wrap(uPlane, uOffset, chromaLength).slice();
+
+        noise = new byte[width * height];
+        Random random = new Random(42);
+        for (int i = 0; i < noise.length; i++) {
+            noise[i] = (byte) random.nextInt(NOISE_AMPLITUDE);
+        }
+        render(0);
+    }
+
+    /**
+     * 畫出第 index 張影格並重設平面位置
+     */
+    public SyntheticYuvFrame render(long index) {
+        int shift = (int) (index % width);
+        int blockX = (int) (index * 4 % Math.max(1, width - BLOCK_SIZE));
+        int blockY = (int) (index * 3 % Math.max(1, height - BLOCK_SIZE));
+        for (int row = 0; row < height; row++) {
+            int rowStart = row * yRowStride;
+            int noiseRow = row * width;
+            boolean blockRow = row >= blockY && row < blockY + BLOCK_SIZE;
+            for (int col = 0; col < width; col++) {
+                int value;
+                if (blockRow && col >= blockX && col < blockX + BLOCK_SIZE) {
+                    value = 235;
+                } else {
+                    int x = col + shift;
+                    value = 16 + (x >= width ? x - width : x) * 200 / width + row * 32 / height
+                            + noise[noiseRow + col];
+                }
+                yPlane[rowStart + col] = (byte) value;
+            }
+        }
+
+        int chromaHeight = height / 2;
+        int chromaWidth = width / 2;
+        for (int row = 0; row < chromaHeight; row++) {
+            int rowStart = row * uvRowStride;
+            for (int col = 0; col < chromaWidth; col++) {
+                int offset = rowStart + col * uvPixelStride;
+                vPlane[offset] = (byte) (108 + row * 40 / chromaHeight);
+                uPlane[uOffset + offset] = (byte) (108 + (col + shift / 2) % chromaWidth * 40 / chromaWidth);
+            }
+        }
+        return rewind();
+    }
+
+    /**
+     * 重設平面位置（packNv21 在沒有列尾填充時從目前位置整塊讀取，每次使用前都要呼叫）
+     */
+    public SyntheticYuvFrame rewind() {
+        y.rewind();
+        u.rewind();
+        v.rewind();
+        return this;
+    }
+
+    /**
+     * 打包成 NV21
+     */
+    public byte[] toNv21() {
+        byte[] out = new byte[YuvOps.nv21Size(width, height)];
+        rewind();
+        YuvOps.packNv21(y, yRowStride, u, v, uvRowStride, uvPixelStride, width, height,
+                out, new byte[Math.max(yRowStride, uvRowStride)]);
+        rewind();
+        return out;
+    }
+}
@@ -0,0 +1,20 @@
+package com.artiforge.streamclient;
+
+/**
+ * 延遲 / 週期任務排程
+ *
+ * toleranceMs 是任務可接受的延後時間：排程器會把它併入容許範圍內已排定的喚醒，
+ * 減少裝置被喚醒的次數。需要準時的任務傳 0。
+ */
+public interface TaskScheduler {
+
+    interface ScheduledTask {
+        /** 取消任務（已執行或已取消時無作用；週期任務不再重排） */
+        void cancel();
+    }
+
+    ScheduledTask schedule(Runnable task, long delayMs, long toleranceMs);
+
+    /** 第一次在 periodMs 後執行，之後以原定時間（非實際執行時間）為基準重排，不累積漂移 */
+    ScheduledTask scheduleAtFixedRate(Runnable task, long periodMs, long toleranceMs);
+}
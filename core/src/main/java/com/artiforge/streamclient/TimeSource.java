@@ -0,0 +1,15 @@
+package com.artiforge.streamclient;
+
+/**
+ * 可注入的時間來源（單位：毫秒），方便以假時鐘在 JVM 上驗證時間相關邏輯
+ */
+public interface TimeSource {
+
+    /** 單調時間：計算間隔、逾時用，不受系統時間調整影響 */
+    TimeSource MONOTONIC = () -> System.nanoTime() / 1_000_000L;
+
+    /** 牆上時間：需要回報給伺服器的時間戳 */
+    TimeSource WALL = System::currentTimeMillis;
+
+    long nowMs();
+}
@@ -0,0 +1,286 @@
+package com.artiforge.streamclient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 雜湊時間輪（hashed timer wheel）
+ *
+ * 時間切成 tickMs 的格子，任務依到期格子放入 wheel[tick & mask]，同一格的任務一起觸發。
+ *
+ * 合併（類似 Linux timer slack）：有容許延後時間的任務可在 [原定時間, 原定時間 + 容許值]
+ * 內任何一次喚醒時執行。插入時若範圍內已有喚醒就併入該格，否則放在範圍最後一格；
+ * 之後任何一次喚醒都會順便執行已進入容許範圍的任務，讓其他任務有機會併入。
+ *
+ * 本身不建立執行緒：由 advanceTo(now) 推進（DeviceScheduler 以真實時鐘推進，
+ * 測試時以虛擬時鐘推進）。所有狀態以 this 為鎖，任務在鎖外執行。
+ */
+public final class TimerWheel implements TaskScheduler {
+
+    static final long DEFAULT_TICK_MS = 100;
+    static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private final TimeSource clock;
+    private final long tickMs;
+    private final Timeout[] wheel; // 每格為雙向鏈結串列的開頭
+    private final int mask;
+
+    private long currentTick;      // 已處理到的格子（絕對編號）
+    private int pendingCount = 0;
+    private long maxToleranceTicks = 0; // 喚醒時順便執行的掃描範圍
+    private long wakeups = 0;      // 有任務觸發的推進次數
+    private long firedCount = 0;
+
+    public TimerWheel(TimeSource clock) {
+        this(clock, DEFAULT_TICK_MS, DEFAULT_WHEEL_SIZE);
+    }
+
+    public TimerWheel(TimeSource clock, long tickMs, int wheelSize) {
+        if (Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("wheelSize 必須是 2 的次方: " + wheelSize);
+        }
+        this.clock = clock;
+        this.tickMs = tickMs;
+        this.wheel = new Timeout[wheelSize];
+        this.mask = wheelSize - 1;
+        this.currentTick = clock.nowMs() / tickMs;
+    }
+
+    @Override
+    public ScheduledTask schedule(Runnable task, long delayMs, long toleranceMs) {
+        Timeout timeout = new Timeout(this, task, 0, Math.max(0, toleranceMs));
+        synchronized (this) {
+            timeout.nominalMs = clock.nowMs() + Math.max(0, delayMs);
+            insert(timeout);
+        }
+        return timeout;
+    }
+
+    @Override
+    public ScheduledTask scheduleAtFixedRate(Runnable task, long periodMs, long toleranceMs) {
+        if (periodMs <= 0) {
+            throw new IllegalArgumentException("periodMs 必須大於 0: " + periodMs);
+        }
+        Timeout timeout = new Timeout(this, task, periodMs, Math.max(0, toleranceMs));
+        synchronized (this) {
+            timeout.nominalMs = clock.nowMs() + periodMs;
+            insert(timeout);
+        }
+        return timeout;
+    }
+
+    /**
+     * 推進到目前時間並執行所有到期任務，回傳執行數量
+     */
+    public int advanceTo(long nowMs) {
+        List<Timeout> expired = new ArrayList<>();
+        collectExpired(nowMs, expired);
+        int ran = 0;
+        for (Timeout timeout : expired) {
+            // 取出後、執行前可能已被取消
+            if (timeout.cancelled) {
+                continue;
+            }
+            timeout.task.run();
+            ran++;
+            rearm(timeout);
+        }
+        return ran;
+    }
+
+    /**
+     * 下一次需要喚醒的時間；沒有任務時回傳 Long.MAX_VALUE
+     */
+    public synchronized long nextWakeupMs() {
+        if (pendingCount == 0) {
+            return Long.MAX_VALUE;
+        }
+        // 先在一圈內找最近的格子，找不到（全部是下一圈以後）再全表掃描
+        for (long tick = currentTick + 1; tick <= currentTick + wheel.length; tick++) {
+            if (hasEntryDueAt(tick)) {
+                return tick * tickMs;
+            }
+        }
+        long earliest = Long.MAX_VALUE;
+        for (Timeout head : wheel) {
+            for (Timeout t = head; t != null; t = t.next) {
+                earliest = Math.min(earliest, t.deadlineTick);
+            }
+        }
+        return earliest * tickMs;
+    }
+
+    public synchronized int pendingCount() {
+        return pendingCount;
+    }
+
+    public synchronized long wakeups() {
+        return wakeups;
+    }
+
+    public synchronized long firedCount() {
+        return firedCount;
+    }
+
+    public long tickMs() {
+        return tickMs;
+    }
+
+    /**
+     * 取出到期任務（依到期時間排序），供呼叫端在鎖外執行；執行前需再檢查 cancelled
+     */
+    synchronized void collectExpired(long nowMs, List<Timeout> out) {
+        long targetTick = nowMs / tickMs;
+        if (targetTick <= currentTick) {
+            return;
+        }
+        int start = out.size();
+        // 間隔超過一圈時每格只需看一次
+        long steps = Math.min(targetTick - currentTick, wheel.length);
+        for (long i = 1; i <= steps; i++) {
+            int index = (int) ((currentTick + i) & mask);
+            Timeout t = wheel[index];
+            while (t != null) {
+                Timeout next = t.next;
+                if (t.deadlineTick <= targetTick) {
+                    unlink(t);
+                    out.add(t);
+                }
+                t = next;
+            }
+        }
+        currentTick = targetTick;
+        if (out.size() > start) {
+            // 反正已經喚醒：順便執行已進入容許範圍、但最晚期限在後面的任務
+            long ahead = Math.min(maxToleranceTicks, wheel.length - 1);
+            for (long i = 1; i <= ahead; i++) {
+                Timeout t = wheel[(int) ((targetTick + i) & mask)];
+                while (t != null) {
+                    Timeout next = t.next;
+                    if (t.earliestTick <= targetTick && t.deadlineTick <= targetTick + ahead) {
+                        unlink(t);
+                        out.add(t);
+                    }
+                    t = next;
+                }
+            }
+        }
+        int fired = out.size() - start;
+        if (fired > 0) {
+            wakeups++;
+            firedCount += fired;
+            if (fired > 1) {
+                Collections.sort(out.subList(start, out.size()),
+                        (a, b) -> Long.compare(a.deadlineTick, b.deadlineTick));
+            }
+        }
+    }
+
+    /**
+     * 週期任務執行後以原定時間重排
+     */
+    synchronized void rearm(Timeout timeout) {
+        if (timeout.periodMs <= 0 || timeout.cancelled) {
+            return;
+        }
+        timeout.nominalMs += timeout.periodMs;
+        long now = clock.nowMs();
+        if (timeout.nominalMs <= now) {
+            // 落後超過一個週期（例如裝置休眠）：跳過錯過的次數，不補跑
+            long missed = (now - timeout.nominalMs) / timeout.periodMs + 1;
+            timeout.nominalMs += missed * timeout.periodMs;
+        }
+        insert(timeout);
+    }
+
+    private void insert(Timeout timeout) {
+        long dueTick = Math.max(currentTick + 1, ceilDiv(timeout.nominalMs, tickMs));
+        long latestTick = Math.max(dueTick, (timeout.nominalMs + timeout.toleranceMs) / tickMs);
+        long scanEnd = Math.min(latestTick, dueTick + wheel.length - 1);
+        long chosen = scanEnd;
+        // 容許範圍內已有喚醒：併入最早的那一格；否則放在範圍最後一格
+        for (long tick = dueTick; tick < scanEnd; tick++) {
+            if (hasEntryDueAt(tick)) {
+                chosen = tick;
+                break;
+            }
+        }
+        timeout.earliestTick = dueTick;
+        timeout.deadlineTick = chosen;
+        maxToleranceTicks = Math.max(maxToleranceTicks, chosen - dueTick);
+        int index = (int) (chosen & mask);
+        timeout.prev = null;
+        timeout.next = wheel[index];
+        if (wheel[index] != null) {
+            wheel[index].prev = timeout;
+        }
+        wheel[index] = timeout;
+        timeout.queued = true;
+        pendingCount++;
+        notifyAll(); // 喚醒驅動執行緒重新計算等待時間
+    }
+
+    private boolean hasEntryDueAt(long tick) {
+        for (Timeout t = wheel[(int) (tick & mask)]; t != null; t = t.next) {
+            if (t.deadlineTick == tick) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void unlink(Timeout timeout) {
+        int index = (int) (timeout.deadlineTick & mask);
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            wheel[index] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.queued = false;
+        pendingCount--;
+    }
+
+    private synchronized void cancel(Timeout timeout) {
+        timeout.cancelled = true;
+        if (timeout.queued) {
+            unlink(timeout);
+        }
+    }
+
+    private static long ceilDiv(long value, long divisor) {
+        return -Math.floorDiv(-value, divisor);
+    }
+
+    static final class Timeout implements ScheduledTask {
+        final TimerWheel owner;
+        final Runnable task;
+        final long periodMs;
+        final long toleranceMs;
+        long nominalMs;
+        long earliestTick;
+        long deadlineTick;
+        Timeout prev;
+        Timeout next;
+        boolean queued;
+        // 在鎖內寫入，執行前在鎖外讀取
+        volatile boolean cancelled;
+
+        Timeout(TimerWheel owner, Runnable task, long periodMs, long toleranceMs) {
+            this.owner = owner;
+            this.task = task;
+            this.periodMs = periodMs;
+            this.toleranceMs = toleranceMs;
+        }
+
+        @Override
+        public void cancel() {
+            owner.cancel(this);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.artiforge.streamclient;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 依工作範圍持有的喚醒鎖：串流工作階段、定時擷取、重連嘗試、錯誤回報送出等有界的工作才保持 CPU 喚醒
+ *
+ * - 每次 acquire 取得一個 Hold，各自有逾時；逾時未釋放時自動釋放並計數（wakelock_timeouts）
+ * - 依原因參考計數，任一原因仍持有時底層鎖保持取得；全部釋放後立即放掉
+ * - 每個原因的持有時間累計到 wakelock_held_ms_<reason>（釋放時或 flushHeldTime 時計入），取得次數到 wakelock_acquires_<reason>
+ * - 底層鎖以所有 Hold 中最晚的期限為逾時取得，即使本類別的計時器未觸發也不會永久持有
+ *
+ * 任何執行緒皆可呼叫，狀態以 this 為鎖；平台鎖與排程器可注入，方便在 JVM 上驗證。
+ */
+public final class WakeLockManager {
+
+    public static final String WAKELOCK_HELD = "wakelock_held";
+    public static final String WAKELOCK_TIMEOUTS = "wakelock_timeouts";
+    public static final String WAKELOCK_HELD_MS_PREFIX = "wakelock_held_ms_";
+    public static final String WAKELOCK_ACQUIRES_PREFIX = "wakelock_acquires_";
+
+    public static final String REASON_STREAM = "stream";
+    public static final String REASON_RECONNECT = "reconnect";
+    public static final String REASON_ERROR_FLUSH = "error_flush";
+    public static final String REASON_CAPTURE = "capture";
+
+    // 逾時釋放不需準時到毫秒，允許併入其他喚醒
+    private static final long TIMEOUT_TOLERANCE_MS = 1_000;
+
+    /**
+     * 平台喚醒鎖（Android 為不計數的 PARTIAL_WAKE_LOCK）
+     */
+    public interface Platform {
+        /** 取得或延長到 timeoutMs 後自動釋放 */
+        void acquire(long timeoutMs);
+
+        void release();
+    }
+
+    /**
+     * 一次持有；release 可重複呼叫
+     */
+    public final class Hold {
+        private final String reason;
+        private final long deadlineMs;
+        private TaskScheduler.ScheduledTask timeoutTask;
+        private boolean released = false;
+
+        private Hold(String reason, long deadlineMs) {
+            this.reason = reason;
+            this.deadlineMs = deadlineMs;
+        }
+
+        public void release() {
+            WakeLockManager.this.release(this, false);
+        }
+    }
+
+    private static final class ReasonState {
+        final AtomicLong heldMs;
+        final AtomicLong acquires;
+        int count = 0;
+        long sinceMs = 0;
+
+        ReasonState(StreamMetrics metrics, String reason) {
+            this.heldMs = metrics.counter(WAKELOCK_HELD_MS_PREFIX + reason);
+            this.acquires = metrics.counter(WAKELOCK_ACQUIRES_PREFIX + reason);
+        }
+    }
+
+    private final Platform platform;
+    private final TaskScheduler scheduler;
+    private final TimeSource clock;
+    private final StreamMetrics metrics;
+    private final StreamLogger logger;
+    private final AtomicLong timeoutCounter;
+
+    private final Map<String, ReasonState> reasons = new HashMap<>();
+    private int holds = 0;
+    private long platformDeadlineMs = 0;
+
+    public WakeLockManager(Platform platform, TaskScheduler scheduler, TimeSource clock,
+                           StreamMetrics metrics, StreamLogger logger) {
+        this.platform = platform;
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.metrics = metrics;
+        this.logger = logger;
+        this.timeoutCounter = metrics.counter(WAKELOCK_TIMEOUTS);
+        metrics.registerGauge(WAKELOCK_HELD, this::heldCount);
+    }
+
+    /**
+     * 為一件有界的工作保持喚醒，timeoutMs 後未釋放則自動釋放
+     */
+    public Hold acquire(String reason, long timeoutMs) {
+        long now = clock.nowMs();
+        Hold hold = new Hold(reason, now + timeoutMs);
+        synchronized (this) {
+            ReasonState state = reasons.computeIfAbsent(reason, key -> new ReasonState(metrics, key));
+            if (state.count++ == 0) {
+                state.sinceMs = now;
+            }
+            state.acquires.incrementAndGet();
+            holds++;
+            if (hold.deadlineMs > platformDeadlineMs) {
+                platformDeadlineMs = hold.deadlineMs;
+                platform.acquire(timeoutMs);
+            }
+            hold.timeoutTask = scheduler.schedule(() -> release(hold, true), timeoutMs, TIMEOUT_TOLERANCE_MS);
+        }
+        return hold;
+    }
+
+    /** 目前持有中的 Hold 數 */
+    public synchronized int heldCount() {
+        return holds;
+    }
+
+    /** 某原因目前累計的持有時間（含進行中的持有） */
+    public synchronized long heldMs(String reason) {
+        ReasonState state = reasons.get(reason);
+        if (state == null) {
+            return 0;
+        }
+        long held = state.heldMs.get();
+        return state.count > 0 ? held + (clock.nowMs() - state.sinceMs) : held;
+    }
+
+    /**
+     * 把進行中的持有時間計入 wakelock_held_ms_*（定期回報前呼叫，長時間的持有也能在結束前看到累計值）
+     */
+    public synchronized void flushHeldTime() {
+        long now = clock.nowMs();
+        for (ReasonState state : reasons.values()) {
+            if (state.count > 0) {
+                state.heldMs.addAndGet(now - state.sinceMs);
+                state.sinceMs = now;
+            }
+        }
+    }
+
+    private void release(Hold hold, boolean timedOut) {
+        synchronized (this) {
+            if (hold.released) {
+                return;
+            }
+            hold.released = true;
+            if (!timedOut) {
+                hold.timeoutTask.cancel();
+            }
+            ReasonState state = reasons.get(hold.reason);
+            if (--state.count == 0) {
+                state.heldMs.addAndGet(clock.nowMs() - state.sinceMs);
+            }
+            if (--holds == 0) {
+                platformDeadlineMs = 0;
+                platform.release();
+            }
+        }
+        if (timedOut) {
+            timeoutCounter.incrementAndGet();
+            logger.log(LogLevel.WARN, "⚠️ 喚醒鎖逾時自動釋放: " + hold.reason);
+        }
+    }
+}
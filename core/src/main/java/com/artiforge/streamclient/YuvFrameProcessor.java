@@ -0,0 +1,168 @@
+package com.artiforge.streamclient;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 相機影格的 YUV 前處理：YUV_420_888 → 直立 NV21（裁切、打包、逆時針旋轉 90 度、依解析度等級縮小）與縮圖
+ *
+ * 從 CameraStreamManager 抽出，與平台無關，可在 JVM 上量測。
+ * 工作緩衝區依尺寸重複使用；不是執行緒安全的（相機背景執行緒專用），
+ * full() / thumbnail() 回傳的陣列在下一次 prepare 前有效。
+ */
+public final class YuvFrameProcessor {
+
+    // 裁切區域的寬高對齊（旋轉後還能對半縮小兩次：完整層與縮圖層）
+    private static final int CROP_ALIGN = 8;
+
+    private byte[] nv21Buffer;
+    private byte[] rotatedBuffer;
+    private byte[] scaledBuffer;
+    private byte[] thumbBuffer;
+    private byte[] rowBuffer;
+
+    private byte[] full;
+    private int fullWidth;
+    private int fullHeight;
+    private byte[] thumb;
+    private int thumbWidth;
+    private int thumbHeight;
+
+    // 橫向擷取座標的裁切範圍，依區域與擷取尺寸快取
+    private RegionOfInterest cropRegion;
+    private int cropSourceWidth;
+    private int cropSourceHeight;
+    private int cropLeft;
+    private int cropTop;
+    private int cropWidth;
+    private int cropHeight;
+
+    /**
+     * 處理一張影格（橫向 width x height → 直立，長邊縮到不超過 maxLongSide 的 2 倍內）
+     */
+    public void prepare(ByteBuffer y, int yRowStride,
+                        ByteBuffer u, ByteBuffer v, int uvRowStride, int uvPixelStride,
+                        int width, int height, int maxLongSide) {
+        prepare(y, yRowStride, u, v, uvRowStride, uvPixelStride, width, height, maxLongSide, RegionOfInterest.FULL);
+    }
+
+    /**
+     * 同上，但只處理直立畫面中的 region（打包時就裁切，區域越小後面各步驟越省）
+     */
+    public void prepare(ByteBuffer y, int yRowStride,
+                        ByteBuffer u, ByteBuffer v, int uvRowStride, int uvPixelStride,
+                        int width, int height, int maxLongSide, RegionOfInterest region) {
+        // 1. YUV_420_888 → NV21（依 stride 打包並裁切，橫向 640x480）
+        updateCrop(region, width, height);
+        int packedWidth = cropWidth;
+        int packedHeight = cropHeight;
+        int frameSize = YuvOps.nv21Size(packedWidth, packedHeight);
+        nv21Buffer = ensureCapacity(nv21Buffer, frameSize);
+        rowBuffer = ensureCapacity(rowBuffer, Math.max(yRowStride, uvRowStride));
+        YuvOps.packNv21(y, yRowStride, u, v, uvRowStride, uvPixelStride,
+                cropLeft, cropTop, packedWidth, packedHeight, nv21Buffer, rowBuffer);
+
+        // 2. 逆時針旋轉 90 度（橫向 640x480 → 直立 480x640）
+        rotatedBuffer = ensureCapacity(rotatedBuffer, frameSize);
+        YuvOps.rotateCcw90(nv21Buffer, packedWidth, packedHeight, rotatedBuffer);
+        full = rotatedBuffer;
+        fullWidth = packedHeight;
+        fullHeight = packedWidth;
+
+        // 3. 長邊大於解析度等級時以 2 倍為單位縮小（不放大；小區域保留原始細節）
+        while (Math.max(fullWidth, fullHeight) / 2 >= maxLongSide && canHalve(fullWidth, fullHeight)) {
+            byte[] target = full == scaledBuffer ? rotatedBuffer : scaledBuffer;
+            target = ensureCapacity(target, YuvOps.nv21Size(fullWidth / 2, fullHeight / 2));
+            if (full == rotatedBuffer) {
+                scaledBuffer = target;
+            } else {
+                rotatedBuffer = target;
+            }
+            YuvOps.downscale2x(full, fullWidth, fullHeight, target);
+            full = target;
+            fullWidth /= 2;
+            fullHeight /= 2;
+        }
+        thumb = null;
+    }
+
+    public byte[] full() {
+        return full;
+    }
+
+    public int fullWidth() {
+        return fullWidth;
+    }
+
+    public int fullHeight() {
+        return fullHeight;
+    }
+
+    /**
+     * 由完整影格再縮小一半的縮圖（共用 prepare 的結果，同一張影格只計算一次）；
+     * 尺寸無法對半時回傳完整影格
+     */
+    public byte[] thumbnail() {
+        if (thumb == null) {
+            if (canHalve(fullWidth, fullHeight)) {
+                thumbWidth = fullWidth / 2;
+                thumbHeight = fullHeight / 2;
+                thumbBuffer = ensureCapacity(thumbBuffer, YuvOps.nv21Size(thumbWidth, thumbHeight));
+                YuvOps.downscale2x(full, fullWidth, fullHeight, thumbBuffer);
+                thumb = thumbBuffer;
+            } else {
+                thumbWidth = fullWidth;
+                thumbHeight = fullHeight;
+                thumb = full;
+            }
+        }
+        return thumb;
+    }
+
+    public int thumbnailWidth() {
+        return thumbWidth;
+    }
+
+    public int thumbnailHeight() {
+        return thumbHeight;
+    }
+
+    /**
+     * 直立畫面的區域比例 → 橫向擷取座標（直立的 x 對應擷取的 y，直立的 y 由擷取的右側算起）
+     */
+    private void updateCrop(RegionOfInterest region, int width, int height) {
+        if (region == cropRegion && width == cropSourceWidth && height == cropSourceHeight) {
+            return;
+        }
+        cropRegion = region;
+        cropSourceWidth = width;
+        cropSourceHeight = height;
+        if (region.isFull()) {
+            cropLeft = 0;
+            cropTop = 0;
+            cropWidth = width;
+            cropHeight = height;
+            return;
+        }
+        cropWidth = align(region.height * width, width);
+        cropHeight = align(region.width * height, height);
+        cropLeft = clampEven((int) Math.round(width * (1 - region.y - region.height)), width - cropWidth);
+        cropTop = clampEven((int) Math.round(height * region.x), height - cropHeight);
+    }
+
+    private static int align(double size, int limit) {
+        int aligned = (int) size / CROP_ALIGN * CROP_ALIGN;
+        return Math.min(limit, Math.max(CROP_ALIGN * 2, aligned));
+    }
+
+    private static int clampEven(int value, int max) {
+        return Math.max(0, Math.min(max, value)) & ~1;
+    }
+
+    static boolean canHalve(int width, int height) {
+        return width % 4 == 0 && height % 4 == 0;
+    }
+
+    private static byte[] ensureCapacity(byte[] buffer, int size) {
+        return buffer != null && buffer.length >= size ? buffer : new byte[size];
+    }
+}
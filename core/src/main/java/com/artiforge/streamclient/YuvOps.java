@@ -0,0 +1,139 @@
+package com.artiforge.streamclient;
+
+import java.nio.ByteBuffer;
+
+/**
+ * NV21 影像處理（純 Java，不經 Bitmap）
+ *
+ * 相機輸出 YUV_420_888 → 依 stride 打包為 NV21 → 旋轉 / 縮小 → YuvImage 直接編碼 JPEG，
+ * 省去原本「JPEG → Bitmap → 旋轉 → 再編碼 JPEG」的一次解碼與一次編碼。
+ * 所有方法寫入呼叫端提供的陣列（可重複使用），寬高須為偶數。
+ */
+public final class YuvOps {
+
+    private YuvOps() {
+    }
+
+    public static int nv21Size(int width, int height) {
+        return width * height * 3 / 2;
+    }
+
+    /**
+     * YUV_420_888 三個平面依 rowStride / pixelStride 打包為 NV21（Y 平面後接交錯的 V、U）
+     *
+     * @param rowBuffer 暫存一列資料用，長度至少 max(yRowStride, uvRowStride)
+     */
+    public static void packNv21(ByteBuffer y, int yRowStride,
+                                ByteBuffer u, ByteBuffer v, int uvRowStride, int uvPixelStride,
+                                int width, int height, byte[] out, byte[] rowBuffer) {
+        packNv21(y, yRowStride, u, v, uvRowStride, uvPixelStride, 0, 0, width, height, out, rowBuffer);
+    }
+
+    /**
+     * 同上，但只打包從 (left, top) 起 width x height 的區域（裁切；left、top 須為偶數）
+     *
+     * 區域外的像素不複製，之後的旋轉、縮小與編碼都只處理區域大小。
+     */
+    public static void packNv21(ByteBuffer y, int yRowStride,
+                                ByteBuffer u, ByteBuffer v, int uvRowStride, int uvPixelStride,
+                                int left, int top, int width, int height, byte[] out, byte[] rowBuffer) {
+        // Y 平面：區域涵蓋整列且沒有列尾填充時整塊複製
+        if (left == 0 && yRowStride == width) {
+            y.position(top * yRowStride);
+            y.get(out, 0, width * height);
+        } else {
+            for (int row = 0; row < height; row++) {
+                y.position((top + row) * yRowStride + left);
+                y.get(out, row * width, width);
+            }
+        }
+
+        int chromaWidth = width / 2;
+        int chromaHeight = height / 2;
+        int chromaLeft = (left / 2) * uvPixelStride;
+        int chromaTop = top / 2;
+        int offset = width * height;
+        for (int row = 0; row < chromaHeight; row++) {
+            int rowStart = (chromaTop + row) * uvRowStride + chromaLeft;
+            int rowLength = (chromaWidth - 1) * uvPixelStride + 1; // 最後一列可能沒有填充
+            v.position(rowStart);
+            v.get(rowBuffer, 0, rowLength);
+            for (int col = 0; col < chromaWidth; col++) {
+                out[offset + col * 2] = rowBuffer[col * uvPixelStride];
+            }
+            u.position(rowStart);
+            u.get(rowBuffer, 0, rowLength);
+            for (int col = 0; col < chromaWidth; col++) {
+                out[offset + col * 2 + 1] = rowBuffer[col * uvPixelStride];
+            }
+            offset += width;
+        }
+    }
+
+    /**
+     * 逆時針旋轉 90 度：輸入 width x height，輸出 height x width
+     */
+    public static void rotateCcw90(byte[] src, int width, int height, byte[] dst) {
+        // Y：(x, y) → (y, width - 1 - x)
+        for (int x = 0; x < width; x++) {
+            int dstRow = (width - 1 - x) * height;
+            int srcIndex = x;
+            for (int yy = 0; yy < height; yy++) {
+                dst[dstRow + yy] = src[srcIndex];
+                srcIndex += width;
+            }
+        }
+        // VU 交錯平面：以 (V, U) 成對搬移
+        int chromaWidth = width / 2;
+        int chromaHeight = height / 2;
+        int srcBase = width * height;
+        int dstBase = width * height;
+        for (int x = 0; x < chromaWidth; x++) {
+            int dstRow = dstBase + (chromaWidth - 1 - x) * height;
+            int srcIndex = srcBase + x * 2;
+            for (int yy = 0; yy < chromaHeight; yy++) {
+                dst[dstRow + yy * 2] = src[srcIndex];
+                dst[dstRow + yy * 2 + 1] = src[srcIndex + 1];
+                srcIndex += width;
+            }
+        }
+    }
+
+    /**
+     * 寬高各縮小一半（2x2 平均）：輸入 width x height（須為 4 的倍數），輸出 width/2 x height/2
+     */
+    public static void downscale2x(byte[] src, int width, int height, byte[] dst) {
+        int outWidth = width / 2;
+        int outHeight = height / 2;
+        for (int row = 0; row < outHeight; row++) {
+            int top = row * 2 * width;
+            int bottom = top + width;
+            int out = row * outWidth;
+            for (int col = 0; col < outWidth; col++) {
+                int x = col * 2;
+                int sum = (src[top + x] & 0xFF) + (src[top + x + 1] & 0xFF)
+                        + (src[bottom + x] & 0xFF) + (src[bottom + x + 1] & 0xFF);
+                dst[out + col] = (byte) ((sum + 2) >> 2);
+            }
+        }
+        // VU 平面：每列 width 位元組（width/2 組 VU），同樣 2x2 平均
+        int srcBase = width * height;
+        int dstBase = outWidth * outHeight;
+        int chromaOutWidth = outWidth / 2;
+        int chromaOutHeight = outHeight / 2;
+        for (int row = 0; row < chromaOutHeight; row++) {
+            int top = srcBase + row * 2 * width;
+            int bottom = top + width;
+            int out = dstBase + row * outWidth;
+            for (int col = 0; col < chromaOutWidth; col++) {
+                int x = col * 4; // 兩組 VU
+                int vSum = (src[top + x] & 0xFF) + (src[top + x + 2] & 0xFF)
+                        + (src[bottom + x] & 0xFF) + (src[bottom + x + 2] & 0xFF);
+                int uSum = (src[top + x + 1] & 0xFF) + (src[top + x + 3] & 0xFF)
+                        + (src[bottom + x + 1] & 0xFF) + (src[bottom + x + 3] & 0xFF);
+                dst[out + col * 2] = (byte) ((vSum + 2) >> 2);
+                dst[out + col * 2 + 1] = (byte) ((uSum + 2) >> 2);
+            }
+        }
+    }
+}
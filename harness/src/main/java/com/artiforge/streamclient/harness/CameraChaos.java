@@ -0,0 +1,218 @@
+package com.artiforge.streamclient.harness;
+
+import com.artiforge.streamclient.CameraController;
+import com.artiforge.streamclient.DeviceScheduler;
+import com.artiforge.streamclient.EncodedFrame;
+import com.artiforge.streamclient.FrameEncoder;
+import com.artiforge.streamclient.FramePool;
+import com.artiforge.streamclient.FrameSource;
+import com.artiforge.streamclient.LogLevel;
+import com.artiforge.streamclient.ResolutionTier;
+import com.artiforge.streamclient.StreamLogger;
+import com.artiforge.streamclient.StreamMetrics;
+import com.artiforge.streamclient.StreamParams;
+import com.artiforge.streamclient.TimeSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * CameraController 隨機併發壓力測試（假相機後端，桌面 JVM）
+ *
+ *   ./gradlew :harness:cameraChaos [-PchaosSeed=1] [-PchaosRounds=10]
+ *
+ * 每回合數條執行緒同時隨機下指令（開關相機、開始 / 停止串流、切換解析度），
+ * 假相機同時隨機延遲、失敗、斷線與送出遲到事件。回合結束關閉相機後檢查：
+ * 後端從未同時開啟兩次、開關次數相符、沒有殘留的相機執行緒、狀態機回到 CLOSED、
+ * 各狀態停留時間加總等於經過時間、狀態機執行緒上沒有例外。有違規時結束碼為 1。
+ */
+public final class CameraChaos {
+
+    private static final int CLIENT_THREADS = 4;
+    private static final int OPS_PER_THREAD = 100;
+    private static final int MAX_OP_GAP_MS = 12;
+    private static final int CHAOS_FPS = 30;
+    private static final long RECOVERY_DELAY_MS = 10;
+    private static final long TIME_TOLERANCE_MS = 5;
+    private static final ResolutionTier[] TIERS = ResolutionTier.values();
+
+    private CameraChaos() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        List<String> violations = new ArrayList<>();
+        long totalTransitions = 0;
+        long totalRejected = 0;
+        long totalFrames = 0;
+        for (int round = 0; round < rounds; round++) {
+            Round result = runRound(seed + round);
+            totalTransitions += result.transitions;
+            totalRejected += result.rejected;
+            totalFrames += result.frames;
+            for (String violation : result.violations) {
+                violations.add("seed " + (seed + round) + ": " + violation);
+            }
+            System.out.println("  回合 " + round + "（seed " + (seed + round) + "）: " + result.summary);
+        }
+
+        int leftover = countThreads(FakeCameraBackend.THREAD_NAME) + countThreads("CameraControl");
+        if (leftover > 0) {
+            violations.add("殘留相機 / 控制執行緒 " + leftover + " 條");
+        }
+
+        System.out.println("📊 " + rounds + " 回合：轉換 " + totalTransitions + "，拒絕 " + totalRejected
+                + "，影格 " + totalFrames);
+        if (!violations.isEmpty()) {
+            for (String violation : violations) {
+                System.err.println("❌ " + violation);
+            }
+            System.exit(1);
+        }
+        System.out.println("✅ 沒有違規");
+    }
+
+    private static Round runRound(long seed) throws InterruptedException {
+        Round round = new Round();
+        StreamMetrics metrics = new StreamMetrics();
+        AtomicLong controllerErrors = new AtomicLong();
+        StreamLogger logger = new StreamLogger(LogLevel.ERROR, (level, message) -> {
+            if (message.contains("相機狀態機錯誤")) {
+                controllerErrors.incrementAndGet();
+                System.err.println("  [camera] " + message);
+            }
+        });
+        FramePool framePool = new FramePool();
+        FrameEncoder encoder = new FrameEncoder(framePool, (nv21, width, height, quality, out) -> {
+            out.write(nv21, 0, Math.min(nv21.length, 256));
+            return true;
+        }, metrics, TimeSource.MONOTONIC, () -> 0);
+        FakeCameraBackend backend = new FakeCameraBackend(seed);
+        CameraController controller = new CameraController(backend, encoder, DeviceScheduler.shared(),
+                TimeSource.MONOTONIC, metrics, logger, RECOVERY_DELAY_MS);
+        long createdMs = TimeSource.MONOTONIC.nowMs();
+        AtomicLong frames = new AtomicLong();
+        controller.setFrameCallback(new FrameSource.FrameCallback() {
+            @Override
+            public void onFrameAvailable(EncodedFrame frame) {
+                frames.incrementAndGet();
+                frame.release();
+            }
+
+            @Override
+            public void onError(String error) {
+            }
+
+            @Override
+            public void onCameraStatusChanged(boolean available, String reason) {
+            }
+        });
+
+        CountDownLatch done = new CountDownLatch(CLIENT_THREADS);
+        for (int t = 0; t < CLIENT_THREADS; t++) {
+            Random random = new Random(seed * 31 + t);
+            Thread client = new Thread(() -> {
+                try {
+                    for (int i = 0; i < OPS_PER_THREAD; i++) {
+                        randomOp(controller, random);
+                        Thread.sleep(random.nextInt(MAX_OP_GAP_MS));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }, "ChaosClient-" + t);
+            client.start();
+        }
+        done.await();
+
+        controller.stopCamera();
+        if (!controller.awaitPending(5000)) {
+            round.violations.add("狀態機 5 秒內未處理完指令");
+        }
+        // 關閉後才到的重試與後端事件也要被吸收
+        Thread.sleep(RECOVERY_DELAY_MS * 5);
+        controller.awaitPending(5000);
+
+        if (controller.state() != CameraController.State.CLOSED) {
+            round.violations.add("關閉後狀態為 " + controller.state());
+        }
+        if (backend.maxOpened.get() > 1) {
+            round.violations.add("後端同時開啟 " + backend.maxOpened.get() + " 次");
+        }
+        if (backend.opened.get() != 0 || backend.opens.get() != backend.closes.get()) {
+            round.violations.add("開啟 " + backend.opens.get() + " 次，關閉 " + backend.closes.get() + " 次");
+        }
+        if (backend.framesAfterClose.get() > 0) {
+            round.violations.add("關閉後仍有 " + backend.framesAfterClose.get() + " 個影格");
+        }
+        if (controllerErrors.get() > 0) {
+            round.violations.add("狀態機例外 " + controllerErrors.get() + " 次");
+        }
+
+        long elapsedMs = TimeSource.MONOTONIC.nowMs() - createdMs;
+        long accountedMs = 0;
+        StringBuilder perState = new StringBuilder();
+        for (CameraController.State state : CameraController.State.values()) {
+            long ms = controller.timeInStateMs(state);
+            accountedMs += ms;
+            perState.append(state.name().toLowerCase()).append('=').append(ms).append("ms ");
+        }
+        if (Math.abs(accountedMs - elapsedMs) > TIME_TOLERANCE_MS) {
+            round.violations.add("狀態時間加總 " + accountedMs + " ms，經過 " + elapsedMs + " ms");
+        }
+
+        controller.shutdown();
+        controller.awaitPending(5000);
+
+        round.transitions = metrics.get(CameraController.CAMERA_TRANSITIONS);
+        round.rejected = metrics.get(CameraController.CAMERA_TRANSITIONS_REJECTED);
+        round.frames = frames.get();
+        round.summary = "開啟 " + backend.opens.get() + "，注入錯誤 " + backend.injectedErrors.get()
+                + "，斷線 " + backend.injectedDisconnects.get() + "，不回應 " + backend.hangs.get()
+                + "，遲到事件 " + backend.staleEvents.get() + "，轉換 " + round.transitions
+                + "，拒絕 " + round.rejected + "，影格 " + round.frames + "；" + perState.toString().trim();
+        return round;
+    }
+
+    private static void randomOp(CameraController controller, Random random) {
+        int roll = random.nextInt(100);
+        if (roll < 25) {
+            controller.startCamera();
+        } else if (roll < 30) {
+            controller.stopCamera();
+        } else if (roll < 65) {
+            controller.startStreaming();
+        } else if (roll < 80) {
+            controller.stopStreaming();
+        } else {
+            ResolutionTier tier = TIERS[random.nextInt(TIERS.length)];
+            controller.applyStreamParams(new StreamParams(CHAOS_FPS, StreamParams.DEFAULT_QUALITY,
+                    tier, StreamParams.DEFAULT_LEASE_MS, EncodedFrame.DEFAULT_MAX_AGE_MS));
+        }
+    }
+
+    private static int countThreads(String name) {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && thread.getName().equals(name)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static final class Round {
+        final List<String> violations = new ArrayList<>();
+        long transitions;
+        long rejected;
+        long frames;
+        String summary;
+    }
+}
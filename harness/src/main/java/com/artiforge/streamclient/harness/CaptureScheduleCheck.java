@@ -0,0 +1,217 @@
+package com.artiforge.streamclient.harness;
+
+import com.artiforge.streamclient.CaptureSchedule;
+import com.artiforge.streamclient.CaptureScheduleExecutor;
+import com.artiforge.streamclient.LogLevel;
+import com.artiforge.streamclient.StreamLogger;
+import com.artiforge.streamclient.StreamMetrics;
+import com.artiforge.streamclient.StreamParams;
+import com.artiforge.streamclient.TimeSource;
+import com.artiforge.streamclient.TimerWheel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * CaptureScheduleExecutor 虛擬時鐘驗證（假相機，桌面 JVM，不需等待真實時間）
+ *
+ *   ./gradlew :harness:captureSchedule [-PscheduleSeed=1]
+ *
+ * 以 TimerWheel 虛擬時鐘跑完整排程（例如 24 小時的「每 10 分鐘擷取 15 秒」），假相機的預熱時間隨機。
+ * 檢查：每次擷取都在原定時間（間隔 × 次數，不漂移）一格內開始、開始與結束成對、
+ * 兩次擷取之間相機確實關閉、學到預熱時間後不再冷啟動、次數用完後停止、睡過頭時略過而非補跑。
+ * 有違規時結束碼為 1。
+ */
+public final class CaptureScheduleCheck {
+
+    private static final long TICK_MS = 10;
+    private static final int WHEEL_SIZE = 4096;
+    private static final long HOUR_MS = 60 * 60_000L;
+
+    private CaptureScheduleCheck() {
+    }
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+        List<String> violations = new ArrayList<>();
+
+        // 每 10 分鐘擷取 15 秒，跑 24 小時；預熱 0.3–2.5 秒，第一次預熱量不足
+        run("burst_15s_every_10min", new CaptureSchedule(10 * 60_000L, 15_000, 1_000, 0, 0, StreamParams.DEFAULT),
+                24 * HOUR_MS, seed, 300, 2_500, -1, violations);
+        // 間隔太短不關相機：只停止串流
+        run("short_gap", new CaptureSchedule(12_000, 10_000, 1_500, 0, 0, StreamParams.DEFAULT),
+                HOUR_MS, seed + 1, 300, 1_200, -1, violations);
+        // 次數用完後停止
+        run("count_limited", new CaptureSchedule(60_000, 5_000, 1_500, 3, 30_000, StreamParams.DEFAULT),
+                HOUR_MS, seed + 2, 300, 1_200, -1, violations);
+        // 裝置睡過頭（計時器延後 25 分鐘才觸發一次）：錯過的擷取略過，之後回到原本的時間格
+        run("slept_through", new CaptureSchedule(10 * 60_000L, 15_000, 1_500, 0, 0, StreamParams.DEFAULT),
+                4 * HOUR_MS, seed + 3, 300, 1_200, HOUR_MS + 5 * 60_000L, violations);
+
+        if (!violations.isEmpty()) {
+            for (String violation : violations) {
+                System.err.println("❌ " + violation);
+            }
+            System.exit(1);
+        }
+        System.out.println("✅ 沒有違規");
+    }
+
+    /**
+     * @param stallAtMs >= 0 時在此虛擬時間讓時鐘一次跳過 25 分鐘（模擬延遲喚醒）
+     */
+    private static void run(String name, CaptureSchedule schedule, long durationMs, long seed,
+                            long minWarmupMs, long maxWarmupMs, long stallAtMs, List<String> violations) {
+        long[] now = {0};
+        TimerWheel wheel = new TimerWheel(() -> now[0], TICK_MS, WHEEL_SIZE);
+        StreamMetrics metrics = new StreamMetrics();
+        StreamLogger logger = new StreamLogger(LogLevel.WARN, (level, message) -> System.err.println("  [" + name + "] " + message));
+        FakeCamera camera = new FakeCamera(wheel, () -> now[0], new Random(seed), minWarmupMs, maxWarmupMs);
+        CaptureScheduleExecutor executor = new CaptureScheduleExecutor(wheel, () -> now[0], camera, metrics, logger);
+        camera.executor = executor;
+
+        executor.apply(schedule);
+        long firstBurstMs = -1;
+        boolean stalled = false;
+        while (true) {
+            long next = wheel.nextWakeupMs();
+            if (next == Long.MAX_VALUE || next > durationMs) {
+                break;
+            }
+            if (stallAtMs >= 0 && !stalled && next >= stallAtMs) {
+                stalled = true;
+                next += 25 * 60_000L;
+            }
+            now[0] = next;
+            wheel.advanceTo(now[0]);
+            if (firstBurstMs < 0 && !camera.starts.isEmpty()) {
+                firstBurstMs = camera.starts.get(0)[1];
+            }
+        }
+        executor.apply(null);
+
+        List<String> found = new ArrayList<>();
+        long missed = metrics.get(CaptureScheduleExecutor.CAPTURE_BURSTS_MISSED);
+        long lateMax = metrics.get(CaptureScheduleExecutor.CAPTURE_START_LATE_MS_MAX);
+        if (camera.ends != camera.starts.size()) {
+            found.add("開始 " + camera.starts.size() + " 次，結束 " + camera.ends + " 次");
+        }
+        if (camera.on) {
+            found.add("取消排程後相機仍開啟");
+        }
+        for (long[] start : camera.starts) {
+            long index = start[0];
+            long nominal = firstBurstMs + index * schedule.intervalMs;
+            if (start[1] - nominal < 0 || start[1] - nominal > TICK_MS) {
+                found.add("第 " + (index + 1) + " 次擷取在 " + start[1] + " ms 開始，原定 " + nominal + " ms");
+                break;
+            }
+        }
+        if (lateMax > TICK_MS && stallAtMs < 0) {
+            found.add("最大開始延遲 " + lateMax + " ms");
+        }
+        // 只有預熱時間創新高（尚未學到）的那一次允許冷啟動
+        for (long[] start : camera.starts) {
+            if (start[2] == 0 && start[3] == 0) {
+                found.add("第 " + (start[0] + 1) + " 次擷取冷啟動（預熱時間未創新高）");
+                break;
+            }
+        }
+        boolean shortGap = schedule.intervalMs - schedule.burstMs < CaptureSchedule.MAX_WARMUP_MS;
+        if (!shortGap && camera.powerDowns < camera.starts.size() - 1) {
+            found.add("相機只關閉 " + camera.powerDowns + " 次（擷取 " + camera.starts.size() + " 次）");
+        }
+        if (schedule.count > 0 && camera.starts.size() != schedule.count) {
+            found.add("排程 " + schedule.count + " 次，實際 " + camera.starts.size() + " 次");
+        }
+        if (schedule.count > 0 && !camera.finished) {
+            found.add("次數用完後未通知結束");
+        }
+        if (stallAtMs >= 0 && missed == 0) {
+            found.add("睡過頭但未略過任何擷取");
+        }
+        for (String violation : found) {
+            violations.add(name + ": " + violation);
+        }
+
+        long cameraOnMs = metrics.get(CaptureScheduleExecutor.CAPTURE_CAMERA_ON_MS);
+        System.out.println("  " + name + "：擷取 " + camera.starts.size()
+                + "，略過 " + missed
+                + "，冷啟動 " + metrics.get(CaptureScheduleExecutor.CAPTURE_COLD_STARTS)
+                + "，最大延遲 " + lateMax + " ms"
+                + "，預熱最長 " + metrics.get(CaptureScheduleExecutor.CAPTURE_WARMUP_MS_MAX) + " ms"
+                + "，相機開啟 " + (cameraOnMs / 1000) + " 秒（" + String.format("%.1f", 100.0 * cameraOnMs / durationMs) + "%）"
+                + (found.isEmpty() ? "" : "，違規 " + found.size()));
+    }
+
+    /**
+     * 假相機：預熱後經隨機時間回報就緒（在時間輪上，不同步回呼）
+     */
+    private static final class FakeCamera implements CaptureScheduleExecutor.Target {
+        private final TimerWheel wheel;
+        private final TimeSource clock;
+        private final Random random;
+        private final long minWarmupMs;
+        private final long maxWarmupMs;
+        CaptureScheduleExecutor executor;
+
+        boolean on = false;
+        boolean ready = false;
+        boolean finished = false;
+        int openGeneration = 0;
+        int powerDowns = 0;
+        int ends = 0;
+        long longestWarmupMs = 0;
+        boolean warmupRecord = false;
+        final List<long[]> starts = new ArrayList<>(); // {序號, 開始時間, 已就緒 ? 1 : 0, 預熱創新高 ? 1 : 0}
+
+        FakeCamera(TimerWheel wheel, TimeSource clock, Random random,
+                   long minWarmupMs, long maxWarmupMs) {
+            this.wheel = wheel;
+            this.clock = clock;
+            this.random = random;
+            this.minWarmupMs = minWarmupMs;
+            this.maxWarmupMs = maxWarmupMs;
+        }
+
+        @Override
+        public void warmUp(StreamParams params) {
+            on = true;
+            ready = false;
+            int generation = ++openGeneration;
+            long warmupMs = minWarmupMs + (long) (random.nextDouble() * (maxWarmupMs - minWarmupMs));
+            warmupRecord = warmupMs > longestWarmupMs;
+            longestWarmupMs = Math.max(longestWarmupMs, warmupMs);
+            wheel.schedule(() -> {
+                if (on && generation == openGeneration) {
+                    ready = true;
+                    executor.onCameraReady();
+                }
+            }, warmupMs, 0);
+        }
+
+        @Override
+        public void startBurst(int index, StreamParams params) {
+            starts.add(new long[] {index, clock.nowMs(), on && ready ? 1 : 0, warmupRecord ? 1 : 0});
+        }
+
+        @Override
+        public void endBurst(int index) {
+            ends++;
+        }
+
+        @Override
+        public void powerDown() {
+            on = false;
+            ready = false;
+            powerDowns++;
+        }
+
+        @Override
+        public void onScheduleFinished() {
+            finished = true;
+            on = false;
+        }
+    }
+}
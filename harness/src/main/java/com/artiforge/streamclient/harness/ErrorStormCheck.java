@@ -0,0 +1,194 @@
+package com.artiforge.streamclient.harness;
+
+import com.artiforge.streamclient.ErrorAggregator;
+import com.artiforge.streamclient.TimerWheel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ErrorAggregator 錯誤風暴驗證（虛擬時鐘 + 多執行緒，桌面 JVM）
+ *
+ *   ./gradlew :harness:errorStorm [-PstormSeed=1]
+ *
+ * 1. 多執行緒同時記錄大量錯誤：批次總數等於記錄次數（不漏算、不重算）、指紋數不超過上限
+ * 2. 以 3 秒回報週期（比 StreamEngine 頻繁，讓上限發揮作用）跑 30 分鐘的錯誤風暴（含大量不同訊息）：
+ *    任何 60 秒內的報告數不超過每分鐘上限、每份報告的指紋數與訊息長度有上限、錯誤最後都有送出
+ * 3. 風暴中牆上時間往回跳 1 小時、再往前跳 1 天：報告不被壓住、上限也不被重置，
+ *    回報的時間戳跟著牆上時間
+ * 有違規時結束碼為 1。
+ */
+public final class ErrorStormCheck {
+
+    private static final long TICK_MS = 100;
+    private static final int WHEEL_SIZE = 1024;
+    // 比 StreamEngine 的 10 秒更頻繁地嘗試送出，讓每分鐘上限實際發揮作用
+    private static final long FLUSH_INTERVAL_MS = 3_000;
+    private static final long FLUSH_TOLERANCE_MS = 500;
+    private static final long STORM_MS = 30 * 60_000L;
+    private static final int THREADS = 8;
+    private static final int PER_THREAD = 50_000;
+    private static final long WALL_EPOCH_MS = 1_800_000_000_000L;
+
+    private final List<String> violations = new ArrayList<>();
+    private final long[] now = {0};
+    private final long[] wallOffset = {WALL_EPOCH_MS};
+    private final TimerWheel wheel = new TimerWheel(() -> now[0], TICK_MS, WHEEL_SIZE);
+    private final List<Long> reportTimes = new ArrayList<>();
+
+    private ErrorStormCheck() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+        ErrorStormCheck check = new ErrorStormCheck();
+        check.concurrent();
+        check.storm(seed);
+        if (!check.violations.isEmpty()) {
+            for (String violation : check.violations) {
+                System.err.println("❌ " + violation);
+            }
+            System.exit(1);
+        }
+        System.out.println("✅ 沒有違規");
+    }
+
+    private void concurrent() throws InterruptedException {
+        ErrorAggregator aggregator = new ErrorAggregator(() -> 0, () -> WALL_EPOCH_MS, 32, 1_000); // 不受報告上限影響
+        CountDownLatch go = new CountDownLatch(1);
+        AtomicLong drained = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int id = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < PER_THREAD; i++) {
+                    // 同一指紋（數字不同）與大量不同指紋混合
+                    String message = (i & 7) == 0
+                            ? "unique failure " + (char) ('a' + id) + Integer.toString(i, 26).replaceAll("[0-9]", "x")
+                            : "upload failed: HTTP 5" + (i % 100) + " frame " + i;
+                    aggregator.record(message, "ctx");
+                    if (i % 1_000 == 0) {
+                        drained.addAndGet(total(aggregator.drain()));
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        go.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        drained.addAndGet(total(aggregator.drain()));
+        long expected = (long) THREADS * PER_THREAD;
+        expect(drained.get() == expected, "concurrent：批次總數 " + drained.get() + "，記錄 " + expected);
+        System.out.println("  concurrent：" + THREADS + " 執行緒記錄 " + expected + " 筆，批次合計 " + drained.get());
+    }
+
+    private void storm(long seed) {
+        Random random = new Random(seed);
+        ErrorAggregator aggregator = new ErrorAggregator(() -> now[0], () -> now[0] + wallOffset[0]);
+        long[] recorded = {0};
+        long[] reported = {0};
+        int[] reports = {0};
+        long[] lastWallTs = {0};
+        boolean[] jumpedBack = {false};
+        boolean[] jumpedForward = {false};
+        int[] reportsAfterBackJump = {0};
+        ErrorAggregator.Batch[] last = new ErrorAggregator.Batch[1];
+        Runnable[] flush = new Runnable[1];
+        flush[0] = () -> {
+            ErrorAggregator.Batch batch = aggregator.drain();
+            if (batch != null) {
+                reports[0]++;
+                reportTimes.add(now[0]);
+                reported[0] += batch.totalCount;
+                last[0] = batch;
+                if (jumpedBack[0] && !jumpedForward[0]) {
+                    reportsAfterBackJump[0]++;
+                }
+                expect(batch.entries.size() <= ErrorAggregator.DEFAULT_MAX_FINGERPRINTS,
+                        "storm：一份報告有 " + batch.entries.size() + " 個指紋");
+                for (ErrorAggregator.Entry entry : batch.entries) {
+                    expect(entry.message.length() <= 300, "storm：訊息長度 " + entry.message.length());
+                }
+                long wallNow = now[0] + wallOffset[0];
+                expect(batch.windowEndMs == wallNow, "storm：回報時間 " + batch.windowEndMs + " 不是牆上時間 " + wallNow);
+                lastWallTs[0] = batch.windowEndMs;
+            }
+            if (aggregator.hasPending()) {
+                wheel.schedule(flush[0], FLUSH_INTERVAL_MS, FLUSH_TOLERANCE_MS);
+            }
+        };
+
+        String longMessage = "camera error: " + "x".repeat(1_000);
+        while (now[0] < STORM_MS) {
+            now[0] += 1 + random.nextInt(20);
+            wheel.advanceTo(now[0]);
+            String message = switch (random.nextInt(4)) {
+                case 0 -> "upload failed: HTTP 5" + random.nextInt(100) + " frame " + random.nextInt(100_000);
+                case 1 -> "distinct failure #" + Integer.toString(random.nextInt(5_000), 26).replaceAll("[0-9]", "q");
+                case 2 -> longMessage;
+                default -> "socket error code " + random.nextInt(1_000);
+            };
+            recorded[0]++;
+            if (aggregator.record(message, "previous log line")) {
+                wheel.schedule(flush[0], FLUSH_INTERVAL_MS, FLUSH_TOLERANCE_MS);
+            }
+            if (!jumpedBack[0] && now[0] >= STORM_MS / 3) {
+                jumpedBack[0] = true;
+                wallOffset[0] -= 60 * 60_000L; // 牆上時間往回 1 小時
+            }
+            if (!jumpedForward[0] && now[0] >= 2 * STORM_MS / 3) {
+                jumpedForward[0] = true;
+                wallOffset[0] += 24 * 60 * 60_000L; // 往前 1 天
+            }
+        }
+        // 風暴結束後讓剩下的錯誤送完
+        long drainUntil = now[0] + 5 * 60_000L;
+        while (now[0] < drainUntil) {
+            now[0] += TICK_MS;
+            wheel.advanceTo(now[0]);
+        }
+
+        int maxPerMinute = 0;
+        for (int i = 0; i < reportTimes.size(); i++) {
+            int inWindow = 0;
+            for (int j = i; j < reportTimes.size() && reportTimes.get(j) - reportTimes.get(i) < 60_000; j++) {
+                inWindow++;
+            }
+            maxPerMinute = Math.max(maxPerMinute, inWindow);
+        }
+        expect(maxPerMinute <= ErrorAggregator.DEFAULT_MAX_REPORTS_PER_MINUTE,
+                "storm：60 秒內送出 " + maxPerMinute + " 份報告，上限 " + ErrorAggregator.DEFAULT_MAX_REPORTS_PER_MINUTE);
+        expect(!aggregator.hasPending(), "storm：結束後仍有未送出的錯誤");
+        expect(reported[0] == recorded[0], "storm：報告合計 " + reported[0] + " 筆，記錄 " + recorded[0] + " 筆");
+        // 牆上時間往回跳後仍以每分鐘上限照常送出
+        long backWindowMs = STORM_MS / 3;
+        long expectedAfterBack = (backWindowMs / 60_000 - 2) * ErrorAggregator.DEFAULT_MAX_REPORTS_PER_MINUTE;
+        expect(reportsAfterBackJump[0] >= expectedAfterBack,
+                "storm：牆上時間往回跳後只送出 " + reportsAfterBackJump[0] + " 份報告（應至少 " + expectedAfterBack + "）");
+        expect(last[0] != null && lastWallTs[0] > WALL_EPOCH_MS + 23 * 60 * 60_000L,
+                "storm：最後的回報時間未跟著牆上時間往前跳");
+        System.out.println("  storm：" + recorded[0] + " 筆錯誤，" + reports[0] + " 份報告，60 秒內最多 " + maxPerMinute
+                + " 份，延後 " + aggregator.suppressedReports() + " 次，牆上時間往回跳後送出 " + reportsAfterBackJump[0] + " 份");
+    }
+
+    private static long total(ErrorAggregator.Batch batch) {
+        return batch == null ? 0 : batch.totalCount;
+    }
+
+    private void expect(boolean condition, String violation) {
+        if (!condition) {
+            violations.add(violation);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.artiforge.streamclient.harness;
+
+import com.artiforge.streamclient.CameraBackend;
+import com.artiforge.streamclient.ResolutionTier;
+import com.artiforge.streamclient.SyntheticYuvFrame;
+
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JVM 上的假相機後端：隨機延遲、隨機失敗、偶爾不回應，並送出過期工作階段的遲到事件
+ *
+ * 每次 open 建立自己的「FakeCamera」執行緒（對應 Camera2 的背景 HandlerThread），close 時結束；
+ * 記錄同時開啟數、關閉後仍送出的影格等違規，供 CameraChaos 檢查。
+ * faults 為 false 時每次都正常開啟、不注入錯誤，當作穩定的相機（PreRollCheck）。
+ */
+final class FakeCameraBackend implements CameraBackend {
+
+    static final String THREAD_NAME = "FakeCamera";
+
+    private static final int DEFAULT_FRAME_PERIOD_MS = 5;
+
+    private final Random random;
+    private final boolean faults;
+    private final int framePeriodMs;
+    private final SyntheticYuvFrame frame = new SyntheticYuvFrame(64, 48, 0, 2);
+
+    // 只在控制執行緒上存取（CameraBackend 約定）
+    private ScheduledExecutorService cameraThread;
+    private volatile boolean open = false;
+
+    final AtomicInteger opened = new AtomicInteger();
+    final AtomicInteger maxOpened = new AtomicInteger();
+    final AtomicLong opens = new AtomicLong();
+    final AtomicLong closes = new AtomicLong();
+    final AtomicLong framesDelivered = new AtomicLong();
+    final AtomicLong framesAfterClose = new AtomicLong();
+    final AtomicLong injectedErrors = new AtomicLong();
+    final AtomicLong injectedDisconnects = new AtomicLong();
+    final AtomicLong staleEvents = new AtomicLong();
+    final AtomicLong hangs = new AtomicLong();
+
+    FakeCameraBackend(long seed) {
+        this(seed, true, DEFAULT_FRAME_PERIOD_MS);
+    }
+
+    FakeCameraBackend(long seed, boolean faults, int framePeriodMs) {
+        this.random = new Random(seed);
+        this.faults = faults;
+        this.framePeriodMs = framePeriodMs;
+    }
+
+    @Override
+    public void open(int session, ResolutionTier tier, Listener listener, FrameSink sink) {
+        int now = opened.incrementAndGet();
+        maxOpened.accumulateAndGet(now, Math::max);
+        opens.incrementAndGet();
+        open = true;
+
+        cameraThread = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+        int roll = faults ? nextInt(100) : 0;
+        long delayMs = nextInt(20);
+        if (roll < 70) {
+            cameraThread.schedule(() -> {
+                listener.onOpened(session);
+                if (faults && nextInt(10) == 0) {
+                    // 上一個工作階段的遲到事件，控制器應忽略
+                    staleEvents.incrementAndGet();
+                    listener.onOpened(session - 1);
+                }
+            }, delayMs, TimeUnit.MILLISECONDS);
+            cameraThread.scheduleAtFixedRate(() -> tick(session, listener, sink),
+                    delayMs + framePeriodMs, framePeriodMs, TimeUnit.MILLISECONDS);
+        } else if (roll < 95) {
+            boolean recoverable = roll < 85;
+            cameraThread.schedule(() -> {
+                injectedErrors.incrementAndGet();
+                listener.onError(session, "假相機開啟失敗", "access_error", recoverable);
+            }, delayMs, TimeUnit.MILLISECONDS);
+        } else {
+            // 不回應：只能由 close 結束
+            hangs.incrementAndGet();
+        }
+    }
+
+    private void tick(int session, Listener listener, FrameSink sink) {
+        if (!open) {
+            framesAfterClose.incrementAndGet();
+            return;
+        }
+        int roll = faults ? nextInt(1000) : 1000;
+        if (roll < 3) {
+            injectedErrors.incrementAndGet();
+            listener.onError(session, "假相機執行中錯誤", "locked", roll < 2);
+            return;
+        }
+        if (roll < 5) {
+            injectedDisconnects.incrementAndGet();
+            listener.onDisconnected(session);
+            return;
+        }
+        if (sink.wantsFrame(System.currentTimeMillis())) {
+            frame.rewind();
+            sink.onFrame(frame.y, frame.yRowStride, frame.u, frame.v, frame.uvRowStride, frame.uvPixelStride,
+                    frame.width, frame.height, System.nanoTime() / 1_000_000L);
+            framesDelivered.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (cameraThread == null) {
+            return;
+        }
+        cameraThread.shutdownNow();
+        try {
+            if (!cameraThread.awaitTermination(1, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("FakeCamera thread did not stop");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        cameraThread = null;
+        open = false;
+        opened.decrementAndGet();
+        closes.incrementAndGet();
+    }
+
+    private int nextInt(int bound) {
+        synchronized (random) {
+            return random.nextInt(bound);
+        }
+    }
+}
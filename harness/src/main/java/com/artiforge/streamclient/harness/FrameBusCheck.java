@@ -0,0 +1,377 @@
+package com.artiforge.streamclient.harness;
+
+import com.artiforge.streamclient.EncodedFrame;
+import com.artiforge.streamclient.FrameBus;
+import com.artiforge.streamclient.FramePool;
+import com.artiforge.streamclient.LogLevel;
+import com.artiforge.streamclient.StreamLogger;
+import com.artiforge.streamclient.StreamMetrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * FrameBus / FramePool / EncodedFrame 參考計數驗證（實際執行緒，桌面 JVM）
+ *
+ *   ./gradlew :harness:frameBus
+ *
+ * 1. 一個快的與兩個慢的訂閱者（DROP_OLDEST / DROP_NEWEST）：快的收到每一張、發布端不被慢的拖住、
+ *    各訂閱者 delivered + dropped 等於發布數、DROP_OLDEST 保留最新畫面、DROP_NEWEST 保留連續片段、
+ *    所有訂閱者拿到同一個陣列（不複製）、結束後池中沒有借出未歸還的陣列
+ * 2. 洩漏偵測：訂閱者 retain 後不 release 時 outstanding 與 frame_buffers_outstanding 等於洩漏數，
+ *    重複 release、釋放後 retain / data() 立即拋出例外
+ * 3. 訂閱者拋出例外時影格仍被釋放，之後的影格照常送達
+ * 4. 取消訂閱時佇列中的影格立即釋放
+ * 5. 補送（預錄）期間即時影格持續發布：補送影格依序、連續送達，中間不夾雜即時影格，
+ *    之後的即時影格照常送達；丟棄補送時尚未處理的影格立即釋放
+ * 有違規時結束碼為 1。
+ */
+public final class FrameBusCheck {
+
+    private static final int FRAMES = 400;
+    private static final int FRAME_BYTES = 8 * 1024;
+    private static final long SLOW_MS = 10;
+    private static final long PUBLISH_INTERVAL_MS = 1;
+    private static final long MAX_PUBLISH_MS = 20;
+
+    private final List<String> violations = new ArrayList<>();
+    private final StreamLogger logger = new StreamLogger(LogLevel.WARN, (level, message) -> System.out.println("  " + message));
+
+    private FrameBusCheck() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        FrameBusCheck check = new FrameBusCheck();
+        check.fanOut();
+        check.leakDetection();
+        check.throwingSubscriber();
+        check.unsubscribeReleasesQueue();
+        check.backlogOrdering();
+        if (!check.violations.isEmpty()) {
+            for (String violation : check.violations) {
+                System.err.println("❌ " + violation);
+            }
+            System.exit(1);
+        }
+        System.out.println("✅ 沒有違規");
+    }
+
+    private void fanOut() throws InterruptedException {
+        StreamMetrics metrics = new StreamMetrics();
+        FramePool pool = new FramePool(FRAME_BYTES, 8);
+        FrameBus bus = new FrameBus(metrics, logger);
+        List<Integer> fast = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> latest = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> archive = Collections.synchronizedList(new ArrayList<>());
+        Map<Integer, byte[]> arrays = new ConcurrentHashMap<>();
+        int[] copies = {0};
+
+        bus.subscribe("upload", 64, FrameBus.DropPolicy.DROP_OLDEST, frame -> {
+            fast.add(sequence(frame));
+            arrays.put(sequence(frame), frame.data());
+        });
+        bus.subscribe("lan", 2, FrameBus.DropPolicy.DROP_OLDEST, frame -> {
+            latest.add(sequence(frame));
+            copies[0] += sameArray(arrays, frame) ? 0 : 1;
+            sleep(SLOW_MS);
+        });
+        bus.subscribe("archive", 4, FrameBus.DropPolicy.DROP_NEWEST, frame -> {
+            archive.add(sequence(frame));
+            sleep(SLOW_MS);
+        });
+
+        long maxPublishNs = 0;
+        for (int i = 0; i < FRAMES; i++) {
+            EncodedFrame frame = frame(pool, i);
+            long started = System.nanoTime();
+            bus.publish(frame);
+            maxPublishNs = Math.max(maxPublishNs, System.nanoTime() - started);
+            sleep(PUBLISH_INTERVAL_MS);
+        }
+        for (String name : new String[]{"upload", "lan", "archive"}) {
+            awaitSettled(metrics, name, FRAMES);
+        }
+        bus.close();
+
+        long fastDelivered = metrics.get("bus_upload_delivered");
+        expect(fastDelivered == FRAMES && metrics.get("bus_upload_dropped") == 0,
+                "fanOut：快的訂閱者收到 " + fastDelivered + " 張、丟棄 " + metrics.get("bus_upload_dropped") + " 張");
+        expect(maxPublishNs / 1_000_000 < MAX_PUBLISH_MS, "fanOut：publish 最長 " + maxPublishNs / 1_000_000 + " ms，被慢的訂閱者拖住");
+        expect(increasing(fast) && fast.size() == FRAMES, "fanOut：快的訂閱者順序錯亂或缺漏");
+
+        expect(increasing(latest), "fanOut：DROP_OLDEST 訂閱者順序錯亂");
+        expect(!latest.isEmpty() && latest.get(latest.size() - 1) == FRAMES - 1,
+                "fanOut：DROP_OLDEST 最後收到 " + last(latest) + "，應為最新的 " + (FRAMES - 1));
+        expect(metrics.get("bus_lan_dropped") > 0, "fanOut：慢的 DROP_OLDEST 訂閱者沒有丟棄（發布速度不夠快）");
+
+        expect(increasing(archive), "fanOut：DROP_NEWEST 訂閱者順序錯亂");
+        boolean contiguousHead = archive.size() >= 5;
+        for (int i = 0; contiguousHead && i < 5; i++) {
+            contiguousHead = archive.get(i) == i;
+        }
+        expect(contiguousHead, "fanOut：DROP_NEWEST 前幾張不連續：" + archive.subList(0, Math.min(8, archive.size())));
+
+        for (String name : new String[]{"upload", "lan", "archive"}) {
+            long delivered = metrics.get("bus_" + name + "_delivered");
+            long dropped = metrics.get("bus_" + name + "_dropped");
+            expect(delivered + dropped == FRAMES, "fanOut：" + name + " 收到 " + delivered + " + 丟棄 " + dropped + " ≠ " + FRAMES);
+        }
+        expect(copies[0] == 0, "fanOut：" + copies[0] + " 張影格在訂閱者之間被複製");
+        expect(pool.outstanding() == 0, "fanOut：結束後池中仍借出 " + pool.outstanding() + " 個陣列");
+        System.out.println("  fanOut：upload " + fastDelivered + "，lan " + metrics.get("bus_lan_delivered")
+                + "（丟 " + metrics.get("bus_lan_dropped") + "），archive " + metrics.get("bus_archive_delivered")
+                + "（丟 " + metrics.get("bus_archive_dropped") + "），publish 最長 " + String.format("%.2f", maxPublishNs / 1e6)
+                + " ms，池配置 " + pool.allocations());
+    }
+
+    private void leakDetection() throws InterruptedException {
+        StreamMetrics metrics = new StreamMetrics();
+        FramePool pool = new FramePool(FRAME_BYTES, 8);
+        pool.registerGauges(metrics);
+        FrameBus bus = new FrameBus(metrics, logger);
+        List<EncodedFrame> leaked = Collections.synchronizedList(new ArrayList<>());
+        bus.subscribe("leaky", 128, FrameBus.DropPolicy.DROP_OLDEST, frame -> {
+            if (sequence(frame) % 10 == 0) {
+                leaked.add(frame.retain()); // 忘了 release
+            }
+        });
+        for (int i = 0; i < 100; i++) {
+            bus.publish(frame(pool, i));
+        }
+        awaitSettled(metrics, "leaky", 100);
+        bus.close();
+        expect(pool.outstanding() == leaked.size() && leaked.size() == 10,
+                "leakDetection：洩漏 " + leaked.size() + " 張，outstanding " + pool.outstanding());
+        expect(metrics.get(FramePool.FRAME_BUFFERS_OUTSTANDING) == leaked.size(),
+                "leakDetection：frame_buffers_outstanding 為 " + metrics.get(FramePool.FRAME_BUFFERS_OUTSTANDING));
+        for (EncodedFrame frame : leaked) {
+            frame.release();
+        }
+        expect(pool.outstanding() == 0, "leakDetection：釋放後仍借出 " + pool.outstanding() + " 個陣列");
+
+        EncodedFrame frame = frame(pool, 0);
+        frame.release();
+        expect(throwsIllegalState(frame::release), "leakDetection：重複 release 沒有拋出例外");
+        expect(throwsIllegalState(frame::retain), "leakDetection：釋放後 retain 沒有拋出例外");
+        expect(throwsIllegalState(frame::data), "leakDetection：釋放後 data() 沒有拋出例外");
+    }
+
+    private void throwingSubscriber() throws InterruptedException {
+        StreamMetrics metrics = new StreamMetrics();
+        FramePool pool = new FramePool(FRAME_BYTES, 8);
+        FrameBus bus = new FrameBus(metrics, new StreamLogger(LogLevel.WARN, (level, message) -> { }));
+        List<Integer> seen = Collections.synchronizedList(new ArrayList<>());
+        bus.subscribe("faulty", 64, FrameBus.DropPolicy.DROP_OLDEST, frame -> {
+            seen.add(sequence(frame));
+            if (sequence(frame) % 3 == 0) {
+                throw new IllegalStateException("boom " + sequence(frame));
+            }
+        });
+        for (int i = 0; i < 30; i++) {
+            bus.publish(frame(pool, i));
+        }
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (seen.size() < 30 && System.currentTimeMillis() < deadline) {
+            sleep(5);
+        }
+        sleep(20);
+        bus.close();
+        expect(seen.size() == 30, "throwingSubscriber：例外後只收到 " + seen.size() + " 張");
+        expect(pool.outstanding() == 0, "throwingSubscriber：例外後仍借出 " + pool.outstanding() + " 個陣列");
+    }
+
+    private void unsubscribeReleasesQueue() throws InterruptedException {
+        StreamMetrics metrics = new StreamMetrics();
+        FramePool pool = new FramePool(FRAME_BYTES, 8);
+        FrameBus bus = new FrameBus(metrics, logger);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FrameBus.Subscription subscription = bus.subscribe("stuck", 4, FrameBus.DropPolicy.DROP_NEWEST, frame -> {
+            blocked.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        bus.publish(frame(pool, 0));
+        blocked.await(5, TimeUnit.SECONDS);
+        for (int i = 1; i <= 10; i++) {
+            bus.publish(frame(pool, i));
+        }
+        expect(subscription.queued() == 4, "unsubscribe：佇列 " + subscription.queued() + " 張，應為 4");
+        subscription.unsubscribe();
+        expect(pool.outstanding() == 1, "unsubscribe：取消後仍借出 " + pool.outstanding() + " 個（應只剩處理中的 1 個）");
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (pool.outstanding() > 0 && System.currentTimeMillis() < deadline) {
+            sleep(5);
+        }
+        expect(pool.outstanding() == 0, "unsubscribe：處理中的影格結束後仍借出 " + pool.outstanding() + " 個");
+        expect(bus.subscriberCount() == 0, "unsubscribe：仍有 " + bus.subscriberCount() + " 個訂閱者");
+    }
+
+    private void backlogOrdering() throws InterruptedException {
+        StreamMetrics metrics = new StreamMetrics();
+        FramePool pool = new FramePool(FRAME_BYTES, 8);
+        FrameBus bus = new FrameBus(metrics, logger);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        int backlogFrames = 30;
+        int liveBase = 1_000;
+        FrameBus.Subscription subscription = bus.subscribe("upload", 2, FrameBus.DropPolicy.DROP_OLDEST,
+                frame -> order.add(sequence(frame)));
+        // 即時影格持續發布
+        AtomicBoolean publishing = new AtomicBoolean(true);
+        Thread publisher = new Thread(() -> {
+            int sequence = liveBase;
+            while (publishing.get()) {
+                bus.publish(frame(pool, sequence++));
+                sleep(PUBLISH_INTERVAL_MS);
+            }
+        }, "publisher");
+        publisher.start();
+        sleep(20);
+        List<EncodedFrame> frames = new ArrayList<>();
+        for (int i = 0; i < backlogFrames; i++) {
+            frames.add(frame(pool, i));
+        }
+        // 補送較慢（等壅塞視窗）：期間即時影格不斷進來
+        subscription.offerBacklog(frames, frame -> {
+            order.add(sequence(frame));
+            sleep(2);
+        });
+        sleep(backlogFrames * 2 + 200);
+        publishing.set(false);
+        publisher.join();
+
+        List<Integer> seen;
+        synchronized (order) {
+            seen = new ArrayList<>(order);
+        }
+        int first = seen.indexOf(0);
+        int lastBacklog = seen.indexOf(backlogFrames - 1);
+        boolean contiguous = first >= 0 && lastBacklog - first == backlogFrames - 1;
+        for (int i = 0; contiguous && i < backlogFrames; i++) {
+            contiguous = seen.get(first + i) == i;
+        }
+        expect(contiguous, "backlog：補送影格未依序連續送達（位置 " + first + " – " + lastBacklog + "）");
+        boolean liveAfter = lastBacklog >= 0 && lastBacklog < seen.size() - 1 && seen.get(seen.size() - 1) >= liveBase;
+        expect(liveAfter, "backlog：補送後沒有即時影格送達");
+        List<Integer> live = new ArrayList<>();
+        for (int sequence : seen) {
+            if (sequence >= liveBase) {
+                live.add(sequence);
+            }
+        }
+        expect(increasing(live), "backlog：即時影格順序錯亂");
+
+        // 丟棄補送：處理中的那一張之外立即釋放
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<EncodedFrame> stuck = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            stuck.add(frame(pool, i));
+        }
+        subscription.offerBacklog(stuck, frame -> {
+            blocked.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        blocked.await(5, TimeUnit.SECONDS);
+        int dropped = subscription.dropBacklog();
+        expect(dropped == 9, "backlog：丟棄 " + dropped + " 張補送，應為 9");
+        expect(pool.outstanding() == 1, "backlog：丟棄補送後仍借出 " + pool.outstanding() + " 個（應只剩處理中的 1 個）");
+        release.countDown();
+        sleep(50);
+        bus.close();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (pool.outstanding() > 0 && System.currentTimeMillis() < deadline) {
+            sleep(5);
+        }
+        expect(pool.outstanding() == 0, "backlog：結束後仍借出 " + pool.outstanding() + " 個陣列");
+        System.out.println("  backlog：補送 " + backlogFrames + " 張在第 " + first + " – " + lastBacklog
+                + " 張送達，即時影格 " + live.size() + " 張");
+    }
+
+    private static EncodedFrame frame(FramePool pool, int sequence) {
+        FramePool.Writer out = pool.newWriter();
+        byte[] payload = new byte[FRAME_BYTES / 2];
+        payload[0] = (byte) (sequence >>> 24);
+        payload[1] = (byte) (sequence >>> 16);
+        payload[2] = (byte) (sequence >>> 8);
+        payload[3] = (byte) sequence;
+        out.write(payload, 0, payload.length);
+        return out.toFrame(0, Long.MAX_VALUE);
+    }
+
+    private static int sequence(EncodedFrame frame) {
+        byte[] data = frame.data();
+        return (data[0] & 0xff) << 24 | (data[1] & 0xff) << 16 | (data[2] & 0xff) << 8 | (data[3] & 0xff);
+    }
+
+    private static boolean sameArray(Map<Integer, byte[]> arrays, EncodedFrame frame) {
+        byte[] seen = arrays.get(sequence(frame));
+        return seen == null || seen == frame.data();
+    }
+
+    private static boolean increasing(List<Integer> sequence) {
+        synchronized (sequence) {
+            for (int i = 1; i < sequence.size(); i++) {
+                if (sequence.get(i) <= sequence.get(i - 1)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static int last(List<Integer> sequence) {
+        return sequence.isEmpty() ? -1 : sequence.get(sequence.size() - 1);
+    }
+
+    /**
+     * 等到訂閱者處理或丟棄了 published 張影格
+     */
+    private static void awaitSettled(StreamMetrics metrics, String name, int published) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (System.currentTimeMillis() < deadline) {
+            long settled = metrics.get("bus_" + name + "_delivered") + metrics.get("bus_" + name + "_dropped");
+            if (settled >= published) {
+                return;
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private static boolean throwsIllegalState(Runnable action) {
+        try {
+            action.run();
+            return false;
+        } catch (IllegalStateException e) {
+            return true;
+        }
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void expect(boolean condition, String violation) {
+        if (!condition) {
+            violations.add(violation);
+        }
+    }
+}
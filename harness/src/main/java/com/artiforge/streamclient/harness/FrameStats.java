@@ -0,0 +1,88 @@
+package com.artiforge.streamclient.harness;
+
+import com.artiforge.streamclient.FrameLayer;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+
+/**
+ * 代理伺服器端的影格接收統計（執行緒安全）
+ */
+final class FrameStats {
+
+    private long[] latencies = new long[1024];
+    private int latencyCount = 0;
+    private final long[] framesByLayer = new long[FrameLayer.values().length];
+    private long frames = 0;
+    private long bytes = 0;
+    private long firstArrivalMs = -1;
+    private long lastArrivalMs = -1;
+
+    synchronized void record(FrameLayer layer, int size, long latencyMs, long nowMs) {
+        frames++;
+        framesByLayer[layer.ordinal()]++;
+        bytes += size;
+        if (firstArrivalMs < 0) {
+            firstArrivalMs = nowMs;
+        }
+        lastArrivalMs = nowMs;
+        if (latencyMs >= 0) {
+            if (latencyCount == latencies.length) {
+                latencies = Arrays.copyOf(latencies, latencies.length * 2);
+            }
+            latencies[latencyCount++] = latencyMs;
+        }
+    }
+
+    synchronized long frames() {
+        return frames;
+    }
+
+    synchronized long bytes() {
+        return bytes;
+    }
+
+    synchronized void reset() {
+        latencyCount = 0;
+        Arrays.fill(framesByLayer, 0);
+        frames = 0;
+        bytes = 0;
+        firstArrivalMs = -1;
+        lastArrivalMs = -1;
+    }
+
+    /**
+     * @param durationMs 情境長度（用來計算平均幀率與吞吐量）
+     */
+    synchronized JSONObject toJson(long durationMs) throws JSONException {
+        long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        double seconds = Math.max(1, durationMs) / 1000.0;
+
+        JSONObject json = new JSONObject();
+        json.put("frames_delivered", frames);
+        json.put("frames_high", framesByLayer[FrameLayer.HIGH.ordinal()]);
+        json.put("frames_low", framesByLayer[FrameLayer.LOW.ordinal()]);
+        json.put("delivered_fps", round(frames / seconds));
+        json.put("throughput_kbps", round(bytes * 8 / seconds / 1000));
+        json.put("latency_p50_ms", percentile(sorted, 0.50));
+        json.put("latency_p95_ms", percentile(sorted, 0.95));
+        json.put("latency_p99_ms", percentile(sorted, 0.99));
+        json.put("latency_max_ms", sorted.length > 0 ? sorted[sorted.length - 1] : -1);
+        return json;
+    }
+
+    static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return -1;
+        }
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+}
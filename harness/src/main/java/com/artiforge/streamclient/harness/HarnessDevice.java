@@ -0,0 +1,371 @@
+package com.artiforge.streamclient.harness;
+
+import com.artiforge.streamclient.BandwidthEstimator;
+import com.artiforge.streamclient.ControlLane;
+import com.artiforge.streamclient.DatagramFrameSender;
+import com.artiforge.streamclient.DeviceScheduler;
+import com.artiforge.streamclient.EncodedFrame;
+import com.artiforge.streamclient.FrameBus;
+import com.artiforge.streamclient.FrameEncoder;
+import com.artiforge.streamclient.FramePool;
+import com.artiforge.streamclient.FrameSource;
+import com.artiforge.streamclient.FrameUploader;
+import com.artiforge.streamclient.LogLevel;
+import com.artiforge.streamclient.ReconnectManager;
+import com.artiforge.streamclient.ResolutionTier;
+import com.artiforge.streamclient.StreamLease;
+import com.artiforge.streamclient.StreamLogger;
+import com.artiforge.streamclient.StreamMetrics;
+import com.artiforge.streamclient.StreamParams;
+import com.artiforge.streamclient.SyntheticFrameSource;
+import com.artiforge.streamclient.SyntheticYuvFrame;
+import com.artiforge.streamclient.TaskScheduler;
+import com.artiforge.streamclient.TimeSource;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.net.URISyntaxException;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.socket.client.IO;
+import io.socket.client.Socket;
+import okhttp3.OkHttpClient;
+
+/**
+ * 桌機上的模擬裝置：與 SimpleMainActivity 相同的協定與傳輸元件，相機換成測試影格
+ *
+ * 連線、註冊、租約、重連（ReconnectManager）、上傳（FrameUploader / DatagramFrameSender）
+ * 都使用 core 模組的實作，因此情境結果反映的就是 App 的傳輸行為。
+ * 預設送出帶有擷取時間的測試內容（量測延遲）；useSyntheticCamera 之後改由 SyntheticFrameSource
+ * 經過完整的 YUV→JPEG 轉換產生影格（長時間測試用，伺服器端無法量測延遲）。
+ */
+final class HarnessDevice implements Closeable {
+
+    static final String FRAMES_GENERATED = "harness_frames_generated";
+    private static final int UPLOAD_QUEUE_FRAMES = 2;
+    /** 各解析度等級在 Q85 時的大約 JPEG 大小 */
+    private static final int BYTES_LOW = 12 * 1024;
+    private static final int BYTES_MEDIUM = 40 * 1024;
+    private static final int BYTES_HIGH = 80 * 1024;
+
+    private final String serverUrl;
+    private final String udpHost;
+    private final TimeSource clock;
+    private final StreamMetrics metrics = new StreamMetrics();
+    private final StreamLogger logger;
+    private final TaskScheduler scheduler = DeviceScheduler.shared();
+    private final ControlLane controlLane;
+    private final FramePool framePool = new FramePool();
+    private final FrameBus frameBus;
+    private final StreamLease streamLease;
+    private final ReconnectManager reconnectManager;
+    private final FrameUploader frameUploader;
+    private final AtomicLong framesGenerated;
+    private final Random random = new Random(7);
+    private final ScheduledExecutorService camera = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "HarnessCamera");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Socket socket;
+    private volatile DatagramFrameSender udpSender;
+    private volatile SyntheticFrameSource frameSource;
+    private ScheduledFuture<?> producer;
+    private TaskScheduler.ScheduledTask leaseExpiryTask;
+    private int sequence = 0;
+
+    HarnessDevice(String serverUrl, String udpHost, TimeSource clock, LogLevel logLevel) {
+        this.serverUrl = serverUrl;
+        this.udpHost = udpHost;
+        this.clock = clock;
+        this.logger = new StreamLogger(logLevel, (level, message) -> System.out.println("  [device] " + message));
+        this.controlLane = new ControlLane(metrics, logger);
+        this.frameBus = new FrameBus(metrics, logger);
+        this.streamLease = new StreamLease(clock);
+        this.reconnectManager = new ReconnectManager(scheduler, clock, this::reconnect, metrics);
+        this.framesGenerated = metrics.counter(FRAMES_GENERATED);
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+                .connectTimeout(2, TimeUnit.SECONDS)
+                .writeTimeout(2, TimeUnit.SECONDS)
+                .readTimeout(2, TimeUnit.SECONDS)
+                .build();
+        this.frameUploader = new FrameUploader(httpClient, serverUrl, new BandwidthEstimator(clock), clock, metrics,
+                (frameNumber, httpCode, error) -> logger.log(LogLevel.DEBUG, () -> "❌ 上傳失敗 #" + frameNumber
+                        + (httpCode > 0 ? ": HTTP " + httpCode : ": " + error)));
+        framePool.registerGauges(metrics);
+        frameBus.subscribe("upload", UPLOAD_QUEUE_FRAMES, FrameBus.DropPolicy.DROP_OLDEST, this::uploadFrame);
+    }
+
+    StreamMetrics metrics() {
+        return metrics;
+    }
+
+    FrameUploader uploader() {
+        return frameUploader;
+    }
+
+    FramePool framePool() {
+        return framePool;
+    }
+
+    SyntheticFrameSource frameSource() {
+        return frameSource;
+    }
+
+    /**
+     * 改用合成相機產生影格（在 controlLane 上切換；之後的串流才生效）
+     */
+    void useSyntheticCamera(SyntheticYuvFrame frame, int sensorFps, double speed) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        FrameEncoder encoder = new FrameEncoder(framePool, new ImageIoJpegEncoder(), metrics, clock,
+                threads::getCurrentThreadCpuTime);
+        SyntheticFrameSource source = new SyntheticFrameSource(encoder, frame, clock, sensorFps, speed);
+        source.setFrameCallback(new FrameSource.FrameCallback() {
+            @Override
+            public void onFrameAvailable(EncodedFrame encoded) {
+                framesGenerated.incrementAndGet();
+                frameBus.publish(encoded);
+            }
+
+            @Override
+            public void onError(String error) {
+                logger.log(LogLevel.ERROR, error);
+            }
+
+            @Override
+            public void onCameraStatusChanged(boolean available, String reason) {
+                logger.log(LogLevel.INFO, () -> "📷 合成相機 " + (available ? "可用" : "不可用") + "（" + reason + "）");
+            }
+        });
+        controlLane.execute(() -> {
+            stopProducer();
+            SyntheticFrameSource previous = frameSource;
+            if (previous != null) {
+                previous.stopCamera();
+            }
+            frameSource = source;
+            source.startCamera();
+        });
+    }
+
+    void connect() throws URISyntaxException {
+        IO.Options options = new IO.Options();
+        options.transports = new String[] {"websocket"};
+        options.reconnection = false;
+        options.timeout = 20000;
+        options.forceNew = true;
+        Socket created = IO.socket(serverUrl, options);
+        socket = created;
+
+        created.on(Socket.EVENT_CONNECT, args -> {
+            long recoveryMs = reconnectManager.onConnected();
+            logger.log(LogLevel.INFO, () -> recoveryMs >= 0 ? "✅ 重新連接成功（斷線 " + recoveryMs + " ms）" : "✅ 已連接");
+            emit("android_register", json("device_id", "harness"));
+        });
+        created.on("registered", args -> {
+            emit("camera_status", json("available", true, "reason", "ready"));
+            controlLane.execute(() -> {
+                if (streamLease.isActive()) {
+                    startProducer(streamLease.getParams());
+                }
+            });
+        });
+        created.on(Socket.EVENT_DISCONNECT, args -> onConnectionLost());
+        created.on(Socket.EVENT_CONNECT_ERROR, args -> onConnectionLost());
+
+        created.on("cmd_start_stream", args -> {
+            StreamParams params = StreamParams.fromEventArgs(args);
+            controlLane.submit("start_stream", () -> {
+                StreamLease.Transition transition = streamLease.grant(params);
+                scheduleLeaseExpiry();
+                if (transition != StreamLease.Transition.RENEWED) {
+                    logger.log(LogLevel.INFO, () -> "📹 串流 " + params);
+                    startProducer(params);
+                }
+            });
+        });
+        created.on("cmd_renew_lease", args -> {
+            long leaseMs = args.length > 0 && args[0] instanceof JSONObject
+                    ? ((JSONObject) args[0]).optLong("lease_ms", 0)
+                    : 0;
+            controlLane.submit("renew_lease", () -> {
+                if (streamLease.renew(leaseMs) == StreamLease.Transition.RENEWED) {
+                    scheduleLeaseExpiry();
+                }
+            });
+        });
+        created.on("cmd_stop_stream", args -> controlLane.submit("stop_stream", () -> {
+            streamLease.revoke();
+            cancelLeaseExpiry();
+            stopProducer();
+        }));
+        created.on("cmd_udp_transport", args -> {
+            JSONObject data = args.length > 0 && args[0] instanceof JSONObject ? (JSONObject) args[0] : new JSONObject();
+            boolean enabled = data.optBoolean("enabled", true);
+            int port = data.optInt("port", 0);
+            int token = data.optInt("token", 0);
+            byte[] key = DatagramFrameSender.parseKey(data.optString("key", null));
+            int fecGroup = data.optInt("fec_group", DatagramFrameSender.DEFAULT_FEC_GROUP);
+            controlLane.submit("udp_transport", () -> setUdpTransport(enabled ? port : 0, token, key, fecGroup));
+        });
+
+        reconnectManager.start();
+        created.connect();
+    }
+
+    @Override
+    public void close() {
+        reconnectManager.stop();
+        camera.shutdownNow();
+        SyntheticFrameSource source = frameSource;
+        if (source != null) {
+            source.stopCamera();
+        }
+        Socket current = socket;
+        if (current != null) {
+            current.off();
+            current.disconnect();
+            current.close();
+        }
+        controlLane.execute(() -> setUdpTransport(0, 0, null, 0));
+        controlLane.shutdown();
+        frameBus.close();
+    }
+
+    private void reconnect() {
+        Socket current = socket;
+        if (current != null && !current.connected()) {
+            current.connect();
+        }
+    }
+
+    private void onConnectionLost() {
+        controlLane.execute(this::stopProducer);
+        reconnectManager.onConnectionLost();
+    }
+
+    // ========================================================================
+    // 影格（在 controlLane 上啟停）
+    // ========================================================================
+
+    private void startProducer(StreamParams params) {
+        stopProducer();
+        SyntheticFrameSource source = frameSource;
+        if (source != null) {
+            source.applyStreamParams(params);
+            source.startStreaming();
+            return;
+        }
+        int frameBytes = frameBytes(params);
+        long maxAgeMs = params.maxAgeMs;
+        producer = camera.scheduleAtFixedRate(() -> {
+            long capture = clock.nowMs();
+            FramePool.Writer writer = framePool.newWriter();
+            byte[] data = SyntheticFrames.create(sequence++, capture, frameBytes, random);
+            writer.write(data, 0, data.length);
+            framesGenerated.incrementAndGet();
+            frameBus.publish(writer.toFrame(capture, capture + maxAgeMs));
+        }, 0, params.frameIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    private void stopProducer() {
+        SyntheticFrameSource source = frameSource;
+        if (source != null) {
+            source.stopStreaming();
+        }
+        if (producer != null) {
+            producer.cancel(false);
+            producer = null;
+        }
+    }
+
+    private void scheduleLeaseExpiry() {
+        cancelLeaseExpiry();
+        leaseExpiryTask = scheduler.schedule(() -> controlLane.execute(() -> {
+            if (streamLease.checkExpiry() == StreamLease.Transition.EXPIRED) {
+                logger.log(LogLevel.INFO, "⏰ 租約到期，停止串流");
+                stopProducer();
+            }
+        }), streamLease.remainingMs(), 0);
+    }
+
+    private void cancelLeaseExpiry() {
+        if (leaseExpiryTask != null) {
+            leaseExpiryTask.cancel();
+            leaseExpiryTask = null;
+        }
+    }
+
+    static int frameBytes(StreamParams params) {
+        int base = params.tier == ResolutionTier.LOW ? BYTES_LOW
+                : params.tier == ResolutionTier.HIGH ? BYTES_HIGH
+                : BYTES_MEDIUM;
+        return base * params.quality / StreamParams.DEFAULT_QUALITY;
+    }
+
+    private void setUdpTransport(int port, int token, byte[] key, int fecGroup) {
+        DatagramFrameSender previous = udpSender;
+        udpSender = null;
+        if (previous != null) {
+            previous.close();
+        }
+        if (port <= 0) {
+            return;
+        }
+        if (key == null) {
+            logger.log(LogLevel.ERROR, "❌ UDP 傳輸缺少有效金鑰，改用 HTTP");
+            return;
+        }
+        try {
+            udpSender = new DatagramFrameSender(new InetSocketAddress(udpHost, port), token, key,
+                    Math.max(0, Math.min(255, fecGroup)), frameUploader.getEstimator(), clock, metrics);
+            logger.log(LogLevel.INFO, () -> "📡 UDP 影格傳輸（FEC 每 " + fecGroup + " 片）");
+        } catch (SocketException e) {
+            logger.log(LogLevel.ERROR, "❌ UDP 傳輸開啟失敗: " + e.getMessage());
+        }
+    }
+
+    private void uploadFrame(EncodedFrame frame) {
+        Socket current = socket;
+        if (current == null || !current.connected()) {
+            return;
+        }
+        DatagramFrameSender udp = udpSender;
+        if (udp != null) {
+            udp.send(frame);
+        } else {
+            frameUploader.upload(frame);
+        }
+    }
+
+    private void emit(String event, JSONObject payload) {
+        Socket current = socket;
+        if (current != null) {
+            current.emit(event, payload);
+        }
+    }
+
+    private static JSONObject json(Object... keyValues) {
+        JSONObject json = new JSONObject();
+        try {
+            for (int i = 0; i + 1 < keyValues.length; i += 2) {
+                json.put((String) keyValues[i], keyValues[i + 1]);
+            }
+        } catch (JSONException e) {
+            // Ignore
+        }
+        return json;
+    }
+}
@@ -0,0 +1,117 @@
+package com.artiforge.streamclient.harness;
+
+import com.artiforge.streamclient.LogLevel;
+
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 網路劣化測試入口
+ *
+ *   ./gradlew :harness:run --args="[情境...] [--out 目錄] [--baseline 目錄] [--duration 毫秒] [--verbose] [--list]"
+ *
+ * 每個情境輸出 <out>/<情境>.json；指定 --baseline 時與同名基準報告比較，有退步時結束碼為 1。
+ * soak 情境另外檢查資源是否有界（超過上限同樣視為退步），長時間執行時以 --duration 指定，例如 3600000。
+ * reconnect 情境另外檢查每次斷線後重新註冊的時間是否在上限內；
+ * control_saturated 情境檢查上傳塞滿時控制指令延遲的 p99。
+ */
+public final class HarnessMain {
+
+    private static final String DEFAULT_OUT = "build/harness-reports";
+
+    private HarnessMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> names = new ArrayList<>();
+        File outDir = new File(DEFAULT_OUT);
+        File baselineDir = null;
+        long durationMs = Scenarios.DEFAULT_DURATION_MS;
+        LogLevel deviceLogLevel = LogLevel.WARN;
+        boolean list = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--out":
+                    outDir = new File(args[++i]);
+                    break;
+                case "--baseline":
+                    baselineDir = new File(args[++i]);
+                    break;
+                case "--duration":
+                    durationMs = Long.parseLong(args[++i]);
+                    break;
+                case "--verbose":
+                    deviceLogLevel = LogLevel.INFO;
+                    break;
+                case "--list":
+                    list = true;
+                    break;
+                default:
+                    names.add(args[i]);
+            }
+        }
+
+        Map<String, Scenario> scenarios = Scenarios.all(durationMs);
+        if (list) {
+            for (Scenario scenario : scenarios.values()) {
+                System.out.println(scenario.name + "\t" + scenario.description);
+            }
+            return;
+        }
+        if (names.isEmpty()) {
+            names.addAll(scenarios.keySet());
+        }
+
+        if (!outDir.isDirectory() && !outDir.mkdirs()) {
+            throw new IOException("無法建立輸出目錄: " + outDir);
+        }
+        List<String> regressions = new ArrayList<>();
+        for (String name : names) {
+            Scenario scenario = scenarios.get(name);
+            if (scenario == null) {
+                System.err.println("❌ 未知情境: " + name + "（--list 列出所有情境）");
+                System.exit(2);
+            }
+            System.out.println("▶️ " + scenario.name + "：" + scenario.description);
+            JSONObject report;
+            try (ScenarioRunner runner = new ScenarioRunner(deviceLogLevel)) {
+                report = runner.run(scenario);
+            }
+            System.out.println(ScenarioReport.summary(report));
+            regressions.addAll(ScenarioReport.resourceViolations(report));
+            regressions.addAll(ScenarioReport.recoveryViolations(report));
+            regressions.addAll(ScenarioReport.controlViolations(report));
+            File output = new File(outDir, scenario.name + ".json");
+            Files.write(output.toPath(), report.toString(2).getBytes(StandardCharsets.UTF_8));
+
+            if (baselineDir != null) {
+                File baselineFile = new File(baselineDir, scenario.name + ".json");
+                if (baselineFile.isFile()) {
+                    JSONObject baseline = new JSONObject(new String(Files.readAllBytes(baselineFile.toPath()), StandardCharsets.UTF_8));
+                    regressions.addAll(ScenarioReport.compare(baseline, report));
+                } else {
+                    System.out.println("    （沒有基準報告 " + baselineFile + "）");
+                }
+            }
+        }
+
+        System.out.println("📄 報告輸出至 " + outDir.getPath());
+        if (!regressions.isEmpty()) {
+            System.out.println("⚠️ 有 " + regressions.size() + " 項退步：");
+            for (String regression : regressions) {
+                System.out.println("   " + regression);
+            }
+            System.exit(1);
+        }
+        // 裝置端的排程器與 OkHttp 執行緒不一定都是 daemon
+        System.exit(0);
+    }
+}
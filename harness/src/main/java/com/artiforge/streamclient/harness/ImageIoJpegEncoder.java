@@ -0,0 +1,77 @@
+package com.artiforge.streamclient.harness;
+
+import com.artiforge.streamclient.Nv21JpegEncoder;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+/**
+ * 桌面 JVM 上代替 YuvImage.compressToJpeg 的 NV21 → JPEG 編碼器
+ *
+ * 與 Android 相同先做 NV21 → RGB 轉換再交給 JPEG 編碼器（ImageIO）；耗時只適合比較版本間的變化，
+ * 不代表裝置上 libjpeg-turbo 的絕對耗時。不是執行緒安全的（每個擷取執行緒一個）。
+ */
+public final class ImageIoJpegEncoder implements Nv21JpegEncoder {
+
+    private final ImageWriter writer;
+    private final ImageWriteParam param;
+    private BufferedImage image;
+
+    public ImageIoJpegEncoder() {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!writers.hasNext()) {
+            throw new IllegalStateException("no JPEG ImageWriter");
+        }
+        writer = writers.next();
+        param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+    }
+
+    @Override
+    public boolean compress(byte[] nv21, int width, int height, int quality, OutputStream out) throws IOException {
+        if (image == null || image.getWidth() != width || image.getHeight() != height) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+        toRgb(nv21, width, height, ((DataBufferInt) image.getRaster().getDataBuffer()).getData());
+
+        param.setCompressionQuality(quality / 100f);
+        try (MemoryCacheImageOutputStream stream = new MemoryCacheImageOutputStream(out)) {
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        }
+        return true;
+    }
+
+    /**
+     * BT.601 整數近似（full-range）
+     */
+    private static void toRgb(byte[] nv21, int width, int height, int[] rgb) {
+        int frameSize = width * height;
+        for (int row = 0; row < height; row++) {
+            int uvRow = frameSize + (row >> 1) * width;
+            for (int col = 0; col < width; col++) {
+                int y = nv21[row * width + col] & 0xFF;
+                int uvIndex = uvRow + (col & ~1);
+                int v = (nv21[uvIndex] & 0xFF) - 128;
+                int u = (nv21[uvIndex + 1] & 0xFF) - 128;
+                int r = y + ((359 * v) >> 8);
+                int g = y - ((88 * u + 183 * v) >> 8);
+                int b = y + ((454 * u) >> 8);
+                rgb[row * width + col] = (clamp(r) << 16) | (clamp(g) << 8) | clamp(b);
+            }
+        }
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : Math.min(value, 255);
+    }
+}
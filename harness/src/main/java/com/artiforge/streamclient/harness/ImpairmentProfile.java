@@ -0,0 +1,91 @@
+package com.artiforge.streamclient.harness;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * 網路劣化設定（頻寬、延遲、抖動、遺失）
+ *
+ * TCP 無法真的丟包：遺失以「該段資料延後一個重送逾時」模擬，正好重現隊頭阻塞；
+ * UDP 則直接丟棄封包。
+ */
+public final class ImpairmentProfile {
+
+    public static final ImpairmentProfile NONE = new ImpairmentProfile("none", 0, 0, 0, 0);
+    public static final ImpairmentProfile WIFI = new ImpairmentProfile("wifi", 20_000_000, 5, 2, 0);
+    public static final ImpairmentProfile LTE = new ImpairmentProfile("lte", 4_000_000, 40, 15, 0.005);
+    public static final ImpairmentProfile CONGESTED = new ImpairmentProfile("congested", 750_000, 150, 80, 0.02);
+    public static final ImpairmentProfile LOSSY = new ImpairmentProfile("lossy", 2_000_000, 60, 30, 0.10);
+
+    /** TCP 分段大小（計算一段資料內至少一個封包遺失的機率） */
+    static final int SEGMENT_BYTES = 1460;
+    /** Linux 最小 RTO */
+    static final long MIN_RTO_MS = 200;
+
+    public final String name;
+    /** 每方向頻寬（bits/s），0 代表不限 */
+    public final long bandwidthBps;
+    public final long latencyMs;
+    public final long jitterMs;
+    /** 單一封包遺失率 */
+    public final double lossRate;
+
+    public ImpairmentProfile(String name, long bandwidthBps, long latencyMs, long jitterMs, double lossRate) {
+        this.name = name;
+        this.bandwidthBps = bandwidthBps;
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+        this.lossRate = lossRate;
+    }
+
+    /**
+     * 送出 bytes 位元組所需的序列化時間（毫秒）
+     */
+    long serializationMs(int bytes) {
+        return bandwidthBps <= 0 ? 0 : bytes * 8_000L / bandwidthBps;
+    }
+
+    /**
+     * 一段 TCP 資料至少有一個分段遺失的機率
+     */
+    double chunkLossProbability(int bytes) {
+        if (lossRate <= 0) {
+            return 0;
+        }
+        int segments = Math.max(1, (bytes + SEGMENT_BYTES - 1) / SEGMENT_BYTES);
+        return 1 - Math.pow(1 - lossRate, segments);
+    }
+
+    long retransmitPenaltyMs() {
+        return Math.max(MIN_RTO_MS, 3 * latencyMs);
+    }
+
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        try {
+            json.put("name", name);
+            json.put("bandwidth_bps", bandwidthBps);
+            json.put("latency_ms", latencyMs);
+            json.put("jitter_ms", jitterMs);
+            json.put("loss_rate", lossRate);
+        } catch (JSONException e) {
+            // Ignore
+        }
+        return json;
+    }
+
+    public static ImpairmentProfile named(String name) {
+        for (ImpairmentProfile profile : new ImpairmentProfile[] {NONE, WIFI, LTE, CONGESTED, LOSSY}) {
+            if (profile.name.equalsIgnoreCase(name)) {
+                return profile;
+            }
+        }
+        throw new IllegalArgumentException("未知的網路設定: " + name);
+    }
+
+    @Override
+    public String toString() {
+        return name + "（" + (bandwidthBps > 0 ? bandwidthBps / 1000 + " kbps" : "不限頻寬")
+                + "，" + latencyMs + "±" + jitterMs + " ms，遺失 " + (lossRate * 100) + "%）";
+    }
+}
@@ -0,0 +1,278 @@
+package com.artiforge.streamclient.harness;
+
+import com.artiforge.streamclient.TimeSource;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TCP 劣化代理（放在裝置與代理伺服器之間，HTTP 上傳與 Socket.IO 都經過這裡）
+ *
+ * 每個方向一條共用線路（LinkShaper）：資料依頻寬排隊、加上延遲與抖動後才送出，
+ * 遺失以重送逾時延後表示（同連線後續資料跟著被擋住，即隊頭阻塞）。
+ * 每方向最多緩衝 QUEUE_BYTES，滿了就停止讀取，讓 TCP 視窗自然回壓。
+ * disconnectAll 中斷所有連線，並在停電期間拒絕新連線。
+ */
+public final class ImpairmentProxy implements Closeable {
+
+    private static final int CHUNK_BYTES = 8 * 1024;
+    /** 模擬基地台 / 路由器緩衝 */
+    private static final int QUEUE_BYTES = 256 * 1024;
+
+    private final InetSocketAddress target;
+    private final TimeSource clock;
+    private final LinkShaper upstream = new LinkShaper(1);
+    private final LinkShaper downstream = new LinkShaper(2);
+    private final Set<Connection> connections = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    private final AtomicLong bytesUp = new AtomicLong();
+    private final AtomicLong bytesDown = new AtomicLong();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong resets = new AtomicLong();
+
+    private volatile ServerSocket serverSocket;
+    private volatile long blackoutUntilMs = 0;
+
+    public ImpairmentProxy(InetSocketAddress target, TimeSource clock) {
+        this.target = target;
+        this.clock = clock;
+    }
+
+    public void start(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptLoop, "Proxy-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getLocalPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public void setProfile(ImpairmentProfile profile) {
+        upstream.setProfile(profile);
+        downstream.setProfile(profile);
+    }
+
+    public ImpairmentProfile profile() {
+        return upstream.profile();
+    }
+
+    /**
+     * 中斷所有連線；blackoutMs 內的新連線直接關閉（模擬進電梯 / 切換基地台）
+     */
+    public void disconnectAll(long blackoutMs) {
+        blackoutUntilMs = clock.nowMs() + blackoutMs;
+        for (Connection connection : connections) {
+            connection.close();
+            resets.incrementAndGet();
+        }
+    }
+
+    public long bytesUp() {
+        return bytesUp.get();
+    }
+
+    public long bytesDown() {
+        return bytesDown.get();
+    }
+
+    public long acceptedConnections() {
+        return accepted.get();
+    }
+
+    public long resetConnections() {
+        return resets.get();
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            // Ignore
+        }
+        for (Connection connection : connections) {
+            connection.close();
+        }
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            Socket client;
+            try {
+                client = serverSocket.accept();
+            } catch (IOException e) {
+                return;
+            }
+            if (clock.nowMs() < blackoutUntilMs) {
+                closeQuietly(client);
+                continue;
+            }
+            try {
+                Socket server = new Socket();
+                server.connect(target, 2_000);
+                server.setTcpNoDelay(true);
+                client.setTcpNoDelay(true);
+                accepted.incrementAndGet();
+                Connection connection = new Connection(client, server);
+                connections.add(connection);
+                connection.start();
+            } catch (IOException e) {
+                closeQuietly(client);
+            }
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
+
+    private final class Connection {
+        final Socket client;
+        final Socket server;
+        private volatile boolean closed = false;
+        private int openPipes = 2;
+
+        Connection(Socket client, Socket server) {
+            this.client = client;
+            this.server = server;
+        }
+
+        void start() throws IOException {
+            new Pipe(this, client.getInputStream(), server.getOutputStream(), upstream, bytesUp, server).start("up");
+            new Pipe(this, server.getInputStream(), client.getOutputStream(), downstream, bytesDown, client).start("down");
+        }
+
+        synchronized void pipeFinished() {
+            if (--openPipes == 0) {
+                close();
+            }
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            connections.remove(this);
+            closeQuietly(client);
+            closeQuietly(server);
+        }
+    }
+
+    /**
+     * 單方向轉送：讀取執行緒依鏈路模型排定抵達時間，寫入執行緒到時間才送出
+     */
+    private final class Pipe {
+        private final Connection connection;
+        private final InputStream in;
+        private final OutputStream out;
+        private final LinkShaper link;
+        private final AtomicLong bytes;
+        private final Socket outSocket;
+        private final BlockingQueue<Chunk> queue = new LinkedBlockingQueue<>();
+        private final Semaphore buffered = new Semaphore(QUEUE_BYTES);
+        private long lastArrivalMs = 0;
+
+        Pipe(Connection connection, InputStream in, OutputStream out, LinkShaper link, AtomicLong bytes, Socket outSocket) {
+            this.connection = connection;
+            this.in = in;
+            this.out = out;
+            this.link = link;
+            this.bytes = bytes;
+            this.outSocket = outSocket;
+        }
+
+        void start(String direction) {
+            Thread reader = new Thread(this::readLoop, "Proxy-" + direction + "-read");
+            Thread writer = new Thread(this::writeLoop, "Proxy-" + direction + "-write");
+            reader.setDaemon(true);
+            writer.setDaemon(true);
+            reader.start();
+            writer.start();
+        }
+
+        private void readLoop() {
+            byte[] buffer = new byte[CHUNK_BYTES];
+            try {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    buffered.acquire(read);
+                    long now = clock.nowMs();
+                    long arrival = link.schedule(read, now);
+                    ImpairmentProfile profile = link.profile();
+                    if (link.lose(profile.chunkLossProbability(read))) {
+                        arrival += profile.retransmitPenaltyMs();
+                    }
+                    // TCP 依序交付：不可早於前一段
+                    arrival = Math.max(arrival, lastArrivalMs);
+                    lastArrivalMs = arrival;
+                    byte[] data = new byte[read];
+                    System.arraycopy(buffer, 0, data, 0, read);
+                    queue.put(new Chunk(data, arrival));
+                }
+            } catch (IOException | InterruptedException e) {
+                // 連線被中斷
+            }
+            queue.offer(Chunk.END);
+        }
+
+        private void writeLoop() {
+            try {
+                while (true) {
+                    Chunk chunk = queue.take();
+                    if (chunk == Chunk.END) {
+                        if (!connection.closed) {
+                            outSocket.shutdownOutput();
+                        }
+                        break;
+                    }
+                    long wait = chunk.arrivalMs - clock.nowMs();
+                    if (wait > 0) {
+                        Thread.sleep(wait);
+                    }
+                    out.write(chunk.data);
+                    out.flush();
+                    bytes.addAndGet(chunk.data.length);
+                    buffered.release(chunk.data.length);
+                }
+            } catch (IOException | InterruptedException e) {
+                connection.close();
+                buffered.release(QUEUE_BYTES); // 讀取端可能正在等待緩衝空間
+            }
+            connection.pipeFinished();
+        }
+    }
+
+    private static final class Chunk {
+        static final Chunk END = new Chunk(new byte[0], 0);
+
+        final byte[] data;
+        final long arrivalMs;
+
+        Chunk(byte[] data, long arrivalMs) {
+            this.data = data;
+            this.arrivalMs = arrivalMs;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.artiforge.streamclient.harness;
+
+import java.util.Random;
+
+/**
+ * 單一方向的鏈路模型：共用頻寬（序列化排隊）+ 傳播延遲 + 抖動
+ *
+ * 同一方向的所有連線共用一條「線路」，因此多個上傳會互相搶頻寬。
+ */
+final class LinkShaper {
+
+    private final Random random;
+    private volatile ImpairmentProfile profile = ImpairmentProfile.NONE;
+    private long wireFreeAtMs = 0;
+
+    LinkShaper(long seed) {
+        this.random = new Random(seed);
+    }
+
+    void setProfile(ImpairmentProfile profile) {
+        this.profile = profile;
+    }
+
+    ImpairmentProfile profile() {
+        return profile;
+    }
+
+    /**
+     * 佔用線路送出 bytes，回傳抵達時間（尚未加上遺失懲罰）
+     */
+    synchronized long schedule(int bytes, long nowMs) {
+        ImpairmentProfile current = profile;
+        wireFreeAtMs = Math.max(wireFreeAtMs, nowMs) + current.serializationMs(bytes);
+        long jitter = current.jitterMs > 0 ? (long) (random.nextGaussian() * current.jitterMs) : 0;
+        return wireFreeAtMs + Math.max(0, current.latencyMs + jitter);
+    }
+
+    /**
+     * 線路上尚未送完的排隊時間（UDP 用來模擬路由器緩衝溢出）
+     */
+    synchronized long queueDelayMs(long nowMs) {
+        return Math.max(0, wireFreeAtMs - nowMs);
+    }
+
+    synchronized boolean lose(double probability) {
+        return probability > 0 && random.nextDouble() < probability;
+    }
+}
@@ -0,0 +1,240 @@
+package com.artiforge.streamclient.harness;
+
+import com.artiforge.streamclient.DeviceScheduler;
+import com.artiforge.streamclient.LogLevel;
+import com.artiforge.streamclient.LooperWatchdog;
+import com.artiforge.streamclient.StreamLogger;
+import com.artiforge.streamclient.StreamMetrics;
+import com.artiforge.streamclient.TimeSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LooperWatchdog 實際執行緒驗證（單執行緒 executor 扮演主執行緒，桌面 JVM）
+ *
+ *   ./gradlew :harness:looperWatchdog
+ *
+ * 閒置一段時間不應有任何卡住；接著讓執行緒在兩個不同名稱的方法中各卡住數次。檢查：
+ * 每次卡住都被計數、簽章包含卡住的方法名稱、同一位置的卡住彙整為一筆、
+ * 不同位置各自一筆、looper_* 指標與彙整一致、執行緒不存在時不誤報。
+ * 最後量測沒有卡住時每次探測的成本。有違規時結束碼為 1。
+ */
+public final class LooperWatchdogCheck {
+
+    private static final long PROBE_MS = 100;
+    private static final long THRESHOLD_MS = 50;
+    private static final long STALL_MS = 300;
+    private static final int REPEATS = 3;
+    private static final int OVERHEAD_PROBES = 200_000;
+
+    private final List<String> violations = new ArrayList<>();
+    private final StreamMetrics metrics = new StreamMetrics();
+    private final StreamLogger logger = new StreamLogger(LogLevel.INFO, (level, message) -> System.out.println("  " + message));
+    private final Thread[] laneThread = new Thread[1];
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "fake-main");
+        laneThread[0] = thread;
+        return thread;
+    });
+    private final LooperWatchdog watchdog = new LooperWatchdog(DeviceScheduler.shared(), TimeSource.MONOTONIC,
+            TimeSource.WALL, metrics, logger, PROBE_MS, THRESHOLD_MS);
+
+    public static void main(String[] args) throws Exception {
+        LooperWatchdogCheck check = new LooperWatchdogCheck();
+        check.run();
+        if (!check.violations.isEmpty()) {
+            for (String violation : check.violations) {
+                System.err.println("❌ " + violation);
+            }
+            System.exit(1);
+        }
+        System.out.println("✅ 沒有違規");
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        executor.submit(() -> { }).get();
+        watchdog.watch(new LooperWatchdog.Lane() {
+            @Override
+            public String name() {
+                return "main";
+            }
+
+            @Override
+            public Thread thread() {
+                return laneThread[0];
+            }
+
+            @Override
+            public boolean post(Runnable task) {
+                try {
+                    executor.execute(task);
+                    return true;
+                } catch (RejectedExecutionException e) {
+                    return false;
+                }
+            }
+        });
+        // 相機未開啟：沒有執行緒
+        watchdog.watch(new LooperWatchdog.Lane() {
+            @Override
+            public String name() {
+                return "camera";
+            }
+
+            @Override
+            public Thread thread() {
+                return null;
+            }
+
+            @Override
+            public boolean post(Runnable task) {
+                return false;
+            }
+        });
+        watchdog.start();
+
+        // 閒置：不應有卡住
+        Thread.sleep(PROBE_MS * 10);
+        expect(!watchdog.hasChanged(), "閒置時回報卡住");
+        expect(metrics.get(LooperWatchdog.LOOPER_STALLS_PREFIX + "main") == 0, "閒置時 looper_stalls_main 不為 0");
+        System.out.println("  閒置：派送延遲最大 " + metrics.get(LooperWatchdog.LOOPER_DISPATCH_MS_MAX_PREFIX + "main") + " ms");
+
+        for (int i = 0; i < REPEATS; i++) {
+            stallOn(this::blockInDecode);
+        }
+        stallOn(this::blockInUpload);
+        // 等最後一個探測執行
+        Thread.sleep(PROBE_MS * 3);
+        watchdog.stop();
+
+        List<LooperWatchdog.Stall> stalls = watchdog.drainChanged();
+        LooperWatchdog.Stall decode = find(stalls, "blockInDecode");
+        LooperWatchdog.Stall upload = find(stalls, "blockInUpload");
+        for (LooperWatchdog.Stall stall : stalls) {
+            System.out.println("  " + stall.lane + " ×" + stall.count() + "，共 " + stall.totalMs() + " ms，最長 "
+                    + stall.maxMs() + " ms：" + stall.signature);
+        }
+        expect(decode != null, "沒有包含 blockInDecode 的簽章");
+        expect(upload != null, "沒有包含 blockInUpload 的簽章");
+        expect(stalls.size() == 2, "簽章數 " + stalls.size() + "，應為 2");
+        if (decode != null) {
+            expect(decode.count() == REPEATS, "blockInDecode 計數 " + decode.count() + "，應為 " + REPEATS);
+            expect(decode.maxMs() >= STALL_MS - THRESHOLD_MS - PROBE_MS, "blockInDecode 最長 " + decode.maxMs() + " ms");
+            expect(decode.stack.contains("blockInDecode"), "blockInDecode 的堆疊不含卡住的方法");
+            expect(metrics.get(LooperWatchdog.LOOPER_STALL_SIGNATURE_PREFIX + decode.id) == REPEATS,
+                    "looper_stall_sig_" + decode.id + " 與計數不一致");
+        }
+        if (upload != null) {
+            expect(upload.count() == 1, "blockInUpload 計數 " + upload.count() + "，應為 1");
+        }
+        long total = 0;
+        for (LooperWatchdog.Stall stall : stalls) {
+            total += stall.count();
+        }
+        expect(metrics.get(LooperWatchdog.LOOPER_STALLS_PREFIX + "main") == total, "looper_stalls_main 與彙整不一致");
+        expect(metrics.get(LooperWatchdog.LOOPER_STALLS_PREFIX + "camera") == 0, "沒有執行緒的 camera 回報卡住");
+        expect(!watchdog.hasChanged() && watchdog.drainChanged().isEmpty(), "取出後仍有未回報的彙整");
+
+        executor.shutdownNow();
+        executor.awaitTermination(1, TimeUnit.SECONDS);
+        measureOverhead();
+    }
+
+    /**
+     * 在執行緒上卡住 STALL_MS，並等到下一個探測執行（確保每次卡住各自計數）
+     */
+    private void stallOn(Runnable block) throws Exception {
+        long before = metrics.get(LooperWatchdog.LOOPER_STALLS_PREFIX + "main");
+        executor.submit(block).get();
+        long deadline = System.currentTimeMillis() + PROBE_MS * 10;
+        while (metrics.get(LooperWatchdog.LOOPER_STALLS_PREFIX + "main") == before
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        // 讓下一次卡住從新的探測開始
+        Thread.sleep(PROBE_MS * 2);
+    }
+
+    private void blockInDecode() {
+        sleepUninterruptibly(STALL_MS);
+    }
+
+    private void blockInUpload() {
+        sleepUninterruptibly(STALL_MS);
+    }
+
+    private static void sleepUninterruptibly(long ms) {
+        CountDownLatch never = new CountDownLatch(1);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ms);
+        while (true) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) {
+                return;
+            }
+            try {
+                never.await(left, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 沒有卡住時每次 check() 的成本（探測直接在呼叫端執行，包含排程與取消卡住檢查）
+     */
+    private void measureOverhead() {
+        LooperWatchdog inline = new LooperWatchdog(DeviceScheduler.shared(), TimeSource.MONOTONIC,
+                TimeSource.WALL, new StreamMetrics(), logger, PROBE_MS, THRESHOLD_MS);
+        Thread current = Thread.currentThread();
+        inline.watch(new LooperWatchdog.Lane() {
+            @Override
+            public String name() {
+                return "inline";
+            }
+
+            @Override
+            public Thread thread() {
+                return current;
+            }
+
+            @Override
+            public boolean post(Runnable task) {
+                task.run();
+                return true;
+            }
+        });
+        for (int i = 0; i < OVERHEAD_PROBES; i++) {
+            inline.check();
+        }
+        long started = System.nanoTime();
+        for (int i = 0; i < OVERHEAD_PROBES; i++) {
+            inline.check();
+        }
+        double nsPerProbe = (System.nanoTime() - started) / (double) OVERHEAD_PROBES;
+        System.out.println("📊 每次探測 " + String.format("%.0f", nsPerProbe) + " ns"
+                + "（每 " + LooperWatchdog.DEFAULT_PROBE_INTERVAL_MS + " ms 一次）");
+        expect(!inline.hasChanged(), "沒有卡住的探測回報卡住");
+    }
+
+    private static LooperWatchdog.Stall find(List<LooperWatchdog.Stall> stalls, String method) {
+        for (LooperWatchdog.Stall stall : stalls) {
+            if (stall.signature.contains(method)) {
+                return stall;
+            }
+        }
+        return null;
+    }
+
+    private void expect(boolean condition, String violation) {
+        if (!condition) {
+            violations.add(violation);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.artiforge.streamclient.harness;
+
+import com.artiforge.streamclient.EncodedFrame;
+import com.artiforge.streamclient.FramePool;
+import com.artiforge.streamclient.LogLevel;
+import com.artiforge.streamclient.LogRecord;
+import com.artiforge.streamclient.LogRingBuffer;
+import com.artiforge.streamclient.MemoryGovernor;
+import com.artiforge.streamclient.MemoryPressure;
+import com.artiforge.streamclient.PreRollBuffer;
+import com.artiforge.streamclient.StreamLogger;
+import com.artiforge.streamclient.StreamMetrics;
+import com.artiforge.streamclient.TimerWheel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MemoryGovernor 虛擬時鐘驗證（替身的 onTrimMemory 訊號與堆積使用量，桌面 JVM）
+ *
+ *   ./gradlew :harness:memoryPressure
+ *
+ * 先把影格池、預錄與日誌緩衝區填滿，再依序送出 trim 訊號與調整假的堆積使用量。檢查：
+ * 壓力升高時各緩衝池立即縮到該等級的上限、UI_HIDDEN 不視為壓力、壓力每隔 relaxMs 才降一級、
+ * 降級後緩衝池不預先配置（佔用量不跳回），之後使用時才長回原本大小、
+ * 各緩衝池的 memory_pool_bytes_* 與實際佔用一致、每次壓力改變都恰好通知 Listener 一次。有違規時結束碼為 1。
+ */
+public final class MemoryPressureCheck {
+
+    private static final long TICK_MS = 100;
+    private static final int WHEEL_SIZE = 1024;
+    private static final long POLL_MS = 15_000;
+    private static final long RELAX_MS = 60_000;
+    private static final int FRAME_BYTES = 40 * 1024;
+    private static final int POOL_SIZE = 8;
+    private static final int LOG_CAPACITY = 256;
+    private static final long MB = 1024 * 1024;
+
+    // ComponentCallbacks2.TRIM_MEMORY_*
+    private static final int TRIM_RUNNING_LOW = 10;
+    private static final int TRIM_UI_HIDDEN = 20;
+    private static final int TRIM_COMPLETE = 80;
+
+    private final List<String> violations = new ArrayList<>();
+    private final long[] now = {0};
+    private final long[] heapUsed = {10 * MB};
+    private final TimerWheel wheel = new TimerWheel(() -> now[0], TICK_MS, WHEEL_SIZE);
+    private final StreamMetrics metrics = new StreamMetrics();
+    private final StreamLogger logger = new StreamLogger(LogLevel.INFO, (level, message) -> System.out.println("  " + message));
+    private final FramePool framePool = new FramePool(FRAME_BYTES, POOL_SIZE);
+    private final PreRollBuffer preRoll = new PreRollBuffer(15_000, 5, 512 * 1024, () -> now[0], metrics);
+    private final LogRingBuffer logs = new LogRingBuffer(LOG_CAPACITY);
+    private final MemoryGovernor governor;
+    private final List<MemoryPressure[]> changes = new ArrayList<>();
+
+    private MemoryPressureCheck() {
+        MemoryGovernor.HeapProbe heap = new MemoryGovernor.HeapProbe() {
+            @Override
+            public long usedBytes() {
+                return heapUsed[0];
+            }
+
+            @Override
+            public long maxBytes() {
+                return 256 * MB;
+            }
+        };
+        governor = new MemoryGovernor(heap, wheel, () -> now[0], metrics, logger, POLL_MS, RELAX_MS);
+        governor.register(framePool);
+        governor.register(preRoll);
+        governor.register(logs);
+        governor.setListener((previous, next) -> changes.add(new MemoryPressure[]{previous, next}));
+    }
+
+    public static void main(String[] args) {
+        MemoryPressureCheck check = new MemoryPressureCheck();
+        check.run();
+        if (!check.violations.isEmpty()) {
+            for (String violation : check.violations) {
+                System.err.println("❌ " + violation);
+            }
+            System.exit(1);
+        }
+        System.out.println("✅ 沒有違規");
+    }
+
+    private void run() {
+        governor.setBudgetBytes(64 * MB);
+        governor.start();
+        fill();
+        long fullPool = framePool.footprintBytes();
+        long fullPreRoll = preRoll.footprintBytes();
+        long fullLogs = logs.footprintBytes();
+        report("填滿");
+        expect(framePool.pooled() == POOL_SIZE, "影格池閒置 " + framePool.pooled() + "，應為 " + POOL_SIZE);
+        expectGauges();
+
+        // UI 隱藏不是壓力
+        governor.onTrimMemory(TRIM_UI_HIDDEN);
+        expect(governor.current() == MemoryPressure.NONE, "UI_HIDDEN 後壓力為 " + governor.current());
+
+        // RUNNING_LOW：立即縮小
+        governor.onTrimMemory(TRIM_RUNNING_LOW);
+        report("RUNNING_LOW");
+        expect(governor.current() == MemoryPressure.LOW, "RUNNING_LOW 後壓力為 " + governor.current());
+        expect(framePool.pooled() <= 1, "LOW 時影格池閒置 " + framePool.pooled());
+        expect(preRoll.bytes() <= preRoll.maxBytes() / 4, "LOW 時預錄 " + preRoll.bytes() + " bytes");
+        expect(retainedLogs() <= LOG_CAPACITY / 4, "LOW 時日誌保留 " + retainedLogs() + " 筆");
+        expect(logs.footprintBytes() < fullLogs, "LOW 時日誌佔用未減少");
+        expectGauges();
+
+        // COMPLETE：全部釋放、預錄暫停
+        governor.onTrimMemory(TRIM_COMPLETE);
+        report("COMPLETE");
+        expect(governor.current() == MemoryPressure.CRITICAL, "COMPLETE 後壓力為 " + governor.current());
+        expect(framePool.pooled() == 0, "CRITICAL 時影格池閒置 " + framePool.pooled());
+        expect(preRoll.bytes() == 0 && !preRoll.accepting(), "CRITICAL 時預錄未清空或仍在收影格");
+        expect(retainedLogs() <= 16, "CRITICAL 時日誌保留 " + retainedLogs() + " 筆");
+        useFrames();
+        expect(framePool.pooled() == 0, "CRITICAL 時影格池仍保留歸還的陣列");
+        expectGauges();
+
+        // 之後沒有新的訊號：每 relaxMs 降一級，降級時不預先配置
+        MemoryPressure[] expected = {MemoryPressure.LOW, MemoryPressure.MODERATE, MemoryPressure.NONE};
+        long signalMs = now[0];
+        for (MemoryPressure level : expected) {
+            MemoryPressure before = governor.current();
+            long footprint = governor.totalFootprintBytes();
+            long changedMs = advanceUntilChange(before, signalMs + 10 * RELAX_MS);
+            expect(governor.current() == level, before + " 之後為 " + governor.current() + "，應為 " + level);
+            expect(changedMs - signalMs >= RELAX_MS, before + " 在 " + (changedMs - signalMs) + " ms 後就降級");
+            expect(governor.totalFootprintBytes() <= footprint, "降級到 " + level + " 時佔用量增加（預先配置）");
+            signalMs = changedMs;
+        }
+        report("恢復 NONE");
+
+        // 恢復後使用時才長回來
+        fill();
+        report("再次填滿");
+        expect(framePool.pooled() == POOL_SIZE, "恢復後影格池閒置 " + framePool.pooled());
+        expect(preRoll.footprintBytes() >= fullPreRoll - FRAME_BYTES, "恢復後預錄只有 " + preRoll.footprintBytes() + " bytes");
+        expect(retainedLogs() == LOG_CAPACITY, "恢復後日誌保留 " + retainedLogs() + " 筆");
+        expect(framePool.footprintBytes() == fullPool, "恢復後影格池 " + framePool.footprintBytes() + " bytes，原本 " + fullPool);
+        expectGauges();
+
+        // 堆積預算：超過 → MODERATE，超過 1.5 倍 → LOW，回落後逐級恢復
+        heapUsed[0] = 70 * MB;
+        advance(POLL_MS);
+        expect(governor.current() == MemoryPressure.MODERATE, "堆積超過預算後壓力為 " + governor.current());
+        expect(framePool.pooled() <= POOL_SIZE / 2, "MODERATE 時影格池閒置 " + framePool.pooled());
+        heapUsed[0] = 100 * MB;
+        advance(POLL_MS);
+        expect(governor.current() == MemoryPressure.LOW, "堆積超過預算 1.5 倍後壓力為 " + governor.current());
+        heapUsed[0] = 10 * MB;
+        advance(POLL_MS);
+        expect(governor.current() == MemoryPressure.MODERATE, "堆積回落後應只降一級，目前 " + governor.current());
+        advance(POLL_MS);
+        expect(governor.current() == MemoryPressure.NONE, "堆積回落後未恢復，目前 " + governor.current());
+        report("堆積預算");
+
+        expectChanges();
+        governor.stop();
+        preRoll.clear();
+        expect(framePool.outstanding() == 0, "結束時仍有 " + framePool.outstanding() + " 個影格未歸還");
+        System.out.println("📊 trim 訊號 " + metrics.get(MemoryGovernor.MEMORY_TRIM_SIGNALS)
+                + "，池配置 " + framePool.allocations());
+    }
+
+    /**
+     * 預錄放滿、日誌寫滿，再從影格池借出並歸還 POOL_SIZE 個陣列（預錄持有的影格不在池中）
+     */
+    private void fill() {
+        for (int i = 0; i < 20; i++) {
+            advance(200);
+            preRoll.add(frame());
+        }
+        for (int i = 0; i < LOG_CAPACITY; i++) {
+            logs.append(LogLevel.INFO, "log line " + i + " with some padding to look like a real message");
+        }
+        useFrames();
+    }
+
+    private void useFrames() {
+        List<EncodedFrame> frames = new ArrayList<>();
+        for (int i = 0; i < POOL_SIZE; i++) {
+            frames.add(frame());
+        }
+        for (EncodedFrame frame : frames) {
+            frame.release();
+        }
+    }
+
+    private EncodedFrame frame() {
+        FramePool.Writer out = framePool.newWriter();
+        out.write(new byte[FRAME_BYTES - 1024], 0, FRAME_BYTES - 1024);
+        return out.toFrame(now[0], now[0] + 60_000);
+    }
+
+    private int retainedLogs() {
+        return logs.snapshot(new LogRecord[LOG_CAPACITY], LogLevel.DEBUG);
+    }
+
+    private void advance(long ms) {
+        long target = now[0] + ms;
+        while (true) {
+            long next = wheel.nextWakeupMs();
+            if (next > target) {
+                break;
+            }
+            now[0] = Math.max(now[0], next);
+            wheel.advanceTo(now[0]);
+        }
+        now[0] = target;
+        wheel.advanceTo(now[0]);
+    }
+
+    private long advanceUntilChange(MemoryPressure from, long limitMs) {
+        while (governor.current() == from && now[0] < limitMs) {
+            advance(TICK_MS * 10);
+        }
+        return now[0];
+    }
+
+    private void expectGauges() {
+        long pool = metrics.get(MemoryGovernor.MEMORY_POOL_BYTES_PREFIX + framePool.poolName());
+        long pre = metrics.get(MemoryGovernor.MEMORY_POOL_BYTES_PREFIX + preRoll.poolName());
+        long log = metrics.get(MemoryGovernor.MEMORY_POOL_BYTES_PREFIX + logs.poolName());
+        expect(pool == framePool.footprintBytes() && pre == preRoll.footprintBytes() && log == logs.footprintBytes(),
+                "memory_pool_bytes_* 與實際佔用不一致");
+        expect(metrics.get(MemoryGovernor.MEMORY_POOL_BYTES_TOTAL) == pool + pre + log, "memory_pool_bytes_total 不等於各池加總");
+        expect(metrics.get(MemoryGovernor.MEMORY_PRESSURE) == governor.current().ordinal(), "memory_pressure 與目前壓力不一致");
+    }
+
+    /** Listener 的通知前後相接、每次都是真的改變，最後一次等於目前壓力 */
+    private void expectChanges() {
+        MemoryPressure previous = MemoryPressure.NONE;
+        for (MemoryPressure[] change : changes) {
+            expect(change[0] == previous && change[1] != change[0],
+                    "Listener 收到 " + change[0] + " → " + change[1] + "，前一次為 " + previous);
+            previous = change[1];
+        }
+        expect(previous == governor.current(), "Listener 最後收到 " + previous + "，目前壓力為 " + governor.current());
+        expect(changes.size() == 9, "Listener 呼叫 " + changes.size() + " 次，應為 9");
+    }
+
+    private void report(String stage) {
+        System.out.println("  " + stage + "：壓力 " + governor.current().wireName()
+                + "，影格池 " + (framePool.footprintBytes() / 1024) + " KB（閒置 " + framePool.pooled() + "）"
+                + "，預錄 " + (preRoll.footprintBytes() / 1024) + " KB（" + preRoll.size() + " 張）"
+                + "，日誌 " + (logs.footprintBytes() / 1024) + " KB（" + retainedLogs() + " 筆）");
+    }
+
+    private void expect(boolean condition, String violation) {
+        if (!condition) {
+            violations.add(violation);
+        }
+    }
+}
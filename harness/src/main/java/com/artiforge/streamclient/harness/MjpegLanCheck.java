@@ -0,0 +1,436 @@
+package com.artiforge.streamclient.harness;
+
+import com.artiforge.streamclient.DeviceScheduler;
+import com.artiforge.streamclient.EncodedFrame;
+import com.artiforge.streamclient.FrameBus;
+import com.artiforge.streamclient.FramePool;
+import com.artiforge.streamclient.LogLevel;
+import com.artiforge.streamclient.MjpegServer;
+import com.artiforge.streamclient.StreamLogger;
+import com.artiforge.streamclient.StreamMetrics;
+import com.artiforge.streamclient.TimeSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 區網 MJPEG 伺服器驗證（loopback 實際連線，桌面 JVM）
+ *
+ *   ./gradlew :harness:mjpegLan [-PlanSeconds=5]
+ *
+ * 存取控制：
+ * 1. 觀看網址不是萬用位址（不在所有介面上開放）
+ * 2. 缺少 token、token 錯誤（含長度相同）時 /stream 與 /snapshot 回 403，正確 token 時回 200
+ * 3. 停止後 accept 執行緒結束（不在已關閉的 socket 上空轉）；重新啟動換新 token，舊 token 回 403
+ * 4. 最近一次延遲（lan_latency_last_ms）在合理範圍
+ * 觀看端（15 FPS、50 KB 影格，每種情境跑 seconds 秒）：
+ * 5. 1 個觀看端、4 個觀看端（第 5 個連線回 503）、3 個正常加 1 個極慢的觀看端：
+ *    正常觀看端收到至少 95% 的影格、擷取到收到的平均延遲不超過 MAX_AVG_LATENCY_MS；
+ *    極慢的觀看端只會跳過影格，不拖慢其他人；結束後池中沒有借出未歸還的陣列
+ * 有違規時結束碼為 1。
+ */
+public final class MjpegLanCheck {
+
+    private static final int FRAME_BYTES = 50 * 1024;
+    private static final long FRAME_INTERVAL_MS = 1000 / 15;
+    private static final int MAX_CLIENTS = 4;
+    private static final int READ_TIMEOUT_MS = 5_000;
+    private static final double MIN_DELIVERY = 0.95;
+    private static final long MAX_AVG_LATENCY_MS = 20;
+    // 極慢的觀看端：每次讀 1 KB 後暫停，約 1 秒讀完一張 50 KB 影格
+    private static final int SLOW_READ_BYTES = 1024;
+    private static final long SLOW_READ_PAUSE_MS = 20;
+
+    private final List<String> violations = new ArrayList<>();
+    private final StreamMetrics metrics = new StreamMetrics();
+    private final StreamLogger logger = new StreamLogger(LogLevel.WARN, (level, message) -> System.out.println("  " + message));
+    private final FramePool pool = new FramePool(FRAME_BYTES + 1024, 8);
+    private final FrameBus bus = new FrameBus(metrics, logger);
+    private volatile boolean publishing = true;
+    private volatile int published = 0;
+
+    private MjpegLanCheck() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        long seconds = args.length > 0 ? Long.parseLong(args[0]) : 5;
+        MjpegLanCheck check = new MjpegLanCheck();
+        Thread publisher = check.startPublisher();
+        try {
+            check.accessControl();
+            check.viewers("one", 1, false, seconds);
+            check.viewers("four", 4, false, seconds);
+            check.viewers("slow", 3, true, seconds);
+        } finally {
+            check.publishing = false;
+            publisher.join();
+        }
+        check.expect(check.pool.outstanding() == 0, "結束後池中仍借出 " + check.pool.outstanding() + " 個陣列");
+        if (!check.violations.isEmpty()) {
+            for (String violation : check.violations) {
+                System.err.println("❌ " + violation);
+            }
+            System.exit(1);
+        }
+        System.out.println("✅ 沒有違規");
+    }
+
+    private void accessControl() throws Exception {
+        MjpegServer server = newServer();
+        server.start();
+        URI url = URI.create(server.streamUrl());
+        String token = url.getQuery().substring("token=".length());
+        InetAddress host = InetAddress.getByName(url.getHost());
+        expect(!host.isAnyLocalAddress(), "accessControl：監聽萬用位址 " + url.getHost());
+        expect(token.length() >= 32, "accessControl：token 只有 " + token.length() + " 字元");
+
+        int port = url.getPort();
+        expectStatus(host, port, "/stream", 403, "沒有 token 的 /stream");
+        expectStatus(host, port, "/snapshot", 403, "沒有 token 的 /snapshot");
+        expectStatus(host, port, "/stream?token=", 403, "空 token");
+        expectStatus(host, port, "/stream?token=" + flipLast(token), 403, "長度相同但錯誤的 token");
+        expectStatus(host, port, "/stream?token=" + token + "x", 403, "多一個字元的 token");
+        expectStatus(host, port, "/snapshot?token=" + token, 200, "正確 token 的 /snapshot");
+        expectStatus(host, port, "/stream?foo=1&token=" + token, 200, "正確 token 的 /stream");
+        expectStatus(host, port, "/missing?token=" + token, 404, "正確 token 的未知路徑");
+
+        int snapshotBytes = readSnapshot(host, port, token);
+        expect(snapshotBytes == FRAME_BYTES, "accessControl：快照 " + snapshotBytes + " bytes，應為 " + FRAME_BYTES);
+        sleep(50);
+        long latency = metrics.get(MjpegServer.LAN_LATENCY_LAST_MS);
+        expect(metrics.get(MjpegServer.LAN_FRAMES_SENT) > 0 && latency >= 0 && latency < 1_000,
+                "accessControl：送出 " + metrics.get(MjpegServer.LAN_FRAMES_SENT) + " 張，最近一次延遲 " + latency + " ms");
+
+        server.stop();
+        expect(awaitNoAcceptThread(), "accessControl：停止後 accept 執行緒仍在執行");
+
+        server.start();
+        URI restarted = URI.create(server.streamUrl());
+        String newToken = restarted.getQuery().substring("token=".length());
+        expect(!newToken.equals(token), "accessControl：重新啟動後 token 未更換");
+        expectStatus(host, restarted.getPort(), "/snapshot?token=" + token, 403, "重新啟動後的舊 token");
+        expectStatus(host, restarted.getPort(), "/snapshot?token=" + newToken, 200, "重新啟動後的新 token");
+        server.stop();
+        expect(awaitNoAcceptThread(), "accessControl：再次停止後 accept 執行緒仍在執行");
+        System.out.println("  accessControl：監聽 " + url.getHost() + "，token " + token.length() + " 字元，"
+                + "拒絕 " + metrics.get(MjpegServer.LAN_REJECTED) + " 次（連線上限）");
+    }
+
+    /**
+     * 同時連上 count 個觀看端（slow 時再加 1 個極慢的），跑 seconds 秒後比較各自收到的影格
+     */
+    private void viewers(String name, int count, boolean slow, long seconds) throws Exception {
+        MjpegServer server = newServer();
+        server.start();
+        URI url = URI.create(server.streamUrl());
+        InetAddress host = InetAddress.getByName(url.getHost());
+        long skippedBefore = metrics.get(MjpegServer.LAN_FRAMES_SKIPPED);
+        long rejectedBefore = metrics.get(MjpegServer.LAN_REJECTED);
+
+        List<Viewer> viewers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            viewers.add(new Viewer(host, url.getPort(), url.getRawQuery(), false));
+        }
+        Viewer slowViewer = slow ? new Viewer(host, url.getPort(), url.getRawQuery(), true) : null;
+        if (slowViewer != null) {
+            viewers.add(slowViewer);
+        }
+        for (Viewer viewer : viewers) {
+            viewer.start();
+        }
+        sleep(200);
+        int extraStatus = -2;
+        if (viewers.size() == MAX_CLIENTS) {
+            // 已達上限：再連一個應回 503
+            try (Socket socket = new Socket(host, url.getPort())) {
+                socket.setSoTimeout(READ_TIMEOUT_MS);
+                socket.getOutputStream().write(("GET /stream?" + url.getRawQuery() + " HTTP/1.1\r\n\r\n")
+                        .getBytes(StandardCharsets.US_ASCII));
+                extraStatus = statusCode(readLine(socket.getInputStream()));
+            }
+            expect(extraStatus == 503, name + "：超過上限的連線回 " + extraStatus + "，應為 503");
+            expect(metrics.get(MjpegServer.LAN_REJECTED) == rejectedBefore + 1, name + "：拒絕次數未增加");
+        }
+        sleep(seconds * 1_000);
+        for (Viewer viewer : viewers) {
+            viewer.stop();
+        }
+        server.stop();
+
+        StringBuilder summary = new StringBuilder("  " + name + "：");
+        for (Viewer viewer : viewers) {
+            summary.append(viewer.received).append('/').append(viewer.span()).append(" 張 平均 ")
+                    .append(String.format("%.1f", viewer.averageLatencyMs())).append(" ms 最長 ")
+                    .append(viewer.maxLatencyMs).append(" ms").append(viewer.slow ? "（慢）" : "").append("；");
+            if (viewer.slow) {
+                continue;
+            }
+            expect(viewer.status == 200, name + "：觀看端連線回 " + viewer.status);
+            expect(viewer.received >= MIN_DELIVERY * viewer.span(),
+                    name + "：觀看端只收到 " + viewer.received + "/" + viewer.span() + " 張");
+            expect(viewer.averageLatencyMs() <= MAX_AVG_LATENCY_MS,
+                    name + "：平均延遲 " + String.format("%.1f", viewer.averageLatencyMs()) + " ms");
+        }
+        long skipped = metrics.get(MjpegServer.LAN_FRAMES_SKIPPED) - skippedBefore;
+        if (slowViewer != null) {
+            expect(skipped > 0, name + "：極慢的觀看端沒有跳過任何影格");
+            expect(slowViewer.received < viewers.get(0).received, name + "：極慢的觀看端收到 " + slowViewer.received
+                    + " 張，不少於正常的觀看端");
+        }
+        summary.append("跳過 ").append(skipped).append(" 張");
+        if (extraStatus != -2) {
+            summary.append("，第 ").append(MAX_CLIENTS + 1).append(" 個連線 ").append(extraStatus);
+        }
+        System.out.println(summary);
+    }
+
+    /**
+     * 觀看端：讀取 multipart 串流，依影格內的序號與擷取時間計算收到的比例與延遲
+     */
+    private static final class Viewer implements Runnable {
+        final InetAddress host;
+        final int port;
+        final String query;
+        final boolean slow;
+        final Thread thread;
+        volatile Socket socket;
+        volatile int status = -1;
+        volatile int received = 0;
+        volatile int firstSequence = -1;
+        volatile int lastSequence = -1;
+        volatile long latencySumMs = 0;
+        volatile long maxLatencyMs = 0;
+
+        Viewer(InetAddress host, int port, String query, boolean slow) {
+            this.host = host;
+            this.port = port;
+            this.query = query;
+            this.slow = slow;
+            this.thread = new Thread(this, slow ? "viewer-slow" : "viewer");
+            this.thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        void stop() throws InterruptedException {
+            Socket current = socket;
+            if (current != null) {
+                try {
+                    current.close();
+                } catch (IOException e) {
+                    // 忽略
+                }
+            }
+            thread.join(READ_TIMEOUT_MS);
+        }
+
+        /** 第一張到最後一張收到的影格之間，伺服器發布的張數 */
+        int span() {
+            return firstSequence < 0 ? 0 : lastSequence - firstSequence + 1;
+        }
+
+        double averageLatencyMs() {
+            return received == 0 ? Double.MAX_VALUE : (double) latencySumMs / received;
+        }
+
+        @Override
+        public void run() {
+            try (Socket current = new Socket()) {
+                if (slow) {
+                    current.setReceiveBufferSize(4 * 1024);
+                }
+                current.connect(new java.net.InetSocketAddress(host, port));
+                socket = current;
+                current.setSoTimeout(READ_TIMEOUT_MS);
+                current.getOutputStream().write(("GET /stream?" + query + " HTTP/1.1\r\n\r\n")
+                        .getBytes(StandardCharsets.US_ASCII));
+                InputStream in = new java.io.BufferedInputStream(current.getInputStream(), slow ? 1024 : 64 * 1024);
+                status = statusCode(readLine(in));
+                String line;
+                while ((line = readLine(in)) != null && !line.isEmpty()) {
+                    // 略過回應標頭
+                }
+                byte[] body = new byte[FRAME_BYTES + 1024];
+                while (true) {
+                    int length = -1;
+                    while ((line = readLine(in)) != null && !line.isEmpty()) {
+                        if (line.toLowerCase().startsWith("content-length:")) {
+                            length = Integer.parseInt(line.substring("content-length:".length()).trim());
+                        }
+                    }
+                    if (line == null || length < 0 || length > body.length) {
+                        return;
+                    }
+                    int read = 0;
+                    while (read < length) {
+                        int n = in.read(body, read, slow ? Math.min(SLOW_READ_BYTES, length - read) : length - read);
+                        if (n < 0) {
+                            return;
+                        }
+                        read += n;
+                        if (slow) {
+                            sleep(SLOW_READ_PAUSE_MS);
+                        }
+                    }
+                    readLine(in); // 影格後的 CRLF
+                    long latency = TimeSource.MONOTONIC.nowMs() - readLong(body, 0);
+                    int sequence = (int) readLong(body, 8);
+                    if (firstSequence < 0) {
+                        firstSequence = sequence;
+                    }
+                    lastSequence = sequence;
+                    received++;
+                    latencySumMs += latency;
+                    maxLatencyMs = Math.max(maxLatencyMs, latency);
+                }
+            } catch (IOException e) {
+                // 停止時關閉 socket：正常結束
+            }
+        }
+    }
+
+    private MjpegServer newServer() {
+        return new MjpegServer(bus, DeviceScheduler.shared(), TimeSource.MONOTONIC, metrics, logger,
+                null, 0, MAX_CLIENTS);
+    }
+
+    /**
+     * 15 FPS 發布 50 KB 影格；前 8 位元組為擷取時間、接著 8 位元組為序號（供觀看端計算延遲與漏收）
+     */
+    private Thread startPublisher() {
+        Thread publisher = new Thread(() -> {
+            byte[] payload = new byte[FRAME_BYTES];
+            while (publishing) {
+                long now = TimeSource.MONOTONIC.nowMs();
+                writeLong(payload, 0, now);
+                writeLong(payload, 8, published++);
+                FramePool.Writer out = pool.newWriter();
+                out.write(payload, 0, payload.length);
+                bus.publish(out.toFrame(now, now + EncodedFrame.DEFAULT_MAX_AGE_MS));
+                sleep(FRAME_INTERVAL_MS);
+            }
+        }, "publisher");
+        publisher.setDaemon(true);
+        publisher.start();
+        return publisher;
+    }
+
+    private void expectStatus(InetAddress host, int port, String target, int expected, String step) throws IOException {
+        int status;
+        try (Socket socket = new Socket(host, port)) {
+            socket.setSoTimeout(READ_TIMEOUT_MS);
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET " + target + " HTTP/1.1\r\nHost: device\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            status = statusCode(readLine(socket.getInputStream()));
+        }
+        expect(status == expected, "accessControl：" + step + " 回 " + status + "，應為 " + expected);
+    }
+
+    /**
+     * 完整讀取一張快照，回傳內容長度（失敗時 -1）
+     */
+    private static int readSnapshot(InetAddress host, int port, String token) throws IOException {
+        try (Socket socket = new Socket(host, port)) {
+            socket.setSoTimeout(READ_TIMEOUT_MS);
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET /snapshot?token=" + token + " HTTP/1.1\r\nHost: device\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            InputStream in = socket.getInputStream();
+            if (statusCode(readLine(in)) != 200) {
+                return -1;
+            }
+            int length = -1;
+            String header;
+            while ((header = readLine(in)) != null && !header.isEmpty()) {
+                if (header.toLowerCase().startsWith("content-length:")) {
+                    length = Integer.parseInt(header.substring("content-length:".length()).trim());
+                }
+            }
+            int read = 0;
+            byte[] buffer = new byte[8 * 1024];
+            int n;
+            while (read < length && (n = in.read(buffer, 0, Math.min(buffer.length, length - read))) > 0) {
+                read += n;
+            }
+            return read;
+        }
+    }
+
+    private boolean awaitNoAcceptThread() {
+        long deadline = System.currentTimeMillis() + 2_000;
+        while (System.currentTimeMillis() < deadline) {
+            boolean alive = false;
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                alive |= thread.getName().equals("MjpegServer-accept") && thread.isAlive();
+            }
+            if (!alive) {
+                return true;
+            }
+            sleep(10);
+        }
+        return false;
+    }
+
+    private static int statusCode(String statusLine) {
+        if (statusLine == null) {
+            return -1;
+        }
+        String[] parts = statusLine.split(" ");
+        return parts.length >= 2 ? Integer.parseInt(parts[1]) : -1;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int c;
+        while ((c = in.read()) != -1 && c != '\n') {
+            if (c != '\r') {
+                line.write(c);
+            }
+        }
+        return c == -1 && line.size() == 0 ? null : line.toString(StandardCharsets.US_ASCII);
+    }
+
+    private static void writeLong(byte[] buffer, int offset, long value) {
+        for (int i = 0; i < 8; i++) {
+            buffer[offset + i] = (byte) (value >>> (56 - 8 * i));
+        }
+    }
+
+    private static long readLong(byte[] buffer, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = value << 8 | (buffer[offset + i] & 0xff);
+        }
+        return value;
+    }
+
+    private static String flipLast(String token) {
+        char last = token.charAt(token.length() - 1);
+        return token.substring(0, token.length() - 1) + (last == '0' ? '1' : '0');
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void expect(boolean condition, String violation) {
+        if (!condition) {
+            violations.add(violation);
+        }
+    }
+}
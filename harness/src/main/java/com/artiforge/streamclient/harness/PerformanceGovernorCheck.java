@@ -0,0 +1,263 @@
+package com.artiforge.streamclient.harness;
+
+import com.artiforge.streamclient.DeviceStatusProvider;
+import com.artiforge.streamclient.LogLevel;
+import com.artiforge.streamclient.PerformanceGovernor;
+import com.artiforge.streamclient.PerformanceProfile;
+import com.artiforge.streamclient.ResolutionTier;
+import com.artiforge.streamclient.StreamLogger;
+import com.artiforge.streamclient.StreamMetrics;
+import com.artiforge.streamclient.StreamParams;
+import com.artiforge.streamclient.TimerWheel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PerformanceGovernor 虛擬時鐘驗證（替身的溫度 / 電量 / 充電狀態，桌面 JVM）
+ *
+ *   ./gradlew :harness:performanceGovernor
+ *
+ * 1. select：各溫度等級與電量門檻（30 / 15 / 5%）對應的檔位與原因、充電中不因電量降檔、
+ *    電量未知不降檔、兩者取較差的檔位（同級時原因為 thermal）
+ * 2. 降檔在狀態變差後的第一次評估立即生效
+ * 3. 升檔需連續 upgradeHoldMs 都維持較好的狀態；期間狀態變差一次（檔位不變）即重新計時
+ * 4. cap：LOW 把 30 fps / Q95 / HIGH 夾到 2 fps / Q55 / 240x320，未超過上限的欄位不變；NORMAL 原樣回傳
+ * 5. 每次檔位改變 Listener 恰好呼叫一次（previous 與新檔位正確），狀態不變的評估不呼叫；
+ *    讀取狀態失敗時保持目前檔位；performance_* 指標與實際一致
+ * 有違規時結束碼為 1。
+ */
+public final class PerformanceGovernorCheck {
+
+    private static final long TICK_MS = 100;
+    private static final int WHEEL_SIZE = 1024;
+    private static final long POLL_MS = 30_000;
+    private static final long HOLD_MS = 120_000;
+    // 輪詢允許延後的時間（PerformanceGovernor.POLL_TOLERANCE_MS）
+    private static final long POLL_TOLERANCE_MS = 10_000;
+
+    /** 可變的替身狀態 */
+    private static final class StandInStatus implements DeviceStatusProvider {
+        volatile int thermal = THERMAL_NONE;
+        volatile int battery = 80;
+        volatile boolean charging = false;
+        volatile boolean failing = false;
+
+        @Override
+        public int thermalStatus() {
+            if (failing) {
+                throw new IllegalStateException("替身讀取失敗");
+            }
+            return thermal;
+        }
+
+        @Override
+        public int batteryPercent() {
+            return battery;
+        }
+
+        @Override
+        public boolean isCharging() {
+            return charging;
+        }
+    }
+
+    private final List<String> violations = new ArrayList<>();
+    private final long[] now = {0};
+    private final TimerWheel wheel = new TimerWheel(() -> now[0], TICK_MS, WHEEL_SIZE);
+    private final StreamMetrics metrics = new StreamMetrics();
+    private final StreamLogger logger = new StreamLogger(LogLevel.INFO, (level, message) -> System.out.println("    " + message));
+    private final StandInStatus status = new StandInStatus();
+    private final List<PerformanceProfile[]> changes = new ArrayList<>();
+    private final PerformanceGovernor governor = new PerformanceGovernor(status, wheel, () -> now[0],
+            (previous, decision) -> changes.add(new PerformanceProfile[]{previous, decision.profile}),
+            metrics, logger, POLL_MS, HOLD_MS);
+
+    private PerformanceGovernorCheck() {
+    }
+
+    public static void main(String[] args) {
+        PerformanceGovernorCheck check = new PerformanceGovernorCheck();
+        check.mapping();
+        check.capping();
+        check.transitions();
+        if (!check.violations.isEmpty()) {
+            for (String violation : check.violations) {
+                System.err.println("❌ " + violation);
+            }
+            System.exit(1);
+        }
+        System.out.println("✅ 沒有違規");
+    }
+
+    private void mapping() {
+        int none = DeviceStatusProvider.THERMAL_NONE;
+        Object[][] cases = {
+                // 溫度, 電量, 充電, 檔位, 原因
+                {none, 80, false, PerformanceProfile.NORMAL, PerformanceGovernor.REASON_RECOVERED},
+                {DeviceStatusProvider.THERMAL_LIGHT, 80, false, PerformanceProfile.REDUCED, PerformanceGovernor.REASON_THERMAL},
+                {DeviceStatusProvider.THERMAL_MODERATE, 80, false, PerformanceProfile.LOW, PerformanceGovernor.REASON_THERMAL},
+                {DeviceStatusProvider.THERMAL_SEVERE, 80, false, PerformanceProfile.IDLE, PerformanceGovernor.REASON_THERMAL},
+                {DeviceStatusProvider.THERMAL_CRITICAL, 80, true, PerformanceProfile.IDLE, PerformanceGovernor.REASON_THERMAL},
+                {DeviceStatusProvider.THERMAL_SHUTDOWN, 80, false, PerformanceProfile.IDLE, PerformanceGovernor.REASON_THERMAL},
+                {none, 31, false, PerformanceProfile.NORMAL, PerformanceGovernor.REASON_RECOVERED},
+                {none, 30, false, PerformanceProfile.REDUCED, PerformanceGovernor.REASON_BATTERY},
+                {none, 16, false, PerformanceProfile.REDUCED, PerformanceGovernor.REASON_BATTERY},
+                {none, 15, false, PerformanceProfile.LOW, PerformanceGovernor.REASON_BATTERY},
+                {none, 6, false, PerformanceProfile.LOW, PerformanceGovernor.REASON_BATTERY},
+                {none, 5, false, PerformanceProfile.IDLE, PerformanceGovernor.REASON_BATTERY},
+                {none, 0, false, PerformanceProfile.IDLE, PerformanceGovernor.REASON_BATTERY},
+                {none, -1, false, PerformanceProfile.NORMAL, PerformanceGovernor.REASON_RECOVERED},
+                // 充電中不因電量降檔，溫度仍然有效
+                {none, 3, true, PerformanceProfile.NORMAL, PerformanceGovernor.REASON_RECOVERED},
+                {none, 20, true, PerformanceProfile.NORMAL, PerformanceGovernor.REASON_RECOVERED},
+                {DeviceStatusProvider.THERMAL_LIGHT, 3, true, PerformanceProfile.REDUCED, PerformanceGovernor.REASON_THERMAL},
+                // 取較差者；同級時為 thermal
+                {DeviceStatusProvider.THERMAL_LIGHT, 10, false, PerformanceProfile.LOW, PerformanceGovernor.REASON_BATTERY},
+                {DeviceStatusProvider.THERMAL_MODERATE, 25, false, PerformanceProfile.LOW, PerformanceGovernor.REASON_THERMAL},
+                {DeviceStatusProvider.THERMAL_MODERATE, 12, false, PerformanceProfile.LOW, PerformanceGovernor.REASON_THERMAL},
+                {DeviceStatusProvider.THERMAL_MODERATE, 4, false, PerformanceProfile.IDLE, PerformanceGovernor.REASON_BATTERY},
+        };
+        for (Object[] c : cases) {
+            PerformanceGovernor.Decision decision = PerformanceGovernor.select((int) c[0], (int) c[1], (boolean) c[2]);
+            String name = "select(溫度 " + c[0] + "，電量 " + c[1] + "%" + ((boolean) c[2] ? "，充電中" : "") + ")";
+            expect(decision.profile == c[3], name + " = " + decision.profile + "，應為 " + c[3]);
+            expect(decision.reason.equals(c[4]), name + " 原因 " + decision.reason + "，應為 " + c[4]);
+        }
+        System.out.println("  mapping：" + cases.length + " 種狀態");
+    }
+
+    private void capping() {
+        StreamParams max = new StreamParams(30, 95, ResolutionTier.HIGH, 15_000, 2_000, true, 30, 95);
+        StreamParams low = PerformanceProfile.LOW.cap(max);
+        expect(low.fps == 2 && low.quality == 55 && low.tier == ResolutionTier.LOW
+                        && low.tier.width == 240 && low.tier.height == 320,
+                "LOW.cap = " + low.fps + " fps / Q" + low.quality + " / " + low.tier + "，應為 2 fps / Q55 / LOW（240x320）");
+        expect(low.thumbFps == 2 && low.thumbQuality == 55, "LOW.cap 縮圖 " + low.thumbFps + " fps / Q" + low.thumbQuality);
+        expect(low.leaseMs == max.leaseMs && low.maxAgeMs == max.maxAgeMs && low.simulcast,
+                "LOW.cap 改動了租約、期限或 simulcast");
+
+        StreamParams modest = new StreamParams(1, 40, ResolutionTier.LOW, 15_000, 2_000);
+        StreamParams kept = PerformanceProfile.REDUCED.cap(modest);
+        expect(kept.fps == 1 && kept.quality == 40 && kept.tier == ResolutionTier.LOW,
+                "REDUCED.cap 改動了未超過上限的欄位：" + kept.fps + " fps / Q" + kept.quality + " / " + kept.tier);
+        StreamParams reduced = PerformanceProfile.REDUCED.cap(max);
+        expect(reduced.fps == 5 && reduced.quality == 70 && reduced.tier == ResolutionTier.MEDIUM,
+                "REDUCED.cap = " + reduced.fps + " fps / Q" + reduced.quality + " / " + reduced.tier);
+        expect(PerformanceProfile.NORMAL.cap(max) == max, "NORMAL.cap 未原樣回傳");
+        System.out.println("  capping：LOW → " + low.fps + " fps / Q" + low.quality + " / "
+                + low.tier.width + "x" + low.tier.height);
+    }
+
+    private void transitions() {
+        governor.start();
+        expect(governor.current() == PerformanceProfile.NORMAL, "啟動後檔位為 " + governor.current());
+        expectChanges(0, "啟動（狀態正常）");
+        advance(3 * POLL_MS);
+        expectChanges(0, "狀態不變的輪詢");
+
+        // 降檔：下一次評估立即生效
+        status.thermal = DeviceStatusProvider.THERMAL_MODERATE;
+        expect(governor.evaluate() == PerformanceProfile.LOW, "溫度 MODERATE 後評估為 " + governor.current());
+        expectChanges(1, "降檔到 LOW");
+        expectLastChange(PerformanceProfile.NORMAL, PerformanceProfile.LOW);
+        expect(governor.cap(StreamParams.DEFAULT).fps <= PerformanceProfile.LOW.maxFps, "降檔後 cap 未套用 LOW 上限");
+
+        // 低電量但溫度恢復：仍為 LOW（原因改為電量），不呼叫 Listener
+        status.battery = 12;
+        status.thermal = DeviceStatusProvider.THERMAL_NONE;
+        governor.evaluate();
+        expectChanges(1, "原因改變但檔位相同");
+
+        // 更差：IDLE 立即生效
+        status.battery = 4;
+        advance(POLL_MS + POLL_TOLERANCE_MS);
+        expect(governor.current() == PerformanceProfile.IDLE, "電量 4% 一個輪詢後檔位為 " + governor.current());
+        expectChanges(2, "降檔到 IDLE");
+        expectLastChange(PerformanceProfile.LOW, PerformanceProfile.IDLE);
+
+        // 接上充電：需維持 HOLD_MS 才升檔，途中變差一次就重新計時
+        status.charging = true;
+        long betterSince = now[0];
+        governor.evaluate();
+        advance(HOLD_MS / 2);
+        expect(governor.current() == PerformanceProfile.IDLE, "升檔等待中檔位為 " + governor.current());
+        status.charging = false; // 拔掉一下：仍是 IDLE，但重新計時
+        governor.evaluate();
+        status.charging = true;
+        betterSince = now[0];
+        governor.evaluate();
+        expectChanges(2, "升檔等待中狀態來回");
+        long changedMs = advanceUntilChange(PerformanceProfile.IDLE, now[0] + 3 * HOLD_MS);
+        long held = changedMs - betterSince;
+        expect(governor.current() == PerformanceProfile.NORMAL, "充電後檔位為 " + governor.current() + "，應升回 NORMAL");
+        expect(held >= HOLD_MS, "狀態來回後 " + held + " ms 就升檔（未重新計時）");
+        expect(held <= HOLD_MS + POLL_MS + POLL_TOLERANCE_MS + TICK_MS, "升檔延遲 " + held + " ms，超過維持時間加一個輪詢");
+        expectChanges(3, "升檔到 NORMAL");
+        expectLastChange(PerformanceProfile.IDLE, PerformanceProfile.NORMAL);
+        System.out.println("  transitions：狀態來回後 " + held + " ms 升檔（維持 " + HOLD_MS + " ms）");
+
+        // 讀取失敗：保持目前檔位
+        status.failing = true;
+        status.thermal = DeviceStatusProvider.THERMAL_SEVERE;
+        expect(governor.evaluate() == PerformanceProfile.NORMAL, "讀取失敗後檔位為 " + governor.current());
+        expectChanges(3, "讀取失敗");
+        status.failing = false;
+        governor.evaluate();
+        expectChanges(4, "讀取恢復後降檔到 IDLE");
+
+        governor.stop();
+        int pending = wheel.pendingCount();
+        advance(5 * POLL_MS);
+        expectChanges(4, "stop 之後");
+        expect(pending == 0, "stop 後仍有 " + pending + " 個排程任務");
+
+        expect(metrics.get(PerformanceGovernor.PERFORMANCE_PROFILE) == governor.current().ordinal(),
+                "performance_profile 與目前檔位不一致");
+        expect(metrics.get(PerformanceGovernor.PERFORMANCE_DOWNGRADES) == 3, "performance_downgrades = "
+                + metrics.get(PerformanceGovernor.PERFORMANCE_DOWNGRADES) + "，應為 3");
+        expect(metrics.get(PerformanceGovernor.PERFORMANCE_UPGRADES) == 1, "performance_upgrades = "
+                + metrics.get(PerformanceGovernor.PERFORMANCE_UPGRADES) + "，應為 1");
+        System.out.println("  listener：" + changes.size() + " 次改變");
+    }
+
+    private void advance(long ms) {
+        long target = now[0] + ms;
+        while (true) {
+            long next = wheel.nextWakeupMs();
+            if (next > target) {
+                break;
+            }
+            now[0] = Math.max(now[0], next);
+            wheel.advanceTo(now[0]);
+        }
+        now[0] = target;
+        wheel.advanceTo(now[0]);
+    }
+
+    private long advanceUntilChange(PerformanceProfile from, long limitMs) {
+        while (governor.current() == from && now[0] < limitMs) {
+            advance(TICK_MS * 10);
+        }
+        return now[0];
+    }
+
+    private void expectChanges(int expected, String stage) {
+        expect(changes.size() == expected, stage + "：Listener 呼叫 " + changes.size() + " 次，應為 " + expected);
+    }
+
+    private void expectLastChange(PerformanceProfile previous, PerformanceProfile next) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        PerformanceProfile[] last = changes.get(changes.size() - 1);
+        expect(last[0] == previous && last[1] == next,
+                "Listener 收到 " + last[0] + " → " + last[1] + "，應為 " + previous + " → " + next);
+    }
+
+    private void expect(boolean condition, String violation) {
+        if (!condition) {
+            violations.add(violation);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.artiforge.streamclient.harness;
+
+import com.artiforge.streamclient.CameraController;
+import com.artiforge.streamclient.DeviceScheduler;
+import com.artiforge.streamclient.EncodedFrame;
+import com.artiforge.streamclient.FrameEncoder;
+import com.artiforge.streamclient.FramePool;
+import com.artiforge.streamclient.LogLevel;
+import com.artiforge.streamclient.PreRollBuffer;
+import com.artiforge.streamclient.StreamLogger;
+import com.artiforge.streamclient.StreamMetrics;
+import com.artiforge.streamclient.TimeSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PreRollBuffer 記憶體上限驗證（穩定的假相機，桌面 JVM）
+ *
+ *   ./gradlew :harness:preRollCheck [-PpreRollIdleMs=3000]
+ *
+ * 相機開啟但不串流，預錄持續填入緩衝區。期間取樣檢查張數與位元組數從未超過上限；
+ * 相機關閉後檢查池中緩衝區全部歸還（預錄保留的是剛好大小的複本）、
+ * 取出影格實際佔用的陣列大小合計不超過位元組上限，
+ * 取出的影格依時間排序且都在保留時間內。有違規時結束碼為 1。
+ */
+public final class PreRollCheck {
+
+    private static final int FRAME_PERIOD_MS = 5;
+    private static final long SAMPLE_MS = 10;
+    private static final long AGE_TOLERANCE_MS = 50;
+
+    private PreRollCheck() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        long idleMs = args.length > 0 ? Long.parseLong(args[0]) : 3000;
+        List<String> violations = new ArrayList<>();
+
+        // 小影格：受張數上限限制（1 秒 × 5 FPS = 5 張）
+        run("frame_cap", 256, 1_000, 5, PreRollBuffer.DEFAULT_MAX_BYTES, idleMs, violations);
+        // 大影格：受位元組上限限制（16 KB 只放得下 2 張 6 KB 影格）
+        run("byte_cap", 6_000, 15_000, 5, 16 * 1024, idleMs, violations);
+        // 單張超過上限：直接丟棄
+        run("oversized", 20_000, 5_000, 2, 16 * 1024, idleMs, violations);
+
+        if (!violations.isEmpty()) {
+            for (String violation : violations) {
+                System.err.println("❌ " + violation);
+            }
+            System.exit(1);
+        }
+        System.out.println("✅ 沒有違規");
+    }
+
+    private static void run(String name, int frameBytes, long windowMs, int fps, long maxBytes,
+                            long idleMs, List<String> violations) throws InterruptedException {
+        StreamMetrics metrics = new StreamMetrics();
+        StreamLogger logger = new StreamLogger(LogLevel.ERROR, (level, message) -> System.err.println("  [" + name + "] " + message));
+        FramePool framePool = new FramePool();
+        byte[] payload = new byte[frameBytes];
+        FrameEncoder encoder = new FrameEncoder(framePool, (nv21, width, height, quality, out) -> {
+            out.write(payload, 0, payload.length);
+            return true;
+        }, metrics, TimeSource.MONOTONIC, () -> 0);
+        FakeCameraBackend backend = new FakeCameraBackend(1, false, FRAME_PERIOD_MS);
+        CameraController controller = new CameraController(backend, encoder, DeviceScheduler.shared(),
+                TimeSource.MONOTONIC, metrics, logger, 10);
+        PreRollBuffer buffer = new PreRollBuffer(windowMs, fps, maxBytes, TimeSource.MONOTONIC, metrics);
+        controller.setPreRoll(buffer);
+
+        List<String> found = new ArrayList<>();
+        controller.startCamera();
+        int maxFrames = 0;
+        long maxBufferBytes = 0;
+        long deadline = TimeSource.MONOTONIC.nowMs() + idleMs;
+        while (TimeSource.MONOTONIC.nowMs() < deadline) {
+            maxFrames = Math.max(maxFrames, buffer.size());
+            maxBufferBytes = Math.max(maxBufferBytes, buffer.bytes());
+            Thread.sleep(SAMPLE_MS);
+        }
+        controller.stopCamera();
+        controller.awaitPending(5000);
+
+        if (maxFrames > buffer.capacity()) {
+            found.add("緩衝 " + maxFrames + " 張，上限 " + buffer.capacity());
+        }
+        if (maxBufferBytes > buffer.maxBytes()) {
+            found.add("緩衝 " + maxBufferBytes + " bytes，上限 " + buffer.maxBytes());
+        }
+        if (framePool.outstanding() != 0) {
+            found.add("預錄佔住池中緩衝區 " + framePool.outstanding() + " 個（緩衝區 " + buffer.size() + " 張）");
+        }
+
+        int buffered = buffer.size();
+        List<EncodedFrame> drained = new ArrayList<>();
+        long drainedAtMs = TimeSource.MONOTONIC.nowMs();
+        buffer.drainTo(drained);
+        long retainedBytes = 0;
+        for (EncodedFrame frame : drained) {
+            retainedBytes += frame.data().length;
+        }
+        if (retainedBytes > buffer.maxBytes()) {
+            found.add("取出的影格實際佔用 " + retainedBytes + " bytes，上限 " + buffer.maxBytes());
+        }
+        long previous = Long.MIN_VALUE;
+        for (EncodedFrame frame : drained) {
+            if (frame.captureTimeMs < previous) {
+                found.add("取出的影格未依時間排序");
+                break;
+            }
+            previous = frame.captureTimeMs;
+            if (drainedAtMs - frame.captureTimeMs > buffer.windowMs() + AGE_TOLERANCE_MS) {
+                found.add("取出超過保留時間的影格（" + (drainedAtMs - frame.captureTimeMs) + " ms）");
+                break;
+            }
+        }
+        for (EncodedFrame frame : drained) {
+            frame.release();
+        }
+        if (frameBytes > buffer.maxBytes() && (maxFrames > 0 || !drained.isEmpty())) {
+            found.add("超過上限的影格被放入緩衝區");
+        }
+
+        // 再填一次後關閉預錄：全部歸還
+        controller.startCamera();
+        Thread.sleep(Math.min(idleMs, 500));
+        controller.setPreRoll(null);
+        controller.stopCamera();
+        controller.awaitPending(5000);
+        buffer.clear();
+        if (framePool.outstanding() != 0) {
+            found.add("關閉預錄後池中仍有 " + framePool.outstanding() + " 個未歸還");
+        }
+        controller.shutdown();
+        controller.awaitPending(5000);
+
+        for (String violation : found) {
+            violations.add(name + ": " + violation);
+        }
+        System.out.println("  " + name + "：最多 " + maxFrames + "/" + buffer.capacity() + " 張、"
+                + maxBufferBytes + "/" + buffer.maxBytes() + " bytes，關閉時 " + buffered + " 張"
+                + "，淘汰 " + metrics.get(PreRollBuffer.PREROLL_EVICTED)
+                + "，取出 " + metrics.get(PreRollBuffer.PREROLL_FLUSHED)
+                + "，實際佔用 " + retainedBytes + " bytes，池配置 " + framePool.allocations()
+                + (found.isEmpty() ? "" : "，違規 " + found.size()));
+    }
+}
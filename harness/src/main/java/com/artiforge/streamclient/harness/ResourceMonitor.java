@@ -0,0 +1,186 @@
+package com.artiforge.streamclient.harness;
+
+import com.artiforge.streamclient.FramePool;
+import com.artiforge.streamclient.TimeSource;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 情境期間定期取樣 JVM 資源：GC 後的堆積、執行緒數、影格池借出量與配置次數、GC 次數與時間
+ *
+ * 長時間測試以此判斷資源是否有界：前 1/4 視為暖機，之後的成長超過上限即為違規。
+ * 每次取樣都會呼叫 System.gc()，取樣間隔不宜太短。
+ */
+final class ResourceMonitor implements Closeable {
+
+    static final long DEFAULT_INTERVAL_MS = 5_000;
+
+    /** 暖機後允許的成長上限 */
+    static final double MAX_HEAP_GROWTH_MB = 16;
+    static final int MAX_THREAD_GROWTH = 2;
+    static final int MAX_POOL_OUTSTANDING = 16;
+    static final long MAX_POOL_ALLOCATIONS_AFTER_WARMUP = 8;
+
+    private static final class Sample {
+        final long atMs;
+        final double heapUsedMb;
+        final int threads;
+        final int poolOutstanding;
+        final long poolAllocations;
+
+        Sample(long atMs, double heapUsedMb, int threads, int poolOutstanding, long poolAllocations) {
+            this.atMs = atMs;
+            this.heapUsedMb = heapUsedMb;
+            this.threads = threads;
+            this.poolOutstanding = poolOutstanding;
+            this.poolAllocations = poolAllocations;
+        }
+    }
+
+    private final FramePool framePool;
+    private final TimeSource clock;
+    private final List<Sample> samples = new ArrayList<>();
+    private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ResourceMonitor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private long startMs;
+    private long gcCountStart;
+    private long gcTimeStart;
+
+    ResourceMonitor(FramePool framePool, TimeSource clock) {
+        this.framePool = framePool;
+        this.clock = clock;
+    }
+
+    void start(long intervalMs) {
+        startMs = clock.nowMs();
+        gcCountStart = gcCount();
+        gcTimeStart = gcTimeMs();
+        sampler.scheduleAtFixedRate(this::sample, 0, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        sampler.shutdownNow();
+    }
+
+    private void sample() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        double heapUsedMb = (runtime.totalMemory() - runtime.freeMemory()) / (1024.0 * 1024.0);
+        Sample sample = new Sample(clock.nowMs() - startMs, heapUsedMb,
+                ManagementFactory.getThreadMXBean().getThreadCount(),
+                framePool.outstanding(), framePool.allocations());
+        synchronized (samples) {
+            samples.add(sample);
+        }
+    }
+
+    /**
+     * 取樣摘要；boundedCheck 時另外列出超過上限的項目（violations）
+     */
+    JSONObject toJson(boolean boundedCheck) throws JSONException {
+        sample();
+        List<Sample> snapshot;
+        synchronized (samples) {
+            snapshot = new ArrayList<>(samples);
+        }
+        long elapsedMs = Math.max(1, clock.nowMs() - startMs);
+        // 扣掉取樣時 System.gc() 觸發的回收
+        long gcCount = Math.max(0, gcCount() - gcCountStart - snapshot.size());
+
+        // 暖機（前 1/4，至少一個取樣）之後的資源變化
+        int warmupEnd = Math.max(1, snapshot.size() / 4);
+        Sample warm = snapshot.get(warmupEnd - 1);
+        Sample last = snapshot.get(snapshot.size() - 1);
+        double heapLateMin = Double.MAX_VALUE;
+        double heapMax = 0;
+        int threadsWarmMax = 0;
+        int threadsMax = 0;
+        int outstandingMax = 0;
+        int lateStart = snapshot.size() - warmupEnd;
+        for (int i = 0; i < snapshot.size(); i++) {
+            Sample sample = snapshot.get(i);
+            heapMax = Math.max(heapMax, sample.heapUsedMb);
+            threadsMax = Math.max(threadsMax, sample.threads);
+            outstandingMax = Math.max(outstandingMax, sample.poolOutstanding);
+            if (i < warmupEnd) {
+                threadsWarmMax = Math.max(threadsWarmMax, sample.threads);
+            }
+            if (i >= lateStart) {
+                heapLateMin = Math.min(heapLateMin, sample.heapUsedMb);
+            }
+        }
+        // 暖機結束時與最後 1/4 的最小值比較（都是 GC 後仍存活的部分）
+        double heapGrowthMb = heapLateMin - warm.heapUsedMb;
+        int threadGrowth = threadsMax - threadsWarmMax;
+        long allocationsAfterWarmup = last.poolAllocations - warm.poolAllocations;
+
+        JSONObject json = new JSONObject();
+        json.put("samples", snapshot.size());
+        json.put("heap_used_mb_first", FrameStats.round(snapshot.get(0).heapUsedMb));
+        json.put("heap_used_mb_last", FrameStats.round(last.heapUsedMb));
+        json.put("heap_used_mb_max", FrameStats.round(heapMax));
+        json.put("heap_growth_mb", FrameStats.round(heapGrowthMb));
+        json.put("threads_first", snapshot.get(0).threads);
+        json.put("threads_max", threadsMax);
+        json.put("thread_growth", threadGrowth);
+        json.put("pool_outstanding_max", outstandingMax);
+        json.put("pool_allocations", last.poolAllocations);
+        json.put("pool_allocations_after_warmup", allocationsAfterWarmup);
+        json.put("gc_count", gcCount);
+        json.put("gc_time_ms", gcTimeMs() - gcTimeStart);
+        json.put("gc_per_min", FrameStats.round(gcCount * 60_000.0 / elapsedMs));
+
+        if (boundedCheck) {
+            JSONArray violations = new JSONArray();
+            if (snapshot.size() < 4) {
+                violations.put("取樣不足（" + snapshot.size() + " 次），請加長情境");
+            }
+            if (heapGrowthMb > MAX_HEAP_GROWTH_MB) {
+                violations.put(String.format("堆積成長 %.1f MB（上限 %.0f MB）", heapGrowthMb, MAX_HEAP_GROWTH_MB));
+            }
+            if (threadGrowth > MAX_THREAD_GROWTH) {
+                violations.put("執行緒增加 " + threadGrowth + " 個（上限 " + MAX_THREAD_GROWTH + "）");
+            }
+            if (outstandingMax > MAX_POOL_OUTSTANDING) {
+                violations.put("影格池借出最多 " + outstandingMax + " 個（上限 " + MAX_POOL_OUTSTANDING + "）");
+            }
+            if (allocationsAfterWarmup > MAX_POOL_ALLOCATIONS_AFTER_WARMUP) {
+                violations.put("暖機後影格池仍配置 " + allocationsAfterWarmup + " 次（上限 "
+                        + MAX_POOL_ALLOCATIONS_AFTER_WARMUP + "）");
+            }
+            json.put("violations", violations);
+        }
+        return json;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcTimeMs() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+}
@@ -0,0 +1,221 @@
+package com.artiforge.streamclient.harness;
+
+import com.artiforge.streamclient.RegionOfInterest;
+import com.artiforge.streamclient.ResolutionTier;
+import com.artiforge.streamclient.StreamParams;
+import com.artiforge.streamclient.SyntheticYuvFrame;
+import com.artiforge.streamclient.YuvFrameProcessor;
+import com.artiforge.streamclient.YuvOps;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 感興趣區域：YuvFrameProcessor.prepare(region) 對照「全畫面前處理後手動裁切」（桌面 JVM）
+ *
+ *   ./gradlew :harness:roi [-ProiIterations=30]
+ *
+ * 擷取 640x480 與 1280x960，列尾填充 0 / 64、uvPixelStride 1（平面）/ 2（交錯）的四種組合，六個區域
+ * （全畫面、置中一半、左上四分之一、右下角、最小尺寸、超出畫面後被夾回），同一個 processor 依序切換。
+ * 1. 區域輸出（含依等級縮小）與全畫面直立結果裁切同一塊後再縮小相同次數的結果逐位元組相同，縮圖層亦同
+ * 2. 裁切範圍為偶數座標、寬高為 8 的倍數，與要求的比例相差不超過 8 像素（最小尺寸的夾限除外）
+ * 最後印出 1280x960、MEDIUM 等級下 1.0 / 0.5 / 0.25 置中區域的前處理與前處理 + JPEG 編碼時間（中位數）；
+ * 時間依機器而定，只印出不列為違規（JMH 量測見 :benchmark 的 RoiBenchmark）。
+ * 有違規時結束碼為 1。
+ */
+public final class RoiCheck {
+
+    private static final int[][] SIZES = {{640, 480}, {1280, 960}};
+    private static final int[] ROW_PADDINGS = {0, 64};
+    private static final int[] PIXEL_STRIDES = {1, 2};
+    private static final RegionOfInterest[] REGIONS = {
+            RegionOfInterest.FULL,
+            new RegionOfInterest(0.25, 0.25, 0.5, 0.5),
+            new RegionOfInterest(0, 0, 0.25, 0.25),
+            new RegionOfInterest(0.7, 0.65, 0.3, 0.35),
+            new RegionOfInterest(0.41, 0.13, 0.01, 0.01),
+            new RegionOfInterest(0.9, 0.8, 0.5, 0.6),
+    };
+    // 與 YuvFrameProcessor 相同的裁切對齊
+    private static final int CROP_ALIGN = 8;
+    private static final double[] TIMING_ROIS = {1.0, 0.5, 0.25};
+
+    private final List<String> violations = new ArrayList<>();
+
+    private RoiCheck() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 30;
+        RoiCheck check = new RoiCheck();
+        check.compare();
+        check.timing(iterations);
+        if (!check.violations.isEmpty()) {
+            for (String violation : check.violations) {
+                System.err.println("❌ " + violation);
+            }
+            System.exit(1);
+        }
+        System.out.println("✅ 沒有違規");
+    }
+
+    private void compare() {
+        YuvFrameProcessor processor = new YuvFrameProcessor();
+        int cases = 0;
+        for (int[] size : SIZES) {
+            for (int padding : ROW_PADDINGS) {
+                for (int pixelStride : PIXEL_STRIDES) {
+                    SyntheticYuvFrame frame = new SyntheticYuvFrame(size[0], size[1], padding, pixelStride).render(13);
+                    String layout = size[0] + "x" + size[1] + " 填充 " + padding + " pixelStride " + pixelStride;
+
+                    // 全畫面、不縮小：直立 height x width
+                    prepare(processor, frame, Integer.MAX_VALUE, RegionOfInterest.FULL);
+                    int uprightWidth = frame.height;
+                    int uprightHeight = frame.width;
+                    byte[] upright = Arrays.copyOf(processor.full(), YuvOps.nv21Size(uprightWidth, uprightHeight));
+
+                    for (RegionOfInterest region : REGIONS) {
+                        String name = layout + " 區域 " + region;
+                        int[] rect = expectedRect(region, uprightWidth, uprightHeight);
+                        expectRect(rect, region, uprightWidth, uprightHeight, name);
+                        byte[] expected = crop(upright, uprightWidth, rect);
+                        int width = rect[2];
+                        int height = rect[3];
+
+                        prepare(processor, frame, ResolutionTier.MEDIUM.height, region);
+                        // 依等級縮小的規則：長邊的一半仍不小於等級時對半縮小（寬高須能對半）
+                        while (Math.max(width, height) / 2 >= ResolutionTier.MEDIUM.height && width % 4 == 0 && height % 4 == 0) {
+                            byte[] scaled = new byte[YuvOps.nv21Size(width / 2, height / 2)];
+                            YuvOps.downscale2x(expected, width, height, scaled);
+                            expected = scaled;
+                            width /= 2;
+                            height /= 2;
+                        }
+                        expect(processor.fullWidth() == width && processor.fullHeight() == height,
+                                name + "：輸出 " + processor.fullWidth() + "x" + processor.fullHeight() + "，應為 " + width + "x" + height);
+                        expectSame(Arrays.copyOf(processor.full(), expected.length), expected, name + "：完整層");
+
+                        byte[] thumb = processor.thumbnail();
+                        if (width % 4 == 0 && height % 4 == 0) {
+                            byte[] thumbExpected = new byte[YuvOps.nv21Size(width / 2, height / 2)];
+                            YuvOps.downscale2x(expected, width, height, thumbExpected);
+                            expectSame(Arrays.copyOf(thumb, thumbExpected.length), thumbExpected, name + "：縮圖層");
+                        }
+                        cases++;
+                    }
+                }
+            }
+        }
+        System.out.println("  compare：" + cases + " 種組合（" + SIZES.length * ROW_PADDINGS.length * PIXEL_STRIDES.length
+                + " 種版面 x " + REGIONS.length + " 個區域）");
+    }
+
+    /**
+     * 直立畫面中的裁切範圍 {x, y, 寬, 高}：寬高取比例後向下對齊 8（至少 16），
+     * 左緣取比例四捨五入、下緣固定在區域的下緣（橫向擷取的左側），座標夾在畫面內並取偶數
+     */
+    private static int[] expectedRect(RegionOfInterest region, int uprightWidth, int uprightHeight) {
+        int width = align(region.width * uprightWidth, uprightWidth);
+        int height = align(region.height * uprightHeight, uprightHeight);
+        int x = clampEven((int) Math.round(uprightWidth * region.x), uprightWidth - width);
+        int bottomGap = clampEven((int) Math.round(uprightHeight * (1 - region.y - region.height)), uprightHeight - height);
+        return new int[]{x, uprightHeight - height - bottomGap, width, height};
+    }
+
+    /** 裁切範圍與要求的比例相差不超過對齊單位 */
+    private void expectRect(int[] rect, RegionOfInterest region, int uprightWidth, int uprightHeight, String name) {
+        expect(rect[0] % 2 == 0 && rect[1] % 2 == 0 && rect[2] % CROP_ALIGN == 0 && rect[3] % CROP_ALIGN == 0,
+                name + "：裁切範圍未對齊 " + Arrays.toString(rect));
+        double[] requested = {region.x * uprightWidth, region.y * uprightHeight,
+                region.width * uprightWidth, region.height * uprightHeight};
+        for (int i = 0; i < 4; i++) {
+            boolean minimum = i >= 2 && rect[i] == 2 * CROP_ALIGN;
+            expect(minimum || Math.abs(rect[i] - requested[i]) <= CROP_ALIGN,
+                    name + "：裁切範圍 " + Arrays.toString(rect) + " 與要求 " + Arrays.toString(requested) + " 相差過大");
+        }
+    }
+
+    /** 從直立 NV21 取出 rect（x、y 為偶數） */
+    private static byte[] crop(byte[] nv21, int width, int[] rect) {
+        int height = nv21.length * 2 / 3 / width;
+        byte[] out = new byte[YuvOps.nv21Size(rect[2], rect[3])];
+        for (int row = 0; row < rect[3]; row++) {
+            System.arraycopy(nv21, (rect[1] + row) * width + rect[0], out, row * rect[2], rect[2]);
+        }
+        int srcBase = width * height;
+        int dstBase = rect[2] * rect[3];
+        for (int row = 0; row < rect[3] / 2; row++) {
+            System.arraycopy(nv21, srcBase + (rect[1] / 2 + row) * width + rect[0], out, dstBase + row * rect[2], rect[2]);
+        }
+        return out;
+    }
+
+    /** 每次時間的中位數（先暖機相同次數） */
+    private void timing(int iterations) throws IOException {
+        SyntheticYuvFrame frame = new SyntheticYuvFrame(1280, 960, 64, 2);
+        YuvFrameProcessor processor = new YuvFrameProcessor();
+        ImageIoJpegEncoder encoder = new ImageIoJpegEncoder();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256 * 1024);
+        StringBuilder line = new StringBuilder("  timing：1280x960 MEDIUM，" + iterations + " 次，");
+        for (double roi : TIMING_ROIS) {
+            double offset = (1 - roi) / 2;
+            RegionOfInterest region = new RegionOfInterest(offset, offset, roi, roi);
+            long[] prepareNs = new long[iterations];
+            long[] totalNs = new long[iterations];
+            for (int round = 0; round < 2; round++) {
+                for (int i = 0; i < iterations; i++) {
+                    long start = System.nanoTime();
+                    prepare(processor, frame, ResolutionTier.MEDIUM.height, region);
+                    long prepared = System.nanoTime();
+                    out.reset();
+                    encoder.compress(processor.full(), processor.fullWidth(), processor.fullHeight(),
+                            StreamParams.DEFAULT_QUALITY, out);
+                    long end = System.nanoTime();
+                    prepareNs[i] = prepared - start;
+                    totalNs[i] = end - start;
+                }
+            }
+            line.append(String.format("%n    %.2f：%dx%d，前處理 %.2f ms，含編碼 %.1f ms（%d KB）", roi,
+                    processor.fullWidth(), processor.fullHeight(), median(prepareNs) / 1e6, median(totalNs) / 1e6,
+                    out.size() / 1024));
+        }
+        System.out.println(line);
+    }
+
+    private static void prepare(YuvFrameProcessor processor, SyntheticYuvFrame frame, int maxLongSide, RegionOfInterest region) {
+        frame.rewind();
+        processor.prepare(frame.y, frame.yRowStride, frame.u, frame.v, frame.uvRowStride, frame.uvPixelStride,
+                frame.width, frame.height, maxLongSide, region);
+    }
+
+    private static int align(double size, int limit) {
+        int aligned = (int) size / CROP_ALIGN * CROP_ALIGN;
+        return Math.min(limit, Math.max(CROP_ALIGN * 2, aligned));
+    }
+
+    private static int clampEven(int value, int max) {
+        return Math.max(0, Math.min(max, value)) & ~1;
+    }
+
+    private static double median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private void expectSame(byte[] actual, byte[] expected, String name) {
+        int mismatch = Arrays.mismatch(actual, expected);
+        expect(mismatch < 0, name + "：第 " + mismatch + " 個位元組不同（"
+                + (mismatch >= 0 && mismatch < Math.min(actual.length, expected.length)
+                ? (actual[mismatch] & 0xFF) + " vs " + (expected[mismatch] & 0xFF) : "長度不同") + "）");
+    }
+
+    private void expect(boolean condition, String violation) {
+        if (!condition) {
+            violations.add(violation);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.artiforge.streamclient.harness;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 情境腳本：在指定時間點執行動作（切換網路設定、斷線、送伺服器指令…）
+ */
+public final class Scenario {
+
+    public interface Action {
+        void run(ScenarioRunner runner) throws Exception;
+    }
+
+    static final class Step {
+        final long atMs;
+        final String label;
+        final Action action;
+
+        Step(long atMs, String label, Action action) {
+            this.atMs = atMs;
+            this.label = label;
+            this.action = action;
+        }
+    }
+
+    public final String name;
+    public final String description;
+    public final long durationMs;
+    private final List<Step> steps = new ArrayList<>();
+    private boolean boundedResources = false;
+    private long recoveryBoundMs = 0;
+    private long controlLatencyBoundUs = 0;
+
+    public Scenario(String name, String description, long durationMs) {
+        this.name = name;
+        this.description = description;
+        this.durationMs = durationMs;
+    }
+
+    public Scenario at(long atMs, String label, Action action) {
+        steps.add(new Step(atMs, label, action));
+        return this;
+    }
+
+    /**
+     * 要求資源有界（堆積、執行緒、影格池），超過 ResourceMonitor 的上限時視為失敗
+     */
+    public Scenario expectBoundedResources() {
+        boundedResources = true;
+        return this;
+    }
+
+    boolean boundedResources() {
+        return boundedResources;
+    }
+
+    /**
+     * 每次斷線（ScenarioRunner.disconnect）後，裝置需在 maxRecoveryMs 內重新完成註冊，否則視為失敗
+     */
+    public Scenario expectRecoveryWithin(long maxRecoveryMs) {
+        recoveryBoundMs = maxRecoveryMs;
+        return this;
+    }
+
+    /** 0 代表不檢查 */
+    long recoveryBoundMs() {
+        return recoveryBoundMs;
+    }
+
+    /**
+     * 控制指令（ControlLane）延遲的 p99 需在 p99Us 內，且上傳需達飽和，否則視為失敗
+     */
+    public Scenario expectControlLatencyWithin(long p99Us) {
+        controlLatencyBoundUs = p99Us;
+        return this;
+    }
+
+    /** 0 代表不檢查 */
+    long controlLatencyBoundUs() {
+        return controlLatencyBoundUs;
+    }
+
+    /**
+     * 依時間排序的步驟（同時間依加入順序）
+     */
+    List<Step> steps() {
+        List<Step> sorted = new ArrayList<>(steps);
+        sorted.sort(Comparator.comparingLong(step -> step.atMs));
+        return Collections.unmodifiableList(sorted);
+    }
+
+    /**
+     * 改變長度（超出新長度的步驟不執行）
+     */
+    Scenario withDuration(long newDurationMs) {
+        Scenario copy = new Scenario(name, description, newDurationMs);
+        copy.boundedResources = boundedResources;
+        copy.recoveryBoundMs = recoveryBoundMs;
+        copy.controlLatencyBoundUs = controlLatencyBoundUs;
+        for (Step step : steps) {
+            if (step.atMs < newDurationMs) {
+                copy.steps.add(step);
+            }
+        }
+        return copy;
+    }
+}
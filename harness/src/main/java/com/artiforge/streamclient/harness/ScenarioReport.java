@@ -0,0 +1,132 @@
+package com.artiforge.streamclient.harness;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 情境報告與基準比較
+ *
+ * 只比較少數代表性指標；變化超過門檻（相對 + 絕對，避免小數值雜訊）才視為退步。
+ */
+final class ScenarioReport {
+
+    private static final double RELATIVE_THRESHOLD = 0.10;
+
+    /** 指標：路徑、方向（true = 越大越好）、絕對門檻 */
+    private static final Object[][] KEY_METRICS = {
+            {"delivery.delivered_fps", true, 0.5},
+            {"delivery.drop_ratio", false, 0.02},
+            {"delivery.latency_p50_ms", false, 20.0},
+            {"delivery.latency_p95_ms", false, 50.0},
+            {"delivery.throughput_kbps", true, 50.0},
+            {"reconnect.max_recovery_ms", false, 500.0},
+            {"reconnect.max_time_to_register_ms", false, 500.0},
+            {"control.latency_p99_us", false, 5_000.0},
+    };
+
+    private ScenarioReport() {
+    }
+
+    static String summary(JSONObject report) {
+        JSONObject delivery = report.optJSONObject("delivery");
+        JSONObject reconnect = report.optJSONObject("reconnect");
+        return String.format("  → %.1f FPS（%d / %d 張，丟棄 %.0f%%），%.0f kbps，延遲 p50 %d / p95 %d / max %d ms，重連 %d 次（最長 %d ms）",
+                delivery.optDouble("delivered_fps", 0),
+                delivery.optLong("frames_delivered", 0),
+                delivery.optLong("frames_generated", 0),
+                delivery.optDouble("drop_ratio", 0) * 100,
+                delivery.optDouble("throughput_kbps", 0),
+                delivery.optLong("latency_p50_ms", -1),
+                delivery.optLong("latency_p95_ms", -1),
+                delivery.optLong("latency_max_ms", -1),
+                reconnect.optLong("successes", 0),
+                reconnect.optLong("max_recovery_ms", 0))
+                + resourceSummary(report.optJSONObject("resources"));
+    }
+
+    private static String resourceSummary(JSONObject resources) {
+        if (resources == null) {
+            return "";
+        }
+        return String.format("%n  → 堆積 %.1f MB（暖機後成長 %.1f MB），執行緒最多 %d，影格池借出最多 %d，GC %.1f 次/分",
+                resources.optDouble("heap_used_mb_max", 0),
+                resources.optDouble("heap_growth_mb", 0),
+                resources.optInt("threads_max", 0),
+                resources.optInt("pool_outstanding_max", 0),
+                resources.optDouble("gc_per_min", 0));
+    }
+
+    /**
+     * 要求資源有界的情境中超過上限的項目
+     */
+    static List<String> resourceViolations(JSONObject report) {
+        return violations(report, "resources");
+    }
+
+    /**
+     * 要求斷線後限時恢復的情境中超過上限的斷線
+     */
+    static List<String> recoveryViolations(JSONObject report) {
+        return violations(report, "reconnect");
+    }
+
+    /**
+     * 要求控制指令限時生效的情境中超過上限的項目
+     */
+    static List<String> controlViolations(JSONObject report) {
+        return violations(report, "control");
+    }
+
+    private static List<String> violations(JSONObject report, String section) {
+        List<String> violations = new ArrayList<>();
+        JSONObject node = report.optJSONObject(section);
+        JSONArray list = node != null ? node.optJSONArray("violations") : null;
+        if (list != null) {
+            for (int i = 0; i < list.length(); i++) {
+                violations.add(report.optString("scenario") + " " + list.optString(i));
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * 與基準比較，回傳退步的指標說明（空清單代表沒有退步）；每個指標的比較結果會印出
+     */
+    static List<String> compare(JSONObject baseline, JSONObject current) {
+        List<String> regressions = new ArrayList<>();
+        for (Object[] metric : KEY_METRICS) {
+            String path = (String) metric[0];
+            boolean higherIsBetter = (Boolean) metric[1];
+            double absoluteThreshold = (Double) metric[2];
+            double before = lookup(baseline, path);
+            double after = lookup(current, path);
+            if (Double.isNaN(before) || Double.isNaN(after)) {
+                continue;
+            }
+            double change = higherIsBetter ? before - after : after - before; // 正值 = 變差
+            boolean regressed = change > absoluteThreshold
+                    && change > Math.abs(before) * RELATIVE_THRESHOLD;
+            String line = String.format("    %-28s %10.2f → %10.2f %s", path, before, after, regressed ? "⚠️ 退步" : "");
+            System.out.println(line);
+            if (regressed) {
+                regressions.add(current.optString("scenario") + " " + path + ": " + before + " → " + after);
+            }
+        }
+        return regressions;
+    }
+
+    private static double lookup(JSONObject report, String path) {
+        String[] parts = path.split("\\.");
+        JSONObject node = report;
+        for (int i = 0; i < parts.length - 1 && node != null; i++) {
+            node = node.optJSONObject(parts[i]);
+        }
+        if (node == null || !node.has(parts[parts.length - 1])) {
+            return Double.NaN;
+        }
+        return node.optDouble(parts[parts.length - 1], Double.NaN);
+    }
+}
@@ -0,0 +1,279 @@
+package com.artiforge.streamclient.harness;
+
+import com.artiforge.streamclient.ControlLane;
+import com.artiforge.streamclient.DatagramFrameSender;
+import com.artiforge.streamclient.FrameEncoder;
+import com.artiforge.streamclient.FrameUploader;
+import com.artiforge.streamclient.LogLevel;
+import com.artiforge.streamclient.ReconnectManager;
+import com.artiforge.streamclient.StreamMetrics;
+import com.artiforge.streamclient.SyntheticFrameSource;
+import com.artiforge.streamclient.SyntheticYuvFrame;
+import com.artiforge.streamclient.TimeSource;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 執行單一情境：代理伺服器 ← 劣化代理 / UDP 轉送 ← 模擬裝置
+ *
+ * 每個情境使用全新的伺服器、代理與裝置，情境之間互不影響。
+ */
+public final class ScenarioRunner implements Closeable {
+
+    static final long REGISTRATION_TIMEOUT_MS = 10_000;
+    static final int UDP_TOKEN = 0x5EED;
+
+    private final TimeSource clock = TimeSource.MONOTONIC;
+    private final LogLevel deviceLogLevel;
+    private final List<long[]> outages = new ArrayList<>(); // {開始時間, 停電長度}
+    private final ScheduledExecutorService repeater = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Scenario-repeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private StandInServer server;
+    private ImpairmentProxy proxy;
+    private UdpImpairmentRelay relay;
+    private HarnessDevice device;
+    private ResourceMonitor resources;
+
+    public ScenarioRunner(LogLevel deviceLogLevel) {
+        this.deviceLogLevel = deviceLogLevel;
+    }
+
+    public JSONObject run(Scenario scenario) throws Exception {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        server = new StandInServer(clock);
+        server.start(0, 0);
+        proxy = new ImpairmentProxy(new InetSocketAddress(loopback, server.getHttpPort()), clock);
+        proxy.start(0);
+        relay = new UdpImpairmentRelay(new InetSocketAddress(loopback, server.getUdpPort()), clock);
+        relay.start(0);
+
+        device = new HarnessDevice("http://" + loopback.getHostAddress() + ":" + proxy.getLocalPort(),
+                loopback.getHostAddress(), clock, deviceLogLevel);
+        device.connect();
+        if (!server.awaitRegistration(0, REGISTRATION_TIMEOUT_MS)) {
+            throw new IllegalStateException("裝置未在 " + REGISTRATION_TIMEOUT_MS + " ms 內完成註冊");
+        }
+        server.stats().reset();
+        resources = new ResourceMonitor(device.framePool(), clock);
+        resources.start(ResourceMonitor.DEFAULT_INTERVAL_MS);
+
+        long startMs = clock.nowMs();
+        for (Scenario.Step step : scenario.steps()) {
+            sleepUntil(startMs + step.atMs);
+            System.out.println("  " + String.format("%6.1fs", step.atMs / 1000.0) + "  " + step.label);
+            step.action.run(this);
+        }
+        sleepUntil(startMs + scenario.durationMs);
+        long elapsedMs = clock.nowMs() - startMs;
+        return report(scenario, elapsedMs);
+    }
+
+    // ========================================================================
+    // 情境動作
+    // ========================================================================
+
+    public void setProfile(ImpairmentProfile profile) {
+        proxy.setProfile(profile);
+        relay.setProfile(profile);
+    }
+
+    /**
+     * 中斷所有 TCP 連線並讓網路停電 blackoutMs（UDP 同時全部丟棄）
+     */
+    public void disconnect(long blackoutMs) {
+        outages.add(new long[]{clock.nowMs(), blackoutMs});
+        relay.blackout(blackoutMs);
+        proxy.disconnectAll(blackoutMs);
+    }
+
+    /**
+     * 改用合成相機（完整的 YUV→JPEG 轉換），需在開始串流前呼叫
+     */
+    public void useSyntheticCamera(int width, int height, int rowPadding, int uvPixelStride,
+                                   int sensorFps, double speed) {
+        device.useSyntheticCamera(new SyntheticYuvFrame(width, height, rowPadding, uvPixelStride), sensorFps, speed);
+    }
+
+    public void startStream(JSONObject params) {
+        command("cmd_start_stream", params);
+    }
+
+    public void enableUdpTransport(int fecGroup) throws JSONException {
+        // 每次開啟都換新金鑰，與真實伺服器相同
+        byte[] key = new byte[16];
+        new SecureRandom().nextBytes(key);
+        server.setUdpKey(UDP_TOKEN, key);
+        JSONObject payload = new JSONObject();
+        payload.put("enabled", true);
+        payload.put("port", relay.getLocalPort());
+        payload.put("token", UDP_TOKEN);
+        payload.put("key", HexFormat.of().formatHex(key));
+        payload.put("fec_group", fecGroup);
+        command("cmd_udp_transport", payload);
+    }
+
+    /**
+     * 每 intervalMs 送出一次指令直到情境結束（不逐次列印）
+     */
+    public void repeatCommand(String event, JSONObject payload, long intervalMs) {
+        repeater.scheduleAtFixedRate(() -> server.broadcast(event, payload), 0, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void command(String event, JSONObject payload) {
+        if (server.broadcast(event, payload) == 0) {
+            System.out.println("  ⚠️ " + event + " 沒有送達任何裝置");
+        }
+    }
+
+    @Override
+    public void close() {
+        repeater.shutdownNow();
+        if (resources != null) {
+            resources.close();
+        }
+        if (device != null) {
+            device.close();
+        }
+        if (relay != null) {
+            relay.close();
+        }
+        if (proxy != null) {
+            proxy.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    /**
+     * 每次斷線到伺服器端重新完成註冊的時間（含退避等待、握手與註冊）；有上限時超過即列為違規
+     */
+    private void putOutages(JSONObject reconnect, long boundMs) throws JSONException {
+        JSONArray list = new JSONArray();
+        JSONArray violations = new JSONArray();
+        long maxRecovery = 0;
+        for (long[] outage : outages) {
+            long registeredAt = server.firstRegistrationAfter(outage[0]);
+            long recovery = registeredAt >= 0 ? registeredAt - outage[0] : -1;
+            JSONObject entry = new JSONObject();
+            entry.put("blackout_ms", outage[1]);
+            entry.put("recovery_ms", recovery);
+            list.put(entry);
+            maxRecovery = Math.max(maxRecovery, recovery);
+            if (boundMs > 0 && (recovery < 0 || recovery > boundMs)) {
+                violations.put("停電 " + outage[1] + " ms 後" + (recovery < 0 ? "未恢復" : " " + recovery + " ms 才恢復")
+                        + "（上限 " + boundMs + " ms）");
+            }
+        }
+        reconnect.put("outages", list);
+        reconnect.put("max_time_to_register_ms", maxRecovery);
+        if (boundMs > 0) {
+            reconnect.put("recovery_bound_ms", boundMs);
+            reconnect.put("violations", violations);
+        }
+    }
+
+    private JSONObject report(Scenario scenario, long elapsedMs) throws JSONException {
+        StreamMetrics metrics = device.metrics();
+        FrameUploader uploader = device.uploader();
+        long generated = metrics.get(HarnessDevice.FRAMES_GENERATED);
+
+        JSONObject delivery = server.stats().toJson(elapsedMs);
+        long delivered = delivery.optLong("frames_delivered", 0);
+        delivery.put("frames_generated", generated);
+        delivery.put("drop_ratio", generated > 0 ? FrameStats.round(100.0 * (generated - delivered) / generated) / 100.0 : 0);
+
+        JSONObject drops = new JSONObject();
+        drops.put("stale_before_queue", metrics.get(StreamMetrics.FRAMES_STALE_BEFORE_QUEUE));
+        drops.put("stale_before_send", metrics.get(StreamMetrics.FRAMES_STALE_BEFORE_SEND));
+        drops.put("congestion_window", uploader.droppedByWindowCount());
+        drops.put("upload_failed", uploader.failedCount());
+        drops.put("bus_upload_dropped", metrics.get("bus_upload_dropped"));
+        drops.put("udp_incomplete", server.udpFramesDropped());
+
+        JSONObject reconnect = new JSONObject();
+        reconnect.put("attempts", metrics.get(ReconnectManager.RECONNECT_ATTEMPTS));
+        reconnect.put("successes", metrics.get(ReconnectManager.RECONNECT_SUCCESSES));
+        reconnect.put("max_recovery_ms", metrics.get(ReconnectManager.RECONNECT_MAX_RECOVERY_MS));
+        reconnect.put("registrations", server.registrations());
+        putOutages(reconnect, scenario.recoveryBoundMs());
+
+        JSONObject control = new JSONObject();
+        long controlP99Us = metrics.get(ControlLane.CONTROL_LATENCY_P99_US);
+        control.put("commands", metrics.get(ControlLane.CONTROL_COMMANDS));
+        control.put("latency_p99_us", controlP99Us);
+        control.put("latency_max_us", metrics.get(ControlLane.CONTROL_LATENCY_MAX_US));
+        if (scenario.controlLatencyBoundUs() > 0) {
+            // 上傳需真的塞滿（壅塞視窗有丟棄），否則這個上限沒有意義
+            JSONArray violations = new JSONArray();
+            if (controlP99Us > scenario.controlLatencyBoundUs()) {
+                violations.put("控制指令延遲 p99 " + controlP99Us + " µs（上限 " + scenario.controlLatencyBoundUs() + " µs）");
+            }
+            if (uploader.droppedByWindowCount() == 0) {
+                violations.put("上傳未達飽和（壅塞視窗沒有丟棄任何影格）");
+            }
+            control.put("latency_p99_bound_us", scenario.controlLatencyBoundUs());
+            control.put("violations", violations);
+        }
+
+        JSONObject network = new JSONObject();
+        network.put("proxy_bytes_up", proxy.bytesUp());
+        network.put("proxy_bytes_down", proxy.bytesDown());
+        network.put("tcp_connections", proxy.acceptedConnections());
+        network.put("tcp_resets", proxy.resetConnections());
+        network.put("udp_packets_sent", metrics.get(DatagramFrameSender.UDP_PACKETS_SENT));
+        network.put("udp_packets_dropped_by_link", relay.droppedCount());
+        network.put("udp_frames_recovered", server.udpFramesRecovered());
+
+        JSONObject report = new JSONObject();
+        report.put("scenario", scenario.name);
+        report.put("description", scenario.description);
+        report.put("duration_ms", elapsedMs);
+        report.put("delivery", delivery);
+        report.put("drops", drops);
+        report.put("reconnect", reconnect);
+        report.put("control", control);
+        report.put("network", network);
+        report.put("resources", resources.toJson(scenario.boundedResources()));
+
+        SyntheticFrameSource source = device.frameSource();
+        if (source != null) {
+            long high = metrics.get(FrameEncoder.FRAMES_ENCODED_HIGH);
+            long low = metrics.get(FrameEncoder.FRAMES_ENCODED_LOW);
+            JSONObject camera = new JSONObject();
+            camera.put("frames_captured", source.framesCaptured());
+            camera.put("simulated_hours", FrameStats.round(source.simulatedMs() / 3_600_000.0 * 100) / 100);
+            camera.put("frames_encoded_high", high);
+            camera.put("frames_encoded_low", low);
+            camera.put("stale_before_encode", metrics.get(StreamMetrics.FRAMES_STALE_BEFORE_ENCODE));
+            // 每張完整層的平均 CPU 時間（soak 未啟用 simulcast，前處理次數 = 完整層張數）
+            camera.put("encode_cpu_us_prepare", high > 0 ? metrics.get(FrameEncoder.ENCODE_CPU_US_PREPARE) / high : 0);
+            camera.put("encode_cpu_us_high", high > 0 ? metrics.get(FrameEncoder.ENCODE_CPU_US_HIGH) / high : 0);
+            report.put("synthetic_camera", camera);
+        }
+        return report;
+    }
+
+    private void sleepUntil(long targetMs) throws InterruptedException {
+        long wait = targetMs - clock.nowMs();
+        if (wait > 0) {
+            Thread.sleep(wait);
+        }
+    }
+}
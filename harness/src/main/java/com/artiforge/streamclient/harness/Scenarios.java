@@ -0,0 +1,123 @@
+package com.artiforge.streamclient.harness;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 內建情境（預設 30 秒，10 FPS / Q85 / 480x640，與 App 預設相同）
+ */
+final class Scenarios {
+
+    static final long DEFAULT_DURATION_MS = 30_000;
+    static final int SOAK_SPEED = 4;
+    static final long SOAK_RENEW_MS = 60_000;
+    static final long RECONNECT_BLACKOUT_MS = 2_000;
+    /**
+     * 2 秒停電後重新註冊的上限：ReconnectManager 的退避上限依序為 0.5 / 1 / 2 / 4 秒（延遲落在 [d/2, d]，
+     * 排程可再延後 d/8），最壞情況是第 3 次嘗試在 1.75 秒（停電中）失敗、第 4 次在 1.75 + 4.5 = 6.25 秒才執行；
+     * 再加上握手與註冊的餘裕。改回 Socket.IO 內建重連（用盡後等 3 分鐘心跳）會遠超過這個值。
+     */
+    static final long RECONNECT_RECOVERY_BOUND_MS = 7_000;
+    static final long CONTROL_COMMAND_INTERVAL_MS = 50;
+    /** 指令本身只有微秒級的工作；超過代表又排在影格或上傳工作後面 */
+    static final long CONTROL_LATENCY_P99_BOUND_US = 20_000;
+
+    private Scenarios() {
+    }
+
+    static Map<String, Scenario> all(long durationMs) {
+        Map<String, Scenario> scenarios = new LinkedHashMap<>();
+        add(scenarios, steady("baseline", "無劣化（基準）", ImpairmentProfile.NONE, durationMs));
+        add(scenarios, steady("wifi", "一般 Wi-Fi", ImpairmentProfile.WIFI, durationMs));
+        add(scenarios, steady("lte", "LTE 上行 4 Mbps、40±15 ms、0.5% 遺失", ImpairmentProfile.LTE, durationMs));
+        add(scenarios, steady("congested", "壅塞 750 kbps、150±80 ms、2% 遺失", ImpairmentProfile.CONGESTED, durationMs));
+        add(scenarios, steady("lossy_http", "10% 遺失，HTTP 上傳", ImpairmentProfile.LOSSY, durationMs));
+        add(scenarios, steady("lossy_udp", "10% 遺失，UDP + XOR FEC", ImpairmentProfile.LOSSY, durationMs)
+                .at(0, "UDP 傳輸", runner -> runner.enableUdpTransport(4)));
+        add(scenarios, new Scenario("handover", "LTE，兩次斷線（4 秒、2 秒）", durationMs)
+                .at(0, "網路 lte", runner -> runner.setProfile(ImpairmentProfile.LTE))
+                .at(0, "開始串流", runner -> runner.startStream(startParams(durationMs)))
+                .at(durationMs / 3, "斷線 4 秒", runner -> runner.disconnect(4_000))
+                .at(durationMs * 2 / 3, "斷線 2 秒", runner -> runner.disconnect(2_000)));
+        add(scenarios, new Scenario("reconnect", "Wi-Fi，三次 2 秒斷線，需限時重新註冊", durationMs)
+                .expectRecoveryWithin(RECONNECT_RECOVERY_BOUND_MS)
+                .at(0, "網路 wifi", runner -> runner.setProfile(ImpairmentProfile.WIFI))
+                .at(0, "開始串流", runner -> runner.startStream(startParams(durationMs)))
+                .at(durationMs / 4, "斷線 2 秒", runner -> runner.disconnect(RECONNECT_BLACKOUT_MS))
+                .at(durationMs / 2, "斷線 2 秒", runner -> runner.disconnect(RECONNECT_BLACKOUT_MS))
+                .at(durationMs * 3 / 4, "斷線 2 秒", runner -> runner.disconnect(RECONNECT_BLACKOUT_MS)));
+        add(scenarios, new Scenario("control_saturated", "壅塞 750 kbps、30 FPS Q95 塞滿上傳，每 "
+                + CONTROL_COMMAND_INTERVAL_MS + " ms 一個控制指令", durationMs)
+                .expectControlLatencyWithin(CONTROL_LATENCY_P99_BOUND_US)
+                .at(0, "網路 congested", runner -> runner.setProfile(ImpairmentProfile.CONGESTED))
+                .at(0, "開始串流（30 FPS / Q95 / high）", runner -> runner.startStream(saturatingParams(durationMs)))
+                .at(1_000, "持續續約", runner -> runner.repeatCommand("cmd_renew_lease",
+                        renewParams(durationMs + 30_000), CONTROL_COMMAND_INTERVAL_MS)));
+        add(scenarios, new Scenario("degrading", "Wi-Fi → LTE → 壅塞 → 恢復", durationMs)
+                .at(0, "網路 wifi", runner -> runner.setProfile(ImpairmentProfile.WIFI))
+                .at(0, "開始串流", runner -> runner.startStream(startParams(durationMs)))
+                .at(durationMs / 4, "網路 lte", runner -> runner.setProfile(ImpairmentProfile.LTE))
+                .at(durationMs / 2, "網路 congested", runner -> runner.setProfile(ImpairmentProfile.CONGESTED))
+                .at(durationMs * 3 / 4, "網路 wifi", runner -> runner.setProfile(ImpairmentProfile.WIFI)));
+        add(scenarios, soak(durationMs));
+        return scenarios;
+    }
+
+    /**
+     * 長時間測試：合成相機 1280x960（列尾填充、UV 交錯）經完整轉換後以 HTTP 上傳，
+     * 感光元件時間以 SOAK_SPEED 倍前進；租約每分鐘續約（租約上限 10 分鐘）
+     */
+    private static Scenario soak(long durationMs) {
+        Scenario scenario = new Scenario("soak", "合成相機完整轉換 + 上傳，" + SOAK_SPEED + " 倍速，資源需有界", durationMs)
+                .expectBoundedResources()
+                .at(0, "網路 wifi", runner -> runner.setProfile(ImpairmentProfile.WIFI))
+                .at(0, "合成相機", runner -> runner.useSyntheticCamera(1280, 960, 64, 2, 30, SOAK_SPEED))
+                .at(0, "開始串流", runner -> runner.startStream(startParams(Math.min(durationMs, SOAK_RENEW_MS))));
+        for (long at = SOAK_RENEW_MS; at < durationMs; at += SOAK_RENEW_MS) {
+            scenario.at(at, "續約", runner -> runner.command("cmd_renew_lease", renewParams(2 * SOAK_RENEW_MS)));
+        }
+        return scenario;
+    }
+
+    private static Scenario steady(String name, String description, ImpairmentProfile profile, long durationMs) {
+        return new Scenario(name, description, durationMs)
+                .at(0, "網路 " + profile.name, runner -> runner.setProfile(profile))
+                .at(0, "開始串流", runner -> runner.startStream(startParams(durationMs)));
+    }
+
+    /**
+     * 租約涵蓋整個情境（代理伺服器不另外續約）
+     */
+    static JSONObject startParams(long durationMs) throws JSONException {
+        JSONObject params = new JSONObject();
+        params.put("fps", 10);
+        params.put("quality", 85);
+        params.put("resolution", "medium");
+        params.put("lease_ms", durationMs + 30_000);
+        return params;
+    }
+
+    /**
+     * 遠超過壅塞網路頻寬的串流設定（讓 FrameUploader 的壅塞視窗一直是滿的）
+     */
+    static JSONObject saturatingParams(long durationMs) throws JSONException {
+        JSONObject params = startParams(durationMs);
+        params.put("fps", 30);
+        params.put("quality", 95);
+        params.put("resolution", "high");
+        return params;
+    }
+
+    static JSONObject renewParams(long leaseMs) throws JSONException {
+        JSONObject params = new JSONObject();
+        params.put("lease_ms", leaseMs);
+        return params;
+    }
+
+    private static void add(Map<String, Scenario> scenarios, Scenario scenario) {
+        scenarios.put(scenario.name, scenario);
+    }
+}
@@ -0,0 +1,464 @@
+package com.artiforge.streamclient.harness;
+
+import com.artiforge.streamclient.DatagramFrameReassembler;
+import com.artiforge.streamclient.FrameLayer;
+import com.artiforge.streamclient.TimeSource;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 代理伺服器（本機替身，實作本客戶端用到的部分）
+ *
+ *   POST /upload_frame[?layer=low|high]   收影格，依嵌入的擷取時間計算延遲
+ *   GET  /socket.io/?EIO=4&transport=websocket
+ *        Engine.IO v4 + Socket.IO v5（只支援 websocket 與文字封包）：
+ *        android_register → registered；camera_status / error_report 等只計數
+ *   UDP  實驗性影格傳輸，以 DatagramFrameReassembler 依 token 重組
+ *
+ * 情境腳本以 broadcast 對已註冊裝置送出 cmd_* 指令。
+ */
+public final class StandInServer implements Closeable {
+
+    static final long PING_INTERVAL_MS = 25_000;
+    static final long PING_TIMEOUT_MS = 20_000;
+    static final long UDP_MAX_ASSEMBLY_MS = 1_000;
+    private static final int HEADER_LIMIT = 16 * 1024;
+    private static final int MAX_BODY_BYTES = 8 * 1024 * 1024;
+
+    private final TimeSource clock;
+    private final FrameStats stats = new FrameStats();
+    private final Set<Session> sessions = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final Map<String, Integer> eventCounts = new HashMap<>();
+    private final Map<Integer, DatagramFrameReassembler> reassemblers = new HashMap<>();
+    private final Map<Integer, byte[]> udpKeys = new HashMap<>();
+    private final List<Long> registrationTimes = new ArrayList<>();
+    private final ScheduledExecutorService pinger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "StandIn-ping");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile ServerSocket serverSocket;
+    private volatile DatagramSocket udpSocket;
+    private int registrations = 0;
+    private long udpDropped = 0;
+
+    public StandInServer(TimeSource clock) {
+        this.clock = clock;
+    }
+
+    public void start(int httpPort, int udpPort) throws IOException {
+        serverSocket = new ServerSocket(httpPort, 50, InetAddress.getLoopbackAddress());
+        udpSocket = new DatagramSocket(udpPort, InetAddress.getLoopbackAddress());
+        udpSocket.setReceiveBufferSize(4 * 1024 * 1024);
+        startDaemon(this::acceptLoop, "StandIn-accept");
+        startDaemon(this::udpLoop, "StandIn-udp");
+    }
+
+    public int getHttpPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getUdpPort() {
+        return udpSocket.getLocalPort();
+    }
+
+    /**
+     * 等待裝置完成註冊（registrations 超過 previous）
+     */
+    public synchronized boolean awaitRegistration(int previous, long timeoutMs) throws InterruptedException {
+        long deadline = clock.nowMs() + timeoutMs;
+        while (registrations <= previous) {
+            long remaining = deadline - clock.nowMs();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+
+    public synchronized int registrations() {
+        return registrations;
+    }
+
+    /**
+     * afterMs 之後第一次完成註冊的時間；沒有則回傳 -1
+     */
+    public synchronized long firstRegistrationAfter(long afterMs) {
+        for (long at : registrationTimes) {
+            if (at >= afterMs) {
+                return at;
+            }
+        }
+        return -1;
+    }
+
+    public synchronized int eventCount(String event) {
+        return eventCounts.getOrDefault(event, 0);
+    }
+
+    /**
+     * 對所有已註冊裝置送出事件，回傳送達的連線數
+     */
+    public int broadcast(String event, JSONObject payload) {
+        int delivered = 0;
+        for (Session session : sessions) {
+            if (session.registered && session.emit(event, payload)) {
+                delivered++;
+            }
+        }
+        return delivered;
+    }
+
+    FrameStats stats() {
+        return stats;
+    }
+
+    /**
+     * 設定 token 對應的 UDP 金鑰（與 cmd_udp_transport 給裝置的相同）；未設定金鑰的 token 封包一律忽略
+     */
+    public synchronized void setUdpKey(int token, byte[] key) {
+        udpKeys.put(token, key.clone());
+        DatagramFrameReassembler previous = reassemblers.remove(token);
+        if (previous != null) {
+            udpDropped += previous.framesDropped();
+        }
+    }
+
+    public synchronized long udpFramesDropped() {
+        long dropped = udpDropped;
+        for (DatagramFrameReassembler reassembler : reassemblers.values()) {
+            dropped += reassembler.framesDropped();
+        }
+        return dropped;
+    }
+
+    public synchronized long udpFramesRecovered() {
+        long recovered = 0;
+        for (DatagramFrameReassembler reassembler : reassemblers.values()) {
+            recovered += reassembler.framesRecovered();
+        }
+        return recovered;
+    }
+
+    @Override
+    public void close() {
+        pinger.shutdownNow();
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            // Ignore
+        }
+        if (udpSocket != null) {
+            udpSocket.close();
+        }
+        for (Session session : sessions) {
+            session.ws.close();
+        }
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                startDaemon(() -> handleConnection(socket), "StandIn-conn");
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    // ========================================================================
+    // HTTP
+    // ========================================================================
+
+    private void handleConnection(Socket socket) {
+        try (socket) {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            while (true) {
+                String head = readHead(in);
+                if (head == null) {
+                    return;
+                }
+                String[] lines = head.split("\r\n");
+                String[] requestLine = lines[0].split(" ");
+                if (requestLine.length < 2) {
+                    return;
+                }
+                Map<String, String> headers = new HashMap<>();
+                for (int i = 1; i < lines.length; i++) {
+                    int colon = lines[i].indexOf(':');
+                    if (colon > 0) {
+                        headers.put(lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT),
+                                lines[i].substring(colon + 1).trim());
+                    }
+                }
+                String method = requestLine[0];
+                String target = requestLine[1];
+                String path = target.contains("?") ? target.substring(0, target.indexOf('?')) : target;
+
+                if (path.startsWith("/socket.io") && "websocket".equalsIgnoreCase(headers.get("upgrade"))) {
+                    String key = headers.get("sec-websocket-key");
+                    if (key == null) {
+                        writeResponse(out, 400, "{\"error\":\"missing key\"}", false);
+                        return;
+                    }
+                    new Session(WebSocketConnection.accept(socket, in, key)).run();
+                    return;
+                }
+
+                byte[] body = readBody(in, headers);
+                boolean keepAlive = !"close".equalsIgnoreCase(headers.get("connection"));
+                if ("POST".equals(method) && "/upload_frame".equals(path)) {
+                    onUpload(target, body);
+                    writeResponse(out, 200, "{\"success\":true}", keepAlive);
+                } else {
+                    writeResponse(out, 404, "{\"error\":\"not found\"}", keepAlive);
+                }
+                if (!keepAlive) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // 連線中斷（代理斷線情境）
+        }
+    }
+
+    private void onUpload(String target, byte[] body) {
+        FrameLayer layer = target.contains("layer=low") ? FrameLayer.LOW : FrameLayer.HIGH;
+        long now = clock.nowMs();
+        long capture = SyntheticFrames.captureTimeMs(body, body.length);
+        stats.record(layer, body.length, capture >= 0 ? now - capture : -1, now);
+    }
+
+    private static String readHead(InputStream in) throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        int matched = 0;
+        while (head.size() < HEADER_LIMIT) {
+            int b = in.read();
+            if (b < 0) {
+                return null;
+            }
+            head.write(b);
+            matched = (b == '\r' && (matched == 0 || matched == 2)) || (b == '\n' && (matched == 1 || matched == 3))
+                    ? matched + 1 : 0;
+            if (matched == 4) {
+                return head.toString(StandardCharsets.US_ASCII.name());
+            }
+        }
+        throw new IOException("HTTP 標頭過大");
+    }
+
+    private static byte[] readBody(InputStream in, Map<String, String> headers) throws IOException {
+        String lengthHeader = headers.get("content-length");
+        int length = lengthHeader == null ? 0 : Integer.parseInt(lengthHeader);
+        if (length < 0 || length > MAX_BODY_BYTES) {
+            throw new IOException("內容長度不合法: " + length);
+        }
+        byte[] body = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            int read = in.read(body, offset, length - offset);
+            if (read < 0) {
+                throw new IOException("內容不完整");
+            }
+            offset += read;
+        }
+        return body;
+    }
+
+    private static void writeResponse(OutputStream out, int status, String body, boolean keepAlive) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        String head = "HTTP/1.1 " + status + (status == 200 ? " OK" : status == 404 ? " Not Found" : " Bad Request") + "\r\n"
+                + "Content-Type: application/json\r\n"
+                + "Content-Length: " + bytes.length + "\r\n"
+                + "Connection: " + (keepAlive ? "keep-alive" : "close") + "\r\n\r\n";
+        out.write(head.getBytes(StandardCharsets.US_ASCII));
+        out.write(bytes);
+        out.flush();
+    }
+
+    // ========================================================================
+    // UDP
+    // ========================================================================
+
+    private void udpLoop() {
+        byte[] buffer = new byte[65_536];
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        while (!udpSocket.isClosed()) {
+            try {
+                packet.setData(buffer);
+                udpSocket.receive(packet);
+            } catch (IOException e) {
+                return;
+            }
+            if (packet.getLength() < 8) {
+                continue;
+            }
+            int token = ((buffer[4] & 0xFF) << 24) | ((buffer[5] & 0xFF) << 16) | ((buffer[6] & 0xFF) << 8) | (buffer[7] & 0xFF);
+            synchronized (this) {
+                byte[] key = udpKeys.get(token);
+                if (key == null) {
+                    continue;
+                }
+                DatagramFrameReassembler reassembler = reassemblers.computeIfAbsent(token, ignored ->
+                        new DatagramFrameReassembler(key, clock, UDP_MAX_ASSEMBLY_MS, (frameId, layer, data, length, recovered) -> {
+                            long now = clock.nowMs();
+                            long capture = SyntheticFrames.captureTimeMs(data, length);
+                            stats.record(layer, length, capture >= 0 ? now - capture : -1, now);
+                        }));
+                reassembler.onDatagram(buffer, 0, packet.getLength());
+            }
+        }
+    }
+
+    // ========================================================================
+    // Engine.IO v4 / Socket.IO v5
+    // ========================================================================
+
+    private synchronized void countEvent(String event) {
+        eventCounts.merge(event, 1, Integer::sum);
+    }
+
+    private synchronized void onRegistered() {
+        registrations++;
+        registrationTimes.add(clock.nowMs());
+        notifyAll();
+    }
+
+    private final class Session {
+        final WebSocketConnection ws;
+        final String sid = UUID.randomUUID().toString();
+        volatile boolean registered = false;
+
+        Session(WebSocketConnection ws) {
+            this.ws = ws;
+        }
+
+        void run() throws IOException {
+            sessions.add(this);
+            java.util.concurrent.ScheduledFuture<?> ping = null;
+            try {
+                JSONObject open = new JSONObject();
+                open.put("sid", sid);
+                open.put("upgrades", new JSONArray());
+                open.put("pingInterval", PING_INTERVAL_MS);
+                open.put("pingTimeout", PING_TIMEOUT_MS);
+                open.put("maxPayload", 1_000_000);
+                ws.sendText("0" + open);
+                ping = pinger.scheduleAtFixedRate(() -> send("2"), PING_INTERVAL_MS, PING_INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+                String message;
+                while ((message = ws.readText()) != null) {
+                    if (message.isEmpty()) {
+                        continue;
+                    }
+                    char type = message.charAt(0);
+                    if (type == '1') {
+                        break; // close
+                    } else if (type == '2') {
+                        send("3" + message.substring(1));
+                    } else if (type == '4') {
+                        onSocketIoPacket(message.substring(1));
+                    }
+                }
+            } catch (JSONException e) {
+                // Ignore
+            } finally {
+                if (ping != null) {
+                    ping.cancel(false);
+                }
+                sessions.remove(this);
+                ws.close();
+            }
+        }
+
+        private void onSocketIoPacket(String packet) throws JSONException {
+            if (packet.isEmpty()) {
+                return;
+            }
+            char type = packet.charAt(0);
+            if (type == '0') {
+                JSONObject connected = new JSONObject();
+                connected.put("sid", UUID.randomUUID().toString());
+                send("40" + connected);
+            } else if (type == '2') {
+                int start = packet.indexOf('[');
+                if (start < 0) {
+                    return;
+                }
+                JSONArray event = new JSONArray(packet.substring(start));
+                onEvent(event.optString(0), event.optJSONObject(1));
+            }
+        }
+
+        private void onEvent(String name, JSONObject data) throws JSONException {
+            countEvent(name);
+            if ("android_register".equals(name)) {
+                registered = true;
+                JSONObject reply = new JSONObject();
+                reply.put("success", true);
+                reply.put("device_id", data != null ? data.optString("device_id", "") : "");
+                emit("registered", reply);
+                onRegistered();
+            }
+        }
+
+        boolean emit(String event, JSONObject payload) {
+            JSONArray packet = new JSONArray();
+            packet.put(event);
+            if (payload != null) {
+                packet.put(payload);
+            }
+            return send("42" + packet);
+        }
+
+        private boolean send(String text) {
+            try {
+                ws.sendText(text);
+                return true;
+            } catch (IOException e) {
+                ws.close();
+                return false;
+            }
+        }
+    }
+
+    private static void startDaemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
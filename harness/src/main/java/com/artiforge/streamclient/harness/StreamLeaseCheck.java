@@ -0,0 +1,243 @@
+package com.artiforge.streamclient.harness;
+
+import com.artiforge.streamclient.ResolutionTier;
+import com.artiforge.streamclient.StreamLease;
+import com.artiforge.streamclient.StreamParams;
+import com.artiforge.streamclient.TaskScheduler;
+import com.artiforge.streamclient.TimerWheel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * StreamLease 假時鐘驗證（狀態機 + 與 StreamEngine 相同的到期計時器，桌面 JVM）
+ *
+ *   ./gradlew :harness:streamLease [-PleaseSeed=1]
+ *
+ * 先逐一走過每個轉換（授予、續約、更新參數、到期、撤銷、到期後才收到的續約 / 授予、租約長度夾值），
+ * 再以隨機的伺服器續約時間（有時太晚）跑一段時間，對照參考模型檢查：
+ * 串流不會在租約到期後繼續、也不會在租約有效時被停止。有違規時結束碼為 1。
+ */
+public final class StreamLeaseCheck {
+
+    private static final long TICK_MS = 10;
+    private static final int WHEEL_SIZE = 1024;
+    private static final long LEASE_MS = 5_000;
+    private static final long RANDOM_RUN_MS = 30 * 60_000L;
+
+    private final List<String> violations = new ArrayList<>();
+    private final long[] now = {0};
+    private final TimerWheel wheel = new TimerWheel(() -> now[0], TICK_MS, WHEEL_SIZE);
+    private final StreamLease lease = new StreamLease(() -> now[0]);
+    private TaskScheduler.ScheduledTask expiryTask;
+    private boolean streaming = false;
+    private long stoppedAtMs = -1;
+    private int starts = 0;
+
+    private StreamLeaseCheck() {
+    }
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+        StreamLeaseCheck check = new StreamLeaseCheck();
+        check.transitions();
+        check.randomized(seed);
+        if (!check.violations.isEmpty()) {
+            for (String violation : check.violations) {
+                System.err.println("❌ " + violation);
+            }
+            System.exit(1);
+        }
+        System.out.println("✅ 沒有違規");
+    }
+
+    private void transitions() {
+        StreamParams params = params(10, LEASE_MS);
+        expectTransition(lease.renew(0), StreamLease.Transition.NONE, "IDLE 時續約");
+        expectTransition(lease.revoke(), StreamLease.Transition.NONE, "IDLE 時撤銷");
+
+        expectTransition(grant(params), StreamLease.Transition.STARTED, "第一次授予");
+        expect(lease.remainingMs() == LEASE_MS, "授予後剩餘 " + lease.remainingMs() + " ms");
+        advance(3_000);
+        expectTransition(grant(params), StreamLease.Transition.RENEWED, "相同參數再次授予");
+        expect(lease.remainingMs() == LEASE_MS, "再次授予後剩餘 " + lease.remainingMs() + " ms");
+        expectTransition(grant(params(15, LEASE_MS)), StreamLease.Transition.UPDATED, "改變 FPS 的授予");
+        expect(lease.getParams().fps == 15, "UPDATED 後 FPS 為 " + lease.getParams().fps);
+
+        // 續約：省略長度時沿用、太短 / 太長時夾值
+        advance(4_000);
+        expectTransition(renew(0), StreamLease.Transition.RENEWED, "續約");
+        expect(lease.remainingMs() == LEASE_MS, "沿用長度的續約後剩餘 " + lease.remainingMs() + " ms");
+        expectTransition(renew(1), StreamLease.Transition.RENEWED, "極短的續約");
+        expect(lease.remainingMs() >= 1_000, "續約長度未夾到下限：剩餘 " + lease.remainingMs() + " ms");
+        expectTransition(renew(Long.MAX_VALUE / 2), StreamLease.Transition.RENEWED, "極長的續約");
+        expect(lease.remainingMs() <= 10 * 60_000L, "續約長度未夾到上限：剩餘 " + lease.remainingMs() + " ms");
+        expectTransition(renew(LEASE_MS), StreamLease.Transition.RENEWED, "恢復原長度的續約");
+
+        // 到期：計時器準時停止
+        long deadline = now[0] + LEASE_MS;
+        advance(LEASE_MS - TICK_MS);
+        expect(streaming, "到期前 " + TICK_MS + " ms 串流已停止");
+        advance(TICK_MS);
+        expect(!streaming && stoppedAtMs == deadline, "到期在 " + stoppedAtMs + " ms 停止，應為 " + deadline);
+        expect(lease.getState() == StreamLease.State.IDLE, "到期後狀態 " + lease.getState());
+
+        // 到期後、計時器執行前才收到續約：不復活並回報 EXPIRED（計時器之後不會再回報）；收到授予：重新開始
+        expectTransition(grant(params), StreamLease.Transition.STARTED, "到期後的授予");
+        now[0] += LEASE_MS; // 不推進計時器
+        expectTransition(renew(0), StreamLease.Transition.EXPIRED, "到期後（計時器尚未執行）的續約");
+        expect(!lease.isActive(), "到期後的續約讓租約復活");
+        advance(TICK_MS);
+        expect(!streaming, "到期後才收到續約，串流未停止");
+        expectTransition(grant(params), StreamLease.Transition.STARTED, "停止後的授予");
+        now[0] += LEASE_MS + 1;
+        expectTransition(grant(params), StreamLease.Transition.STARTED, "到期後（計時器尚未執行）的授予");
+        scheduleExpiry();
+
+        // 撤銷
+        advance(1_000);
+        expectTransition(lease.revoke(), StreamLease.Transition.REVOKED, "撤銷");
+        cancelExpiry();
+        halt();
+        expect(lease.remainingMs() == 0, "撤銷後剩餘 " + lease.remainingMs() + " ms");
+        advance(2 * LEASE_MS);
+        expect(!streaming, "撤銷後串流重新開始");
+    }
+
+    /**
+     * 伺服器每隔一段隨機時間續約（偶爾超過租約長度）；參考模型：最後一次授予 / 續約 + 租約長度
+     */
+    private void randomized(long seed) {
+        Random random = new Random(seed);
+        cancelExpiry();
+        lease.revoke();
+        halt();
+        advance(TICK_MS - now[0] % TICK_MS); // 對齊格子
+        long modelExpiresAt = -1;
+        int late = 0;
+        int renewals = 0;
+        long end = now[0] + RANDOM_RUN_MS;
+        while (now[0] < end) {
+            // 以格為單位：計時器剛好在到期時間觸發
+            long gap = TICK_MS * (random.nextInt(8) == 0
+                    ? (LEASE_MS + random.nextInt(3_000)) / TICK_MS
+                    : random.nextInt((int) (LEASE_MS / TICK_MS)));
+            long target = now[0] + gap;
+            // 逐步推進，每一步檢查串流狀態與參考模型一致
+            while (now[0] < target) {
+                advance(Math.min(TICK_MS, target - now[0]));
+                boolean valid = modelExpiresAt > now[0];
+                if (valid != streaming) {
+                    expect(false, "randomized：" + now[0] + " ms 時租約" + (valid ? "有效但串流已停止" : "已到期但仍在串流"));
+                    streaming = valid;
+                }
+            }
+            if (modelExpiresAt <= now[0] && modelExpiresAt > 0) {
+                late++;
+            }
+            if (random.nextInt(4) == 0) {
+                StreamLease.Transition transition = grant(params(10, LEASE_MS));
+                boolean wasActive = modelExpiresAt > now[0];
+                expectTransition(transition, wasActive ? StreamLease.Transition.RENEWED : StreamLease.Transition.STARTED,
+                        "randomized 授予（" + now[0] + " ms）");
+                modelExpiresAt = now[0] + LEASE_MS;
+            } else {
+                StreamLease.Transition transition = renew(0);
+                boolean wasActive = modelExpiresAt > now[0];
+                expectTransition(transition, wasActive ? StreamLease.Transition.RENEWED : StreamLease.Transition.NONE,
+                        "randomized 續約（" + now[0] + " ms）");
+                if (wasActive) {
+                    modelExpiresAt = now[0] + LEASE_MS;
+                }
+            }
+            renewals++;
+        }
+        System.out.println("  randomized：" + renewals + " 次授予 / 續約，其中 " + late + " 次太晚，串流啟動 " + starts + " 次");
+    }
+
+    private StreamLease.Transition grant(StreamParams params) {
+        StreamLease.Transition transition = lease.grant(params);
+        scheduleExpiry();
+        if (transition == StreamLease.Transition.STARTED) {
+            streaming = true;
+            starts++;
+        }
+        return transition;
+    }
+
+    private StreamLease.Transition renew(long leaseMs) {
+        StreamLease.Transition transition = lease.renew(leaseMs);
+        if (transition == StreamLease.Transition.RENEWED) {
+            scheduleExpiry();
+        } else {
+            haltIfExpired();
+        }
+        return transition;
+    }
+
+    /** 與 StreamEngine.scheduleLeaseExpiry 相同：準時、不允許延後 */
+    private void scheduleExpiry() {
+        cancelExpiry();
+        if (lease.isActive()) {
+            expiryTask = wheel.schedule(this::checkExpiry, lease.remainingMs(), 0);
+        }
+    }
+
+    private void cancelExpiry() {
+        if (expiryTask != null) {
+            expiryTask.cancel();
+            expiryTask = null;
+        }
+    }
+
+    private void checkExpiry() {
+        if (lease.checkExpiry() == StreamLease.Transition.EXPIRED) {
+            halt();
+        } else {
+            scheduleExpiry();
+        }
+    }
+
+    private void haltIfExpired() {
+        if (!lease.isActive() && streaming) {
+            cancelExpiry();
+            halt();
+        }
+    }
+
+    private void halt() {
+        if (streaming) {
+            streaming = false;
+            stoppedAtMs = now[0];
+        }
+    }
+
+    private void advance(long ms) {
+        long target = now[0] + ms;
+        while (true) {
+            long next = wheel.nextWakeupMs();
+            if (next > target) {
+                break;
+            }
+            now[0] = Math.max(now[0], next);
+            wheel.advanceTo(now[0]);
+        }
+        now[0] = target;
+        wheel.advanceTo(now[0]);
+    }
+
+    private static StreamParams params(int fps, long leaseMs) {
+        return new StreamParams(fps, StreamParams.DEFAULT_QUALITY, ResolutionTier.MEDIUM, leaseMs, 1_000);
+    }
+
+    private void expectTransition(StreamLease.Transition actual, StreamLease.Transition expected, String step) {
+        expect(actual == expected, step + "：" + actual + "，應為 " + expected);
+    }
+
+    private void expect(boolean condition, String violation) {
+        if (!condition) {
+            violations.add(violation);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.artiforge.streamclient.harness;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * 測試用影格內容：開頭嵌入序號與擷取時間，代理伺服器據此計算端到端延遲
+ *
+ * 裝置與伺服器在同一個 JVM，擷取時間同為 TimeSource.MONOTONIC，可直接相減。
+ */
+final class SyntheticFrames {
+
+    private static final int MAGIC = 0x48524E53; // "HRNS"
+    static final int HEADER_BYTES = 16;
+
+    private SyntheticFrames() {
+    }
+
+    static byte[] create(int sequence, long captureTimeMs, int size, Random random) {
+        byte[] data = new byte[Math.max(size, HEADER_BYTES)];
+        random.nextBytes(data);
+        ByteBuffer.wrap(data)
+                .putInt(MAGIC)
+                .putInt(sequence)
+                .putLong(captureTimeMs);
+        return data;
+    }
+
+    /**
+     * 讀取嵌入的擷取時間；不是測試影格時回傳 -1
+     */
+    static long captureTimeMs(byte[] data, int length) {
+        if (length < HEADER_BYTES) {
+            return -1;
+        }
+        ByteBuffer in = ByteBuffer.wrap(data, 0, HEADER_BYTES);
+        if (in.getInt() != MAGIC) {
+            return -1;
+        }
+        in.getInt();
+        return in.getLong();
+    }
+}
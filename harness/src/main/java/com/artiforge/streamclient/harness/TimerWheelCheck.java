@@ -0,0 +1,251 @@
+package com.artiforge.streamclient.harness;
+
+import com.artiforge.streamclient.TaskScheduler;
+import com.artiforge.streamclient.TimerWheel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * TimerWheel 虛擬時鐘驗證（桌面 JVM，不需等待真實時間）
+ *
+ *   ./gradlew :harness:timerWheel [-PwheelSeed=1]
+ *
+ * 檢查：任務依到期時間排序執行、不早於原定時間也不晚於容許範圍、
+ * 取消的任務不會執行（包含同一次喚醒中被前一個任務取消）、週期任務不漂移且在自身任務中取消後停止、
+ * 時鐘一次跳過好幾圈時不提早觸發下一圈以後的任務、週期任務略過錯過的次數而非補跑、
+ * 容許延後的任務併入同一次喚醒。最後以隨機排程 / 取消對照預期結果。有違規時結束碼為 1。
+ */
+public final class TimerWheelCheck {
+
+    private static final long TICK_MS = 10;
+    private static final int WHEEL_SIZE = 256; // 一圈 2.56 秒
+    private static final int RANDOM_TASKS = 5_000;
+
+    private final List<String> violations = new ArrayList<>();
+    private final long[] now = {0};
+    private TimerWheel wheel;
+
+    private TimerWheelCheck() {
+    }
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+        TimerWheelCheck check = new TimerWheelCheck();
+        check.ordering();
+        check.cancellation();
+        check.periodic();
+        check.largeJumps();
+        check.coalescing();
+        check.randomized(seed);
+        if (!check.violations.isEmpty()) {
+            for (String violation : check.violations) {
+                System.err.println("❌ " + violation);
+            }
+            System.exit(1);
+        }
+        System.out.println("✅ 沒有違規");
+    }
+
+    private void reset() {
+        now[0] = 0;
+        wheel = new TimerWheel(() -> now[0], TICK_MS, WHEEL_SIZE);
+    }
+
+    /** 不同延遲、沒有容許值：依原定時間執行 */
+    private void ordering() {
+        reset();
+        List<Long> order = new ArrayList<>();
+        long[] delays = {500, 30, 2_000, 30, 7_000, 120, 15};
+        for (long delay : delays) {
+            wheel.schedule(() -> order.add(delay), delay, 0);
+        }
+        List<long[]> fired = new ArrayList<>();
+        advance(10_000, fired);
+        long previous = -1;
+        for (long delay : order) {
+            expect(delay >= previous, "ordering：" + delay + " 在 " + previous + " 之後才執行");
+            previous = delay;
+        }
+        expect(order.size() == delays.length, "ordering：執行 " + order.size() + " 個，應為 " + delays.length);
+        System.out.println("  ordering：" + order);
+    }
+
+    /** 到期前取消、同一次喚醒中被前一個任務取消、週期任務在自身任務中取消 */
+    private void cancellation() {
+        reset();
+        int[] runs = new int[3];
+        TaskScheduler.ScheduledTask early = wheel.schedule(() -> runs[0]++, 1_000, 0);
+        early.cancel();
+        // 兩者在同一次推進中取出；前者執行時取消後者
+        TaskScheduler.ScheduledTask[] later = new TaskScheduler.ScheduledTask[1];
+        wheel.schedule(() -> later[0].cancel(), 100, 0);
+        later[0] = wheel.schedule(() -> runs[1]++, 200, 0);
+        TaskScheduler.ScheduledTask[] self = new TaskScheduler.ScheduledTask[1];
+        self[0] = wheel.scheduleAtFixedRate(() -> {
+            if (++runs[2] == 3) {
+                self[0].cancel();
+            }
+        }, 50, 0);
+
+        now[0] = 300;
+        wheel.advanceTo(now[0]);
+        advance(5_000, null);
+        expect(runs[0] == 0, "cancellation：到期前取消的任務執行了 " + runs[0] + " 次");
+        expect(runs[1] == 0, "cancellation：同一次喚醒中被取消的任務仍執行了 " + runs[1] + " 次");
+        expect(runs[2] == 3, "cancellation：週期任務在第 3 次取消後共執行 " + runs[2] + " 次");
+        expect(wheel.pendingCount() == 0, "cancellation：結束時仍有 " + wheel.pendingCount() + " 個任務");
+    }
+
+    /** 週期任務以原定時間重排，不累積延遲 */
+    private void periodic() {
+        reset();
+        List<Long> times = new ArrayList<>();
+        wheel.scheduleAtFixedRate(() -> times.add(now[0]), 1_000, 200);
+        // 一直有其他任務喚醒：週期任務可能提早併入，但不早於原定時間
+        wheel.scheduleAtFixedRate(() -> { }, 70, 0);
+        advance(60_000 + 200, null);
+        expect(times.size() == 60, "periodic：執行 " + times.size() + " 次，應為 60");
+        for (int i = 0; i < times.size(); i++) {
+            long nominal = (i + 1) * 1_000L;
+            long at = times.get(i);
+            expect(at >= nominal && at <= nominal + 200, "periodic：第 " + (i + 1) + " 次在 " + at + " ms，原定 " + nominal);
+        }
+    }
+
+    /** 時鐘一次跳過好幾圈（裝置休眠） */
+    private void largeJumps() {
+        reset();
+        int[] periodicRuns = {0};
+        long[] farFiredAt = {-1};
+        long[] nearFiredAt = {-1};
+        long lapMs = TICK_MS * WHEEL_SIZE;
+        wheel.scheduleAtFixedRate(() -> periodicRuns[0]++, 1_000, 0);
+        wheel.schedule(() -> nearFiredAt[0] = now[0], lapMs / 2, 0);
+        // 好幾圈以後：落在同一格，但前幾圈不應觸發
+        wheel.schedule(() -> farFiredAt[0] = now[0], 10 * lapMs + lapMs / 2, 0);
+
+        now[0] = 3 * lapMs;
+        wheel.advanceTo(now[0]);
+        expect(nearFiredAt[0] == now[0], "largeJumps：跳過後未執行已到期的任務");
+        expect(periodicRuns[0] == 1, "largeJumps：週期任務補跑了 " + periodicRuns[0] + " 次");
+        expect(farFiredAt[0] < 0, "largeJumps：下一圈以後的任務在 " + farFiredAt[0] + " ms 提早執行");
+        // 略過錯過的次數，仍在原本的時間格上（不以跳過後的時間重新起算）
+        long nextOnGrid = (3 * lapMs / 1_000 + 1) * 1_000;
+        expect(wheel.nextWakeupMs() == nextOnGrid, "largeJumps：下一次喚醒 " + wheel.nextWakeupMs()
+                + " ms，應為原本時間格上的 " + nextOnGrid + " ms");
+
+        long target = 10 * lapMs + lapMs / 2;
+        advance(target - 1 - now[0], null);
+        expect(farFiredAt[0] < 0, "largeJumps：遠期任務在 " + farFiredAt[0] + " ms 提早執行");
+        advance(1, null);
+        expect(farFiredAt[0] == target, "largeJumps：遠期任務在 " + farFiredAt[0] + " ms 執行，原定 " + target);
+    }
+
+    /** 容許延後的任務併入已有的喚醒 */
+    private void coalescing() {
+        reset();
+        for (int i = 0; i < 10; i++) {
+            wheel.scheduleAtFixedRate(() -> { }, 1_000 + i * 10, 500);
+        }
+        advance(60_000, null);
+        long perRun = wheel.wakeups() / 60;
+        System.out.println("  coalescing：10 個週期任務 60 秒內喚醒 " + wheel.wakeups() + " 次，執行 " + wheel.firedCount() + " 個");
+        expect(perRun <= 2, "coalescing：每秒喚醒 " + perRun + " 次，容許範圍重疊的任務應併入同一次");
+    }
+
+    /** 隨機排程 / 取消 / 時鐘跳躍，對照每個任務的預期 */
+    private void randomized(long seed) {
+        reset();
+        Random random = new Random(seed);
+        long[] nominal = new long[RANDOM_TASKS];
+        long[] tolerance = new long[RANDOM_TASKS];
+        long[] firedAt = new long[RANDOM_TASKS];
+        int[] fireCount = new int[RANDOM_TASKS];
+        boolean[] cancelled = new boolean[RANDOM_TASKS];
+        boolean[] jumpedOver = new boolean[RANDOM_TASKS];
+        TaskScheduler.ScheduledTask[] handles = new TaskScheduler.ScheduledTask[RANDOM_TASKS];
+
+        for (int i = 0; i < RANDOM_TASKS; i++) {
+            int id = i;
+            long delay = random.nextInt(4) == 0 ? random.nextInt(30_000) : random.nextInt(1_000);
+            tolerance[i] = random.nextBoolean() ? 0 : random.nextInt(300);
+            nominal[i] = now[0] + delay;
+            handles[i] = wheel.schedule(() -> {
+                fireCount[id]++;
+                firedAt[id] = now[0];
+                // 偶爾在任務中取消另一個任務（可能已在同一批取出）
+                int victim = (id * 7919) % RANDOM_TASKS;
+                if (victim != id && handles[victim] != null && (id & 3) == 0 && fireCount[victim] == 0) {
+                    cancelled[victim] = true;
+                    handles[victim].cancel();
+                }
+            }, delay, tolerance[i]);
+            if (random.nextInt(5) == 0) {
+                cancelled[i] = true;
+                handles[i].cancel();
+            }
+            if (random.nextInt(50) == 0) {
+                // 時鐘跳躍：這段期間到期的任務允許晚執行
+                long jump = random.nextInt(5_000);
+                for (int j = 0; j <= i; j++) {
+                    if (nominal[j] + tolerance[j] < now[0] + jump && fireCount[j] == 0) {
+                        jumpedOver[j] = true;
+                    }
+                }
+                now[0] += jump;
+                wheel.advanceTo(now[0]);
+            } else {
+                advance(random.nextInt(20), null);
+            }
+        }
+        advance(60_000, null);
+
+        int ran = 0;
+        for (int i = 0; i < RANDOM_TASKS; i++) {
+            if (cancelled[i]) {
+                // 只在尚未執行時取消
+                expect(fireCount[i] == 0, "randomized：取消的任務 " + i + " 仍執行 " + fireCount[i] + " 次");
+                continue;
+            }
+            ran++;
+            if (fireCount[i] != 1) {
+                expect(false, "randomized：任務 " + i + " 執行 " + fireCount[i] + " 次");
+                continue;
+            }
+            long latest = nominal[i] + Math.max(tolerance[i], TICK_MS);
+            expect(firedAt[i] >= nominal[i], "randomized：任務 " + i + " 提早在 " + firedAt[i] + " ms 執行，原定 " + nominal[i]);
+            expect(jumpedOver[i] || firedAt[i] <= latest,
+                    "randomized：任務 " + i + " 在 " + firedAt[i] + " ms 執行，最晚應為 " + latest);
+        }
+        expect(wheel.pendingCount() == 0, "randomized：結束時仍有 " + wheel.pendingCount() + " 個任務");
+        System.out.println("  randomized：" + RANDOM_TASKS + " 個任務，執行 " + ran + " 個，喚醒 " + wheel.wakeups() + " 次");
+    }
+
+    /**
+     * 逐次喚醒推進虛擬時鐘；fired 不為 null 時記錄每次喚醒的時間
+     */
+    private void advance(long ms, List<long[]> fired) {
+        long target = now[0] + ms;
+        while (true) {
+            long next = wheel.nextWakeupMs();
+            if (next > target) {
+                break;
+            }
+            now[0] = Math.max(now[0], next);
+            int count = wheel.advanceTo(now[0]);
+            if (fired != null) {
+                fired.add(new long[]{now[0], count});
+            }
+        }
+        now[0] = target;
+        wheel.advanceTo(now[0]);
+    }
+
+    private void expect(boolean condition, String violation) {
+        if (!condition) {
+            violations.add(violation);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.artiforge.streamclient.harness;
+
+import com.artiforge.streamclient.TimeSource;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * UDP 劣化轉送（實驗性 UDP 影格傳輸用）
+ *
+ * 依設定丟包、加上延遲與抖動（抖動大於封包間隔時自然造成亂序），
+ * 線路排隊超過 MAX_QUEUE_DELAY_MS 時丟棄（路由器緩衝溢出）。停電期間全部丟棄。
+ * 另可指定固定比例的封包延後 REORDER_DELAY_MS 送達（不受抖動設定影響的亂序）。
+ */
+public final class UdpImpairmentRelay implements Closeable {
+
+    static final long MAX_QUEUE_DELAY_MS = 500;
+    static final long REORDER_DELAY_MS = 5;
+
+    private final InetSocketAddress target;
+    private final TimeSource clock;
+    private final LinkShaper link = new LinkShaper(3);
+    private final PriorityQueue<Delayed> pending = new PriorityQueue<>();
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong forwarded = new AtomicLong();
+    private final AtomicLong reordered = new AtomicLong();
+
+    private volatile DatagramSocket socket;
+    private volatile long blackoutUntilMs = 0;
+    private volatile double reorderRate = 0;
+    private long sequence = 0;
+
+    public UdpImpairmentRelay(InetSocketAddress target, TimeSource clock) {
+        this.target = target;
+        this.clock = clock;
+    }
+
+    public void start(int port) throws IOException {
+        socket = new DatagramSocket(port, InetAddress.getLoopbackAddress());
+        socket.setReceiveBufferSize(4 * 1024 * 1024);
+        Thread reader = new Thread(this::receiveLoop, "UdpRelay-receive");
+        Thread writer = new Thread(this::sendLoop, "UdpRelay-send");
+        reader.setDaemon(true);
+        writer.setDaemon(true);
+        reader.start();
+        writer.start();
+    }
+
+    public int getLocalPort() {
+        return socket.getLocalPort();
+    }
+
+    public void setProfile(ImpairmentProfile profile) {
+        link.setProfile(profile);
+    }
+
+    /**
+     * 每個封包以 rate 的機率延後 REORDER_DELAY_MS（被後面的封包超過）
+     */
+    public void setReorderRate(double rate) {
+        reorderRate = rate;
+    }
+
+    public void blackout(long durationMs) {
+        blackoutUntilMs = clock.nowMs() + durationMs;
+    }
+
+    public long receivedCount() {
+        return received.get();
+    }
+
+    public long droppedCount() {
+        return dropped.get();
+    }
+
+    public long forwardedCount() {
+        return forwarded.get();
+    }
+
+    public long reorderedCount() {
+        return reordered.get();
+    }
+
+    @Override
+    public void close() {
+        if (socket != null) {
+            socket.close();
+        }
+        synchronized (pending) {
+            pending.notifyAll();
+        }
+    }
+
+    private void receiveLoop() {
+        byte[] buffer = new byte[65_536];
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        while (!socket.isClosed()) {
+            try {
+                packet.setData(buffer);
+                socket.receive(packet);
+            } catch (IOException e) {
+                return;
+            }
+            received.incrementAndGet();
+            long now = clock.nowMs();
+            int length = packet.getLength();
+            if (now < blackoutUntilMs
+                    || link.lose(link.profile().lossRate)
+                    || link.queueDelayMs(now) > MAX_QUEUE_DELAY_MS) {
+                dropped.incrementAndGet();
+                continue;
+            }
+            byte[] data = new byte[length];
+            System.arraycopy(buffer, 0, data, 0, length);
+            long arrival = link.schedule(length, now);
+            if (link.lose(reorderRate)) {
+                arrival += REORDER_DELAY_MS;
+                reordered.incrementAndGet();
+            }
+            synchronized (pending) {
+                pending.add(new Delayed(data, arrival, sequence++));
+                pending.notifyAll();
+            }
+        }
+    }
+
+    private void sendLoop() {
+        SocketAddress destination = target;
+        try {
+            while (!socket.isClosed()) {
+                Delayed next;
+                synchronized (pending) {
+                    next = pending.peek();
+                    long wait = next == null ? 1_000 : next.arrivalMs - clock.nowMs();
+                    if (wait > 0) {
+                        pending.wait(wait);
+                        continue;
+                    }
+                    pending.poll();
+                }
+                socket.send(new DatagramPacket(next.data, next.data.length, destination));
+                forwarded.incrementAndGet();
+            }
+        } catch (IOException | InterruptedException e) {
+            // 關閉
+        }
+    }
+
+    private static final class Delayed implements Comparable<Delayed> {
+        final byte[] data;
+        final long arrivalMs;
+        final long sequence;
+
+        Delayed(byte[] data, long arrivalMs, long sequence) {
+            this.data = data;
+            this.arrivalMs = arrivalMs;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            int byTime = Long.compare(arrivalMs, other.arrivalMs);
+            return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.artiforge.streamclient.harness;
+
+import com.artiforge.streamclient.BandwidthEstimator;
+import com.artiforge.streamclient.DatagramFrameReassembler;
+import com.artiforge.streamclient.DatagramFrameSender;
+import com.artiforge.streamclient.EncodedFrame;
+import com.artiforge.streamclient.StreamMetrics;
+import com.artiforge.streamclient.TimeSource;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * UDP 傳輸在隨機遺失下的交付率（無 FEC 與 XOR FEC 比較，loopback 實際封包，桌面 JVM）
+ *
+ *   ./gradlew :harness:udpLoss [-PudpLossFrames=300]
+ *
+ * 送出端 → UdpImpairmentRelay（隨機遺失 0 / 1 / 5 / 10%、3% 亂序）→ 接收端重組，
+ * 以名目 10 fps 送出約 40 KB 影格（無 FEC、每 4 片一個同位封包）與約 8 KB 影格（每 4 片），
+ * 各設定同時執行，印出每秒交付張數。
+ * 1. 交付的影格與送出的位元組完全相同，且每張都有送出（沒有因排程丟棄）
+ * 2. 無遺失時所有設定交付全部影格
+ * 3. 5% 與 10% 遺失時，40 KB 影格加上 FEC 的交付張數至少是無 FEC 的兩倍
+ * 4. 任何遺失率下，加上 FEC 的交付張數不少於無 FEC
+ * 有違規時結束碼為 1。
+ */
+public final class UdpLossCheck {
+
+    private static final double[] LOSS_RATES = {0, 0.01, 0.05, 0.10};
+    private static final double REORDER_RATE = 0.03;
+    private static final long FRAME_INTERVAL_MS = 100;
+    private static final long LATENCY_MS = 20;
+    private static final long MAX_ASSEMBLY_MS = 1_000;
+    private static final int TOKEN = 0x5EED;
+    private static final byte[] KEY = DatagramFrameSender.parseKey("00112233445566778899aabbccddeeff");
+
+    private final List<String> violations = new ArrayList<>();
+
+    private UdpLossCheck() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        UdpLossCheck check = new UdpLossCheck();
+        check.compare(frames);
+        if (!check.violations.isEmpty()) {
+            for (String violation : check.violations) {
+                System.err.println("❌ " + violation);
+            }
+            System.exit(1);
+        }
+        System.out.println("✅ 沒有違規");
+    }
+
+    private void compare(int frames) throws Exception {
+        List<Lane> large = new ArrayList<>();
+        List<Lane> largeFec = new ArrayList<>();
+        List<Lane> small = new ArrayList<>();
+        List<Lane> all = new ArrayList<>();
+        for (double loss : LOSS_RATES) {
+            large.add(new Lane(40_000, 0, loss, frames));
+            largeFec.add(new Lane(40_000, DatagramFrameSender.DEFAULT_FEC_GROUP, loss, frames));
+            small.add(new Lane(8_000, DatagramFrameSender.DEFAULT_FEC_GROUP, loss, frames));
+        }
+        all.addAll(large);
+        all.addAll(largeFec);
+        all.addAll(small);
+
+        List<Thread> threads = new ArrayList<>();
+        for (Lane lane : all) {
+            Thread thread = new Thread(lane::run, "UdpLoss-" + lane);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (Lane lane : all) {
+            expect(lane.failure == null, lane + "：" + lane.failure);
+            expect(lane.sent == frames, lane + "：送出 " + lane.sent + " / " + frames + " 張");
+            expect(lane.mismatched == 0, lane + "：" + lane.mismatched + " 張交付的影格內容不符");
+            if (lane.lossRate == 0) {
+                expect(lane.delivered == frames, lane + "：無遺失只交付 " + lane.delivered + " / " + frames + " 張");
+            }
+        }
+        for (int i = 0; i < LOSS_RATES.length; i++) {
+            Lane plain = large.get(i);
+            Lane fec = largeFec.get(i);
+            expect(fec.delivered >= plain.delivered, fec + " 交付 " + fec.delivered + " 張，少於無 FEC 的 " + plain.delivered);
+            if (LOSS_RATES[i] >= 0.05) {
+                expect(fec.delivered >= 2 * plain.delivered,
+                        fec + " 交付 " + fec.delivered + " 張，未達無 FEC（" + plain.delivered + "）的兩倍");
+            }
+        }
+
+        double seconds = frames * FRAME_INTERVAL_MS / 1000.0;
+        System.out.println("  " + frames + " 張、名目 " + (1000 / FRAME_INTERVAL_MS) + " fps、亂序 "
+                + (int) (REORDER_RATE * 100) + "%，每秒交付張數：");
+        System.out.println("    遺失    40KB 無 FEC   40KB FEC/4   8KB FEC/4   （還原 / 亂序封包）");
+        for (int i = 0; i < LOSS_RATES.length; i++) {
+            System.out.println(String.format("    %4.0f%%   %10.1f   %10.1f   %9.1f   （%d / %d）",
+                    LOSS_RATES[i] * 100, large.get(i).delivered / seconds, largeFec.get(i).delivered / seconds,
+                    small.get(i).delivered / seconds, largeFec.get(i).recovered + small.get(i).recovered,
+                    large.get(i).reordered + largeFec.get(i).reordered + small.get(i).reordered));
+        }
+    }
+
+    /**
+     * 一組設定：送出端 → 劣化轉送 → 接收 socket → 重組
+     */
+    private static final class Lane {
+        final int frameBytes;
+        final int fecGroup;
+        final double lossRate;
+        final int frames;
+        final List<byte[]> sentFrames = new ArrayList<>();
+
+        volatile int sent = 0;
+        int delivered = 0;
+        int mismatched = 0;
+        long recovered = 0;
+        long reordered = 0;
+        volatile String failure;
+
+        Lane(int frameBytes, int fecGroup, double lossRate, int frames) {
+            this.frameBytes = frameBytes;
+            this.fecGroup = fecGroup;
+            this.lossRate = lossRate;
+            this.frames = frames;
+            Random random = new Random(frameBytes * 31L + fecGroup);
+            for (int i = 0; i < frames; i++) {
+                // 大小略有變化，讓最後一片的長度不同
+                byte[] data = new byte[frameBytes - random.nextInt(frameBytes / 10)];
+                random.nextBytes(data);
+                sentFrames.add(data);
+            }
+        }
+
+        void run() {
+            TimeSource clock = TimeSource.MONOTONIC;
+            InetAddress loopback = InetAddress.getLoopbackAddress();
+            DatagramFrameReassembler reassembler = new DatagramFrameReassembler(KEY, clock, MAX_ASSEMBLY_MS,
+                    (frameId, layer, data, length, isRecovered) -> {
+                        delivered++;
+                        if (frameId < 0 || frameId >= sentFrames.size()
+                                || !Arrays.equals(data, 0, length, sentFrames.get(frameId), 0, sentFrames.get(frameId).length)) {
+                            mismatched++;
+                        }
+                    });
+            try {
+                Thread reader;
+                // 接收 socket 只由 try-with-resources 關閉；關閉後接收執行緒才會結束
+                try (DatagramSocket receiver = new DatagramSocket(0, loopback);
+                     UdpImpairmentRelay relay = new UdpImpairmentRelay(new InetSocketAddress(loopback, receiver.getLocalPort()), clock)) {
+                    receiver.setReceiveBufferSize(4 * 1024 * 1024);
+                    relay.start(0);
+                    relay.setProfile(new ImpairmentProfile("loss", 0, LATENCY_MS, 0, lossRate));
+                    relay.setReorderRate(REORDER_RATE);
+                    reader = new Thread(() -> receive(receiver, reassembler), "UdpLoss-receive");
+                    reader.setDaemon(true);
+                    reader.start();
+
+                    try (DatagramFrameSender sender = new DatagramFrameSender(new InetSocketAddress(loopback, relay.getLocalPort()),
+                            TOKEN, KEY, fecGroup, new BandwidthEstimator(clock), clock, new StreamMetrics())) {
+                        long start = clock.nowMs();
+                        for (int i = 0; i < frames; i++) {
+                            long due = start + i * FRAME_INTERVAL_MS;
+                            long wait = due - clock.nowMs();
+                            if (wait > 0) {
+                                Thread.sleep(wait);
+                            }
+                            long now = clock.nowMs();
+                            if (sender.send(new EncodedFrame(sentFrames.get(i).clone(), now, now + EncodedFrame.DEFAULT_MAX_AGE_MS))) {
+                                sent++;
+                            }
+                        }
+                    }
+                    // 等轉送與重組完成（延遲 + 亂序 + 組裝逾時）
+                    Thread.sleep(LATENCY_MS + UdpImpairmentRelay.REORDER_DELAY_MS + 200);
+                    reordered = relay.reorderedCount();
+                }
+                reader.join();
+                recovered = reassembler.framesRecovered();
+            } catch (IOException | InterruptedException e) {
+                failure = e.toString();
+            }
+        }
+
+        private static void receive(DatagramSocket socket, DatagramFrameReassembler reassembler) {
+            byte[] buffer = new byte[2_048];
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            while (true) {
+                try {
+                    packet.setData(buffer);
+                    socket.receive(packet);
+                } catch (IOException e) {
+                    return;
+                }
+                reassembler.onDatagram(buffer, 0, packet.getLength());
+            }
+        }
+
+        @Override
+        public String toString() {
+            return (frameBytes / 1000) + "KB " + (fecGroup > 0 ? "FEC/" + fecGroup : "無 FEC") + " 遺失 "
+                    + Math.round(lossRate * 100) + "%";
+        }
+    }
+
+    private void expect(boolean condition, String violation) {
+        if (!condition) {
+            violations.add(violation);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package com.artiforge.streamclient.harness;
+
+import com.artiforge.streamclient.BandwidthEstimator;
+import com.artiforge.streamclient.DatagramFrameReassembler;
+import com.artiforge.streamclient.DatagramFrameSender;
+import com.artiforge.streamclient.EncodedFrame;
+import com.artiforge.streamclient.StreamMetrics;
+import com.artiforge.streamclient.TimeSource;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 實驗性 UDP 影格傳輸驗證（loopback 實際封包，桌面 JVM）
+ *
+ *   ./gradlew :harness:udpTransport
+ *
+ * 1. 分散送出：尚無頻寬量測時（初始視窗、預設 RTT），連續送出的影格依「視窗 / RTT」的速率分散，
+ *    任何一個 RTT 內送出的位元組不超過一個視窗（加上容許的提早量）
+ * 2. 期限：排不進影格期限的影格整張丟棄（計入 frames_stale_before_send），不會在期限後才送出
+ * 3. 加密驗證：實際送出的封包重新餵給接收端——正確金鑰交付的影格與原始位元組相同；
+ *    錯誤金鑰、竄改內容或標頭的封包全數拒絕、不交付任何影格；重放已交付的封包不會重複交付；
+ *    封包中看不到影格的明文
+ * 有違規時結束碼為 1。
+ */
+public final class UdpTransportCheck {
+
+    private static final int TOKEN = 0x5EED;
+    private static final int FRAME_BYTES = 60_000;
+    private static final int FRAMES = 20;
+    private static final long RTT_MS = 100; // 與 DatagramFrameSender 尚無量測時的預設值相同
+    private static final long INITIAL_WINDOW_BYTES = 128 * 1024;
+    private static final long SHORT_DEADLINE_MS = 300;
+    private static final int AUTH_FRAMES = 5;
+    private static final byte[] KEY = DatagramFrameSender.parseKey("000102030405060708090a0b0c0d0e0f");
+    private static final byte[] WRONG_KEY = DatagramFrameSender.parseKey("0f0e0d0c0b0a09080706050403020100");
+
+    private final List<String> violations = new ArrayList<>();
+
+    private UdpTransportCheck() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        UdpTransportCheck check = new UdpTransportCheck();
+        check.pacing();
+        check.deadline();
+        check.authentication();
+        if (!check.violations.isEmpty()) {
+            for (String violation : check.violations) {
+                System.err.println("❌ " + violation);
+            }
+            System.exit(1);
+        }
+        System.out.println("✅ 沒有違規");
+    }
+
+    private void pacing() throws Exception {
+        try (Sink sink = new Sink()) {
+            StreamMetrics metrics = new StreamMetrics();
+            BandwidthEstimator estimator = new BandwidthEstimator(TimeSource.MONOTONIC);
+            long window = estimator.congestionWindowBytes();
+            expect(window == INITIAL_WINDOW_BYTES, "pacing：初始視窗 " + window);
+            double bytesPerMs = (double) window / RTT_MS;
+            try (DatagramFrameSender sender = sender(sink, estimator, metrics)) {
+                long start = TimeSource.MONOTONIC.nowMs();
+                for (int i = 0; i < FRAMES; i++) {
+                    expect(sender.send(frame(Long.MAX_VALUE)), "pacing：第 " + i + " 張送出失敗");
+                }
+                long elapsed = TimeSource.MONOTONIC.nowMs() - start;
+                sink.awaitQuiet();
+                long wire = sink.bytes();
+                long expectedMs = (long) (wire / bytesPerMs);
+                expect(elapsed >= expectedMs * 9 / 10, "pacing：" + wire + " bytes 在 " + elapsed
+                        + " ms 內送完，依視窗 / RTT 至少需 " + expectedMs + " ms");
+                long burst = sink.maxBytesWithin(RTT_MS);
+                long allowed = window + (long) (bytesPerMs * 10) + 1_200;
+                expect(burst <= allowed, "pacing：" + RTT_MS + " ms 內收到 " + burst + " bytes，視窗 " + window);
+                System.out.println("  pacing：" + FRAMES + " 張 / " + wire + " bytes 花 " + elapsed + " ms（視窗 / RTT 需 "
+                        + expectedMs + " ms），任一 RTT 內最多 " + burst + " bytes，等待 "
+                        + metrics.get(DatagramFrameSender.UDP_PACING_WAIT_MS) + " ms");
+            }
+        }
+    }
+
+    private void deadline() throws Exception {
+        try (Sink sink = new Sink()) {
+            StreamMetrics metrics = new StreamMetrics();
+            BandwidthEstimator estimator = new BandwidthEstimator(TimeSource.MONOTONIC);
+            try (DatagramFrameSender sender = sender(sink, estimator, metrics)) {
+                long deadline = TimeSource.MONOTONIC.nowMs() + SHORT_DEADLINE_MS;
+                int sent = 0;
+                for (int i = 0; i < FRAMES; i++) {
+                    if (sender.send(frame(deadline))) {
+                        sent++;
+                    }
+                }
+                sink.awaitQuiet();
+                long stale = metrics.get(StreamMetrics.FRAMES_STALE_BEFORE_SEND);
+                expect(sent > 0 && sent < FRAMES, "deadline：" + FRAMES + " 張中送出 " + sent + " 張");
+                expect(sent + stale == FRAMES, "deadline：送出 " + sent + " 張、過期 " + stale + " 張，合計應為 " + FRAMES);
+                long lateMs = sink.lastArrivalMs() - deadline;
+                expect(lateMs <= 20, "deadline：最後一個封包在期限後 " + lateMs + " ms 才到");
+                System.out.println("  deadline：" + SHORT_DEADLINE_MS + " ms 期限內送出 " + sent + " 張，丟棄 " + stale
+                        + " 張，最後封包比期限" + (lateMs > 0 ? "晚 " + lateMs : "早 " + -lateMs) + " ms");
+            }
+        }
+    }
+
+    private void authentication() throws Exception {
+        Random random = new Random(1);
+        List<byte[]> frames = new ArrayList<>();
+        List<byte[]> packets;
+        try (Sink sink = new Sink()) {
+            StreamMetrics metrics = new StreamMetrics();
+            try (DatagramFrameSender sender = sender(sink, new BandwidthEstimator(TimeSource.MONOTONIC), metrics)) {
+                for (int i = 0; i < AUTH_FRAMES; i++) {
+                    byte[] data = new byte[FRAME_BYTES - i * 997];
+                    random.nextBytes(data);
+                    frames.add(data);
+                    expect(sender.send(new EncodedFrame(data.clone(), TimeSource.MONOTONIC.nowMs(), Long.MAX_VALUE)),
+                            "auth：第 " + i + " 張送出失敗");
+                }
+            }
+            sink.awaitQuiet();
+            packets = sink.packets();
+        }
+
+        List<byte[]> delivered = new ArrayList<>();
+        DatagramFrameReassembler right = reassembler(KEY, delivered);
+        feed(right, packets);
+        boolean identical = delivered.size() == frames.size();
+        for (int i = 0; identical && i < frames.size(); i++) {
+            identical = Arrays.equals(delivered.get(i), frames.get(i));
+        }
+        expect(identical, "auth：正確金鑰交付 " + delivered.size() + " 張，內容" + (identical ? "相同" : "不符"));
+        feed(right, packets);
+        expect(delivered.size() == frames.size(), "auth：重放後交付 " + delivered.size() + " 張");
+
+        List<byte[]> forged = new ArrayList<>();
+        DatagramFrameReassembler wrong = reassembler(WRONG_KEY, forged);
+        feed(wrong, packets);
+        expect(forged.isEmpty() && wrong.packetsInvalid() == packets.size(),
+                "auth：錯誤金鑰交付 " + forged.size() + " 張、拒絕 " + wrong.packetsInvalid() + " / " + packets.size() + " 個封包");
+
+        // 每個封包改一個位元組：奇數改標頭（frameId），偶數改內容
+        List<byte[]> tampered = new ArrayList<>();
+        for (int i = 0; i < packets.size(); i++) {
+            byte[] copy = packets.get(i).clone();
+            int at = i % 2 == 1 ? 15 : copy.length - 1 - random.nextInt(copy.length - 28);
+            copy[at] ^= 0x01;
+            tampered.add(copy);
+        }
+        List<byte[]> accepted = new ArrayList<>();
+        DatagramFrameReassembler victim = reassembler(KEY, accepted);
+        feed(victim, tampered);
+        expect(accepted.isEmpty() && victim.packetsInvalid() == packets.size(),
+                "auth：竄改封包交付 " + accepted.size() + " 張、拒絕 " + victim.packetsInvalid() + " / " + packets.size() + " 個");
+
+        int plaintextHits = 0;
+        for (byte[] packet : packets) {
+            for (byte[] frame : frames) {
+                if (contains(packet, Arrays.copyOfRange(frame, 0, 16))) {
+                    plaintextHits++;
+                }
+            }
+        }
+        expect(plaintextHits == 0, "auth：" + plaintextHits + " 個封包含有影格明文");
+        System.out.println("  auth：" + packets.size() + " 個封包，正確金鑰交付 " + delivered.size() + " 張（內容"
+                + (identical ? "相同" : "不符") + "），錯誤金鑰拒絕 " + wrong.packetsInvalid() + " 個，竄改拒絕 "
+                + victim.packetsInvalid() + " 個，重放後仍為 " + delivered.size() + " 張");
+    }
+
+    private static DatagramFrameReassembler reassembler(byte[] key, List<byte[]> delivered) {
+        return new DatagramFrameReassembler(key, TimeSource.MONOTONIC, 60_000,
+                (frameId, layer, data, length, recovered) -> delivered.add(Arrays.copyOf(data, length)));
+    }
+
+    private static void feed(DatagramFrameReassembler reassembler, List<byte[]> packets) {
+        for (byte[] packet : packets) {
+            reassembler.onDatagram(packet, 0, packet.length);
+        }
+    }
+
+    private static boolean contains(byte[] haystack, byte[] needle) {
+        for (int i = 0; i + needle.length <= haystack.length; i++) {
+            if (Arrays.equals(haystack, i, i + needle.length, needle, 0, needle.length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static DatagramFrameSender sender(Sink sink, BandwidthEstimator estimator, StreamMetrics metrics)
+            throws IOException {
+        return new DatagramFrameSender(new InetSocketAddress(InetAddress.getLoopbackAddress(), sink.port()), TOKEN, KEY,
+                DatagramFrameSender.DEFAULT_FEC_GROUP, estimator, TimeSource.MONOTONIC, metrics);
+    }
+
+    private static EncodedFrame frame(long deadlineMs) {
+        return new EncodedFrame(new byte[FRAME_BYTES], TimeSource.MONOTONIC.nowMs(), deadlineMs);
+    }
+
+    /**
+     * 接收端：記錄每個封包的到達時間、大小與內容
+     */
+    private static final class Sink implements AutoCloseable {
+        private final DatagramSocket socket;
+        private final Thread thread;
+        private final List<long[]> arrivals = new ArrayList<>(); // {時間, 位元組}
+        private final List<byte[]> packets = new ArrayList<>();
+
+        Sink() throws IOException {
+            socket = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+            socket.setReceiveBufferSize(4 * 1024 * 1024);
+            thread = new Thread(this::receive, "UdpSink");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int port() {
+            return socket.getLocalPort();
+        }
+
+        private void receive() {
+            byte[] buffer = new byte[2_048];
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            while (!socket.isClosed()) {
+                try {
+                    packet.setData(buffer);
+                    socket.receive(packet);
+                } catch (IOException e) {
+                    return;
+                }
+                synchronized (arrivals) {
+                    arrivals.add(new long[]{TimeSource.MONOTONIC.nowMs(), packet.getLength()});
+                    packets.add(Arrays.copyOf(buffer, packet.getLength()));
+                }
+            }
+        }
+
+        /** 等到 200 ms 沒有新封包 */
+        void awaitQuiet() throws InterruptedException {
+            int previous = -1;
+            while (true) {
+                Thread.sleep(200);
+                synchronized (arrivals) {
+                    if (arrivals.size() == previous) {
+                        return;
+                    }
+                    previous = arrivals.size();
+                }
+            }
+        }
+
+        long bytes() {
+            long total = 0;
+            synchronized (arrivals) {
+                for (long[] arrival : arrivals) {
+                    total += arrival[1];
+                }
+            }
+            return total;
+        }
+
+        List<byte[]> packets() {
+            synchronized (arrivals) {
+                return new ArrayList<>(packets);
+            }
+        }
+
+        long lastArrivalMs() {
+            synchronized (arrivals) {
+                return arrivals.isEmpty() ? Long.MIN_VALUE : arrivals.get(arrivals.size() - 1)[0];
+            }
+        }
+
+        /** 任何 windowMs 內收到的最多位元組 */
+        long maxBytesWithin(long windowMs) {
+            synchronized (arrivals) {
+                long max = 0;
+                long sum = 0;
+                int from = 0;
+                for (long[] arrival : arrivals) {
+                    sum += arrival[1];
+                    while (arrival[0] - arrivals.get(from)[0] >= windowMs) {
+                        sum -= arrivals.get(from)[1];
+                        from++;
+                    }
+                    max = Math.max(max, sum);
+                }
+                return max;
+            }
+        }
+
+        @Override
+        public void close() {
+            socket.close();
+        }
+    }
+
+    private void expect(boolean condition, String violation) {
+        if (!condition) {
+            violations.add(violation);
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.artiforge.streamclient.harness;
+
+import com.artiforge.streamclient.LogLevel;
+import com.artiforge.streamclient.StreamLogger;
+import com.artiforge.streamclient.StreamMetrics;
+import com.artiforge.streamclient.TimerWheel;
+import com.artiforge.streamclient.WakeLockManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * WakeLockManager 虛擬時鐘驗證（替身的平台喚醒鎖，桌面 JVM）
+ *
+ *   ./gradlew :harness:wakeLock
+ *
+ * 1. 依原因參考計數：任一 Hold 仍持有時平台鎖保持取得，全部釋放後才放掉（每次只放一次）
+ * 2. 同一原因重疊的持有只計一次時間（wakelock_held_ms_<reason> 為聯集長度），取得次數逐次累計
+ * 3. 逾時未釋放的 Hold 在期限（加上容許值）內自動釋放並計入 wakelock_timeouts；之後再 release 無作用
+ * 4. release 可重複呼叫；釋放後逾時任務已取消
+ * 5. 平台鎖以所有 Hold 中最晚的期限取得：較短的 Hold 不縮短期限，較長的才延長；
+ *    平台鎖的期限永遠不早於仍持有中的 Hold
+ * 6. flushHeldTime 把進行中的持有時間計入指標，之後釋放不重複計算
+ * 有違規時結束碼為 1。
+ */
+public final class WakeLockCheck {
+
+    private static final long TICK_MS = 100;
+    private static final int WHEEL_SIZE = 1024;
+    // 逾時釋放允許延後的時間（WakeLockManager.TIMEOUT_TOLERANCE_MS）
+    private static final long TIMEOUT_TOLERANCE_MS = 1_000;
+
+    /** 替身平台鎖：記錄呼叫次數與期限（期限到了視為系統自動釋放） */
+    private final class StandInPlatform implements WakeLockManager.Platform {
+        boolean held = false;
+        long deadlineMs = 0;
+        int acquires = 0;
+        int releases = 0;
+
+        @Override
+        public void acquire(long timeoutMs) {
+            held = true;
+            deadlineMs = now[0] + timeoutMs;
+            acquires++;
+        }
+
+        @Override
+        public void release() {
+            if (!held) {
+                violations.add("平台鎖在未持有時被釋放");
+            }
+            held = false;
+            releases++;
+        }
+
+        boolean effectivelyHeld() {
+            return held && now[0] < deadlineMs;
+        }
+    }
+
+    private final List<String> violations = new ArrayList<>();
+    private final long[] now = {0};
+    private final TimerWheel wheel = new TimerWheel(() -> now[0], TICK_MS, WHEEL_SIZE);
+    private final StreamMetrics metrics = new StreamMetrics();
+    private final List<String> warnings = new ArrayList<>();
+    private final StreamLogger logger = new StreamLogger(LogLevel.INFO, (level, message) -> {
+        if (level == LogLevel.WARN) {
+            warnings.add(message);
+        }
+        System.out.println("    " + message);
+    });
+    private final StandInPlatform platform = new StandInPlatform();
+    private final WakeLockManager wakeLocks = new WakeLockManager(platform, wheel, () -> now[0], metrics, logger);
+
+    private WakeLockCheck() {
+    }
+
+    public static void main(String[] args) {
+        WakeLockCheck check = new WakeLockCheck();
+        check.single();
+        check.referenceCounting();
+        check.overlappingReason();
+        check.timeout();
+        check.platformDeadline();
+        check.flush();
+        if (!check.violations.isEmpty()) {
+            for (String violation : check.violations) {
+                System.err.println("❌ " + violation);
+            }
+            System.exit(1);
+        }
+        System.out.println("✅ 沒有違規");
+    }
+
+    private void single() {
+        long heldBefore = heldMs(WakeLockManager.REASON_STREAM);
+        WakeLockManager.Hold hold = wakeLocks.acquire(WakeLockManager.REASON_STREAM, 10_000);
+        expect(platform.held, "single：取得後平台鎖未持有");
+        advance(3_000);
+        hold.release();
+        hold.release(); // 重複呼叫無作用
+        expect(!platform.held, "single：釋放後平台鎖仍持有");
+        expect(platform.releases == 1, "single：平台鎖釋放 " + platform.releases + " 次，應為 1");
+        expect(heldMs(WakeLockManager.REASON_STREAM) - heldBefore == 3_000,
+                "single：持有時間 " + (heldMs(WakeLockManager.REASON_STREAM) - heldBefore) + " ms，應為 3000");
+        expectIdle("single");
+        System.out.println("  single：持有 3000 ms 後釋放");
+    }
+
+    /** 不同原因交錯：最後一個釋放時才放掉平台鎖 */
+    private void referenceCounting() {
+        int releases = platform.releases;
+        WakeLockManager.Hold reconnect = wakeLocks.acquire(WakeLockManager.REASON_RECONNECT, 25_000);
+        advance(1_000);
+        WakeLockManager.Hold flush = wakeLocks.acquire(WakeLockManager.REASON_ERROR_FLUSH, 5_000);
+        WakeLockManager.Hold capture = wakeLocks.acquire(WakeLockManager.REASON_CAPTURE, 20_000);
+        expect(wakeLocks.heldCount() == 3 && metrics.get(WakeLockManager.WAKELOCK_HELD) == 3,
+                "referenceCounting：持有 " + wakeLocks.heldCount() + " 個，wakelock_held = " + metrics.get(WakeLockManager.WAKELOCK_HELD));
+        advance(500);
+        flush.release();
+        expect(platform.held, "referenceCounting：錯誤回報釋放後平台鎖被放掉（重連仍持有）");
+        advance(2_000);
+        reconnect.release();
+        expect(platform.held, "referenceCounting：重連釋放後平台鎖被放掉（擷取仍持有）");
+        advance(1_000);
+        capture.release();
+        expect(!platform.held, "referenceCounting：全部釋放後平台鎖仍持有");
+        expect(platform.releases - releases == 1, "referenceCounting：平台鎖釋放 " + (platform.releases - releases) + " 次，應為 1");
+        expect(heldMs(WakeLockManager.REASON_ERROR_FLUSH) == 500,
+                "referenceCounting：錯誤回報持有 " + heldMs(WakeLockManager.REASON_ERROR_FLUSH) + " ms，應為 500");
+        expect(heldMs(WakeLockManager.REASON_CAPTURE) == 3_500,
+                "referenceCounting：擷取持有 " + heldMs(WakeLockManager.REASON_CAPTURE) + " ms，應為 3500");
+        expectIdle("referenceCounting");
+        System.out.println("  referenceCounting：3 個原因交錯，平台鎖釋放 1 次");
+    }
+
+    /** 同一原因重疊：0–4 秒與 2–6 秒 → 6 秒 */
+    private void overlappingReason() {
+        long heldBefore = heldMs(WakeLockManager.REASON_RECONNECT);
+        long acquiresBefore = metrics.get(WakeLockManager.WAKELOCK_ACQUIRES_PREFIX + WakeLockManager.REASON_RECONNECT);
+        WakeLockManager.Hold first = wakeLocks.acquire(WakeLockManager.REASON_RECONNECT, 25_000);
+        advance(2_000);
+        WakeLockManager.Hold second = wakeLocks.acquire(WakeLockManager.REASON_RECONNECT, 25_000);
+        advance(2_000);
+        first.release();
+        expect(platform.held, "overlappingReason：同原因仍有持有時平台鎖被放掉");
+        expect(wakeLocks.heldMs(WakeLockManager.REASON_RECONNECT) - heldBefore == 4_000,
+                "overlappingReason：進行中的持有時間 " + (wakeLocks.heldMs(WakeLockManager.REASON_RECONNECT) - heldBefore) + " ms，應為 4000");
+        advance(2_000);
+        second.release();
+        long held = heldMs(WakeLockManager.REASON_RECONNECT) - heldBefore;
+        expect(held == 6_000, "overlappingReason：持有 " + held + " ms，應為 6000（重疊只計一次）");
+        long acquires = metrics.get(WakeLockManager.WAKELOCK_ACQUIRES_PREFIX + WakeLockManager.REASON_RECONNECT) - acquiresBefore;
+        expect(acquires == 2, "overlappingReason：取得 " + acquires + " 次，應為 2");
+        expectIdle("overlappingReason");
+        System.out.println("  overlappingReason：重疊持有計 " + held + " ms");
+    }
+
+    /** 忘了釋放：期限到時自動釋放並計數，之後的 release 無作用 */
+    private void timeout() {
+        long heldBefore = heldMs(WakeLockManager.REASON_ERROR_FLUSH);
+        int warningsBefore = warnings.size();
+        int releases = platform.releases;
+        long start = now[0];
+        WakeLockManager.Hold forgotten = wakeLocks.acquire(WakeLockManager.REASON_ERROR_FLUSH, 5_000);
+        while (wakeLocks.heldCount() > 0 && now[0] - start < 60_000) {
+            advance(TICK_MS);
+        }
+        long releasedAfter = now[0] - start;
+        expect(wakeLocks.heldCount() == 0, "timeout：60 秒後仍未自動釋放");
+        expect(releasedAfter >= 5_000 && releasedAfter <= 5_000 + TIMEOUT_TOLERANCE_MS + TICK_MS,
+                "timeout：" + releasedAfter + " ms 後才釋放，期限 5000 ms");
+        expect(!platform.held && platform.releases - releases == 1, "timeout：自動釋放後平台鎖未放掉");
+        expect(metrics.get(WakeLockManager.WAKELOCK_TIMEOUTS) == 1,
+                "timeout：wakelock_timeouts = " + metrics.get(WakeLockManager.WAKELOCK_TIMEOUTS) + "，應為 1");
+        expect(warnings.size() - warningsBefore == 1, "timeout：WARN " + (warnings.size() - warningsBefore) + " 筆，應為 1");
+        long held = heldMs(WakeLockManager.REASON_ERROR_FLUSH) - heldBefore;
+        expect(held == releasedAfter, "timeout：持有時間 " + held + " ms，應為 " + releasedAfter);
+
+        // 逾時後才呼叫 release：不重複計數、不影響其他持有
+        WakeLockManager.Hold other = wakeLocks.acquire(WakeLockManager.REASON_STREAM, 10_000);
+        forgotten.release();
+        expect(wakeLocks.heldCount() == 1 && platform.held, "timeout：逾時後的 release 影響了其他持有");
+        expect(metrics.get(WakeLockManager.WAKELOCK_TIMEOUTS) == 1, "timeout：逾時後 release 又計數一次");
+        other.release();
+        expectIdle("timeout");
+        System.out.println("  timeout：" + releasedAfter + " ms 後自動釋放");
+    }
+
+    /** 平台鎖期限取所有持有中最晚的 */
+    private void platformDeadline() {
+        int acquires = platform.acquires;
+        WakeLockManager.Hold longHold = wakeLocks.acquire(WakeLockManager.REASON_STREAM, 60_000);
+        long longDeadline = platform.deadlineMs;
+        advance(1_000);
+        WakeLockManager.Hold shortHold = wakeLocks.acquire(WakeLockManager.REASON_ERROR_FLUSH, 5_000);
+        expect(platform.acquires - acquires == 1 && platform.deadlineMs == longDeadline,
+                "platformDeadline：較短的持有改動了平台鎖期限");
+        shortHold.release();
+        advance(50_000);
+        WakeLockManager.Hold extend = wakeLocks.acquire(WakeLockManager.REASON_RECONNECT, 25_000);
+        expect(platform.acquires - acquires == 2 && platform.deadlineMs == now[0] + 25_000,
+                "platformDeadline：較長的期限未延長平台鎖");
+        advance(15_000); // 長持有已逾時自動釋放，延長的那個仍持有
+        expect(platform.effectivelyHeld(), "platformDeadline：仍有持有時平台鎖已過期");
+        longHold.release();
+        extend.release();
+        expectIdle("platformDeadline");
+        System.out.println("  platformDeadline：平台鎖取得 " + (platform.acquires - acquires) + " 次");
+    }
+
+    /** 長時間持有：flushHeldTime 後指標即時，釋放時不重複計算 */
+    private void flush() {
+        long heldBefore = heldMs(WakeLockManager.REASON_STREAM);
+        WakeLockManager.Hold hold = wakeLocks.acquire(WakeLockManager.REASON_STREAM, 120_000);
+        advance(30_000);
+        expect(heldMs(WakeLockManager.REASON_STREAM) == heldBefore, "flush：未 flush 前指標就已改變");
+        wakeLocks.flushHeldTime();
+        expect(heldMs(WakeLockManager.REASON_STREAM) - heldBefore == 30_000,
+                "flush：flush 後指標 " + (heldMs(WakeLockManager.REASON_STREAM) - heldBefore) + " ms，應為 30000");
+        expect(wakeLocks.heldMs(WakeLockManager.REASON_STREAM) - heldBefore == 30_000, "flush：heldMs 重複計入進行中的時間");
+        advance(20_000);
+        wakeLocks.flushHeldTime();
+        advance(10_000);
+        hold.release();
+        long held = heldMs(WakeLockManager.REASON_STREAM) - heldBefore;
+        expect(held == 60_000, "flush：持有 " + held + " ms，應為 60000");
+        expectIdle("flush");
+        System.out.println("  flush：兩次 flush 後持有 " + held + " ms");
+    }
+
+    /** 指標中的累計值（不含進行中的持有） */
+    private long heldMs(String reason) {
+        return metrics.get(WakeLockManager.WAKELOCK_HELD_MS_PREFIX + reason);
+    }
+
+    private void expectIdle(String stage) {
+        expect(wakeLocks.heldCount() == 0, stage + "：結束時仍持有 " + wakeLocks.heldCount() + " 個");
+        expect(!platform.held, stage + "：結束時平台鎖仍持有");
+        expect(wheel.pendingCount() == 0, stage + "：結束時仍有 " + wheel.pendingCount() + " 個逾時任務");
+    }
+
+    private void advance(long ms) {
+        long target = now[0] + ms;
+        while (true) {
+            long next = wheel.nextWakeupMs();
+            if (next > target) {
+                break;
+            }
+            now[0] = Math.max(now[0], next);
+            wheel.advanceTo(now[0]);
+        }
+        now[0] = target;
+        wheel.advanceTo(now[0]);
+    }
+
+    private void expect(boolean condition, String violation) {
+        if (!condition) {
+            violations.add(violation);
+        }
+    }
+}
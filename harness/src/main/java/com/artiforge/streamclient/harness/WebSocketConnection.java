@@ -0,0 +1,168 @@
+package com.artiforge.streamclient.harness;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * 最小 WebSocket 伺服器端（RFC 6455，只處理文字訊息；供 Engine.IO 使用）
+ */
+final class WebSocketConnection {
+
+    private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final int OP_CONTINUATION = 0x0;
+    private static final int OP_TEXT = 0x1;
+    private static final int OP_CLOSE = 0x8;
+    private static final int OP_PING = 0x9;
+    private static final int OP_PONG = 0xA;
+    private static final int MAX_MESSAGE_BYTES = 1024 * 1024;
+
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+
+    private WebSocketConnection(Socket socket, InputStream in) throws IOException {
+        this.socket = socket;
+        this.in = in;
+        this.out = socket.getOutputStream();
+    }
+
+    /**
+     * 回應升級請求（呼叫前已讀完 HTTP 標頭）
+     */
+    static WebSocketConnection accept(Socket socket, InputStream in, String key) throws IOException {
+        String response = "HTTP/1.1 101 Switching Protocols\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Accept: " + acceptKey(key) + "\r\n\r\n";
+        OutputStream out = socket.getOutputStream();
+        out.write(response.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        return new WebSocketConnection(socket, in);
+    }
+
+    static String acceptKey(String key) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            byte[] digest = sha1.digest((key.trim() + ACCEPT_GUID).getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 讀取下一則文字訊息；對方關閉時回傳 null（ping 自動回 pong）
+     */
+    String readText() throws IOException {
+        ByteArrayOutputStream message = new ByteArrayOutputStream();
+        while (true) {
+            int first = readByte();
+            int second = readByte();
+            boolean fin = (first & 0x80) != 0;
+            int opcode = first & 0x0F;
+            boolean masked = (second & 0x80) != 0;
+            long length = second & 0x7F;
+            if (length == 126) {
+                length = (readByte() << 8) | readByte();
+            } else if (length == 127) {
+                length = 0;
+                for (int i = 0; i < 8; i++) {
+                    length = (length << 8) | readByte();
+                }
+            }
+            if (length > MAX_MESSAGE_BYTES) {
+                throw new IOException("WebSocket 訊息過大: " + length);
+            }
+            byte[] mask = new byte[4];
+            if (masked) {
+                readFully(mask);
+            }
+            byte[] payload = new byte[(int) length];
+            readFully(payload);
+            if (masked) {
+                for (int i = 0; i < payload.length; i++) {
+                    payload[i] ^= mask[i & 3];
+                }
+            }
+
+            switch (opcode) {
+                case OP_PING:
+                    writeFrame(OP_PONG, payload);
+                    break;
+                case OP_PONG:
+                    break;
+                case OP_CLOSE:
+                    writeFrame(OP_CLOSE, new byte[0]);
+                    return null;
+                case OP_TEXT:
+                case OP_CONTINUATION:
+                    message.write(payload);
+                    if (fin) {
+                        return message.toString(StandardCharsets.UTF_8.name());
+                    }
+                    break;
+                default:
+                    break; // 二進位訊息不使用
+            }
+        }
+    }
+
+    void sendText(String text) throws IOException {
+        writeFrame(OP_TEXT, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
+
+    private synchronized void writeFrame(int opcode, byte[] payload) throws IOException {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(payload.length + 10);
+        frame.write(0x80 | opcode);
+        if (payload.length < 126) {
+            frame.write(payload.length);
+        } else if (payload.length <= 0xFFFF) {
+            frame.write(126);
+            frame.write(payload.length >>> 8);
+            frame.write(payload.length & 0xFF);
+        } else {
+            frame.write(127);
+            for (int i = 7; i >= 0; i--) {
+                frame.write((int) ((long) payload.length >>> (i * 8)) & 0xFF);
+            }
+        }
+        frame.write(payload);
+        out.write(frame.toByteArray());
+        out.flush();
+    }
+
+    private int readByte() throws IOException {
+        int value = in.read();
+        if (value < 0) {
+            throw new EOFException();
+        }
+        return value;
+    }
+
+    private void readFully(byte[] buffer) throws IOException {
+        int offset = 0;
+        while (offset < buffer.length) {
+            int read = in.read(buffer, offset, buffer.length - offset);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            offset += read;
+        }
+    }
+}
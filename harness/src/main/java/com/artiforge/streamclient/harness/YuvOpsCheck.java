@@ -0,0 +1,266 @@
+package com.artiforge.streamclient.harness;
+
+import com.artiforge.streamclient.ResolutionTier;
+import com.artiforge.streamclient.SyntheticYuvFrame;
+import com.artiforge.streamclient.YuvFrameProcessor;
+import com.artiforge.streamclient.YuvOps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * YuvOps 對照逐像素參考實作的正確性與 640x480 前處理時間（桌面 JVM）
+ *
+ *   ./gradlew :harness:yuvOps [-PyuvOpsIterations=500]
+ *
+ * 1. packNv21：列尾填充 0 / 64 位元組、uvPixelStride 1 / 2 的四種組合與逐像素讀取平面的結果相同，
+ *    也與無填充的獨立平面（planar）輸入相同；裁切版本與參考結果的對應區域相同
+ * 2. rotateCcw90 與逐像素旋轉（Y 與 VU 成對）的結果相同
+ * 3. downscale2x 與逐像素 2x2 平均（四捨五入）的結果相同
+ * 4. YuvFrameProcessor 的完整層與縮圖層等於 打包 → 旋轉 → 縮小 的參考結果
+ * 最後印出 640x480（UV 交錯、有填充）打包 + 旋轉與縮圖縮小的每次時間中位數；
+ * 時間依機器而定，只印出不列為違規（JMH 量測見 :benchmark 的 YuvBenchmark）。
+ * 有違規時結束碼為 1。
+ */
+public final class YuvOpsCheck {
+
+    private static final int[][] SIZES = {{320, 240}, {640, 480}, {1280, 960}, {176, 144}};
+    private static final int[] ROW_PADDINGS = {0, 64};
+    private static final int[] PIXEL_STRIDES = {1, 2};
+    private static final int TIMING_WIDTH = 640;
+    private static final int TIMING_HEIGHT = 480;
+
+    private final List<String> violations = new ArrayList<>();
+
+    private YuvOpsCheck() {
+    }
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        YuvOpsCheck check = new YuvOpsCheck();
+        check.packing();
+        check.cropping();
+        check.rotation();
+        check.downscaling();
+        check.processor();
+        check.timing(iterations);
+        if (!check.violations.isEmpty()) {
+            for (String violation : check.violations) {
+                System.err.println("❌ " + violation);
+            }
+            System.exit(1);
+        }
+        System.out.println("✅ 沒有違規");
+    }
+
+    /** 各種 stride 組合 vs 逐像素參考與無填充的獨立平面 */
+    private void packing() {
+        int cases = 0;
+        for (int[] size : SIZES) {
+            int width = size[0];
+            int height = size[1];
+            SyntheticYuvFrame planar = new SyntheticYuvFrame(width, height, 0, 1).render(7);
+            byte[] planarNv21 = planar.toNv21();
+            for (int padding : ROW_PADDINGS) {
+                for (int pixelStride : PIXEL_STRIDES) {
+                    SyntheticYuvFrame frame = new SyntheticYuvFrame(width, height, padding, pixelStride).render(7);
+                    String name = width + "x" + height + " 填充 " + padding + " pixelStride " + pixelStride;
+                    byte[] expected = referenceNv21(frame, 0, 0, width, height);
+                    byte[] packed = frame.toNv21();
+                    expectSame(packed, expected, "packing " + name + "：與逐像素參考");
+                    expectSame(packed, planarNv21, "packing " + name + "：與無填充的獨立平面");
+                    cases++;
+                }
+            }
+        }
+        System.out.println("  packing：" + cases + " 種組合");
+    }
+
+    /** 裁切打包 vs 參考結果的對應區域（含填充與交錯） */
+    private void cropping() {
+        int[][] regions = {{0, 0, 320, 240}, {64, 48, 256, 192}, {2, 2, 636, 476}, {320, 0, 320, 480}};
+        for (int padding : ROW_PADDINGS) {
+            for (int pixelStride : PIXEL_STRIDES) {
+                SyntheticYuvFrame frame = new SyntheticYuvFrame(640, 480, padding, pixelStride).render(3);
+                for (int[] region : regions) {
+                    int width = region[2];
+                    int height = region[3];
+                    byte[] out = new byte[YuvOps.nv21Size(width, height)];
+                    frame.rewind();
+                    YuvOps.packNv21(frame.y, frame.yRowStride, frame.u, frame.v, frame.uvRowStride, frame.uvPixelStride,
+                            region[0], region[1], width, height, out, new byte[Math.max(frame.yRowStride, frame.uvRowStride)]);
+                    expectSame(out, referenceNv21(frame, region[0], region[1], width, height),
+                            "cropping 填充 " + padding + " pixelStride " + pixelStride + " 區域 " + Arrays.toString(region));
+                }
+            }
+        }
+        System.out.println("  cropping：" + regions.length * ROW_PADDINGS.length * PIXEL_STRIDES.length + " 個區域");
+    }
+
+    private void rotation() {
+        for (int[] size : SIZES) {
+            byte[] nv21 = new SyntheticYuvFrame(size[0], size[1], 0, 2).render(11).toNv21();
+            byte[] rotated = new byte[nv21.length];
+            YuvOps.rotateCcw90(nv21, size[0], size[1], rotated);
+            expectSame(rotated, referenceRotate(nv21, size[0], size[1]), "rotation " + size[0] + "x" + size[1]);
+        }
+        System.out.println("  rotation：" + SIZES.length + " 種尺寸");
+    }
+
+    private void downscaling() {
+        for (int[] size : SIZES) {
+            // 直立（旋轉後）的尺寸，與縮圖層的輸入相同
+            int width = size[1];
+            int height = size[0];
+            if (width % 4 != 0 || height % 4 != 0) {
+                continue;
+            }
+            byte[] nv21 = new byte[YuvOps.nv21Size(width, height)];
+            YuvOps.rotateCcw90(new SyntheticYuvFrame(size[0], size[1], 0, 2).render(5).toNv21(), size[0], size[1], nv21);
+            byte[] scaled = new byte[YuvOps.nv21Size(width / 2, height / 2)];
+            YuvOps.downscale2x(nv21, width, height, scaled);
+            expectSame(scaled, referenceDownscale(nv21, width, height), "downscaling " + width + "x" + height);
+        }
+        System.out.println("  downscaling：完成");
+    }
+
+    /** 相機實際的組合：有填充、UV 交錯，MEDIUM 等級（長邊 640）→ 不再縮小，縮圖為 240x320 */
+    private void processor() {
+        SyntheticYuvFrame frame = new SyntheticYuvFrame(TIMING_WIDTH, TIMING_HEIGHT, 64, 2).render(9);
+        YuvFrameProcessor processor = new YuvFrameProcessor();
+        frame.rewind();
+        processor.prepare(frame.y, frame.yRowStride, frame.u, frame.v, frame.uvRowStride, frame.uvPixelStride,
+                frame.width, frame.height, ResolutionTier.MEDIUM.height);
+        byte[] rotated = referenceRotate(referenceNv21(frame, 0, 0, frame.width, frame.height), frame.width, frame.height);
+        byte[] full = Arrays.copyOf(processor.full(), rotated.length);
+        expectSame(full, rotated, "processor：完整層");
+        byte[] thumbExpected = referenceDownscale(rotated, frame.height, frame.width);
+        byte[] thumb = Arrays.copyOf(processor.thumbnail(), thumbExpected.length);
+        expectSame(thumb, thumbExpected, "processor：縮圖層");
+        System.out.println("  processor：完整層 " + frame.height + "x" + frame.width
+                + "、縮圖 " + frame.height / 2 + "x" + frame.width / 2);
+    }
+
+    /** 每次時間的中位數（先暖機相同次數，讓 JIT 編譯） */
+    private void timing(int iterations) {
+        SyntheticYuvFrame frame = new SyntheticYuvFrame(TIMING_WIDTH, TIMING_HEIGHT, 64, 2);
+        byte[] packed = new byte[YuvOps.nv21Size(frame.width, frame.height)];
+        byte[] rotated = new byte[packed.length];
+        byte[] thumb = new byte[YuvOps.nv21Size(frame.width / 2, frame.height / 2)];
+        byte[] rowBuffer = new byte[Math.max(frame.yRowStride, frame.uvRowStride)];
+        long[] packRotateNs = new long[iterations];
+        long[] downscaleNs = new long[iterations];
+        int checksum = 0;
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < iterations; i++) {
+                long start = System.nanoTime();
+                frame.rewind();
+                YuvOps.packNv21(frame.y, frame.yRowStride, frame.u, frame.v, frame.uvRowStride, frame.uvPixelStride,
+                        frame.width, frame.height, packed, rowBuffer);
+                YuvOps.rotateCcw90(packed, frame.width, frame.height, rotated);
+                long rotatedAt = System.nanoTime();
+                YuvOps.downscale2x(rotated, frame.height, frame.width, thumb);
+                long end = System.nanoTime();
+                packRotateNs[i] = rotatedAt - start;
+                downscaleNs[i] = end - rotatedAt;
+                checksum += thumb[i % thumb.length];
+            }
+        }
+        System.out.println(String.format("  timing：%dx%d（填充 64、UV 交錯）%d 次，打包 + 旋轉 %.2f ms、縮圖縮小 %.2f ms（中位數，checksum %d）",
+                frame.width, frame.height, iterations, median(packRotateNs) / 1e6, median(downscaleNs) / 1e6, checksum));
+    }
+
+    /** 以絕對位置逐像素讀取平面，組成 NV21 */
+    private static byte[] referenceNv21(SyntheticYuvFrame frame, int left, int top, int width, int height) {
+        byte[] out = new byte[YuvOps.nv21Size(width, height)];
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                out[row * width + col] = frame.y.get((top + row) * frame.yRowStride + left + col);
+            }
+        }
+        int base = width * height;
+        for (int row = 0; row < height / 2; row++) {
+            for (int col = 0; col < width / 2; col++) {
+                int index = (top / 2 + row) * frame.uvRowStride + (left / 2 + col) * frame.uvPixelStride;
+                out[base + row * width + col * 2] = frame.v.get(index);
+                out[base + row * width + col * 2 + 1] = frame.u.get(index);
+            }
+        }
+        return out;
+    }
+
+    /** 逆時針 90 度：來源 (x, y) → 目的 (y, width - 1 - x)，目的寬為 height */
+    private static byte[] referenceRotate(byte[] src, int width, int height) {
+        byte[] dst = new byte[src.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                dst[(width - 1 - x) * height + y] = src[y * width + x];
+            }
+        }
+        int base = width * height;
+        int chromaWidth = width / 2;
+        for (int y = 0; y < height / 2; y++) {
+            for (int x = 0; x < chromaWidth; x++) {
+                int from = base + y * width + x * 2;
+                int to = base + (chromaWidth - 1 - x) * height + y * 2;
+                dst[to] = src[from];
+                dst[to + 1] = src[from + 1];
+            }
+        }
+        return dst;
+    }
+
+    /** 每個輸出像素 = 對應 2x2 區塊的平均（四捨五入）；V、U 各自平均 */
+    private static byte[] referenceDownscale(byte[] src, int width, int height) {
+        int outWidth = width / 2;
+        int outHeight = height / 2;
+        byte[] dst = new byte[YuvOps.nv21Size(outWidth, outHeight)];
+        for (int y = 0; y < outHeight; y++) {
+            for (int x = 0; x < outWidth; x++) {
+                int sum = 0;
+                for (int dy = 0; dy < 2; dy++) {
+                    for (int dx = 0; dx < 2; dx++) {
+                        sum += src[(y * 2 + dy) * width + x * 2 + dx] & 0xFF;
+                    }
+                }
+                dst[y * outWidth + x] = (byte) Math.round(sum / 4.0);
+            }
+        }
+        int srcBase = width * height;
+        int dstBase = outWidth * outHeight;
+        for (int y = 0; y < outHeight / 2; y++) {
+            for (int x = 0; x < outWidth / 2; x++) {
+                for (int channel = 0; channel < 2; channel++) {
+                    int sum = 0;
+                    for (int dy = 0; dy < 2; dy++) {
+                        for (int dx = 0; dx < 2; dx++) {
+                            sum += src[srcBase + (y * 2 + dy) * width + (x * 2 + dx) * 2 + channel] & 0xFF;
+                        }
+                    }
+                    dst[dstBase + y * outWidth + x * 2 + channel] = (byte) Math.round(sum / 4.0);
+                }
+            }
+        }
+        return dst;
+    }
+
+    private static double median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private void expectSame(byte[] actual, byte[] expected, String name) {
+        int mismatch = Arrays.mismatch(actual, expected);
+        expect(mismatch < 0, name + "：第 " + mismatch + " 個位元組不同（"
+                + (mismatch >= 0 && mismatch < Math.min(actual.length, expected.length)
+                ? (actual[mismatch] & 0xFF) + " vs " + (expected[mismatch] & 0xFF) : "長度不同") + "）");
+    }
+
+    private void expect(boolean condition, String violation) {
+        if (!condition) {
+            violations.add(violation);
+        }
+    }
+}